@@ -48,6 +48,7 @@ import org.kse.gui.error.DError;
 import org.kse.gui.preferences.PreferencesManager;
 import org.kse.gui.preferences.data.KsePreferences;
 import org.kse.gui.preferences.data.LanguageItem;
+import org.kse.utilities.history.KeyStoreHistory;
 import org.kse.utilities.net.ProxySettingsUpdater;
 import org.kse.utilities.os.OperatingSystem;
 import org.kse.utilities.rng.RNG;
@@ -110,6 +111,7 @@ public class KSE {
 
             Pkcs12Util.setEncryptionStrength(preferences.getPkcs12EncryptionSetting());
             RNG.setType(preferences.getRngTypeSetting());
+            KeyStoreHistory.setMemoryBudget(preferences.getHistoryMemoryBudgetInMegabytes() * 1024L * 1024L);
 
             setProperties(preferences.getProperties());
 
@@ -19,12 +19,21 @@
  */
 package org.kse.crypto.digest;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.text.MessageFormat;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.concurrent.ForkJoinPool;
 
 import org.kse.crypto.CryptoException;
 import org.kse.utilities.io.HexUtil;
@@ -35,6 +44,15 @@ import org.kse.utilities.io.HexUtil;
 public final class DigestUtil {
     private static ResourceBundle res = ResourceBundle.getBundle("org/kse/crypto/digest/resources");
 
+    // Large files are memory mapped one region at a time
+    private static final long MAPPED_REGION_SIZE = 64L * 1024 * 1024;
+
+    // Streams are read into a buffer of this size, which is fed to all digesters
+    private static final int STREAM_BUFFER_SIZE = 16 * 1024;
+
+    // Inputs of at least this size are fed to several digesters in parallel, one lane per digester
+    private static final int PARALLEL_THRESHOLD = 4 * 1024 * 1024;
+
     private DigestUtil() {
     }
 
@@ -47,20 +65,84 @@ public final class DigestUtil {
      * @throws CryptoException If message digester could not be created
      */
     public static byte[] getMessageDigest(InputStream istream, DigestType digestType) throws CryptoException {
-        MessageDigest messageDigester = getMessageDigester(digestType);
+        return getMessageDigests(istream, digestType).get(digestType);
+    }
+
+    /**
+     * Get digests of the input stream for several digest algorithms, reading the stream only once.
+     * Each buffer read from the stream is fed to all digesters.
+     *
+     * @param istream     Input stream to digest
+     * @param digestTypes The message digest algorithms
+     * @return The message digests, keyed by digest algorithm in the order supplied
+     * @throws CryptoException If a message digester could not be created or the stream could not be read
+     */
+    public static Map<DigestType, byte[]> getMessageDigests(InputStream istream, DigestType... digestTypes)
+            throws CryptoException {
+        Map<DigestType, MessageDigest> messageDigesters = getMessageDigesters(digestTypes);
 
         try {
-            byte[] buffer = new byte[2048];
+            byte[] buffer = new byte[STREAM_BUFFER_SIZE];
             int read = 0;
 
             while ((read = istream.read(buffer)) != -1) {
-                messageDigester.update(buffer, 0, read);
+                for (MessageDigest messageDigester : messageDigesters.values()) {
+                    messageDigester.update(buffer, 0, read);
+                }
             }
+        } catch (IOException ex) {
+            throw new CryptoException(res.getString("NoCreateDigest.exception.message"), ex);
+        }
 
-            return messageDigester.digest();
+        return digest(messageDigesters);
+    }
+
+    /**
+     * Get digests of a file's content for several digest algorithms, reading the file only once.
+     * The file is memory mapped a region at a time and each region is fed to all digesters. For
+     * large files the digesters process each region in parallel.
+     *
+     * @param file        File to digest
+     * @param digestTypes The message digest algorithms
+     * @return The message digests, keyed by digest algorithm in the order supplied
+     * @throws CryptoException If a message digester could not be created or the file could not be read
+     */
+    public static Map<DigestType, byte[]> getMessageDigests(File file, DigestType... digestTypes)
+            throws CryptoException {
+        Map<DigestType, MessageDigest> messageDigesters = getMessageDigesters(digestTypes);
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            for (long position = 0; position < size; position += MAPPED_REGION_SIZE) {
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                                                      Math.min(MAPPED_REGION_SIZE, size - position));
+
+                update(messageDigesters.values(), region);
+            }
         } catch (IOException ex) {
             throw new CryptoException(res.getString("NoCreateDigest.exception.message"), ex);
         }
+
+        return digest(messageDigesters);
+    }
+
+    /**
+     * Get digests of the supplied message for several digest algorithms. For large messages the
+     * digesters process the message in parallel.
+     *
+     * @param message     The message to digest
+     * @param digestTypes The message digest algorithms
+     * @return The message digests, keyed by digest algorithm in the order supplied
+     * @throws CryptoException If a message digester could not be created
+     */
+    public static Map<DigestType, byte[]> getMessageDigests(byte[] message, DigestType... digestTypes)
+            throws CryptoException {
+        Map<DigestType, MessageDigest> messageDigesters = getMessageDigesters(digestTypes);
+
+        update(messageDigesters.values(), ByteBuffer.wrap(message));
+
+        return digest(messageDigesters);
     }
 
     /**
@@ -93,6 +175,57 @@ public final class DigestUtil {
         return HexUtil.getHexStringWithSep(messageDigest, ':');
     }
 
+    /**
+     * Get the digests of a message as formatted Strings for several digest algorithms, see
+     * {@link #getFriendlyMessageDigest(byte[], DigestType)}.
+     *
+     * @param message     The message to digest
+     * @param digestTypes The message digest algorithms
+     * @return The message digests, keyed by digest algorithm in the order supplied
+     * @throws CryptoException If a message digester could not be created
+     */
+    public static Map<DigestType, String> getFriendlyMessageDigests(byte[] message, DigestType... digestTypes)
+            throws CryptoException {
+        Map<DigestType, String> friendlyMessageDigests = new LinkedHashMap<>();
+        for (Map.Entry<DigestType, byte[]> messageDigest : getMessageDigests(message, digestTypes).entrySet()) {
+            friendlyMessageDigests.put(messageDigest.getKey(), HexUtil.getHexStringWithSep(messageDigest.getValue(),
+                                                                                           ':'));
+        }
+        return friendlyMessageDigests;
+    }
+
+    private static Map<DigestType, MessageDigest> getMessageDigesters(DigestType... digestTypes)
+            throws CryptoException {
+        Map<DigestType, MessageDigest> messageDigesters = new LinkedHashMap<>();
+        for (DigestType digestType : digestTypes) {
+            messageDigesters.put(digestType, getMessageDigester(digestType));
+        }
+        return messageDigesters;
+    }
+
+    /*
+     * Feed the data to all digesters. Each digester is only used by one thread at a time, so
+     * large inputs are digested in parallel lanes on the common fork-join pool.
+     */
+    private static void update(Collection<MessageDigest> messageDigesters, ByteBuffer data) {
+        if (messageDigesters.size() > 1 && data.remaining() >= PARALLEL_THRESHOLD
+                && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            messageDigesters.parallelStream().forEach(messageDigester -> messageDigester.update(data.duplicate()));
+        } else {
+            for (MessageDigest messageDigester : messageDigesters) {
+                messageDigester.update(data.duplicate());
+            }
+        }
+    }
+
+    private static Map<DigestType, byte[]> digest(Map<DigestType, MessageDigest> messageDigesters) {
+        Map<DigestType, byte[]> messageDigests = new LinkedHashMap<>();
+        for (Map.Entry<DigestType, MessageDigest> messageDigester : messageDigesters.entrySet()) {
+            messageDigests.put(messageDigester.getKey(), messageDigester.getValue().digest());
+        }
+        return messageDigests;
+    }
+
     /**
      * Create message digester of supplied type.
      *
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.digest;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.kse.crypto.CryptoException;
+
+/**
+ * Process-wide cache for digests calculated over certificates and public keys, such as
+ * fingerprints and key identifiers.
+ *
+ * Entries are keyed by the certificate or public key and the algorithm used. Keys are held weakly
+ * and compared with equals(), so an equal certificate decoded again shares the cached digests and
+ * the digests are discarded once the certificate or key is no longer in use. The number of cached
+ * certificates and keys is bounded; the least recently used are evicted first. Instances are
+ * thread-safe.
+ */
+public final class FingerprintCache {
+
+    /**
+     * Calculation of a digest that is not in the cache yet.
+     */
+    @FunctionalInterface
+    public interface Calculation {
+        /**
+         * Calculate the digest.
+         *
+         * @return The digest
+         * @throws CryptoException If the calculation failed
+         */
+        byte[] calculate() throws CryptoException;
+    }
+
+    private static final int MAX_CACHED_SOURCES = 16384;
+
+    private static final FingerprintCache INSTANCE = new FingerprintCache(MAX_CACHED_SOURCES);
+
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+    private final Map<SourceKey, Map<Object, byte[]>> cache;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    FingerprintCache(int maxSize) {
+        cache = new LinkedHashMap<SourceKey, Map<Object, byte[]>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SourceKey, Map<Object, byte[]>> eldest) {
+                if (size() > maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get the shared cache.
+     *
+     * @return The cache
+     */
+    public static FingerprintCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get a digest from the cache, calculating it if it is not cached yet.
+     *
+     * @param source      Certificate or public key the digest is calculated over
+     * @param algorithm   Identifies how the digest is calculated, e.g. a DigestType
+     * @param calculation Calculates the digest if it is not cached
+     * @return A copy of the digest
+     * @throws CryptoException If the calculation failed
+     */
+    public byte[] get(Object source, Object algorithm, Calculation calculation) throws CryptoException {
+        Map<Object, byte[]> digests = getDigests(source);
+
+        byte[] digest = digests.get(algorithm);
+        if (digest != null) {
+            hits.increment();
+            return digest.clone();
+        }
+
+        misses.increment();
+
+        // calculated outside the lock, concurrent misses for the same digest produce the same value
+        digest = calculation.calculate().clone();
+        digests.put(algorithm, digest);
+        return digest.clone();
+    }
+
+    private Map<Object, byte[]> getDigests(Object source) {
+        synchronized (cache) {
+            expungeStaleEntries();
+            return cache.computeIfAbsent(new SourceKey(source, queue), key -> new ConcurrentHashMap<>());
+        }
+    }
+
+    private void expungeStaleEntries() {
+        Object ref;
+        while ((ref = queue.poll()) != null) {
+            cache.remove(ref);
+        }
+    }
+
+    /**
+     * Get the number of digests that were found in the cache.
+     *
+     * @return Number of cache hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of digests that had to be calculated.
+     *
+     * @return Number of cache misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Get the number of certificates and keys whose digests were evicted because the cache was full.
+     *
+     * @return Number of evictions
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Get the number of certificates and keys with cached digests.
+     *
+     * @return Number of cached certificates and keys
+     */
+    public int size() {
+        synchronized (cache) {
+            expungeStaleEntries();
+            return cache.size();
+        }
+    }
+
+    /**
+     * Remove all cached digests and reset the statistics.
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+            while (queue.poll() != null) {
+                // discard references of the removed entries
+            }
+        }
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "FingerprintCache [size=" + size() + ", hits=" + getHits() + ", misses=" + getMisses() +
+               ", evictions=" + getEvictions() + "]";
+    }
+
+    private static final class SourceKey extends WeakReference<Object> {
+        private final int hashCode;
+
+        private SourceKey(Object source, ReferenceQueue<Object> queue) {
+            super(source, queue);
+            this.hashCode = source.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof SourceKey)) {
+                return false;
+            }
+            SourceKey other = (SourceKey) obj;
+            Object source = get();
+            return hashCode == other.hashCode && source != null && source.equals(other.get());
+        }
+    }
+}
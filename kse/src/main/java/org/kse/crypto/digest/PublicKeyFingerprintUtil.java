@@ -43,6 +43,11 @@ public class PublicKeyFingerprintUtil {
      */
     public static byte[] calculateFingerprint(PublicKey publicKey, PublicKeyFingerprintAlgorithm algorithm)
             throws CryptoException {
+        return FingerprintCache.getInstance().get(publicKey, algorithm, () -> calculate(publicKey, algorithm));
+    }
+
+    private static byte[] calculate(PublicKey publicKey, PublicKeyFingerprintAlgorithm algorithm)
+            throws CryptoException {
 
         // workaround for encoding bug in older Java versions
         PublicKey convertedPublicKey = OpenSslPubUtil.load(publicKey.getEncoded());
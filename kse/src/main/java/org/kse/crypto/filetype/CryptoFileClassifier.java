@@ -0,0 +1,248 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.filetype;
+
+import static org.kse.crypto.filetype.CryptoFileType.BCFKS_KS;
+import static org.kse.crypto.filetype.CryptoFileType.BKS_KS;
+import static org.kse.crypto.filetype.CryptoFileType.CERT;
+import static org.kse.crypto.filetype.CryptoFileType.CRL;
+import static org.kse.crypto.filetype.CryptoFileType.ENC_MS_PVK;
+import static org.kse.crypto.filetype.CryptoFileType.ENC_OPENSSL_PVK;
+import static org.kse.crypto.filetype.CryptoFileType.ENC_PKCS8_PVK;
+import static org.kse.crypto.filetype.CryptoFileType.JAR;
+import static org.kse.crypto.filetype.CryptoFileType.JCEKS_KS;
+import static org.kse.crypto.filetype.CryptoFileType.JKS_KS;
+import static org.kse.crypto.filetype.CryptoFileType.JSON_WEB_TOKEN;
+import static org.kse.crypto.filetype.CryptoFileType.OPENSSL_PUB;
+import static org.kse.crypto.filetype.CryptoFileType.PEM_KS;
+import static org.kse.crypto.filetype.CryptoFileType.PKCS10_CSR;
+import static org.kse.crypto.filetype.CryptoFileType.PKCS12_KS;
+import static org.kse.crypto.filetype.CryptoFileType.SPKAC_CSR;
+import static org.kse.crypto.filetype.CryptoFileType.UBER_KS;
+import static org.kse.crypto.filetype.CryptoFileType.UNENC_MS_PVK;
+import static org.kse.crypto.filetype.CryptoFileType.UNENC_OPENSSL_PVK;
+import static org.kse.crypto.filetype.CryptoFileType.UNENC_PKCS8_PVK;
+
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Narrows down the possible cryptographic file types of some data without parsing it.
+ * <p>
+ * Only a bounded prefix is inspected: keystore, ZIP and PVK magic numbers, the outer
+ * ASN.1 tags of DER data and whether the data looks like text. The one exception is
+ * the search for a PEM header, which may appear after arbitrary leading text and is
+ * therefore a plain byte scan over all of the data.
+ * <p>
+ * The result is a set of candidates that is never smaller than the set of types the
+ * full parsers could accept, so running only the candidates' parsers (in the usual
+ * order) gives the same result as running all of them. A single candidate means the
+ * type is known from its magic number alone.
+ */
+class CryptoFileClassifier {
+    private static final int PREFIX_LENGTH = 8192;
+
+    private static final int JKS_MAGIC_NUMBER = 0xFEEDFEED;
+    private static final int JCEKS_MAGIC_NUMBER = 0xCECECECE;
+
+    private static final int ZIP_MAGIC_NUMBER1 = 0x4C5A4950;
+    private static final int ZIP_MAGIC_NUMBER2 = 0x504B0304;
+    private static final int ZIP_MAGIC_NUMBER3 = 0x504B0506;
+    private static final int ZIP_MAGIC_NUMBER4 = 0x504B0708;
+
+    // Little endian 0xb0b5f11e
+    private static final int MS_PVK_MAGIC_NUMBER = 0x1EF1B5B0;
+
+    private static final byte[] PEM_BEGIN = "-----BEGIN".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int TAG_INTEGER = 0x02;
+    private static final int TAG_OID = 0x06;
+    private static final int TAG_SEQUENCE = 0x30;
+    private static final int TAG_CONTEXT_0 = 0xA0;
+
+    private static final Set<CryptoFileType> PEM_TYPES = EnumSet.of(PEM_KS, ENC_PKCS8_PVK, UNENC_PKCS8_PVK,
+            ENC_OPENSSL_PVK, UNENC_OPENSSL_PVK, OPENSSL_PUB, CERT, CRL, PKCS10_CSR);
+
+    private static final Set<CryptoFileType> DER_TYPES = EnumSet.of(ENC_PKCS8_PVK, UNENC_PKCS8_PVK,
+            UNENC_OPENSSL_PVK, OPENSSL_PUB, CERT, CRL, PKCS10_CSR, PKCS12_KS, BCFKS_KS);
+
+    // Base 64 without PEM header (certificates), properties (SPKAC) and JSON web tokens
+    private static final Set<CryptoFileType> TEXT_TYPES = EnumSet.of(CERT, CRL, SPKAC_CSR, JSON_WEB_TOKEN);
+
+    private CryptoFileClassifier() {
+    }
+
+    /**
+     * Get the file types the supplied data may be of.
+     *
+     * @param data Cryptographic data
+     * @return Candidate types, empty if the data cannot be of any type
+     */
+    static Set<CryptoFileType> classify(byte[] data) {
+
+        if (data.length >= 4) {
+            int magic = readInt(data, 0);
+
+            if (magic == JKS_MAGIC_NUMBER) {
+                return EnumSet.of(JKS_KS);
+            }
+            if (magic == JCEKS_MAGIC_NUMBER) {
+                return EnumSet.of(JCEKS_KS);
+            }
+            if (magic == ZIP_MAGIC_NUMBER1 || magic == ZIP_MAGIC_NUMBER2 || magic == ZIP_MAGIC_NUMBER3 ||
+                magic == ZIP_MAGIC_NUMBER4) {
+                return EnumSet.of(JAR);
+            }
+            if (magic == MS_PVK_MAGIC_NUMBER) {
+                return EnumSet.of(ENC_MS_PVK, UNENC_MS_PVK);
+            }
+
+            // BKS and UBER start with a version number of 2 or 1
+            if (magic == 1 || magic == 2) {
+                return EnumSet.of(BKS_KS, UBER_KS);
+            }
+        }
+
+        Set<CryptoFileType> candidates = EnumSet.noneOf(CryptoFileType.class);
+
+        if (containsPemHeader(data)) {
+            candidates.addAll(PEM_TYPES);
+        }
+
+        if (data.length > 0 && (data[0] & 0xff) == TAG_SEQUENCE) {
+            candidates.addAll(classifyDer(data));
+        }
+
+        if (isText(data)) {
+            candidates.addAll(TEXT_TYPES);
+        }
+
+        return candidates;
+    }
+
+    private static Set<CryptoFileType> classifyDer(byte[] data) {
+        int first = skipHeader(data, 0);
+        if (first < 0) {
+            return DER_TYPES;
+        }
+
+        switch (data[first] & 0xff) {
+        case TAG_INTEGER:
+            // PrivateKeyInfo, OpenSSL private key or PFX
+            return EnumSet.of(UNENC_PKCS8_PVK, UNENC_OPENSSL_PVK, PKCS12_KS);
+        case TAG_OID:
+            // PKCS #7 content info with certificates or CRLs
+            return EnumSet.of(CERT, CRL);
+        case TAG_SEQUENCE:
+            return classifyNestedDer(data, first);
+        default:
+            return DER_TYPES;
+        }
+    }
+
+    private static Set<CryptoFileType> classifyNestedDer(byte[] data, int outer) {
+        int first = skipHeader(data, outer);
+        if (first < 0) {
+            return EnumSet.of(ENC_PKCS8_PVK, OPENSSL_PUB, CERT, CRL, PKCS10_CSR, BCFKS_KS);
+        }
+
+        switch (data[first] & 0xff) {
+        case TAG_OID:
+            // Algorithm identifier of EncryptedPrivateKeyInfo or SubjectPublicKeyInfo
+            return EnumSet.of(ENC_PKCS8_PVK, OPENSSL_PUB, BCFKS_KS);
+        case TAG_CONTEXT_0:
+            // TBSCertificate with explicit version
+            return EnumSet.of(CERT, BCFKS_KS);
+        case TAG_INTEGER:
+            // TBSCertificate (v1), TBSCertList or CertificationRequestInfo
+            return EnumSet.of(CERT, CRL, PKCS10_CSR, BCFKS_KS);
+        case TAG_SEQUENCE:
+            // PkiPath or TBSCertList (v1)
+            return EnumSet.of(CERT, CRL, BCFKS_KS);
+        default:
+            return EnumSet.of(ENC_PKCS8_PVK, OPENSSL_PUB, CERT, CRL, PKCS10_CSR, BCFKS_KS);
+        }
+    }
+
+    /**
+     * Skip the tag and length of the ASN.1 element at the supplied offset.
+     *
+     * @return Offset of the element's content or -1 if it cannot be read
+     */
+    private static int skipHeader(byte[] data, int offset) {
+        int pos = offset + 1;
+        if (pos >= data.length || pos >= PREFIX_LENGTH) {
+            return -1;
+        }
+
+        int length = data[pos++] & 0xff;
+
+        // Long form, indefinite length (0x80) has no length octets
+        if (length > 0x80) {
+            int octets = length & 0x7f;
+            if (octets > 4) {
+                return -1;
+            }
+            pos += octets;
+        }
+
+        return pos < data.length && pos < PREFIX_LENGTH ? pos : -1;
+    }
+
+    private static boolean containsPemHeader(byte[] data) {
+        int last = data.length - PEM_BEGIN.length;
+
+        for (int i = 0; i <= last; i++) {
+            if (data[i] == PEM_BEGIN[0] && startsWith(data, i, PEM_BEGIN)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean startsWith(byte[] data, int offset, byte[] prefix) {
+        for (int i = 1; i < prefix.length; i++) {
+            if (data[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isText(byte[] data) {
+        int length = Math.min(data.length, PREFIX_LENGTH);
+
+        // Binary formats practically always contain a zero byte early on
+        for (int i = 0; i < length; i++) {
+            if (data[i] == 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return (data[offset] & 0xff) << 24 | (data[offset + 1] & 0xff) << 16 | (data[offset + 2] & 0xff) << 8 |
+               (data[offset + 3] & 0xff);
+    }
+}
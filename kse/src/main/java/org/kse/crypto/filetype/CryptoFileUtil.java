@@ -20,6 +20,7 @@
 package org.kse.crypto.filetype;
 
 import static org.kse.crypto.csr.CsrType.PKCS10;
+import static org.kse.crypto.filetype.CryptoFileType.BCFKS_KS;
 import static org.kse.crypto.filetype.CryptoFileType.CERT;
 import static org.kse.crypto.filetype.CryptoFileType.CRL;
 import static org.kse.crypto.filetype.CryptoFileType.ENC_MS_PVK;
@@ -29,6 +30,9 @@ import static org.kse.crypto.filetype.CryptoFileType.JAR;
 import static org.kse.crypto.filetype.CryptoFileType.JSON_WEB_TOKEN;
 import static org.kse.crypto.filetype.CryptoFileType.OPENSSL_PUB;
 import static org.kse.crypto.filetype.CryptoFileType.PEM_KS;
+import static org.kse.crypto.filetype.CryptoFileType.PKCS10_CSR;
+import static org.kse.crypto.filetype.CryptoFileType.PKCS12_KS;
+import static org.kse.crypto.filetype.CryptoFileType.SPKAC_CSR;
 import static org.kse.crypto.filetype.CryptoFileType.UNENC_MS_PVK;
 import static org.kse.crypto.filetype.CryptoFileType.UNENC_OPENSSL_PVK;
 import static org.kse.crypto.filetype.CryptoFileType.UNENC_PKCS8_PVK;
@@ -54,8 +58,8 @@ import java.nio.file.NoSuchFileException;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.bouncycastle.asn1.ASN1Encodable;
@@ -74,7 +78,7 @@ import org.kse.crypto.privatekey.OpenSslPvkUtil;
 import org.kse.crypto.privatekey.Pkcs8Util;
 import org.kse.crypto.publickey.OpenSslPubUtil;
 import org.kse.crypto.x509.X509CertUtil;
-import org.kse.utilities.pem.PemInfo;
+import org.kse.utilities.pem.PemReader;
 import org.kse.utilities.pem.PemUtil;
 
 import com.nimbusds.jwt.JWTParser;
@@ -86,11 +90,6 @@ public class CryptoFileUtil {
     private static final int JKS_MAGIC_NUMBER = 0xFEEDFEED;
     private static final int JCEKS_MAGIC_NUMBER = 0xCECECECE;
 
-    private static final int ZIP_MAGIC_NUMBER1 = 0x4C5A4950;
-    private static final int ZIP_MAGIC_NUMBER2 = 0x504B0304;
-    private static final int ZIP_MAGIC_NUMBER3 = 0x504B0506;
-    private static final int ZIP_MAGIC_NUMBER4 = 0x504B0708;
-
     private CryptoFileUtil() {
     }
 
@@ -154,88 +153,97 @@ public class CryptoFileUtil {
             // was not valid b64
         }
 
-        List<PemInfo> pemInfos = null;
-        try {
-            pemInfos = PemUtil.decodeAll(data);
-            if (isPemKeyStore(pemInfos)) {
-                return PEM_KS;
-            }
-        } catch (IOException e) {
-            // was not valid PEM
+        // Only try the parsers for the types the data can possibly be of
+        Set<CryptoFileType> candidates = CryptoFileClassifier.classify(data);
+
+        if (candidates.contains(PEM_KS) && isPemKeyStore(data)) {
+            return PEM_KS;
         }
 
-        if (isJarFile(data)) {
+        if (candidates.contains(JAR)) {
             return JAR;
         }
 
-        EncryptionType pkcs8EncType = Pkcs8Util.getEncryptionType(data);
+        if (candidates.contains(ENC_PKCS8_PVK) || candidates.contains(UNENC_PKCS8_PVK)) {
+            EncryptionType pkcs8EncType = Pkcs8Util.getEncryptionType(data);
 
-        if (pkcs8EncType != null) {
-            if (pkcs8EncType == ENCRYPTED) {
-                return ENC_PKCS8_PVK;
-            } else if (pkcs8EncType == UNENCRYPTED) {
-                return UNENC_PKCS8_PVK;
+            if (pkcs8EncType != null) {
+                if (pkcs8EncType == ENCRYPTED) {
+                    return ENC_PKCS8_PVK;
+                } else if (pkcs8EncType == UNENCRYPTED) {
+                    return UNENC_PKCS8_PVK;
+                }
             }
         }
 
-        EncryptionType msPvkEncType = MsPvkUtil.getEncryptionType(data);
+        if (candidates.contains(ENC_MS_PVK) || candidates.contains(UNENC_MS_PVK)) {
+            EncryptionType msPvkEncType = MsPvkUtil.getEncryptionType(data);
 
-        if (msPvkEncType != null) {
-            if (msPvkEncType == ENCRYPTED) {
-                return ENC_MS_PVK;
-            } else if (msPvkEncType == UNENCRYPTED) {
-                return UNENC_MS_PVK;
+            if (msPvkEncType != null) {
+                if (msPvkEncType == ENCRYPTED) {
+                    return ENC_MS_PVK;
+                } else if (msPvkEncType == UNENCRYPTED) {
+                    return UNENC_MS_PVK;
+                }
             }
         }
 
-        EncryptionType openSslPvkEncType = OpenSslPvkUtil.getEncryptionType(data);
+        if (candidates.contains(ENC_OPENSSL_PVK) || candidates.contains(UNENC_OPENSSL_PVK)) {
+            EncryptionType openSslPvkEncType = OpenSslPvkUtil.getEncryptionType(data);
 
-        if (openSslPvkEncType != null) {
-            if (openSslPvkEncType == ENCRYPTED) {
-                return ENC_OPENSSL_PVK;
-            } else if (openSslPvkEncType == UNENCRYPTED) {
-                return UNENC_OPENSSL_PVK;
+            if (openSslPvkEncType != null) {
+                if (openSslPvkEncType == ENCRYPTED) {
+                    return ENC_OPENSSL_PVK;
+                } else if (openSslPvkEncType == UNENCRYPTED) {
+                    return UNENC_OPENSSL_PVK;
+                }
             }
         }
 
-        try {
-            OpenSslPubUtil.load(data);
-            return OPENSSL_PUB;
-        } catch (Exception ex) {
-            // Ignore - not an OpenSSL public key file
-        } catch (OutOfMemoryError ex) {
-            // Ignore - not an OpenSSL public key file, some files cause the
-            // heap space to fill up with the load call
+        if (candidates.contains(OPENSSL_PUB)) {
+            try {
+                OpenSslPubUtil.load(data);
+                return OPENSSL_PUB;
+            } catch (Exception ex) {
+                // Ignore - not an OpenSSL public key file
+            } catch (OutOfMemoryError ex) {
+                // Ignore - not an OpenSSL public key file, some files cause the
+                // heap space to fill up with the load call
+            }
         }
 
-        try {
-            if (X509CertUtil.loadCertificates(data).length > 0) {
-                return CERT;
+        if (candidates.contains(CERT)) {
+            try {
+                if (X509CertUtil.loadCertificates(data).length > 0) {
+                    return CERT;
+                }
+            } catch (Exception ex) {
+                // Ignore - not a certificate file
             }
-        } catch (Exception ex) {
-            // Ignore - not a certificate file
         }
 
-        try {
-            X509CertUtil.loadCRL(data);
-            return CRL;
-        } catch (Exception ex) {
-            // Ignore - not a CRL file
+        if (candidates.contains(CRL)) {
+            try {
+                X509CertUtil.loadCRL(data);
+                return CRL;
+            } catch (Exception ex) {
+                // Ignore - not a CRL file
+            }
         }
 
-        CsrType csrType = detectCsrType(data);
+        CsrType csrType = detectCsrType(data, candidates);
 
         if (csrType != null) {
             return csrType.getCryptoFileType();
         }
 
-        KeyStoreType keyStoreType = detectKeyStoreType(data, pemInfos);
+        KeyStoreType keyStoreType = detectKeyStoreType(data, candidates, true);
 
         if (keyStoreType != null) {
             return keyStoreType.getCryptoFileType();
         }
 
-        if (isJwt(data)) {
+        if (candidates.contains(JSON_WEB_TOKEN) && isJwt(data)) {
             return JSON_WEB_TOKEN;
         }
 
@@ -243,18 +251,6 @@ public class CryptoFileUtil {
         return UNKNOWN;
     }
 
-    private static boolean isJarFile(byte[] data) {
-        if (data.length < 4) {
-            return false;
-        }
-
-        int magic = (data[0] << 24) & 0xff000000 | (data[1] << 16) & 0x00ff0000 | (data[2] << 8) & 0x0000ff00 |
-                    (data[3]) & 0x000000ff;
-
-        return magic == ZIP_MAGIC_NUMBER1 || magic == ZIP_MAGIC_NUMBER2 || magic == ZIP_MAGIC_NUMBER3 ||
-               magic == ZIP_MAGIC_NUMBER4;
-    }
-
     private static boolean isJwt(byte[] data) {
         try {
             JWTParser.parse(new String(data));
@@ -264,21 +260,25 @@ public class CryptoFileUtil {
         }
     }
 
-    private static CsrType detectCsrType(byte[] csrData) throws IOException {
-        try {
-            Pkcs10Util.loadCsr(csrData);
-            return PKCS10;
-        } catch (Exception ex) {
-            // Ignore - not a PKCS #10 file
-        } catch (OutOfMemoryError ex) {
-            // Ignore - not a PKCS #10 file, some files cause the heap space to fill up with the load call
+    private static CsrType detectCsrType(byte[] csrData, Set<CryptoFileType> candidates) throws IOException {
+        if (candidates.contains(PKCS10_CSR)) {
+            try {
+                Pkcs10Util.loadCsr(csrData);
+                return PKCS10;
+            } catch (Exception ex) {
+                // Ignore - not a PKCS #10 file
+            } catch (OutOfMemoryError ex) {
+                // Ignore - not a PKCS #10 file, some files cause the heap space to fill up with the load call
+            }
         }
 
-        try {
-            new Spkac(csrData);
-            return CsrType.SPKAC;
-        } catch (SpkacException ex) {
-            // Ignore - not an SPKAC file
+        if (candidates.contains(SPKAC_CSR)) {
+            try {
+                new Spkac(csrData);
+                return CsrType.SPKAC;
+            } catch (SpkacException ex) {
+                // Ignore - not an SPKAC file
+            }
         }
 
         // Not a recognised type
@@ -311,10 +311,11 @@ public class CryptoFileUtil {
      * @throws IOException If an I/O problem occurred
      */
     public static KeyStoreType detectKeyStoreType(byte[] data) throws IOException {
-        return detectKeyStoreType(data, null);
+        return detectKeyStoreType(data, CryptoFileClassifier.classify(data), false);
     }
 
-    private static KeyStoreType detectKeyStoreType(byte[] data, List<PemInfo> pemInfos) throws IOException {
+    private static KeyStoreType detectKeyStoreType(byte[] data, Set<CryptoFileType> candidates, boolean pemChecked)
+            throws IOException {
 
         try (DataInputStream dis = new DataInputStream(new ByteArrayInputStream(data))) {
 
@@ -368,13 +369,15 @@ public class CryptoFileUtil {
             }
         }
 
-        if (pemInfos == null) {
-            pemInfos = PemUtil.decodeAll(data);
-        }
-        if (isPemKeyStore(pemInfos)) {
+        if (!pemChecked && candidates.contains(PEM_KS) && isPemKeyStore(data)) {
             return PEM;
         }
 
+        // PKCS #12 and BCFKS are DER encoded
+        if (!candidates.contains(PKCS12_KS) && !candidates.contains(BCFKS_KS)) {
+            return null;
+        }
+
         // @formatter:off
         /*
             Test for PKCS #12. ASN.1 should look like this:
@@ -420,18 +423,22 @@ public class CryptoFileUtil {
         return null;
     }
 
-    private static boolean isPemKeyStore(List<PemInfo> pemInfos) {
-        boolean isPemKeyStore = false;
+    private static boolean isPemKeyStore(byte[] data) {
         final Map<String, Integer> pemTypes = new HashMap<>();
+        boolean pemKeyStore = false;
 
-        pemInfos.stream().forEach(pi -> countPemTypes(pemTypes, pi.getType()));
+        PemReader reader = new PemReader(data);
+        while (reader.hasNext()) {
+            countPemTypes(pemTypes, reader.next().getType());
 
-        // Assume a PEM containing a mix of keys and certificates is a PEM KeyStore
-        isPemKeyStore = pemTypes.size() > 1
-                // Assume a PEM containing multiple certificates is a PEM KeyStore
-                || pemTypes.getOrDefault(X509CertUtil.CERT_PEM_TYPE, 0) > 1;
+            // Assume a PEM containing a mix of keys and certificates is a PEM KeyStore
+            pemKeyStore = pemTypes.size() > 1
+                    // Assume a PEM containing multiple certificates is a PEM KeyStore
+                    || pemTypes.getOrDefault(X509CertUtil.CERT_PEM_TYPE, 0) > 1;
+        }
 
-        return isPemKeyStore;
+        // A malformed block anywhere means the data is not PEM
+        return pemKeyStore && !reader.isMalformed();
     }
 
     private static void countPemTypes(Map<String, Integer> counts, String type) {
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.keystore;
+
+import java.nio.ByteBuffer;
+import java.security.KeyStoreException;
+import java.security.PublicKey;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.kse.crypto.CryptoException;
+import org.kse.crypto.digest.DigestType;
+import org.kse.crypto.digest.DigestUtil;
+import org.kse.crypto.digest.FingerprintCache;
+
+/**
+ * Index of the certificates in a KeyStore by their SHA-256 fingerprint and by the SHA-256 digest of
+ * their public key. For key pair entries the first certificate of the chain is indexed.
+ *
+ * The index is built by {@link KseKeyStore#getCertificateIndex()} on first use and then updated
+ * entry by entry whenever the KeyStore is changed, so looking up a certificate does not depend on
+ * the size of the KeyStore. Like {@link CopyOnWriteKeyStore}, an index consists of a base that is
+ * shared between copies and never modified and of the changes made since. Copying an index only
+ * copies the changes, which are merged into a new base when they grow too large.
+ */
+public final class CertificateIndex {
+
+    private final Function<String, String> normalizer;
+
+    // Normalized alias -> indexed entry, shared with copies of the index
+    private final Map<String, IndexedEntry> baseEntries;
+    private final Map<ByteBuffer, Set<String>> baseByFingerprint;
+    private final Map<ByteBuffer, Set<String>> baseByPublicKey;
+
+    // Changes since the base, a null entry marks a removed entry and an empty set a digest without entries
+    private final Map<String, IndexedEntry> entries;
+    private final Map<ByteBuffer, Set<String>> byFingerprint;
+    private final Map<ByteBuffer, Set<String>> byPublicKey;
+
+    private static final class IndexedEntry {
+        private final String alias;
+        private final ByteBuffer fingerprint;
+        private final ByteBuffer publicKeyDigest;
+        private final boolean trustedCertificate;
+
+        private IndexedEntry(String alias, ByteBuffer fingerprint, ByteBuffer publicKeyDigest,
+                             boolean trustedCertificate) {
+            this.alias = alias;
+            this.fingerprint = fingerprint;
+            this.publicKeyDigest = publicKeyDigest;
+            this.trustedCertificate = trustedCertificate;
+        }
+    }
+
+    private CertificateIndex(Function<String, String> normalizer, Map<String, IndexedEntry> baseEntries,
+                             Map<ByteBuffer, Set<String>> baseByFingerprint,
+                             Map<ByteBuffer, Set<String>> baseByPublicKey) {
+        this.normalizer = normalizer;
+        this.baseEntries = baseEntries;
+        this.baseByFingerprint = baseByFingerprint;
+        this.baseByPublicKey = baseByPublicKey;
+        entries = new HashMap<>();
+        byFingerprint = new HashMap<>();
+        byPublicKey = new HashMap<>();
+    }
+
+    private CertificateIndex(CertificateIndex index) {
+        normalizer = index.normalizer;
+        baseEntries = index.baseEntries;
+        baseByFingerprint = index.baseByFingerprint;
+        baseByPublicKey = index.baseByPublicKey;
+        entries = new HashMap<>(index.entries);
+        byFingerprint = copyKeys(index.byFingerprint);
+        byPublicKey = copyKeys(index.byPublicKey);
+    }
+
+    /**
+     * Build the index of a KeyStore.
+     *
+     * @param keyStore The KeyStore
+     * @return The index
+     * @throws KeyStoreException If the KeyStore could not be read
+     */
+    static CertificateIndex build(KseKeyStore keyStore) throws KeyStoreException {
+        KeyStoreType type = KeyStoreType.resolveJce(keyStore.getType());
+        CertificateIndex index = new CertificateIndex(type != null ? type::normalizeAlias : alias -> alias,
+                                                      Collections.emptyMap(), Collections.emptyMap(),
+                                                      Collections.emptyMap());
+
+        for (Enumeration<String> aliases = keyStore.aliases(); aliases.hasMoreElements(); ) {
+            index.add(aliases.nextElement(), keyStore);
+        }
+
+        // With an empty base the changes are the complete index
+        return new CertificateIndex(index.normalizer, index.entries, index.byFingerprint, index.byPublicKey);
+    }
+
+    /**
+     * Copy the index for a copy of its KeyStore.
+     *
+     * @return The copy
+     */
+    synchronized CertificateIndex copy() {
+        if (entries.size() > CopyOnWriteKeyStore.MAX_OVERLAY_SIZE) {
+            return new CertificateIndex(normalizer, mergeEntries(), mergeKeys(baseByFingerprint, byFingerprint),
+                                        mergeKeys(baseByPublicKey, byPublicKey));
+        }
+        return new CertificateIndex(this);
+    }
+
+    /**
+     * Update the index after an entry was added, replaced or deleted.
+     *
+     * @param alias    Alias of the changed entry
+     * @param keyStore The changed KeyStore
+     * @throws KeyStoreException If the entry could not be read
+     */
+    synchronized void update(String alias, KseKeyStore keyStore) throws KeyStoreException {
+        remove(alias);
+        if (keyStore.containsAlias(alias)) {
+            add(alias, keyStore);
+        }
+    }
+
+    /**
+     * Find a trusted certificate entry that contains the supplied certificate.
+     *
+     * @param cert The certificate
+     * @return The alias of the entry or null if there is none
+     * @throws KeyStoreException If the certificate could not be encoded
+     */
+    public synchronized String findTrustedCertificate(Certificate cert) throws KeyStoreException {
+        for (String key : getKeys(byFingerprint, baseByFingerprint, getFingerprint(cert))) {
+            IndexedEntry entry = getEntry(key);
+            if (entry.trustedCertificate) {
+                return entry.alias;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the aliases of the entries that contain the supplied certificate, as trusted certificate or
+     * as the first certificate of a key pair.
+     *
+     * @param cert The certificate
+     * @return The aliases
+     * @throws KeyStoreException If the certificate could not be encoded
+     */
+    public synchronized Set<String> getAliases(Certificate cert) throws KeyStoreException {
+        return getAliases(getKeys(byFingerprint, baseByFingerprint, getFingerprint(cert)));
+    }
+
+    /**
+     * Get the aliases of the entries whose certificate contains the supplied public key.
+     *
+     * @param publicKey The public key
+     * @return The aliases
+     * @throws KeyStoreException If the public key could not be digested
+     */
+    public synchronized Set<String> getAliases(PublicKey publicKey) throws KeyStoreException {
+        return getAliases(getKeys(byPublicKey, baseByPublicKey, getPublicKeyDigest(publicKey)));
+    }
+
+    private Set<String> getAliases(Set<String> keys) {
+        Set<String> aliases = new LinkedHashSet<>();
+        for (String key : keys) {
+            aliases.add(getEntry(key).alias);
+        }
+        return aliases;
+    }
+
+    private IndexedEntry getEntry(String key) {
+        return entries.containsKey(key) ? entries.get(key) : baseEntries.get(key);
+    }
+
+    private static Set<String> getKeys(Map<ByteBuffer, Set<String>> changes, Map<ByteBuffer, Set<String>> base,
+                                       ByteBuffer digest) {
+        Set<String> keys = changes.get(digest);
+        if (keys == null) {
+            keys = base.get(digest);
+        }
+        return keys != null ? keys : Collections.emptySet();
+    }
+
+    private void add(String alias, KseKeyStore keyStore) throws KeyStoreException {
+        Certificate cert = keyStore.getCertificate(alias);
+        if (cert == null) {
+            // secret key or key without certificate
+            return;
+        }
+
+        String key = normalizer.apply(alias);
+        IndexedEntry entry = new IndexedEntry(alias, getFingerprint(cert), getPublicKeyDigest(cert.getPublicKey()),
+                                              keyStore.isCertificateEntry(alias));
+        entries.put(key, entry);
+        getChangedKeys(byFingerprint, baseByFingerprint, entry.fingerprint).add(key);
+        getChangedKeys(byPublicKey, baseByPublicKey, entry.publicKeyDigest).add(key);
+    }
+
+    private void remove(String alias) {
+        String key = normalizer.apply(alias);
+        IndexedEntry entry = getEntry(key);
+        if (entry != null) {
+            if (baseEntries.containsKey(key)) {
+                entries.put(key, null);
+            } else {
+                entries.remove(key);
+            }
+            getChangedKeys(byFingerprint, baseByFingerprint, entry.fingerprint).remove(key);
+            getChangedKeys(byPublicKey, baseByPublicKey, entry.publicKeyDigest).remove(key);
+        }
+    }
+
+    // The sets of the base are never modified, a digest's set is copied once when it is first changed
+    private static Set<String> getChangedKeys(Map<ByteBuffer, Set<String>> changes,
+                                              Map<ByteBuffer, Set<String>> base, ByteBuffer digest) {
+        return changes.computeIfAbsent(digest,
+                                       d -> new LinkedHashSet<>(base.getOrDefault(d, Collections.emptySet())));
+    }
+
+    private static Map<ByteBuffer, Set<String>> copyKeys(Map<ByteBuffer, Set<String>> changes) {
+        Map<ByteBuffer, Set<String>> copy = new HashMap<>();
+        for (Map.Entry<ByteBuffer, Set<String>> keys : changes.entrySet()) {
+            copy.put(keys.getKey(), new LinkedHashSet<>(keys.getValue()));
+        }
+        return copy;
+    }
+
+    private Map<String, IndexedEntry> mergeEntries() {
+        Map<String, IndexedEntry> merged = new HashMap<>(baseEntries);
+        for (Map.Entry<String, IndexedEntry> entry : entries.entrySet()) {
+            if (entry.getValue() == null) {
+                merged.remove(entry.getKey());
+            } else {
+                merged.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return merged;
+    }
+
+    private static Map<ByteBuffer, Set<String>> mergeKeys(Map<ByteBuffer, Set<String>> base,
+                                                          Map<ByteBuffer, Set<String>> changes) {
+        Map<ByteBuffer, Set<String>> merged = new HashMap<>(base);
+        for (Map.Entry<ByteBuffer, Set<String>> keys : changes.entrySet()) {
+            if (keys.getValue().isEmpty()) {
+                merged.remove(keys.getKey());
+            } else {
+                // the changed sets are still modified by this index
+                merged.put(keys.getKey(), new LinkedHashSet<>(keys.getValue()));
+            }
+        }
+        return merged;
+    }
+
+    private static ByteBuffer getFingerprint(Certificate cert) throws KeyStoreException {
+        try {
+            return ByteBuffer.wrap(FingerprintCache.getInstance().get(cert, DigestType.SHA256, () -> {
+                try {
+                    return DigestUtil.getMessageDigest(cert.getEncoded(), DigestType.SHA256);
+                } catch (CertificateEncodingException ex) {
+                    throw new CryptoException(ex);
+                }
+            }));
+        } catch (CryptoException ex) {
+            throw new KeyStoreException(ex);
+        }
+    }
+
+    private static ByteBuffer getPublicKeyDigest(PublicKey publicKey) throws KeyStoreException {
+        try {
+            return ByteBuffer.wrap(FingerprintCache.getInstance().get(
+                    publicKey, DigestType.SHA256,
+                    () -> DigestUtil.getMessageDigest(publicKey.getEncoded(), DigestType.SHA256)));
+        } catch (CryptoException ex) {
+            throw new KeyStoreException(ex);
+        }
+    }
+}
@@ -0,0 +1,582 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.kse.crypto.keystore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.KeyStore.Entry;
+import java.security.KeyStore.LoadStoreParameter;
+import java.security.KeyStore.PasswordProtection;
+import java.security.KeyStore.ProtectionParameter;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.UnrecoverableEntryException;
+import java.security.UnrecoverableKeyException;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.Set;
+
+import org.kse.crypto.CryptoException;
+
+/**
+ * A copy-on-write KeyStore used for the undo/redo history.
+ *
+ * Unchanged entries are read from a base KeyStore that is shared between
+ * snapshots and never modified. Added, replaced and deleted entries are
+ * recorded in an overlay of immutable entry records. Taking a snapshot of a
+ * copy-on-write KeyStore only copies the overlay map, so its cost depends on
+ * the number of changed entries rather than on the size of the KeyStore. The
+ * overlay is merged into a new base KeyStore when the KeyStore is stored or
+ * when the overlay grows too large.
+ */
+@SuppressWarnings("javadoc")
+public class CopyOnWriteKeyStore extends KseKeyStore {
+    private static ResourceBundle res = ResourceBundle.getBundle("org/kse/crypto/keystore/resources");
+
+    /**
+     * Number of changed entries after which a new snapshot is flattened into
+     * a new base KeyStore.
+     */
+    static final int MAX_OVERLAY_SIZE = 1024;
+
+    private KseKeyStore base;
+    private long baseFootprint = -1;
+    private KeyStoreType type;
+
+    // Normalized alias -> changed entry, a null value marks a deleted entry
+    private Map<String, EntryRecord> overlay;
+
+    /**
+     * A single changed entry. The entry itself is held in its own KeyStore
+     * instance of the same type, so that password checks, alias handling and
+     * entry types behave exactly like in the underlying KeyStore type.
+     */
+    private static final class EntryRecord {
+        private final String alias;
+        private final KseKeyStore holder;
+        private final ProtectionParameter protection;
+        private final byte[] protectedKey;
+        private final long footprint;
+
+        private EntryRecord(String alias, KseKeyStore holder, ProtectionParameter protection,
+                            byte[] protectedKey, long footprint) {
+            this.alias = alias;
+            this.holder = holder;
+            this.protection = protection;
+            this.protectedKey = protectedKey;
+            this.footprint = footprint;
+        }
+    }
+
+    /**
+     * Create a copy-on-write snapshot of a KeyStore. If the supplied KeyStore
+     * is itself a copy-on-write KeyStore then the snapshot shares its base and
+     * its changed entries, otherwise the supplied KeyStore becomes the base.
+     * In both cases the supplied KeyStore's entries must not be modified
+     * afterwards except through a copy-on-write KeyStore.
+     *
+     * @param keyStore The KeyStore to take the snapshot of
+     */
+    public CopyOnWriteKeyStore(KseKeyStore keyStore) {
+        // All operations are delegated to the base KeyStore or the overlay, so every delegating
+        // method of KseKeyStore is overridden and the wrapped KeyStore is never used
+        super(null);
+
+        if (keyStore instanceof CopyOnWriteKeyStore) {
+            CopyOnWriteKeyStore cow = (CopyOnWriteKeyStore) keyStore;
+            base = cow.base;
+            baseFootprint = cow.baseFootprint;
+            type = cow.type;
+            overlay = new HashMap<>(cow.overlay);
+        } else {
+            base = keyStore;
+            type = KeyStoreType.resolveJce(keyStore.getType());
+            overlay = new HashMap<>();
+        }
+
+        resetCertificateIndex(keyStore);
+    }
+
+    /**
+     * Get the number of changed entries recorded on top of the shared base
+     * KeyStore.
+     *
+     * @return Number of changed entries
+     */
+    public int getChangedEntryCount() {
+        return overlay.size();
+    }
+
+    /**
+     * Get the aliases of the entries that differ between this KeyStore and
+     * another snapshot of the same base KeyStore. Entry records are immutable
+     * and shared between snapshots, so the comparison only walks the two
+     * overlays and does not depend on the size of the KeyStore.
+     *
+     * @param other The other KeyStore, either a copy-on-write KeyStore or the
+     *              base KeyStore itself
+     * @return The normalized aliases of all added, replaced and deleted
+     *         entries, or null if the KeyStores do not share a base KeyStore
+     */
+    public Set<String> getChangedAliases(KseKeyStore other) {
+        Map<String, EntryRecord> otherOverlay;
+
+        if (other instanceof CopyOnWriteKeyStore && ((CopyOnWriteKeyStore) other).base == base) {
+            otherOverlay = ((CopyOnWriteKeyStore) other).overlay;
+        } else if (other == base) {
+            otherOverlay = Collections.emptyMap();
+        } else {
+            return null;
+        }
+
+        Set<String> changed = new HashSet<>();
+
+        for (Map.Entry<String, EntryRecord> change : overlay.entrySet()) {
+            if (!otherOverlay.containsKey(change.getKey()) || otherOverlay.get(change.getKey()) != change.getValue()) {
+                changed.add(change.getKey());
+            }
+        }
+
+        for (String key : otherOverlay.keySet()) {
+            if (!overlay.containsKey(key)) {
+                changed.add(key);
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * Get the parts of this KeyStore that use memory, which are the base KeyStore and the changed
+     * entries, with their estimated sizes. The parts are shared with other snapshots, so the memory
+     * that is freed when this KeyStore is dropped is the size of the parts no other snapshot uses.
+     *
+     * @return Estimated size in bytes of each part, keyed by identity
+     * @throws CryptoException Problem encountered reading the KeyStore
+     */
+    public Map<Object, Long> getMemoryParts() throws CryptoException {
+        Map<Object, Long> parts = new IdentityHashMap<>();
+
+        if (baseFootprint < 0) {
+            baseFootprint = KeyStoreUtil.estimateMemoryFootprint(base);
+        }
+        parts.put(base, baseFootprint);
+
+        for (EntryRecord record : overlay.values()) {
+            if (record != null) {
+                parts.put(record, record.footprint);
+            }
+        }
+
+        return parts;
+    }
+
+    /**
+     * Merge all changed entries into a new base KeyStore. The previous base
+     * KeyStore is left unchanged so that other snapshots sharing it are not
+     * affected.
+     *
+     * @throws CryptoException Problem encountered copying the KeyStore
+     */
+    void flatten() throws CryptoException {
+        if (overlay.isEmpty()) {
+            return;
+        }
+
+        KseKeyStore flat = KeyStoreUtil.copy(base);
+
+        try {
+            for (Map.Entry<String, EntryRecord> change : overlay.entrySet()) {
+                if (flat.containsAlias(change.getKey())) {
+                    flat.deleteEntry(change.getKey());
+                }
+
+                EntryRecord record = change.getValue();
+
+                if (record == null) {
+                    continue;
+                }
+
+                if (record.protectedKey != null) {
+                    flat.setKeyEntry(record.alias, record.protectedKey,
+                                     record.holder.getCertificateChain(record.alias));
+                } else {
+                    flat.setEntry(record.alias, record.holder.getEntry(record.alias, record.protection),
+                                  record.protection);
+                }
+            }
+        } catch (KeyStoreException | NoSuchAlgorithmException | UnrecoverableEntryException ex) {
+            throw new CryptoException(res.getString("NoCopyKeyStore.exception.message"), ex);
+        }
+
+        base = flat;
+        baseFootprint = -1;
+        overlay = new HashMap<>();
+    }
+
+    @Override
+    @Deprecated
+    public KeyStore getKeyStore() {
+        try {
+            flatten();
+        } catch (CryptoException ex) {
+            throw new IllegalStateException(ex);
+        }
+
+        return base.getKeyStore();
+    }
+
+    @Override
+    public Provider getProvider() {
+        return base.getProvider();
+    }
+
+    @Override
+    public String getType() {
+        return base.getType();
+    }
+
+    @Override
+    public Key getKey(String alias, char[] password)
+            throws UnrecoverableKeyException, KeyStoreException, NoSuchAlgorithmException {
+        String key = normalize(alias);
+
+        if (overlay.containsKey(key)) {
+            EntryRecord record = overlay.get(key);
+            return record != null ? record.holder.getKey(record.alias, password) : null;
+        }
+
+        return base.getKey(alias, password);
+    }
+
+    @Override
+    public Certificate[] getCertificateChain(String alias) throws KeyStoreException {
+        String key = normalize(alias);
+
+        if (overlay.containsKey(key)) {
+            EntryRecord record = overlay.get(key);
+            return record != null ? record.holder.getCertificateChain(record.alias) : null;
+        }
+
+        return base.getCertificateChain(alias);
+    }
+
+    @Override
+    public Certificate getCertificate(String alias) throws KeyStoreException {
+        String key = normalize(alias);
+
+        if (overlay.containsKey(key)) {
+            EntryRecord record = overlay.get(key);
+            return record != null ? record.holder.getCertificate(record.alias) : null;
+        }
+
+        return base.getCertificate(alias);
+    }
+
+    @Override
+    public Date getCreationDate(String alias) throws KeyStoreException {
+        String key = normalize(alias);
+
+        if (overlay.containsKey(key)) {
+            EntryRecord record = overlay.get(key);
+            return record != null ? record.holder.getCreationDate(record.alias) : null;
+        }
+
+        return base.getCreationDate(alias);
+    }
+
+    @Override
+    public void setKeyEntry(String alias, Key key, char[] password, Certificate[] chain) throws KeyStoreException {
+        KseKeyStore holder = createHolder();
+        holder.setKeyEntry(alias, key, password, chain);
+
+        char[] passwordCopy = password != null ? password.clone() : null;
+        record(holder, new PasswordProtection(passwordCopy), null);
+        entryChanged(alias);
+    }
+
+    @Override
+    public void setKeyEntry(String alias, byte[] key, Certificate[] chain) throws KeyStoreException {
+        KseKeyStore holder = createHolder();
+        holder.setKeyEntry(alias, key, chain);
+
+        record(holder, null, key.clone());
+        entryChanged(alias);
+    }
+
+    @Override
+    public void setCertificateEntry(String alias, Certificate cert) throws KeyStoreException {
+        KseKeyStore holder = createHolder();
+        holder.setCertificateEntry(alias, cert);
+
+        record(holder, null, null);
+        entryChanged(alias);
+    }
+
+    @Override
+    public void setEntry(String alias, Entry entry, ProtectionParameter protParam) throws KeyStoreException {
+        KseKeyStore holder = createHolder();
+        holder.setEntry(alias, entry, protParam);
+
+        if (protParam instanceof PasswordProtection) {
+            // Copy as the caller may destroy it
+            PasswordProtection passwordProtection = (PasswordProtection) protParam;
+            char[] password = passwordProtection.getPassword();
+            protParam = new PasswordProtection(password != null ? password.clone() : null,
+                                               passwordProtection.getProtectionAlgorithm(),
+                                               passwordProtection.getProtectionParameters());
+        }
+
+        record(holder, protParam, null);
+        entryChanged(alias);
+    }
+
+    @Override
+    public void deleteEntry(String alias) throws KeyStoreException {
+        String key = normalize(alias);
+
+        if (base.containsAlias(alias)) {
+            overlay.put(key, null);
+        } else {
+            overlay.remove(key);
+        }
+        entryChanged(alias);
+    }
+
+    @Override
+    public Enumeration<String> aliases() throws KeyStoreException {
+        List<String> aliases = new ArrayList<>();
+
+        for (Enumeration<String> baseAliases = base.aliases(); baseAliases.hasMoreElements(); ) {
+            String alias = baseAliases.nextElement();
+
+            if (!overlay.containsKey(normalize(alias))) {
+                aliases.add(alias);
+            }
+        }
+
+        for (EntryRecord record : overlay.values()) {
+            if (record != null) {
+                aliases.add(record.alias);
+            }
+        }
+
+        return Collections.enumeration(aliases);
+    }
+
+    @Override
+    public boolean containsAlias(String alias) throws KeyStoreException {
+        String key = normalize(alias);
+
+        if (overlay.containsKey(key)) {
+            return overlay.get(key) != null;
+        }
+
+        return base.containsAlias(alias);
+    }
+
+    @Override
+    public int size() throws KeyStoreException {
+        int size = base.size();
+
+        for (Map.Entry<String, EntryRecord> change : overlay.entrySet()) {
+            if (base.containsAlias(change.getKey())) {
+                size--;
+            }
+            if (change.getValue() != null) {
+                size++;
+            }
+        }
+
+        return size;
+    }
+
+    @Override
+    public boolean isKeyEntry(String alias) throws KeyStoreException {
+        String key = normalize(alias);
+
+        if (overlay.containsKey(key)) {
+            EntryRecord record = overlay.get(key);
+            return record != null && record.holder.isKeyEntry(record.alias);
+        }
+
+        return base.isKeyEntry(alias);
+    }
+
+    @Override
+    public boolean isCertificateEntry(String alias) throws KeyStoreException {
+        String key = normalize(alias);
+
+        if (overlay.containsKey(key)) {
+            EntryRecord record = overlay.get(key);
+            return record != null && record.holder.isCertificateEntry(record.alias);
+        }
+
+        return base.isCertificateEntry(alias);
+    }
+
+    @Override
+    public String getCertificateAlias(Certificate cert) throws KeyStoreException {
+        for (EntryRecord record : overlay.values()) {
+            if (record != null && record.holder.getCertificateAlias(cert) != null) {
+                return record.alias;
+            }
+        }
+
+        String alias = base.getCertificateAlias(cert);
+
+        if (alias == null || !overlay.containsKey(normalize(alias))) {
+            return alias;
+        }
+
+        // First match in the base KeyStore has been changed, look for another one
+        for (Enumeration<String> baseAliases = base.aliases(); baseAliases.hasMoreElements(); ) {
+            alias = baseAliases.nextElement();
+
+            if (!overlay.containsKey(normalize(alias)) && cert.equals(base.getCertificate(alias))) {
+                return alias;
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public void store(OutputStream out, char[] password)
+            throws KeyStoreException, NoSuchAlgorithmException, CertificateException, IOException {
+        flattenForStore();
+        base.store(out, password);
+    }
+
+    @Override
+    public void store(LoadStoreParameter param)
+            throws KeyStoreException, NoSuchAlgorithmException, CertificateException, IOException {
+        flattenForStore();
+        base.store(param);
+    }
+
+    @Override
+    public void load(InputStream stream, char[] password)
+            throws NoSuchAlgorithmException, CertificateException, IOException {
+        KseKeyStore keyStore = createEmpty();
+        keyStore.load(stream, password);
+
+        base = keyStore;
+        baseFootprint = -1;
+        overlay = new HashMap<>();
+        resetCertificateIndex(null);
+    }
+
+    @Override
+    public void load(LoadStoreParameter param) throws NoSuchAlgorithmException, CertificateException, IOException {
+        KseKeyStore keyStore = createEmpty();
+        keyStore.load(param);
+
+        base = keyStore;
+        baseFootprint = -1;
+        overlay = new HashMap<>();
+        resetCertificateIndex(null);
+    }
+
+    @Override
+    public Entry getEntry(String alias, ProtectionParameter protParam)
+            throws NoSuchAlgorithmException, UnrecoverableEntryException, KeyStoreException {
+        String key = normalize(alias);
+
+        if (overlay.containsKey(key)) {
+            EntryRecord record = overlay.get(key);
+            return record != null ? record.holder.getEntry(record.alias, protParam) : null;
+        }
+
+        return base.getEntry(alias, protParam);
+    }
+
+    @Override
+    public boolean entryInstanceOf(String alias, Class<? extends KeyStore.Entry> entryClass) throws KeyStoreException {
+        String key = normalize(alias);
+
+        if (overlay.containsKey(key)) {
+            EntryRecord record = overlay.get(key);
+            return record != null && record.holder.entryInstanceOf(record.alias, entryClass);
+        }
+
+        return base.entryInstanceOf(alias, entryClass);
+    }
+
+    private void record(KseKeyStore holder, ProtectionParameter protection, byte[] protectedKey)
+            throws KeyStoreException {
+        // Use the alias as the provider reports it, i.e. normalized for case-insensitive types
+        String alias = holder.aliases().nextElement();
+
+        long footprint;
+        try {
+            footprint = KeyStoreUtil.estimateMemoryFootprint(holder);
+        } catch (CryptoException ex) {
+            throw new KeyStoreException(ex);
+        }
+
+        overlay.put(normalize(alias), new EntryRecord(alias, holder, protection, protectedKey, footprint));
+    }
+
+    private KseKeyStore createHolder() throws KeyStoreException {
+        try {
+            return createEmpty();
+        } catch (NoSuchAlgorithmException | CertificateException | IOException ex) {
+            throw new KeyStoreException(ex);
+        }
+    }
+
+    private KseKeyStore createEmpty() throws NoSuchAlgorithmException, CertificateException, IOException {
+        try {
+            KseKeyStore keyStore = KeyStoreUtil.newKeyStore(type);
+            keyStore.load(null, null);
+            return keyStore;
+        } catch (CryptoException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    private void flattenForStore() throws KeyStoreException {
+        try {
+            flatten();
+        } catch (CryptoException ex) {
+            throw new KeyStoreException(ex);
+        }
+    }
+
+    private String normalize(String alias) {
+        return type.normalizeAlias(alias);
+    }
+}
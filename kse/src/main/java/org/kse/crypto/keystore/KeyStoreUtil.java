@@ -43,6 +43,7 @@ import java.security.NoSuchProviderException;
 import java.security.Provider;
 import java.security.Security;
 import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.text.MessageFormat;
@@ -66,6 +67,9 @@ import org.kse.gui.preferences.PreferencesManager;
 public final class KeyStoreUtil {
     private static ResourceBundle res = ResourceBundle.getBundle("org/kse/crypto/keystore/resources");
 
+    private static final int ENTRY_FOOTPRINT = 256;
+    private static final int KEY_FOOTPRINT = 2048;
+
     private KeyStoreUtil() {
     }
 
@@ -83,7 +87,7 @@ public final class KeyStoreUtil {
                                                            keyStoreType.jce()));
         }
 
-        KseKeyStore keyStore = new KseKeyStore(getKeyStoreInstance(keyStoreType));
+        KseKeyStore keyStore = newKeyStore(keyStoreType);
 
         try {
             keyStore.load(null, null);
@@ -177,18 +181,16 @@ public final class KeyStoreUtil {
                     MessageFormat.format(res.getString("NoLoadKeyStoreNotFile.exception.message"), keyStoreType.jce()));
         }
 
-        KseKeyStore keyStore;
-        if (keyStoreType == KeyStoreType.PKCS12) {
-            keyStore = new Pkcs12KeyStoreAdapter(getKeyStoreInstance(keyStoreType));
-        } else {
-            keyStore = new KseKeyStore(getKeyStoreInstance(keyStoreType));
-        }
+        KseKeyStore keyStore = newKeyStore(keyStoreType);
 
         try (ByteArrayInputStream bais = new ByteArrayInputStream(keyStoreData)) {
             if (password.isEmpty() && (keyStoreType == KeyStoreType.JKS || keyStoreType == KeyStoreType.JCEKS)) {
                 // allow JKS and JCEKS files to be opened without providing a password
                 password.nullPassword();
                 keyStore.load(bais, null);
+            } else if (keyStore instanceof Pkcs12KeyStoreAdapter) {
+                // avoids another copy of the data
+                ((Pkcs12KeyStoreAdapter) keyStore).load(keyStoreData, password.toCharArray());
             } else {
                 keyStore.load(bais, password.toCharArray());
             }
@@ -440,6 +442,85 @@ public final class KeyStoreUtil {
         }
     }
 
+    /**
+     * Create a copy-on-write snapshot of a KeyStore. Unlike {@link #copy(KseKeyStore)} the
+     * snapshot shares all unchanged entries with the supplied KeyStore, so the cost of taking it
+     * depends on the number of entries changed since the last full copy rather than on the size
+     * of the KeyStore. The supplied KeyStore must not be modified afterwards.
+     *
+     * @param keyStore KeyStore to take the snapshot of
+     * @return Snapshot
+     * @throws CryptoException Problem encountered copying the KeyStore
+     */
+    public static KseKeyStore snapshot(KseKeyStore keyStore) throws CryptoException {
+        CopyOnWriteKeyStore snapshot = new CopyOnWriteKeyStore(keyStore);
+
+        if (snapshot.getChangedEntryCount() > CopyOnWriteKeyStore.MAX_OVERLAY_SIZE) {
+            snapshot.flatten();
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Estimate the memory used by the entries of a KeyStore. The estimate is
+     * based on the encoded size of the certificates plus a fixed allowance per
+     * entry and per key.
+     *
+     * @param keyStore KeyStore
+     * @return Estimated size in bytes
+     * @throws CryptoException Problem encountered reading the KeyStore
+     */
+    public static long estimateMemoryFootprint(KseKeyStore keyStore) throws CryptoException {
+        long footprint = 0;
+
+        try {
+            Enumeration<String> aliases = keyStore.aliases();
+
+            while (aliases.hasMoreElements()) {
+                String alias = aliases.nextElement();
+
+                footprint += ENTRY_FOOTPRINT + 2L * alias.length();
+
+                if (keyStore.isKeyEntry(alias)) {
+                    footprint += KEY_FOOTPRINT;
+
+                    Certificate[] chain = keyStore.getCertificateChain(alias);
+
+                    if (chain != null) {
+                        for (Certificate cert : chain) {
+                            footprint += cert.getEncoded().length;
+                        }
+                    }
+                } else {
+                    Certificate cert = keyStore.getCertificate(alias);
+
+                    if (cert != null) {
+                        footprint += cert.getEncoded().length;
+                    }
+                }
+            }
+        } catch (KeyStoreException | CertificateEncodingException ex) {
+            throw new CryptoException(res.getString("NoEstimateKeyStoreSize.exception.message"), ex);
+        }
+
+        return footprint;
+    }
+
+    /**
+     * Get a new, unloaded KeyStore of the supplied type, wrapped in the adapter for its type.
+     *
+     * @param keyStoreType The KeyStore type
+     * @return The KeyStore
+     * @throws CryptoException Problem encountered creating the KeyStore
+     */
+    static KseKeyStore newKeyStore(KeyStoreType keyStoreType) throws CryptoException {
+        if (keyStoreType == KeyStoreType.PKCS12) {
+            return new Pkcs12KeyStoreAdapter(getKeyStoreInstance(keyStoreType));
+        }
+        return new KseKeyStore(getKeyStoreInstance(keyStoreType));
+    }
+
     private static KeyStore getKeyStoreInstance(KeyStoreType keyStoreType) throws CryptoException {
         try {
             if (KeyStoreType.isBouncyCastleKeyStore(keyStoreType)) {
@@ -38,6 +38,8 @@ import java.security.cert.CertificateException;
 import java.util.Date;
 import java.util.Enumeration;
 
+import org.kse.crypto.x509.TrustGraph;
+
 /**
  * A KeyStore adapter for abstracting the differences in KeyStore provider
  * implementations.
@@ -49,6 +51,9 @@ import java.util.Enumeration;
 public class KseKeyStore {
 
     private KeyStore keyStore;
+    private CertificateIndex certificateIndex;
+    private long modificationCount;
+    private TrustGraph trustGraph;
 
     /**
      * Constructor for wrapping a KeyStore.
@@ -103,18 +108,22 @@ public class KseKeyStore {
 
     public void setKeyEntry(String alias, Key key, char[] password, Certificate[] chain) throws KeyStoreException {
         keyStore.setKeyEntry(alias, key, password, chain);
+        entryChanged(alias);
     }
 
     public void setKeyEntry(String alias, byte[] key, Certificate[] chain) throws KeyStoreException {
         keyStore.setKeyEntry(alias, key, chain);
+        entryChanged(alias);
     }
 
     public void setCertificateEntry(String alias, Certificate cert) throws KeyStoreException {
         keyStore.setCertificateEntry(alias, cert);
+        entryChanged(alias);
     }
 
     public void deleteEntry(String alias) throws KeyStoreException {
         keyStore.deleteEntry(alias);
+        entryChanged(alias);
     }
 
     public Enumeration<String> aliases() throws KeyStoreException {
@@ -154,10 +163,12 @@ public class KseKeyStore {
     public void load(InputStream stream, char[] password)
             throws NoSuchAlgorithmException, CertificateException, IOException {
         keyStore.load(stream, password);
+        resetCertificateIndex(null);
     }
 
     public void load(LoadStoreParameter param) throws NoSuchAlgorithmException, CertificateException, IOException {
         keyStore.load(param);
+        resetCertificateIndex(null);
     }
 
     public Entry getEntry(String alias, ProtectionParameter protParam)
@@ -167,9 +178,83 @@ public class KseKeyStore {
 
     public void setEntry(String alias, Entry entry, ProtectionParameter protParam) throws KeyStoreException {
         keyStore.setEntry(alias, entry, protParam);
+        entryChanged(alias);
     }
 
     public boolean entryInstanceOf(String alias, Class<? extends KeyStore.Entry> entryClass) throws KeyStoreException {
         return keyStore.entryInstanceOf(alias, entryClass);
     }
+
+    /**
+     * Get the index of the certificates in this KeyStore. The index is built on first use and kept
+     * up to date when entries are changed through this object.
+     *
+     * @return The certificate index
+     * @throws KeyStoreException If the KeyStore could not be read
+     */
+    public synchronized CertificateIndex getCertificateIndex() throws KeyStoreException {
+        if (certificateIndex == null) {
+            certificateIndex = CertificateIndex.build(this);
+        }
+        return certificateIndex;
+    }
+
+    /**
+     * Get the number of changes made to the entries of this KeyStore through this object. Data
+     * derived from the entries can be reused while the count stays the same.
+     *
+     * @return The modification count
+     */
+    public synchronized long getModificationCount() {
+        return modificationCount;
+    }
+
+    /**
+     * Get the trust graph last built with this KeyStore as the first of its KeyStores.
+     *
+     * @return The trust graph or null if there is none
+     */
+    public synchronized TrustGraph getTrustGraph() {
+        return trustGraph;
+    }
+
+    /**
+     * Keep the trust graph built with this KeyStore as the first of its KeyStores.
+     *
+     * @param trustGraph The trust graph
+     */
+    public synchronized void setTrustGraph(TrustGraph trustGraph) {
+        this.trustGraph = trustGraph;
+    }
+
+    /**
+     * Update the certificate index after an entry was added, replaced or deleted. Subclasses that
+     * change entries without calling the methods of this class must call this method.
+     *
+     * @param alias Alias of the changed entry
+     * @throws KeyStoreException If the entry could not be read
+     */
+    protected synchronized void entryChanged(String alias) throws KeyStoreException {
+        modificationCount++;
+        if (certificateIndex != null) {
+            certificateIndex.update(alias, this);
+        }
+    }
+
+    /**
+     * Discard the certificate index after all entries were replaced, or take over the index of the
+     * KeyStore this one is a copy of.
+     *
+     * @param copiedKeyStore KeyStore with the same entries or null if the entries were replaced
+     */
+    protected synchronized void resetCertificateIndex(KseKeyStore copiedKeyStore) {
+        modificationCount++;
+        CertificateIndex index = null;
+        if (copiedKeyStore != null) {
+            synchronized (copiedKeyStore) {
+                index = copiedKeyStore.certificateIndex;
+            }
+        }
+        certificateIndex = index != null ? index.copy() : null;
+    }
 }
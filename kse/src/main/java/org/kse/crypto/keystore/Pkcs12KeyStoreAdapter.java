@@ -30,12 +30,14 @@ import static org.kse.KSE.BC;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.spec.InvalidKeySpecException;
@@ -113,9 +115,9 @@ public class Pkcs12KeyStoreAdapter extends KseKeyStore {
     public void load(InputStream stream, char[] password)
             throws NoSuchAlgorithmException, CertificateException, IOException {
 
-        certificateFactory = CertificateFactory.getInstance(X509CertUtil.X509_CERT_TYPE);
-
         if (stream == null) {
+            certificateFactory = CertificateFactory.getInstance(X509CertUtil.X509_CERT_TYPE);
+
             super.load(stream, password);
 
             invisibleCerts = Collections.EMPTY_LIST;
@@ -123,29 +125,43 @@ public class Pkcs12KeyStoreAdapter extends KseKeyStore {
             return;
         }
 
-        byte[] data = stream.readAllBytes();
+        load(stream.readAllBytes(), password);
+    }
+
+    /**
+     * Loads the KeyStore from PKCS #12 data that is already in memory, without copying it.
+     *
+     * @param p12Data  The PKCS #12 data
+     * @param password The password used to check the integrity of the KeyStore
+     * @throws NoSuchAlgorithmException If the algorithm used to check the integrity cannot be found
+     * @throws CertificateException     If any of the certificates cannot be loaded
+     * @throws IOException              If there is a problem with the data or the password
+     */
+    public void load(byte[] p12Data, char[] password)
+            throws NoSuchAlgorithmException, CertificateException, IOException {
+
+        certificateFactory = CertificateFactory.getInstance(X509CertUtil.X509_CERT_TYPE);
 
-        super.load(new ByteArrayInputStream(data), password);
+        super.load(new ByteArrayInputStream(p12Data), password);
 
-        Set<Certificate> visibleCerts = extractAllCertificates();
-        invisibleCerts = parseP12(data, password).stream() //
-                .filter(ce -> !visibleCerts.contains(ce.cert)) //
-                .toList();
+        invisibleCerts = parseP12(p12Data, password, extractAllCertificates());
     }
 
-    private Set<Certificate> extractAllCertificates() {
-        Set<Certificate> certs = new HashSet<>();
+    private Set<ByteBuffer> extractAllCertificates() throws CertificateEncodingException {
+        Set<ByteBuffer> certs = new HashSet<>();
         try {
             for (Enumeration<String> aliases = aliases(); aliases.hasMoreElements(); ) {
                 String alias = aliases.nextElement();
 
                 try {
                     if (isCertificateEntry(alias)) {
-                        certs.add(getCertificate(alias));
+                        certs.add(ByteBuffer.wrap(getCertificate(alias).getEncoded()));
                     } else if (isKeyEntry(alias)) {
                         Certificate[] chain = getCertificateChain(alias);
                         if (chain != null) {
-                            Collections.addAll(certs, chain);
+                            for (Certificate cert : chain) {
+                                certs.add(ByteBuffer.wrap(cert.getEncoded()));
+                            }
                         }
                     }
                 } catch (KeyStoreException e) {
@@ -175,7 +191,13 @@ public class Pkcs12KeyStoreAdapter extends KseKeyStore {
         return Collections.unmodifiableList(invisibleCerts);
     }
 
-    private List<CertEntry> parseP12(byte[] p12Data, char[] password) throws IOException {
+    /**
+     * Walks the PFX once and returns the certificates that are not among the visible certificates.
+     * The visible certificates are compared by their encoding, so only invisible certificates are
+     * parsed.
+     */
+    private List<CertEntry> parseP12(byte[] p12Data, char[] password, Set<ByteBuffer> visibleCerts)
+            throws IOException {
         List<CertEntry> certificates = new ArrayList<>();
 
         Pfx pfx = Pfx.getInstance(ASN1Primitive.fromByteArray(p12Data));
@@ -192,7 +214,7 @@ public class Pkcs12KeyStoreAdapter extends KseKeyStore {
                 if (safeContent.getContentType().equals(data)) {
 
                     try (ASN1InputStream dIn = new ASN1InputStream(((ASN1OctetString) safeContent.getContent()).getOctets())) {
-                        readCertificates(certificates, (ASN1Sequence) dIn.readObject());
+                        readCertificates(certificates, (ASN1Sequence) dIn.readObject(), visibleCerts);
                     }
                 } else if (safeContent.getContentType().equals(encryptedData)) {
 
@@ -206,7 +228,7 @@ public class Pkcs12KeyStoreAdapter extends KseKeyStore {
                     }
 
                     // process safe bags
-                    readCertificates(certificates, ASN1Sequence.getInstance(octets));
+                    readCertificates(certificates, ASN1Sequence.getInstance(octets), visibleCerts);
                 }
             }
         }
@@ -214,18 +236,18 @@ public class Pkcs12KeyStoreAdapter extends KseKeyStore {
         return certificates;
     }
 
-    private void readCertificates(List<CertEntry> certificates, ASN1Sequence seq) {
+    private void readCertificates(List<CertEntry> certificates, ASN1Sequence seq, Set<ByteBuffer> visibleCerts) {
         for (ASN1Encodable asn1Encodable : seq) {
             SafeBag b = SafeBag.getInstance(asn1Encodable);
 
-            CertEntry certificate = readCertificate(b);
+            CertEntry certificate = readCertificate(b, visibleCerts);
             if (certificate != null) {
                 certificates.add(certificate);
             }
         }
     }
 
-    private CertEntry readCertificate(SafeBag safeBag) {
+    private CertEntry readCertificate(SafeBag safeBag, Set<ByteBuffer> visibleCerts) {
 
         if (!safeBag.getBagId().equals(certBag)) {
             return null;
@@ -236,8 +258,13 @@ public class Pkcs12KeyStoreAdapter extends KseKeyStore {
             return null;
         }
 
+        byte[] encoded = ((ASN1OctetString) cb.getCertValue()).getOctets();
+        if (visibleCerts.contains(ByteBuffer.wrap(encoded))) {
+            return null;
+        }
+
         try {
-            ByteArrayInputStream cIn = new ByteArrayInputStream(((ASN1OctetString) cb.getCertValue()).getOctets());
+            ByteArrayInputStream cIn = new ByteArrayInputStream(encoded);
             return new CertEntry(getFriendlyName(safeBag), certificateFactory.generateCertificate(cIn));
         } catch (Exception e) {
             return null;
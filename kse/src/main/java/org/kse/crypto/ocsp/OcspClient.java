@@ -0,0 +1,271 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.ocsp;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.ocsp.OCSPObjectIdentifiers;
+import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
+import org.bouncycastle.asn1.x509.ExtensionsGenerator;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.bouncycastle.cert.CertException;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.cert.ocsp.OCSPException;
+import org.bouncycastle.cert.ocsp.OCSPReq;
+import org.bouncycastle.cert.ocsp.OCSPReqBuilder;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.bouncycastle.cert.ocsp.jcajce.JcaCertificateID;
+import org.bouncycastle.operator.DigestCalculatorProvider;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentVerifierProviderBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.kse.KSE;
+import org.kse.utilities.net.DefaultProxySelector;
+import org.kse.utilities.net.HttpPost;
+import org.kse.utilities.rng.RNG;
+
+/**
+ * OCSP client (RFC 6960).
+ * <p>
+ * All requests share one HTTP client, so connections to a responder are kept alive and reused.
+ * Responses are kept in an {@link OcspResponseCache} until their nextUpdate time or the max-age
+ * sent by the responder, so certificates that were checked recently are not queried again.
+ * Requests with a nonce always query the responder, because a cached response cannot contain
+ * the new nonce, but their responses are cached for later requests without a nonce. Only
+ * responses signed by the issuer of the certificate or by a responder that the issuer
+ * authorized are cached or taken from the cache.
+ */
+public class OcspClient {
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(20);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(60);
+    private static final String MAX_AGE = "max-age=";
+
+    private static HttpClient httpClient;
+
+    private final OcspResponseCache cache;
+    private final AtomicLong requests = new AtomicLong();
+
+    /**
+     * Construct an OCSP client.
+     *
+     * @param cache Cache for the responses
+     */
+    public OcspClient(OcspResponseCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Get the status of a certificate from an OCSP responder, or from the cache if a response
+     * for the certificate is still valid.
+     *
+     * @param url             Location of the OCSP responder
+     * @param issuer          Certificate of the issuer of the certificate
+     * @param cert            Certificate to get the status of
+     * @param digestAlgorithm Digest algorithm for the CertID
+     * @param includeNonce    Include a nonce in the request
+     * @return The OCSP response
+     * @throws IOException        If the request to the responder fails
+     * @throws URISyntaxException If there is an error in the URL syntax
+     */
+    public OCSPResp getResponse(String url, X509Certificate issuer, X509Certificate cert,
+                                OcspDigestAlgorithm digestAlgorithm, boolean includeNonce)
+            throws IOException, URISyntaxException {
+
+        CertificateID certId = createCertificateId(issuer, cert, digestAlgorithm);
+
+        if (!includeNonce) {
+            OCSPResp cached = cache.get(url, certId);
+            // the cache directory may have been written to by others
+            if (cached != null && isSignedByAuthorizedResponder(cached, issuer)) {
+                return cached;
+            }
+        }
+
+        OCSPReq request = createRequest(certId, includeNonce);
+        HttpPost.Response response = queryResponder(new URI(url), request.getEncoded());
+
+        OCSPResp ocspResp = new OCSPResp(response.body());
+        if (isSignedByAuthorizedResponder(ocspResp, issuer)) {
+            cache.put(url, certId, ocspResp, getMaxAge(response.headers()));
+        }
+        return ocspResp;
+    }
+
+    /**
+     * Get the cache of this client.
+     *
+     * @return Response cache
+     */
+    public OcspResponseCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Get the number of requests sent to OCSP responders by this client.
+     *
+     * @return Number of requests
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    private static CertificateID createCertificateId(X509Certificate issuer, X509Certificate cert,
+                                                     OcspDigestAlgorithm digestAlgorithm) throws IOException {
+        try {
+            DigestCalculatorProvider digCalcProv = new JcaDigestCalculatorProviderBuilder().setProvider(KSE.BC)
+                                                                                           .build();
+            return new JcaCertificateID(digCalcProv.get(digestAlgorithm.algorithmIdentifier()), issuer,
+                                        cert.getSerialNumber());
+        } catch (OperatorCreationException | OCSPException | CertificateEncodingException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static OCSPReq createRequest(CertificateID certId, boolean includeNonce) throws IOException {
+        try {
+            OCSPReqBuilder gen = new OCSPReqBuilder();
+            gen.addRequest(certId);
+            if (includeNonce) {
+                byte[] nonce = new byte[16];
+                RNG.newInstanceDefault().nextBytes(nonce);
+                ExtensionsGenerator extGen = new ExtensionsGenerator();
+                extGen.addExtension(OCSPObjectIdentifiers.id_pkix_ocsp_nonce, false, new DEROctetString(nonce));
+                gen.setRequestExtensions(extGen.generate());
+            }
+            return gen.build();
+        } catch (OCSPException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Is the response signed by the issuer of the certificate, or by a delegated responder with a
+     * certificate for OCSP signing issued by the issuer (RFC 6960, section 4.2.2.2)?
+     */
+    static boolean isSignedByAuthorizedResponder(OCSPResp resp, X509Certificate issuer) {
+        try {
+            if (resp.getStatus() != OCSPResp.SUCCESSFUL || !(resp.getResponseObject() instanceof BasicOCSPResp)) {
+                return false;
+            }
+            BasicOCSPResp basicResp = (BasicOCSPResp) resp.getResponseObject();
+
+            JcaContentVerifierProviderBuilder verifierBuilder = new JcaContentVerifierProviderBuilder().setProvider(
+                    KSE.BC);
+            if (basicResp.isSignatureValid(verifierBuilder.build(issuer.getPublicKey()))) {
+                return true;
+            }
+
+            X509CertificateHolder issuerHolder = new JcaX509CertificateHolder(issuer);
+            for (X509CertificateHolder responderCert : basicResp.getCerts()) {
+                if (isDelegatedResponder(responderCert, issuerHolder, verifierBuilder)
+                        && basicResp.isSignatureValid(verifierBuilder.build(responderCert))) {
+                    return true;
+                }
+            }
+        } catch (OCSPException | OperatorCreationException | CertificateException | CertException e) {
+            // not verifiable
+        }
+        return false;
+    }
+
+    private static boolean isDelegatedResponder(X509CertificateHolder responderCert, X509CertificateHolder issuer,
+                                                JcaContentVerifierProviderBuilder verifierBuilder)
+            throws OperatorCreationException, CertificateException, CertException {
+        ExtendedKeyUsage extendedKeyUsage = ExtendedKeyUsage.fromExtensions(responderCert.getExtensions());
+
+        return responderCert.getIssuer().equals(issuer.getSubject())
+               && extendedKeyUsage != null
+               && extendedKeyUsage.hasKeyPurposeId(KeyPurposeId.id_kp_OCSPSigning)
+               && responderCert.isValidOn(new Date())
+               && responderCert.isSignatureValid(verifierBuilder.build(issuer));
+    }
+
+    /**
+     * Get the max-age of a response in seconds from its Cache-Control header. Returns 0 if the
+     * response must not be cached and -1 if no max-age is given.
+     */
+    static long getMaxAge(HttpHeaders headers) {
+        long maxAge = -1;
+        for (String value : headers.allValues("Cache-Control")) {
+            for (String directive : value.split(",")) {
+                directive = directive.trim().toLowerCase(Locale.ROOT);
+                if (directive.equals("no-cache") || directive.equals("no-store")) {
+                    return 0;
+                }
+                if (directive.startsWith(MAX_AGE)) {
+                    try {
+                        maxAge = Math.max(0, Long.parseLong(directive.substring(MAX_AGE.length())));
+                    } catch (NumberFormatException e) {
+                        // an invalid max-age means the response is stale (RFC 9111)
+                        return 0;
+                    }
+                }
+            }
+        }
+        return maxAge;
+    }
+
+    private HttpPost.Response queryResponder(URI uri, byte[] requestBytes) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                                         .timeout(REQUEST_TIMEOUT)
+                                         .header("Content-Type", "application/ocsp-request")
+                                         .header("Accept", "application/ocsp-response")
+                                         .POST(HttpRequest.BodyPublishers.ofByteArray(requestBytes))
+                                         .build();
+
+        requests.incrementAndGet();
+        HttpPost.Response response = HttpPost.send(getHttpClient(), request, requestBytes);
+
+        if (response.statusCode() != 200) {
+            throw new IOException("Server returned HTTP response code: " + response.statusCode());
+        }
+        return response;
+    }
+
+    private static synchronized HttpClient getHttpClient() {
+        if (httpClient == null) {
+            // most responders are plain HTTP, which does not negotiate HTTP/2 without an h2c upgrade
+            httpClient = HttpClient.newBuilder()
+                                   .version(HttpClient.Version.HTTP_1_1)
+                                   .connectTimeout(CONNECT_TIMEOUT)
+                                   .followRedirects(HttpClient.Redirect.NORMAL)
+                                   .proxy(new DefaultProxySelector())
+                                   .build();
+        }
+        return httpClient;
+    }
+}
@@ -0,0 +1,379 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.ocsp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.cert.ocsp.OCSPException;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.bouncycastle.cert.ocsp.SingleResp;
+import org.bouncycastle.util.encoders.Hex;
+
+/**
+ * Cache of OCSP responses, keyed by the CertID of the certificate and the URL of the responder.
+ * <p>
+ * A response is only cached when the responder says how long it is valid, which is until the
+ * nextUpdate time of the response or, if it is earlier, until the max-age given in the
+ * Cache-Control header of the HTTP response (RFC 5019). Responses without a nextUpdate time
+ * are never cached, because newer revocation information is always available for them, and
+ * neither are responses with a thisUpdate time in the future or a nextUpdate time before it.
+ * No response is cached for longer than a day after its thisUpdate time. The cache does not
+ * check who signed a response, that is up to the caller.
+ * <p>
+ * The most recently used responses are kept in memory. If a directory is given, responses are
+ * also stored there as DER encoded files, so they can be reused in later sessions. The directory
+ * is only a cache: responses that cannot be read or written are silently ignored.
+ */
+public final class OcspResponseCache {
+
+    private static final int DEFAULT_MAX_SIZE = 1024;
+    private static final long MAX_LIFETIME = Duration.ofDays(1).toMillis();
+    private static final long MAX_CLOCK_SKEW = Duration.ofMinutes(5).toMillis();
+    private static final String FILE_EXTENSION = ".ocsp";
+
+    private final File directory;
+    private final int maxSize;
+    private final Clock clock;
+
+    private final Map<String, CachedResponse> responses;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Construct a cache that stores responses in memory only.
+     */
+    public OcspResponseCache() {
+        this(null);
+    }
+
+    /**
+     * Construct a cache that stores responses in memory and in a directory.
+     *
+     * @param directory Directory for the responses, or null to keep them in memory only
+     */
+    public OcspResponseCache(File directory) {
+        this(directory, DEFAULT_MAX_SIZE, Clock.systemUTC());
+    }
+
+    OcspResponseCache(File directory, int maxSize, Clock clock) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.clock = clock;
+        this.responses = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                return size() > OcspResponseCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get a cached response for a certificate that is still valid.
+     *
+     * @param url    URL of the OCSP responder
+     * @param certId CertID of the certificate
+     * @return The response or null if there is no valid cached response
+     */
+    public OCSPResp get(String url, CertificateID certId) {
+        String key = getKey(url, certId);
+        long now = clock.millis();
+
+        CachedResponse cached;
+        synchronized (responses) {
+            cached = responses.get(key);
+        }
+
+        if (cached == null) {
+            cached = readFile(key);
+            if (cached != null) {
+                synchronized (responses) {
+                    responses.put(key, cached);
+                }
+            }
+        }
+
+        // a lifetime beyond the maximum means the file was tampered with or the clock was set back
+        if (cached == null || cached.expires <= now || cached.expires > now + MAX_LIFETIME + MAX_CLOCK_SKEW) {
+            if (cached != null) {
+                remove(key);
+            }
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        return cached.response;
+    }
+
+    /**
+     * Cache a response from a responder, if it says how long it is valid.
+     *
+     * @param url    URL of the OCSP responder
+     * @param certId CertID of the certificate that the response was requested for
+     * @param resp   The response
+     * @param maxAge The max-age of the HTTP response in seconds, or a negative value if there is
+     *               none
+     * @return True if the response was cached
+     */
+    public boolean put(String url, CertificateID certId, OCSPResp resp, long maxAge) {
+        long expires = getExpiry(certId, resp, maxAge);
+        if (expires <= clock.millis()) {
+            return false;
+        }
+
+        String key = getKey(url, certId);
+        CachedResponse cached;
+        try {
+            cached = new CachedResponse(resp, expires, resp.getEncoded());
+        } catch (IOException e) {
+            return false;
+        }
+
+        synchronized (responses) {
+            responses.put(key, cached);
+        }
+        writeFile(key, cached);
+        return true;
+    }
+
+    /**
+     * Remove all responses from the cache, including those stored in the directory.
+     */
+    public void clear() {
+        synchronized (responses) {
+            responses.clear();
+        }
+
+        if (directory != null) {
+            File[] files = directory.listFiles((dir, name) -> name.endsWith(FILE_EXTENSION));
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the number of responses in memory.
+     *
+     * @return Number of responses
+     */
+    public int size() {
+        synchronized (responses) {
+            return responses.size();
+        }
+    }
+
+    /**
+     * Get the number of lookups that found a valid response.
+     *
+     * @return Number of cache hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of lookups that did not find a valid response.
+     *
+     * @return Number of cache misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public String toString() {
+        return "OcspResponseCache[size=" + size() + ", hits=" + getHits() + ", misses=" + getMisses() + "]";
+    }
+
+    /**
+     * The response is valid until its nextUpdate time, or the end of its max-age or maximum
+     * lifetime if that is earlier. Returns 0 if the response must not be cached.
+     */
+    private long getExpiry(CertificateID certId, OCSPResp resp, long maxAge) {
+        if (resp.getStatus() != OCSPResp.SUCCESSFUL) {
+            return 0;
+        }
+
+        SingleResp singleResp;
+        try {
+            Object responseObject = resp.getResponseObject();
+            if (!(responseObject instanceof BasicOCSPResp)) {
+                return 0;
+            }
+            singleResp = findSingleResp((BasicOCSPResp) responseObject, certId);
+        } catch (OCSPException e) {
+            return 0;
+        }
+
+        if (singleResp == null) {
+            return 0;
+        }
+
+        Date thisUpdate = singleResp.getThisUpdate();
+        Date nextUpdate = singleResp.getNextUpdate();
+        if (thisUpdate == null || nextUpdate == null) {
+            return 0;
+        }
+
+        // allow for some difference between the clocks of the responder and this machine
+        long now = clock.millis();
+        if (thisUpdate.getTime() > now + MAX_CLOCK_SKEW || nextUpdate.before(thisUpdate)) {
+            return 0;
+        }
+
+        long expires = Math.min(nextUpdate.getTime(), thisUpdate.getTime() + MAX_LIFETIME);
+        if (maxAge >= 0) {
+            expires = Math.min(expires, now + maxAge * 1000);
+        }
+        return expires;
+    }
+
+    private static SingleResp findSingleResp(BasicOCSPResp basicResp, CertificateID certId) {
+        for (SingleResp singleResp : basicResp.getResponses()) {
+            if (certId.equals(singleResp.getCertID())) {
+                return singleResp;
+            }
+        }
+        return null;
+    }
+
+    private void remove(String key) {
+        synchronized (responses) {
+            responses.remove(key);
+        }
+
+        File file = getFile(key);
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    private CachedResponse readFile(String key) {
+        File file = getFile(key);
+        if (file == null || !file.isFile()) {
+            return null;
+        }
+
+        try (DataInputStream dis = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file.toPath())))) {
+            // the key guards against files that were copied or renamed
+            if (!key.equals(dis.readUTF())) {
+                return null;
+            }
+            long expires = dis.readLong();
+            byte[] encoded = dis.readNBytes(dis.readInt());
+            return new CachedResponse(new OCSPResp(encoded), expires, encoded);
+        } catch (IOException | RuntimeException e) {
+            // a corrupt file is replaced by the next response
+            return null;
+        }
+    }
+
+    private void writeFile(String key, CachedResponse cached) {
+        File file = getFile(key);
+        if (file == null) {
+            return;
+        }
+
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            try (DataOutputStream dos = new DataOutputStream(baos)) {
+                dos.writeUTF(key);
+                dos.writeLong(cached.expires);
+                dos.writeInt(cached.encoded.length);
+                dos.write(cached.encoded);
+            }
+
+            // write to a temporary file first, so other instances never read a partial response
+            Files.createDirectories(directory.toPath());
+            Path tmp = Files.createTempFile(directory.toPath(), file.getName(), ".tmp");
+            try {
+                Files.write(tmp, baos.toByteArray());
+                try {
+                    Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                               StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            // ignore, the response is still cached in memory
+        }
+    }
+
+    private File getFile(String key) {
+        if (directory == null) {
+            return null;
+        }
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return new File(directory, Hex.toHexString(digest) + FILE_EXTENSION);
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    private static String getKey(String url, CertificateID certId) {
+        return certId.getHashAlgOID().getId() + ":" +
+               Hex.toHexString(certId.getIssuerNameHash()) + ":" +
+               Hex.toHexString(certId.getIssuerKeyHash()) + ":" +
+               certId.getSerialNumber().toString(16) + "@" + url;
+    }
+
+    private static class CachedResponse {
+        private final OCSPResp response;
+        private final long expires;
+        private final byte[] encoded;
+
+        private CachedResponse(OCSPResp response, long expires, byte[] encoded) {
+            this.response = response;
+            this.expires = expires;
+            this.encoded = encoded;
+        }
+    }
+}
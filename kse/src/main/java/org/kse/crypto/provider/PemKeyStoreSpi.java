@@ -24,8 +24,10 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.KeyPair;
 import java.security.KeyStoreSpi;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
@@ -34,6 +36,14 @@ import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
+import java.security.interfaces.DSAParams;
+import java.security.interfaces.DSAPrivateKey;
+import java.security.interfaces.DSAPublicKey;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECPoint;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
@@ -44,10 +54,10 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Stream;
 
 import javax.security.auth.x500.X500Principal;
 
+import org.bouncycastle.jcajce.provider.asymmetric.util.EC5Util;
 import org.kse.crypto.CryptoException;
 import org.kse.crypto.keypair.KeyPairUtil;
 import org.kse.crypto.privatekey.EncryptionType;
@@ -100,6 +110,7 @@ public class PemKeyStoreSpi extends KeyStoreSpi {
             return;
         }
 
+        // Empty if the data is malformed, which leaves the KeyStore empty
         List<PemInfo> blocks = PemUtil.decodeAll(stream.readAllBytes());
 
         List<Entry> keys = new ArrayList<>();
@@ -149,6 +160,8 @@ public class PemKeyStoreSpi extends KeyStoreSpi {
     private void associateKeys(List<Entry> keyEntries, List<Certificate> certs) throws CryptoException {
 
         List<X509Certificate> x509Certs = new ArrayList<>();
+        Map<Object, X509Certificate> byPublicValue = new HashMap<>();
+        Map<ByteBuffer, X509Certificate> byPublicKey = new HashMap<>();
         Map<X500Principal, List<X509Certificate>> bySubject = new HashMap<>();
         Map<X500Principal, List<X509Certificate>> byIssuer = new HashMap<>();
 
@@ -156,6 +169,15 @@ public class PemKeyStoreSpi extends KeyStoreSpi {
             X509Certificate x509Cert = X509CertUtil.convertCertificate(cert);
             x509Certs.add(x509Cert);
 
+            // First certificate in file order wins, as with the previous linear search
+            PublicKey publicKey = x509Cert.getPublicKey();
+            Object publicValue = getPublicValue(publicKey);
+            if (publicValue != null) {
+                byPublicValue.putIfAbsent(publicValue, x509Cert);
+            } else {
+                byPublicKey.putIfAbsent(ByteBuffer.wrap(publicKey.getEncoded()), x509Cert);
+            }
+
             bySubject.computeIfAbsent(
                     x509Cert.getSubjectX500Principal(), k -> new ArrayList<>()).add(x509Cert);
 
@@ -164,13 +186,16 @@ public class PemKeyStoreSpi extends KeyStoreSpi {
         }
 
         // Build full certificate chain for each key
+        Set<Certificate> chained = new HashSet<>();
         int aliasIndex = 1;
         for (Entry keyEntry : keyEntries) {
 
-            X509Certificate leaf = findCertificateForKey(keyEntry.key, x509Certs);
+            X509Certificate leaf = findCertificateForKey(keyEntry.key, byPublicValue, byPublicKey,
+                                                         x509Certs);
 
             if (leaf != null) {
                 keyEntry.chain = buildCertificateChain(leaf, bySubject, byIssuer);
+                Collections.addAll(chained, keyEntry.chain);
 
                 String alias = X509CertUtil.getCertificateAlias(leaf);
                 if (StringUtils.isBlank(alias)) {
@@ -187,9 +212,7 @@ public class PemKeyStoreSpi extends KeyStoreSpi {
         // Add standalone certificates
         aliasIndex = 1;
         for (X509Certificate cert : x509Certs) {
-            boolean used = entries.values().stream()
-                    .anyMatch(e -> Stream.of(e.chain).anyMatch(c -> c.equals(cert)));
-            if (!used) {
+            if (!chained.contains(cert)) {
                 String alias = X509CertUtil.getCertificateAlias(cert);
                 if (StringUtils.isBlank(alias)) {
                     alias = "cert";
@@ -203,7 +226,27 @@ public class PemKeyStoreSpi extends KeyStoreSpi {
         }
     }
 
-    private X509Certificate findCertificateForKey(PrivateKey key, List<X509Certificate> x509Certs) {
+    private X509Certificate findCertificateForKey(PrivateKey key, Map<Object, X509Certificate> byPublicValue,
+            Map<ByteBuffer, X509Certificate> byPublicKey, List<X509Certificate> x509Certs) {
+
+        // RSA, EC and DSA keys are looked up by their public value, which does not depend on how the
+        // key parameters are encoded
+        Object publicValue = derivePublicValue(key);
+        if (publicValue != null) {
+            return byPublicValue.get(publicValue);
+        }
+
+        // Other key types are looked up by the encoding of the derived public key
+        try {
+            KeyPair keyPair = KeyPairUtil.generateKeyPair(key);
+            if (keyPair != null) {
+                return byPublicKey.get(ByteBuffer.wrap(keyPair.getPublic().getEncoded()));
+            }
+        } catch (CryptoException e) {
+            // fall back to trial signatures
+        }
+
+        // Unsupported key type, the public key can only be found with trial signatures
         for (X509Certificate cert : x509Certs) {
             try {
                 PublicKey pub = cert.getPublicKey();
@@ -217,6 +260,34 @@ public class PemKeyStoreSpi extends KeyStoreSpi {
         return null;
     }
 
+    private static Object derivePublicValue(PrivateKey key) {
+        if (key instanceof RSAPrivateKey) {
+            // Also available for keys without the CRT parameters
+            return ((RSAPrivateKey) key).getModulus();
+        } else if (key instanceof ECPrivateKey && ((ECPrivateKey) key).getParams() != null) {
+            // Computed from the key's own domain parameters, so explicit and unnamed curves work too
+            ECPrivateKey ecKey = (ECPrivateKey) key;
+            org.bouncycastle.math.ec.ECPoint q = EC5Util.convertSpec(ecKey.getParams()).getG()
+                                                        .multiply(ecKey.getS()).normalize();
+            return new ECPoint(q.getAffineXCoord().toBigInteger(), q.getAffineYCoord().toBigInteger());
+        } else if (key instanceof DSAPrivateKey) {
+            DSAParams params = ((DSAPrivateKey) key).getParams();
+            return params.getG().modPow(((DSAPrivateKey) key).getX(), params.getP());
+        }
+        return null;
+    }
+
+    private static Object getPublicValue(PublicKey publicKey) {
+        if (publicKey instanceof RSAPublicKey) {
+            return ((RSAPublicKey) publicKey).getModulus();
+        } else if (publicKey instanceof ECPublicKey) {
+            return ((ECPublicKey) publicKey).getW();
+        } else if (publicKey instanceof DSAPublicKey) {
+            return ((DSAPublicKey) publicKey).getY();
+        }
+        return null;
+    }
+
     private X509Certificate[] buildCertificateChain(X509Certificate leaf,
             Map<X500Principal, List<X509Certificate>> bySubject, Map<X500Principal, List<X509Certificate>> byIssuer) {
 
@@ -35,6 +35,7 @@ import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
 import org.kse.crypto.CryptoException;
 import org.kse.crypto.digest.DigestType;
 import org.kse.crypto.digest.DigestUtil;
+import org.kse.crypto.digest.FingerprintCache;
 
 /**
  * Generator for public key identifiers of various forms.
@@ -93,17 +94,14 @@ public class KeyIdentifierGenerator {
          * tag, length, and number of unused bit string bits)
          */
 
-        try {
-            DERBitString publicKeyBitString = encodePublicKeyAsBitString(publicKey);
-            byte[] hash = DigestUtil.getMessageDigest(publicKeyBitString.getBytes(), DigestType.SHA1);
+        return FingerprintCache.getInstance().get(publicKey, IdentifierType.SHA1_64BIT, () -> {
+            byte[] hash = getPublicKeyDigest(DigestType.SHA1);
             byte[] subHash = Arrays.copyOfRange(hash, 12, 20);
             subHash[0] &= 0x0F;
             subHash[0] |= 0x40;
 
             return subHash;
-        } catch (IOException ex) {
-            throw new CryptoException(res.getString("NoGenerateKeyIdentifier.exception.message"), ex);
-        }
+        });
     }
 
     /**
@@ -155,9 +153,14 @@ public class KeyIdentifierGenerator {
     }
 
     private byte[] generate160BitHashId(DigestType digestType) throws CryptoException {
+        return FingerprintCache.getInstance().get(publicKey, IdentifierType.valueOf(digestType),
+                                                  () -> Arrays.copyOfRange(getPublicKeyDigest(digestType), 0, 20));
+    }
+
+    private byte[] getPublicKeyDigest(DigestType digestType) throws CryptoException {
         try {
             DERBitString publicKeyBitString = encodePublicKeyAsBitString(publicKey);
-            return Arrays.copyOfRange(DigestUtil.getMessageDigest(publicKeyBitString.getBytes(), digestType), 0, 20);
+            return DigestUtil.getMessageDigest(publicKeyBitString.getBytes(), digestType);
         } catch (IOException ex) {
             throw new CryptoException(res.getString("NoGenerateKeyIdentifier.exception.message"), ex);
         }
@@ -192,4 +195,27 @@ public class KeyIdentifierGenerator {
         return pubKey.getEncoded(ASN1Encoding.DER);
     }
 
+    /**
+     * Key identifier forms, used as the algorithm of cached key identifiers.
+     */
+    private enum IdentifierType {
+        SHA1_160BIT,
+        SHA1_64BIT,
+        SHA256_160BIT,
+        SHA384_160BIT,
+        SHA512_160BIT;
+
+        static IdentifierType valueOf(DigestType digestType) {
+            switch (digestType) {
+            case SHA256:
+                return SHA256_160BIT;
+            case SHA384:
+                return SHA384_160BIT;
+            case SHA512:
+                return SHA512_160BIT;
+            default:
+                return SHA1_160BIT;
+            }
+        }
+    }
 }
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.signing;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.SecureRandom;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ResourceBundle;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.bouncycastle.cms.CMSAbsentContent;
+import org.bouncycastle.cms.CMSSignedDataGenerator;
+import org.bouncycastle.cms.CMSSignedDataStreamGenerator;
+import org.bouncycastle.cms.SignerInfoGenerator;
+import org.bouncycastle.cms.jcajce.JcaSignerInfoGeneratorBuilder;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.DefaultSignatureAlgorithmIdentifierFinder;
+import org.bouncycastle.operator.DigestCalculatorProvider;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.RuntimeOperatorException;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.bouncycastle.util.CollectionStore;
+import org.bouncycastle.util.Store;
+import org.kse.KSE;
+import org.kse.crypto.CryptoException;
+import org.kse.utilities.rng.RNG;
+
+/**
+ * Signs files using PKCS #7 CMS with one private key, certificate chain and set of signing options.
+ * <p>
+ * The certificate store, digest calculators and random number generator are prepared once, so
+ * one instance can be used to sign many files. Instances are thread-safe. Keys of an explicitly
+ * selected provider, such as a PKCS#11 token or the Windows key store, usually only allow one
+ * signing operation at a time, so only the digesting of the files is done concurrently for those
+ * keys.
+ * <p>
+ * Signatures are written to a temporary file next to the output file, which is then moved to
+ * the output file. The output file is therefore either replaced by a complete signature or left
+ * untouched.
+ */
+public class CmsFileSigner {
+    private static ResourceBundle res = ResourceBundle.getBundle("org/kse/crypto/signing/resources");
+
+    private final PrivateKey privateKey;
+    private final X509Certificate signingCertificate;
+    private final SignatureType signatureType;
+    private final boolean detachedSignature;
+    private final boolean outputPem;
+    private final String tsaUrl;
+    private final Provider provider;
+    private final boolean singleSession;
+
+    private final Store<X509CertificateHolder> certStore;
+    private final DigestCalculatorProvider digestCalculatorProvider;
+    private final SecureRandom random;
+    private final AlgorithmIdentifier signatureAlgorithm;
+
+    /**
+     * Prepare file signing.
+     *
+     * @param privateKey        The private key to use for signing.
+     * @param certificateChain  The certificate chain for the private key.
+     * @param signatureType     The signature type to use for signing.
+     * @param detachedSignature True if the signatures are to be detached. False,
+     *                          encapsulate the files into the signatures.
+     * @param outputPem         True to PEM encode the signatures, false for DER.
+     * @param tsaUrl            An optional TSA URL for adding a time stamp token to
+     *                          the signatures.
+     * @param provider          The security provider to use, null for the default provider.
+     * @throws CryptoException If the certificate chain or provider cannot be used
+     */
+    public CmsFileSigner(PrivateKey privateKey, X509Certificate[] certificateChain, SignatureType signatureType,
+                         boolean detachedSignature, boolean outputPem, String tsaUrl, Provider provider)
+            throws CryptoException {
+        this.privateKey = privateKey;
+        this.signingCertificate = certificateChain[0];
+        this.signatureType = signatureType;
+        this.detachedSignature = detachedSignature;
+        this.outputPem = outputPem;
+        this.tsaUrl = tsaUrl;
+        this.provider = provider == null ? KSE.BC : provider;
+        this.singleSession = provider != null;
+
+        try {
+            List<X509CertificateHolder> certificates = new ArrayList<>();
+            for (X509Certificate certificate : certificateChain) {
+                certificates.add(new JcaX509CertificateHolder(certificate));
+            }
+            certStore = new CollectionStore<>(certificates);
+            digestCalculatorProvider = new JcaDigestCalculatorProviderBuilder().setProvider(this.provider).build();
+            random = RNG.newInstanceForLongLivedSecrets();
+            signatureAlgorithm = new DefaultSignatureAlgorithmIdentifierFinder().find(signatureType.jce());
+        } catch (Exception ex) {
+            throw new CryptoException(res.getString("CmsSignatureFailed.exception.message"), ex);
+        }
+    }
+
+    /**
+     * Get the file extension of the signatures, ".p7s" for detached signatures and ".p7m" for
+     * signatures that encapsulate the file.
+     *
+     * @return File extension
+     */
+    public String getSignatureExtension() {
+        return detachedSignature ? ".p7s" : ".p7m";
+    }
+
+    /**
+     * Signs a file and writes the signature to a file. Encapsulated signatures are streamed to the
+     * output file as the input file is read, so the file is never held in memory. Detached
+     * signatures are created from a digest of the memory mapped input file.
+     *
+     * @param inputFile  The file to sign.
+     * @param outputFile The file to write the signature to.
+     * @throws CryptoException If an error occurs when signing the file.
+     */
+    public void sign(File inputFile, File outputFile) throws CryptoException {
+        Path target = outputFile.getAbsoluteFile().toPath();
+        Path tmpFile = target.resolveSibling(
+                "." + target.getFileName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+
+        try {
+            try (OutputStream os = openSignatureOutput(tmpFile)) {
+                if (detachedSignature) {
+                    // The content is not part of the signature, only its digest. Compute it up front.
+                    CMSSignedDataGenerator generator = new CMSSignedDataGenerator();
+                    generator.addSignerInfoGenerator(getSignerInfoGenerator(
+                            new CmsSigner.FileDigestCalculatorProvider(digestCalculatorProvider, inputFile)));
+                    generator.addCertificates(certStore);
+
+                    os.write(generator.generate(new CMSAbsentContent(), false).getEncoded());
+                } else {
+                    CMSSignedDataStreamGenerator generator = new CMSSignedDataStreamGenerator();
+                    generator.addSignerInfoGenerator(getSignerInfoGenerator(digestCalculatorProvider));
+                    generator.addCertificates(certStore);
+
+                    try (OutputStream signedOut = generator.open(os, true)) {
+                        Files.copy(inputFile.toPath(), signedOut);
+                    }
+                }
+            }
+
+            moveSignature(tmpFile, target);
+        } catch (Exception e) {
+            try {
+                Files.deleteIfExists(tmpFile);
+            } catch (IOException ex) {
+                e.addSuppressed(ex);
+            }
+            throw new CryptoException(res.getString("CmsSignatureFailed.exception.message"), e);
+        }
+    }
+
+    private SignerInfoGenerator getSignerInfoGenerator(DigestCalculatorProvider digestCalculatorProvider)
+            throws OperatorCreationException, CertificateEncodingException {
+        JcaSignerInfoGeneratorBuilder signerInfoGeneratorBuilder = new JcaSignerInfoGeneratorBuilder(
+                digestCalculatorProvider);
+        if (tsaUrl != null) {
+            // The signature is only known once all content has been digested, time stamp it then
+            signerInfoGeneratorBuilder.setUnsignedAttributeGenerator(
+                    new CmsSigner.TimestampAttributeGenerator(tsaUrl, signatureType.digestType()));
+        }
+
+        ContentSigner contentSigner = singleSession ? new SerialContentSigner() : getContentSigner();
+
+        return signerInfoGeneratorBuilder.build(contentSigner, signingCertificate);
+    }
+
+    private ContentSigner getContentSigner() throws OperatorCreationException {
+        return new JcaContentSignerBuilder(signatureType.jce()).setSecureRandom(random)
+                                                                .setProvider(provider)
+                                                                .build(privateKey);
+    }
+
+    private OutputStream openSignatureOutput(Path file) throws IOException {
+        OutputStream os = new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE_NEW));
+        if (outputPem) {
+            os = CmsUtil.getPemOutputStream(os);
+        }
+        return os;
+    }
+
+    private static void moveSignature(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Collects what is to be signed, which is only the small set of signed attributes, and signs
+     * it while holding the file signer's lock. The file contents are digested without the lock.
+     * The key is only used, and a session of its provider only opened, once the lock is held.
+     */
+    private class SerialContentSigner implements ContentSigner {
+        private final ByteArrayOutputStream toSign = new ByteArrayOutputStream();
+
+        @Override
+        public AlgorithmIdentifier getAlgorithmIdentifier() {
+            return signatureAlgorithm;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return toSign;
+        }
+
+        @Override
+        public byte[] getSignature() {
+            synchronized (CmsFileSigner.this) {
+                ContentSigner contentSigner;
+                try {
+                    contentSigner = getContentSigner();
+                    try (OutputStream os = contentSigner.getOutputStream()) {
+                        toSign.writeTo(os);
+                    }
+                } catch (OperatorCreationException | IOException ex) {
+                    throw new RuntimeOperatorException(ex.getMessage(), ex);
+                }
+                return contentSigner.getSignature();
+            }
+        }
+    }
+}
@@ -29,22 +29,31 @@ import static org.kse.crypto.digest.DigestType.SHAKE256;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
 import java.security.PrivateKey;
 import java.security.Provider;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Map;
 import java.util.ResourceBundle;
 
 import org.bouncycastle.asn1.ASN1EncodableVector;
 import org.bouncycastle.asn1.ASN1Primitive;
+import org.bouncycastle.asn1.DERNull;
 import org.bouncycastle.asn1.DERSet;
 import org.bouncycastle.asn1.cms.Attribute;
 import org.bouncycastle.asn1.cms.AttributeTable;
 import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
 import org.bouncycastle.cert.jcajce.JcaCertStore;
+import org.bouncycastle.cms.CMSAbsentContent;
+import org.bouncycastle.cms.CMSAttributeTableGenerationException;
+import org.bouncycastle.cms.CMSAttributeTableGenerator;
 import org.bouncycastle.cms.CMSProcessableFile;
 import org.bouncycastle.cms.CMSSignedData;
 import org.bouncycastle.cms.CMSSignedDataGenerator;
@@ -52,11 +61,15 @@ import org.bouncycastle.cms.CMSTypedData;
 import org.bouncycastle.cms.SignerInformation;
 import org.bouncycastle.cms.SignerInformationStore;
 import org.bouncycastle.cms.jcajce.JcaSignerInfoGeneratorBuilder;
+import org.bouncycastle.operator.DigestCalculator;
+import org.bouncycastle.operator.DigestCalculatorProvider;
+import org.bouncycastle.operator.OperatorCreationException;
 import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
 import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
 import org.kse.KSE;
 import org.kse.crypto.CryptoException;
 import org.kse.crypto.digest.DigestType;
+import org.kse.crypto.digest.DigestUtil;
 import org.kse.utilities.rng.RNG;
 
 /**
@@ -88,8 +101,6 @@ public class CmsSigner {
             boolean detachedSignature, SignatureType signatureType, String tsaUrl, Provider provider)
             throws CryptoException {
         try {
-            CMSTypedData msg = new CMSProcessableFile(inputFile);
-
             JcaContentSignerBuilder contentSignerBuilder = new JcaContentSignerBuilder(signatureType.jce())
                     .setSecureRandom(RNG.newInstanceForLongLivedSecrets());
             JcaDigestCalculatorProviderBuilder digestCalculatorProviderBuilder = new JcaDigestCalculatorProviderBuilder();
@@ -99,13 +110,28 @@ public class CmsSigner {
             contentSignerBuilder.setProvider(provider);
             digestCalculatorProviderBuilder.setProvider(provider);
 
+            DigestCalculatorProvider digestCalculatorProvider = digestCalculatorProviderBuilder.build();
+            CMSTypedData msg;
+            if (detachedSignature) {
+                // The content is not part of the signature, only its digest. Compute it up front.
+                digestCalculatorProvider = new FileDigestCalculatorProvider(digestCalculatorProvider, inputFile);
+                msg = new CMSAbsentContent();
+            } else {
+                msg = new CMSProcessableFile(inputFile);
+            }
+
             CMSSignedDataGenerator generator = new CMSSignedDataGenerator();
-            generator.addSignerInfoGenerator(new JcaSignerInfoGeneratorBuilder(digestCalculatorProviderBuilder.build())
+            generator.addSignerInfoGenerator(new JcaSignerInfoGeneratorBuilder(digestCalculatorProvider)
                     .build(contentSignerBuilder.build(privateKey), certificateChain[0]));
             generator.addCertificates(new JcaCertStore(Arrays.asList(certificateChain)));
 
             CMSSignedData signedData = generator.generate(msg, !detachedSignature);
 
+            if (detachedSignature) {
+                // Keep the content available for verifying the signature, as for encapsulated signatures
+                signedData = new CMSSignedData(new CMSProcessableFile(inputFile), signedData.toASN1Structure());
+            }
+
             if (tsaUrl != null) {
                 SignerInformationStore signerInfos = addTimestamp(tsaUrl, signedData.getSignerInfos(),
                         signatureType.digestType());
@@ -118,6 +144,31 @@ public class CmsSigner {
         }
     }
 
+    /**
+     * Signs a file using PKCS #7 CMS and writes the signature to a file. Encapsulated signatures
+     * are streamed to the output file as the input file is read, so the file is never held in
+     * memory. Detached signatures are created from a digest of the memory mapped input file.
+     *
+     * @param inputFile         The file to sign.
+     * @param outputFile        The file to write the signature to.
+     * @param outputPem         True to PEM encode the signature, false for DER.
+     * @param privateKey        The private key to use for signing.
+     * @param certificateChain  The certificate chain for the private key.
+     * @param detachedSignature True if the signature is to be detached. False,
+     *                          encapsulate the file into the signature.
+     * @param signatureType     The signature type to use for signing.
+     * @param tsaUrl            An optional TSA URL for adding a time stamp token to
+     *                          the signature.
+     * @param provider          The security provider to use.
+     * @throws CryptoException If an error occurs when signing the file.
+     */
+    public static void sign(File inputFile, File outputFile, boolean outputPem, PrivateKey privateKey,
+            X509Certificate[] certificateChain, boolean detachedSignature, SignatureType signatureType, String tsaUrl,
+            Provider provider) throws CryptoException {
+        new CmsFileSigner(privateKey, certificateChain, signatureType, detachedSignature, outputPem, tsaUrl, provider)
+                .sign(inputFile, outputFile);
+    }
+
     /**
      * Counter signs a signature using PKCS #7 CMS.
      *
@@ -192,28 +243,132 @@ public class CmsSigner {
         Collection<SignerInformation> newSignerInfos = new ArrayList<>();
 
         for (SignerInformation si : signerInfos.getSigners()) {
-            byte[] signature = si.getSignature();
+            // create new SignerInformation with TS attribute
+            AttributeTable at = getTimestampAttributes(tsaUrl, si.getSignature(), digestType);
+
+            newSignerInfos.add(SignerInformation.replaceUnsignedAttributes(si, at));
+        }
 
-            // Some signatures use SHAKE or GOST3411, which are not currently supported by the TSAs.
-            if (SHAKE128 == digestType || GOST3411 == digestType || GOST3411_2012_256 == digestType) {
-                digestType = SHA256;
-            } else  if (SHAKE256 == digestType || GOST3411_2012_512 == digestType) {
-                digestType = SHA512;
+        return new SignerInformationStore(newSignerInfos);
+    }
+
+    /**
+     * Gets a time stamp token for a signature as an unsigned attribute.
+     *
+     * @param tsaUrl     The URL of the time stamp authority.
+     * @param signature  The signature to time stamp.
+     * @param digestType The digest type to use for the time stamp.
+     * @return The unsigned attributes with the time stamp token.
+     * @throws IOException If an error occurs with contacting the TS server.
+     * @throws URISyntaxException If there is an error in the URL syntax.
+     */
+    private static AttributeTable getTimestampAttributes(String tsaUrl, byte[] signature, DigestType digestType)
+            throws IOException, URISyntaxException {
+
+        // Some signatures use SHAKE or GOST3411, which are not currently supported by the TSAs.
+        if (SHAKE128 == digestType || GOST3411 == digestType || GOST3411_2012_256 == digestType) {
+            digestType = SHA256;
+        } else  if (SHAKE256 == digestType || GOST3411_2012_512 == digestType) {
+            digestType = SHA512;
+        }
+
+        // send request to TSA
+        byte[] token = TimeStampingClient.getTimeStampToken(tsaUrl, signature, digestType);
+
+        Attribute tokenAttr = new Attribute(PKCSObjectIdentifiers.id_aa_signatureTimeStampToken,
+                                            new DERSet(ASN1Primitive.fromByteArray(token)));
+        ASN1EncodableVector timestampVector = new ASN1EncodableVector();
+        timestampVector.add(tokenAttr);
+        return new AttributeTable(timestampVector);
+    }
+
+    /**
+     * Adds a time stamp token to a signer information as it is generated.
+     */
+    static class TimestampAttributeGenerator implements CMSAttributeTableGenerator {
+        private final String tsaUrl;
+        private final DigestType digestType;
+
+        TimestampAttributeGenerator(String tsaUrl, DigestType digestType) {
+            this.tsaUrl = tsaUrl;
+            this.digestType = digestType;
+        }
+
+        @Override
+        public AttributeTable getAttributes(@SuppressWarnings("rawtypes") Map parameters)
+                throws CMSAttributeTableGenerationException {
+            try {
+                return getTimestampAttributes(tsaUrl, (byte[]) parameters.get(CMSAttributeTableGenerator.SIGNATURE),
+                        digestType);
+            } catch (IOException | URISyntaxException e) {
+                throw new CMSAttributeTableGenerationException(e.getMessage(), e);
             }
+        }
+    }
 
-            // send request to TSA
-            byte[] token = TimeStampingClient.getTimeStampToken(tsaUrl, signature, digestType);
+    /**
+     * Provides digest calculators whose digest of a file's content has been computed up front from
+     * the memory mapped file, so the content does not have to be written to them.
+     */
+    static class FileDigestCalculatorProvider implements DigestCalculatorProvider {
+        private final DigestCalculatorProvider digestCalculatorProvider;
+        private final File file;
 
-            // create new SignerInformation with TS attribute
-            Attribute tokenAttr = new Attribute(PKCSObjectIdentifiers.id_aa_signatureTimeStampToken,
-                                                new DERSet(ASN1Primitive.fromByteArray(token)));
-            ASN1EncodableVector timestampVector = new ASN1EncodableVector();
-            timestampVector.add(tokenAttr);
-            AttributeTable at = new AttributeTable(timestampVector);
+        FileDigestCalculatorProvider(DigestCalculatorProvider digestCalculatorProvider, File file) {
+            this.digestCalculatorProvider = digestCalculatorProvider;
+            this.file = file;
+        }
 
-            newSignerInfos.add(SignerInformation.replaceUnsignedAttributes(si, at));
+        @Override
+        public DigestCalculator get(AlgorithmIdentifier digestAlgorithm) throws OperatorCreationException {
+            DigestCalculator digestCalculator = digestCalculatorProvider.get(digestAlgorithm);
+
+            byte[] digest;
+            try {
+                digest = getFileDigest(digestCalculator);
+            } catch (IOException | CryptoException e) {
+                throw new OperatorCreationException(e.getMessage(), e);
+            }
+
+            return new DigestCalculator() {
+                @Override
+                public AlgorithmIdentifier getAlgorithmIdentifier() {
+                    return digestCalculator.getAlgorithmIdentifier();
+                }
+
+                @Override
+                public OutputStream getOutputStream() {
+                    return OutputStream.nullOutputStream();
+                }
+
+                @Override
+                public byte[] getDigest() {
+                    return digest;
+                }
+            };
         }
 
-        return new SignerInformationStore(newSignerInfos);
+        private byte[] getFileDigest(DigestCalculator digestCalculator)
+                throws IOException, CryptoException, OperatorCreationException {
+            AlgorithmIdentifier digestAlgorithm = digestCalculator.getAlgorithmIdentifier();
+            DigestType digestType = DigestType.resolveOid(digestAlgorithm.getAlgorithm().getId());
+
+            // Digests without parameters, such as SHA-256, are computed from the memory mapped file. The
+            // calculator's digest of no content tells whether the JCA digest produces the same output.
+            if (digestType != null && (digestAlgorithm.getParameters() == null
+                    || DERNull.INSTANCE.equals(digestAlgorithm.getParameters()))) {
+                MessageDigest messageDigester = DigestUtil.getMessageDigester(digestType);
+                if (messageDigester.getDigestLength() == digestCalculatorProvider.get(digestAlgorithm)
+                                                                                 .getDigest().length) {
+                    return DigestUtil.getMessageDigests(file, digestType).get(digestType);
+                }
+            }
+
+            // Otherwise, such as for SHAKE256 with Ed448, stream the file through the calculator
+            try (OutputStream os = digestCalculator.getOutputStream()) {
+                Files.copy(file.toPath(), os);
+            }
+            return digestCalculator.getDigest();
+        }
     }
 }
@@ -21,6 +21,7 @@ package org.kse.crypto.signing;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Collection;
@@ -37,6 +38,7 @@ import org.bouncycastle.cms.SignerInformation;
 import org.bouncycastle.util.Store;
 import org.kse.crypto.CryptoException;
 import org.kse.utilities.pem.PemInfo;
+import org.kse.utilities.pem.PemOutputStream;
 import org.kse.utilities.pem.PemUtil;
 
 /**
@@ -141,6 +143,19 @@ public class CmsUtil {
         }
     }
 
+    /**
+     * Wraps an output stream so that a signature written to it is PEM encoded as it is written.
+     * The PEM footer is written when the returned stream is closed.
+     *
+     * @param os The stream to write the PEM encoded signature to.
+     * @return The stream to write the DER encoded signature to.
+     * @throws IOException If the PEM header cannot be written.
+     */
+    public static OutputStream getPemOutputStream(OutputStream os) throws IOException {
+        // Same PKCS7 PEM header as getPem
+        return new PemOutputStream(os, PKCS7_PEM_TYPE);
+    }
+
     /**
      * Converts a collection of SignerInformation objects into a collection of KseSignerInformation objects.
      *
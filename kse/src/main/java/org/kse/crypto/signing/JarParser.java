@@ -21,16 +21,12 @@ package org.kse.crypto.signing;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.security.CodeSigner;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
 import java.util.Arrays;
-import java.util.Enumeration;
-import java.util.HashSet;
 import java.util.Set;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Helper class for parsing and extracting meta data from jar files
@@ -50,40 +46,26 @@ public class JarParser {
      * @throws IOException if an I/O error has occurred
      */
     public X509Certificate[] getSignerCertificates() throws IOException {
-        try (JarFile jf = new JarFile(jarFile, true)) {
-            Set<Certificate> allSignerCerts = new HashSet<>();
-            Enumeration<JarEntry> entries = jf.entries();
+        Set<Certificate> allSignerCerts = ConcurrentHashMap.newKeySet();
 
-            while (entries.hasMoreElements()) {
-                JarEntry entry = entries.nextElement();
-                // reading entry completely is required for calling getCodeSigners()/getCertificates()
-                readEntry(jf, entry);
-
-                if (entry.isDirectory()) {
-                    continue;
-                }
-                CodeSigner[] codeSigners = entry.getCodeSigners();
-                if (codeSigners != null) {
-                    for (CodeSigner cs : entry.getCodeSigners()) {
-                        allSignerCerts.addAll(cs.getSignerCertPath().getCertificates());
-                    }
-                }
-
-                Certificate[] certificates = entry.getCertificates();
-                if (certificates != null) {
-                    allSignerCerts.addAll(Arrays.asList(certificates));
+        // entries are verified concurrently, which populates their code signers and certificates
+        new JarVerifier(jarFile).verifyEntries((entry, verificationTime) -> {
+            if (entry.isDirectory()) {
+                return;
+            }
+            CodeSigner[] codeSigners = entry.getCodeSigners();
+            if (codeSigners != null) {
+                for (CodeSigner cs : codeSigners) {
+                    allSignerCerts.addAll(cs.getSignerCertPath().getCertificates());
                 }
             }
 
-            return allSignerCerts.stream().map(X509Certificate.class::cast).toArray(X509Certificate[]::new);
-        }
-    }
-
-    private static void readEntry(JarFile jf, JarEntry je) throws IOException {
-        try (InputStream is = jf.getInputStream(je)) {
-            byte[] buffer = new byte[8192];
-            while ((is.read(buffer, 0, buffer.length)) != -1) {
+            Certificate[] certificates = entry.getCertificates();
+            if (certificates != null) {
+                allSignerCerts.addAll(Arrays.asList(certificates));
             }
-        }
+        });
+
+        return allSignerCerts.stream().map(X509Certificate.class::cast).toArray(X509Certificate[]::new);
     }
 }
@@ -22,6 +22,7 @@ package org.kse.crypto.signing;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.LineNumberReader;
 import java.io.StringReader;
 import java.net.URISyntaxException;
@@ -33,42 +34,41 @@ import java.security.cert.X509Certificate;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
+import java.util.zip.ZipFile;
 
 import org.bouncycastle.asn1.ASN1EncodableVector;
 import org.bouncycastle.asn1.ASN1Primitive;
 import org.bouncycastle.asn1.DERSet;
 import org.bouncycastle.asn1.cms.Attribute;
 import org.bouncycastle.asn1.cms.AttributeTable;
-import org.bouncycastle.asn1.cms.CMSAttributes;
 import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
-import org.bouncycastle.cert.jcajce.JcaCertStore;
-import org.bouncycastle.cms.CMSAttributeTableGenerator;
-import org.bouncycastle.cms.CMSProcessableByteArray;
 import org.bouncycastle.cms.CMSSignedData;
-import org.bouncycastle.cms.CMSSignedDataGenerator;
-import org.bouncycastle.cms.DefaultSignedAttributeTableGenerator;
-import org.bouncycastle.cms.SignerInfoGenerator;
 import org.bouncycastle.cms.SignerInformation;
 import org.bouncycastle.cms.SignerInformationStore;
-import org.bouncycastle.cms.jcajce.JcaSignerInfoGeneratorBuilder;
-import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
-import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
 import org.bouncycastle.util.encoders.Base64;
-import org.kse.KSE;
 import org.kse.crypto.CryptoException;
 import org.kse.crypto.digest.DigestType;
 import org.kse.crypto.digest.DigestUtil;
-import org.kse.utilities.rng.RNG;
 
 /**
  * Class provides functionality to sign JAR files.
@@ -125,6 +125,14 @@ public class JarSigner {
     // Meta inf file location
     private static final String METAINF_FILE_LOC = "META-INF/{0}.{1}";
 
+    // Reads and digests JAR entries, with a few threads as the entries are read from disk
+    private static final ExecutorService DIGEST_EXECUTOR = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors())), runnable -> {
+                Thread thread = new Thread(runnable, "kse-jar-digest");
+                thread.setDaemon(true);
+                return thread;
+            });
+
     private JarSigner() {
     }
 
@@ -146,11 +154,28 @@ public class JarSigner {
     public static void sign(File jarFile, PrivateKey privateKey, X509Certificate[] certificateChain,
                             SignatureType signatureType, String signatureName, String signer, DigestType digestType,
                             String tsaUrl, Provider provider) throws IOException, CryptoException {
+        sign(jarFile, new SignatureBlockGenerator(privateKey, certificateChain, signatureType, provider),
+             signatureName, signer, digestType, tsaUrl);
+    }
+
+    /**
+     * Sign a JAR file overwriting it with the signed JAR.
+     *
+     * @param jarFile                 JAR file to sign
+     * @param signatureBlockGenerator Prepared signature block creation for the key to sign with
+     * @param signatureName           Signature name
+     * @param signer                  Signer
+     * @param digestType              Digest type
+     * @param tsaUrl                  TSA URL
+     * @throws IOException     If an I/O problem occurs while signing the JAR file
+     * @throws CryptoException If a crypto problem occurs while signing the JAR file
+     */
+    public static void sign(File jarFile, SignatureBlockGenerator signatureBlockGenerator, String signatureName,
+                            String signer, DigestType digestType, String tsaUrl) throws IOException, CryptoException {
         File tmpFile = File.createTempFile("kse", "tmp");
         tmpFile.deleteOnExit();
 
-        sign(jarFile, tmpFile, privateKey, certificateChain, signatureType, signatureName, signer, digestType, tsaUrl,
-             provider);
+        sign(jarFile, tmpFile, signatureBlockGenerator, signatureName, signer, digestType, tsaUrl);
 
         Files.copy(tmpFile.toPath(), jarFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
 
@@ -176,22 +201,59 @@ public class JarSigner {
     public static void sign(File jarFile, File signedJarFile, PrivateKey privateKey, X509Certificate[] certificateChain,
                             SignatureType signatureType, String signatureName, String signer, DigestType digestType,
                             String tsaUrl, Provider provider) throws IOException, CryptoException {
+        sign(jarFile, signedJarFile, new SignatureBlockGenerator(privateKey, certificateChain, signatureType, provider),
+             signatureName, signer, digestType, tsaUrl);
+    }
+
+    /**
+     * Sign a JAR file outputting the signed JAR to a different file. The signature block generator
+     * can be shared by several JARs being signed with the same key, also concurrently.
+     *
+     * @param jarFile                 JAR file to sign
+     * @param signedJarFile           Output file for signed JAR
+     * @param signatureBlockGenerator Prepared signature block creation for the key to sign with
+     * @param signatureName           Signature name
+     * @param signer                  Signer
+     * @param digestType              Digest type
+     * @param tsaUrl                  TSA URL
+     * @throws IOException     If an I/O problem occurs while signing the JAR file
+     * @throws CryptoException If a crypto problem occurs while signing the JAR file
+     */
+    public static void sign(File jarFile, File signedJarFile, SignatureBlockGenerator signatureBlockGenerator,
+                            String signatureName, String signer, DigestType digestType, String tsaUrl)
+            throws IOException, CryptoException {
+        sign(jarFile, signedJarFile, signatureBlockGenerator, signatureName, signer, digestType, tsaUrl,
+             DIGEST_EXECUTOR);
+    }
+
+    /*
+     * Sign a JAR file outputting the signed JAR to a different file, digesting the JAR entries on
+     * the supplied executor
+     */
+    static void sign(File jarFile, File signedJarFile, SignatureBlockGenerator signatureBlockGenerator,
+                     String signatureName, String signer, DigestType digestType, String tsaUrl,
+                     Executor digestExecutor) throws IOException, CryptoException {
+
+        SignatureType signatureType = signatureBlockGenerator.getSignatureType();
 
-        try (JarFile jar = new JarFile(jarFile);
-             JarOutputStream jos = new JarOutputStream(Files.newOutputStream(signedJarFile.toPath()))) {
+        try (JarFile jar = new JarFile(jarFile)) {
 
             // Replace illegal characters in signature name
             signatureName = convertSignatureName(signatureName);
 
+            // Read the current manifest's sections once rather than once per entry
+            Manifest currentManifest = jar.getManifest();
+            ManifestSections manifestSections = currentManifest != null ? readManifestSections(jar) : null;
+
             // Write manifest content to here
             StringBuilder sbManifest = new StringBuilder();
 
             // Write out main attributes to manifest
-            String manifestMainAttrs = getManifestMainAttrs(jar, signer);
+            String manifestMainAttrs = getManifestMainAttrs(manifestSections, signer);
             sbManifest.append(manifestMainAttrs);
 
             // Write out all entries' attributes to manifest
-            String entryManifestAttrs = getManifestEntriesAttrs(jar);
+            String entryManifestAttrs = getManifestEntriesAttrs(currentManifest, manifestSections);
 
             if (!entryManifestAttrs.isEmpty()) {
                 // Only output if there are any
@@ -205,33 +267,41 @@ public class JarSigner {
             // Write out digests to manifest and signature file
 
             // Sign each JAR entry...
+            List<JarEntry> jarEntriesToSign = new ArrayList<>();
+
             for (Enumeration<JarEntry> jarEntries = jar.entries(); jarEntries.hasMoreElements(); ) {
                 JarEntry jarEntry = jarEntries.nextElement();
 
                 if (!jarEntry.isDirectory()) { // Ignore directories
 
                     if (!ignoreJarEntry(jarEntry)) { // Ignore some entries (existing signature files)
-                        // Get the digest of the entry as manifest attributes
-                        String manifestEntry = getDigestManifestAttrs(jar, jarEntry, digestType);
-
-                        // Add it to the manifest string buffer
-                        sbManifest.append(manifestEntry);
-
-                        // Get the digest of manifest entries created above
-                        byte[] mdSf = DigestUtil.getMessageDigest(manifestEntry.getBytes(), digestType);
-                        String mdSf64Str = Base64.toBase64String(mdSf);
-
-                        // Write this digest as entries in signature file
-                        sbSf.append(createAttributeText(NAME_ATTR, jarEntry.getName()));
-                        sbSf.append(CRLF);
-                        sbSf.append(
-                                createAttributeText(MessageFormat.format(DIGEST_ATTR, digestType.jce()), mdSf64Str));
-                        sbSf.append(CRLF);
-                        sbSf.append(CRLF);
+                        jarEntriesToSign.add(jarEntry);
                     }
                 }
             }
 
+            // Get the digests of the entries as manifest attributes, in entry order
+            List<String> manifestEntries = getDigestManifestAttrs(jarFile, jarEntriesToSign, digestType,
+                                                                  digestExecutor);
+
+            for (int i = 0; i < jarEntriesToSign.size(); i++) {
+                String manifestEntry = manifestEntries.get(i);
+
+                // Add it to the manifest string buffer
+                sbManifest.append(manifestEntry);
+
+                // Get the digest of manifest entries created above
+                byte[] mdSf = DigestUtil.getMessageDigest(manifestEntry.getBytes(), digestType);
+                String mdSf64Str = Base64.toBase64String(mdSf);
+
+                // Write this digest as entries in signature file
+                sbSf.append(createAttributeText(NAME_ATTR, jarEntriesToSign.get(i).getName()));
+                sbSf.append(CRLF);
+                sbSf.append(createAttributeText(MessageFormat.format(DIGEST_ATTR, digestType.jce()), mdSf64Str));
+                sbSf.append(CRLF);
+                sbSf.append(CRLF);
+            }
+
             // Manifest file complete - get base 64 encoded digest of its content for inclusion in signature file
             byte[] manifest = sbManifest.toString().getBytes();
 
@@ -244,35 +314,52 @@ public class JarSigner {
             byte[] digestMfMainAttrs = DigestUtil.getMessageDigest(manifestMainAttrsBytes, digestType);
             String digestMfMainAttrsStr = Base64.toBase64String(digestMfMainAttrs);
 
-            // Write out Manifest Digest, Created By and Signature Version to start of signature file
-            sbSf.insert(0, CRLF);
-            sbSf.insert(0, CRLF);
-            sbSf.insert(0, createAttributeText(
+            // Write out Signature Version, Created By and Manifest Digest to start of signature file
+            StringBuilder sbSfHeader = new StringBuilder();
+            sbSfHeader.append(createAttributeText(SIGNATURE_VERSION_ATTR, SIGNATURE_VERSION));
+            sbSfHeader.append(CRLF);
+            sbSfHeader.append(createAttributeText(CREATED_BY_ATTR, signer));
+            sbSfHeader.append(CRLF);
+            sbSfHeader.append(
+                    createAttributeText(MessageFormat.format(DIGEST_MANIFEST_ATTR, digestType.jce()), digestMfStr));
+            sbSfHeader.append(CRLF);
+            sbSfHeader.append(createAttributeText(
                     MessageFormat.format(DIGEST_MANIFEST_MAIN_ATTRIBUTES_ATTR, digestType.jce()),
                     digestMfMainAttrsStr));
-            sbSf.insert(0, CRLF);
-            sbSf.insert(0,
-                    createAttributeText(MessageFormat.format(DIGEST_MANIFEST_ATTR, digestType.jce()), digestMfStr));
-            sbSf.insert(0, CRLF);
-            sbSf.insert(0, createAttributeText(CREATED_BY_ATTR, signer));
-            sbSf.insert(0, CRLF);
-            sbSf.insert(0, createAttributeText(SIGNATURE_VERSION_ATTR, SIGNATURE_VERSION));
+            sbSfHeader.append(CRLF);
+            sbSfHeader.append(CRLF);
 
             // Signature file complete
-            byte[] sf = sbSf.toString().getBytes();
+            byte[] sf = sbSfHeader.append(sbSf).toString().getBytes();
+
+            // Create signature block
+            byte[] sigBlock = createSignatureBlock(sf, signatureBlockGenerator, tsaUrl);
+
+            // Manifest, signature file and signature block go first in the signed JAR
+            Map<String, byte[]> signatureEntries = new LinkedHashMap<>();
+            signatureEntries.put(JarFile.MANIFEST_NAME, manifest);
+            signatureEntries.put(getSignatureFileName(signatureName), sf);
+            signatureEntries.put(getSignatureBlockName(signatureType, signatureName), sigBlock);
+
+            // Copy the other entries without recompressing them where the JAR allows it
+            if (RawJarWriter.write(jarFile, signedJarFile, signatureEntries, getReplacedEntryNames(signatureName))) {
+                return;
+            }
+
+            try (JarOutputStream jos = new JarOutputStream(Files.newOutputStream(signedJarFile.toPath()))) {
 
-            // Write manifest to signed JAR
-            writeManifest(manifest, jos);
+                // Write manifest to signed JAR
+                writeManifest(manifest, jos);
 
-            // Write signature file to signed JAR
-            writeSignatureFile(sf, signatureName, jos);
+                // Write signature file to signed JAR
+                writeSignatureFile(sf, signatureName, jos);
 
-            // Create signature block and write it out to signed JAR
-            byte[] sigBlock = createSignatureBlock(sf, privateKey, certificateChain, signatureType, tsaUrl, provider);
-            writeSignatureBlock(sigBlock, signatureType, signatureName, jos);
+                // Write signature block out to signed JAR
+                writeSignatureBlock(sigBlock, signatureType, signatureName, jos);
 
-            // Write JAR files from JAR to be signed to signed JAR
-            writeJarEntries(jar, jos, signatureName);
+                // Write JAR files from JAR to be signed to signed JAR
+                writeJarEntries(jar, jos, signatureName);
+            }
         }
     }
 
@@ -333,16 +420,13 @@ public class JarSigner {
      * manifest verbatim. If there is no manifest in JAR it returns a string
      * with those two attributes
      */
-    private static String getManifestMainAttrs(JarFile jar, String signer) throws IOException {
+    private static String getManifestMainAttrs(ManifestSections manifestSections, String signer) {
 
         StringBuilder sbManifest = new StringBuilder();
 
-        // Get current manifest
-        Manifest manifest = jar.getManifest();
-
         // Write out main attributes to manifest
 
-        if (manifest == null) {
+        if (manifestSections == null) {
             // No current manifest - write out main attributes
             // ("Manifest Version" and "Created By")
             sbManifest.append(createAttributeText(MANIFEST_VERSION_ATTR, MANIFEST_VERSION));
@@ -353,11 +437,8 @@ public class JarSigner {
 
             sbManifest.append(CRLF);
         } else {
-            // Get main attributes as a string to preserve their order
-            String manifestMainAttrs = getManifestMainAttrs(jar);
-
-            // Write them out
-            sbManifest.append(manifestMainAttrs);
+            // Write out main attributes as a string to preserve their order
+            sbManifest.append(manifestSections.mainAttrs);
             sbManifest.append(CRLF);
         }
 
@@ -367,13 +448,10 @@ public class JarSigner {
     /*
      *  Get all entries' attributes of JAR manifest as a string
      */
-    private static String getManifestEntriesAttrs(JarFile jar) throws IOException {
+    private static String getManifestEntriesAttrs(Manifest manifest, ManifestSections manifestSections) {
 
         StringBuilder sbManifest = new StringBuilder();
 
-        // Get current manifest
-        Manifest manifest = jar.getManifest();
-
         // Write out entry attributes to manifest
         if (manifest != null) {
             // Get entry attributes
@@ -398,7 +476,7 @@ public class JarSigner {
                 }
 
                 // Get entry attributes as a string to preserve their order
-                String manifestEntryAttributes = getManifestEntryAttrs(jar, entryName);
+                String manifestEntryAttributes = manifestSections.getEntryAttrs(entryName);
 
                 // Write them out
                 sbManifest.append(manifestEntryAttributes);
@@ -411,18 +489,95 @@ public class JarSigner {
         return sbManifest.toString();
     }
 
+    /*
+     *  Get the digests of the supplied JAR entries as manifest attributes. The entries
+     *  are read and digested concurrently on the supplied executor through a separate,
+     *  non-verifying handle to the JAR, while the results keep entry order.
+     */
+    private static List<String> getDigestManifestAttrs(File jarFile, List<JarEntry> jarEntries,
+                                                       DigestType digestType, Executor executor)
+            throws IOException, CryptoException {
+
+        try (ZipFile zip = new ZipFile(jarFile)) {
+
+            // Set once the results are no longer needed, so that queued entries are not read
+            AtomicBoolean done = new AtomicBoolean();
+
+            List<FutureTask<String>> tasks = new ArrayList<>(jarEntries.size());
+
+            try {
+                for (JarEntry jarEntry : jarEntries) {
+                    FutureTask<String> task = new FutureTask<>(
+                            () -> done.get() ? null : getDigestManifestAttrs(zip, jarEntry, digestType));
+                    executor.execute(task);
+                    tasks.add(task);
+                }
+
+                List<String> manifestEntries = new ArrayList<>(jarEntries.size());
+
+                for (FutureTask<String> task : tasks) {
+                    manifestEntries.add(task.get());
+                }
+
+                return manifestEntries;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                } else if (cause instanceof CryptoException) {
+                    throw (CryptoException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IOException(cause);
+            } finally {
+                // Do not close the JAR while tasks may still be reading from it
+                done.set(true);
+                awaitTasks(tasks);
+            }
+        }
+    }
+
+    /*
+     *  Wait for the supplied tasks to finish, whatever their outcome, keeping
+     *  the interrupt status for the caller
+     */
+    private static void awaitTasks(List<FutureTask<String>> tasks) {
+
+        boolean interrupted = Thread.interrupted();
+
+        for (FutureTask<String> task : tasks) {
+            while (!task.isDone()) {
+                try {
+                    task.get();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                } catch (ExecutionException | CancellationException ex) {
+                    // Already reported for the first failed task
+                }
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     /*
      *  Get the digest of the supplied JAR entry as manifest attributes
      *  "Name" and "<digestType> Digest"
      */
-    private static String getDigestManifestAttrs(JarFile jar, JarEntry jarEntry, DigestType digestType)
+    private static String getDigestManifestAttrs(ZipFile jar, JarEntry jarEntry, DigestType digestType)
             throws IOException, CryptoException {
 
         // Get input stream to JAR entry's content
         try (InputStream jis = jar.getInputStream(jarEntry)) {
 
-            // Get the digest of content in Base64
-            byte[] md = DigestUtil.getMessageDigest(jis, digestType);
+            // Get the digest of content in Base64, reading the entry once through the shared digest engine
+            byte[] md = DigestUtil.getMessageDigests(jis, digestType).get(digestType);
             String md64Str = Base64.toBase64String(md);
 
             // Write manifest entries for JARs digest
@@ -449,9 +604,10 @@ public class JarSigner {
     }
 
     /*
-     *  Get JAR file manifest's main attributes manifest as a string
+     *  Split JAR file's manifest into its main attributes and the attributes of each entry
+     *  in a single pass, keeping the original text of each section to preserve attribute order
      */
-    private static String getManifestMainAttrs(JarFile jar) throws IOException {
+    private static ManifestSections readManifestSections(JarFile jar) throws IOException {
 
         // Get full manifest content
         String manifestContent = getManifest(jar);
@@ -459,39 +615,55 @@ public class JarSigner {
         try (StringReader stringReader = new StringReader(manifestContent);
              LineNumberReader lnr = new LineNumberReader(stringReader)) {
 
+            ManifestSections manifestSections = new ManifestSections();
+
             StringBuilder sb = new StringBuilder();
+            String firstLine = null;
             String line = null;
 
-            // Keep reading until a blank line is found - the end of the main
-            // attributes
-            while ((line = lnr.readLine()) != null) {
-                if (line.trim().isEmpty()) {
-                    break;
+            do {
+                line = lnr.readLine();
+
+                // A blank line or the end of the manifest completes a section
+                if (line == null || line.trim().isEmpty()) {
+                    if (manifestSections.mainAttrs == null) {
+                        manifestSections.mainAttrs = sb.toString();
+                    } else if (firstLine != null) {
+                        // Sections are found by their first line, the first one wins
+                        manifestSections.entryAttrs.putIfAbsent(firstLine, sb.toString());
+                    }
+
+                    sb.setLength(0);
+                    firstLine = null;
+                    continue;
+                }
+
+                if (firstLine == null) {
+                    firstLine = line;
                 }
 
                 // Append attribute line
                 sb.append(line);
                 sb.append(CRLF);
-            }
+            } while (line != null);
 
-            return sb.toString();
+            return manifestSections;
         }
     }
 
     /*
-     *  Get JAR file manifest's attributes for a specified entry as a string
+     *  Text of a JAR file manifest's main attributes and of its entries' attributes
      */
-    private static String getManifestEntryAttrs(JarFile jar, String entryName) throws IOException {
-
-        // Get full manifest content
-        String manifestContent = getManifest(jar);
+    private static class ManifestSections {
+        private String mainAttrs;
+        private final Map<String, String> entryAttrs = new HashMap<>();
 
-        try (StringReader in = new StringReader(manifestContent); LineNumberReader lnr = new LineNumberReader(in)) {
+        /*
+         *  Get the attributes for a specified entry as a string, empty if there are none
+         */
+        private String getEntryAttrs(String entryName) {
 
-            StringBuilder sb = new StringBuilder();
-            String line = null;
-
-            // First entry name attribute to match
+            // Entry name attribute to match
             String entryNameAttr = createAttributeText(NAME_ATTR, entryName);
 
             // Only match on first 72 characters (max line length)
@@ -499,29 +671,7 @@ public class JarSigner {
                 entryNameAttr = entryNameAttr.substring(0, MAX_LINE_LENGTH);
             }
 
-            // Keep reading and ignoring lines until entry is found - the end of the entry's attributes
-            while ((line = lnr.readLine()) != null) {
-                if (line.equals(entryNameAttr)) {
-                    // Found entry name attribute - append it
-                    sb.append(line);
-                    sb.append(CRLF);
-                    break;
-                }
-            }
-
-            // Keep reading until a blank line is found - the end of the entry's
-            // attributes
-            while ((line = lnr.readLine()) != null) {
-                if (line.trim().isEmpty()) {
-                    break;
-                }
-
-                // Append another entry attribute line
-                sb.append(line);
-                sb.append(CRLF);
-            }
-
-            return sb.toString();
+            return entryAttrs.getOrDefault(entryNameAttr, "");
         }
     }
 
@@ -530,25 +680,13 @@ public class JarSigner {
      * manifest and existing signature files for the supplied signature name
      */
     private static void writeJarEntries(JarFile jar, JarOutputStream jos, String signatureName) throws IOException {
-        signatureName = signatureName.toUpperCase();
+        Set<String> replacedEntryNames = getReplacedEntryNames(signatureName);
 
         for (Enumeration<JarEntry> jarEntries = jar.entries(); jarEntries.hasMoreElements(); ) {
             JarEntry jarEntry = jarEntries.nextElement();
             if (!jarEntry.isDirectory()) {
-                String entryName = jarEntry.getName();
-
-                // Signature files not to write across
-                String sigFileLocation = MessageFormat.format(METAINF_FILE_LOC, signatureName, SIGNATURE_EXT);
-                String dsaSigBlockLocation = MessageFormat.format(METAINF_FILE_LOC, signatureName, DSA_SIG_BLOCK_EXT);
-                String rsaSigBlockLocation = MessageFormat.format(METAINF_FILE_LOC, signatureName, RSA_SIG_BLOCK_EXT);
-                String ecSigBlockLocation = MessageFormat.format(METAINF_FILE_LOC, signatureName, EC_SIG_BLOCK_EXT);
-
                 // Do not write across existing manifest or matching signature files
-                if ((!entryName.equals(JarFile.MANIFEST_NAME)) &&
-                    (!entryName.equals(sigFileLocation)) &&
-                    (!entryName.equals(dsaSigBlockLocation)) &&
-                    (!entryName.equals(ecSigBlockLocation)) &&
-                    (!entryName.equals(rsaSigBlockLocation))) {
+                if (!replacedEntryNames.contains(jarEntry.getName())) {
                     // New JAR entry based on original
                     transferJarEntry(jar, jos, jarEntry);
                 }
@@ -559,6 +697,22 @@ public class JarSigner {
         }
     }
 
+    /*
+     * Names of the entries replaced by signing: the manifest and existing
+     * signature files for the supplied signature name
+     */
+    private static Set<String> getReplacedEntryNames(String signatureName) {
+        signatureName = signatureName.toUpperCase();
+
+        Set<String> names = new HashSet<>();
+        names.add(JarFile.MANIFEST_NAME);
+        names.add(MessageFormat.format(METAINF_FILE_LOC, signatureName, SIGNATURE_EXT));
+        names.add(MessageFormat.format(METAINF_FILE_LOC, signatureName, DSA_SIG_BLOCK_EXT));
+        names.add(MessageFormat.format(METAINF_FILE_LOC, signatureName, RSA_SIG_BLOCK_EXT));
+        names.add(MessageFormat.format(METAINF_FILE_LOC, signatureName, EC_SIG_BLOCK_EXT));
+        return names;
+    }
+
     private static void transferJarEntry(JarFile jar, JarOutputStream jos, JarEntry jarEntry) throws IOException {
         JarEntry newJarEntry = new JarEntry(jarEntry.getName());
         newJarEntry.setMethod(jarEntry.getMethod());
@@ -596,8 +750,7 @@ public class JarSigner {
     private static void writeSignatureFile(byte[] sf, String signatureName, JarOutputStream jos) throws IOException {
 
         // Signature file entry
-        JarEntry sfJarEntry = new JarEntry(
-                MessageFormat.format(METAINF_FILE_LOC, signatureName, SIGNATURE_EXT).toUpperCase());
+        JarEntry sfJarEntry = new JarEntry(getSignatureFileName(signatureName));
         jos.putNextEntry(sfJarEntry);
 
         jos.write(sf);
@@ -610,6 +763,26 @@ public class JarSigner {
     private static void writeSignatureBlock(byte[] sigBlock, SignatureType signatureType, String signatureName,
                                             JarOutputStream jos) throws IOException {
 
+        // Signature block entry
+        JarEntry bkJarEntry = new JarEntry(getSignatureBlockName(signatureType, signatureName));
+        jos.putNextEntry(bkJarEntry);
+
+        jos.write(sigBlock);
+        jos.closeEntry();
+    }
+
+    /*
+     *  Get the entry name of the signature file
+     */
+    private static String getSignatureFileName(String signatureName) {
+        return MessageFormat.format(METAINF_FILE_LOC, signatureName, SIGNATURE_EXT).toUpperCase();
+    }
+
+    /*
+     *  Get the entry name of the signature block
+     */
+    private static String getSignatureBlockName(SignatureType signatureType, String signatureName) {
+
         // Block's extension depends on signature type
         String extension = null;
 
@@ -627,13 +800,7 @@ public class JarSigner {
             extension = DSA_SIG_BLOCK_EXT;
         }
 
-        // Signature block entry
-        JarEntry bkJarEntry = new JarEntry(
-                MessageFormat.format(METAINF_FILE_LOC, signatureName, extension).toUpperCase());
-        jos.putNextEntry(bkJarEntry);
-
-        jos.write(sigBlock);
-        jos.closeEntry();
+        return MessageFormat.format(METAINF_FILE_LOC, signatureName, extension).toUpperCase();
     }
 
     /*
@@ -672,43 +839,12 @@ public class JarSigner {
         return sb.toString();
     }
 
-    private static byte[] createSignatureBlock(byte[] toSign, PrivateKey privateKey, X509Certificate[] certificateChain,
-                                               SignatureType signatureType, String tsaUrl, Provider provider)
-            throws CryptoException {
+    private static byte[] createSignatureBlock(byte[] toSign, SignatureBlockGenerator signatureBlockGenerator,
+                                               String tsaUrl) throws CryptoException {
 
-        try {
-            List<X509Certificate> certList = new ArrayList<>();
-
-            Collections.addAll(certList, certificateChain);
-
-            JcaDigestCalculatorProviderBuilder digCalcProv = new JcaDigestCalculatorProviderBuilder();
-            JcaContentSignerBuilder csb = new JcaContentSignerBuilder(signatureType.jce())
-                    .setSecureRandom(RNG.newInstanceForLongLivedSecrets());
-            if (provider == null) {
-                provider = KSE.BC;
-            }
-            digCalcProv.setProvider(provider);
-            csb.setProvider(provider);
-
-            JcaSignerInfoGeneratorBuilder siGeneratorBuilder = new JcaSignerInfoGeneratorBuilder(digCalcProv.build());
-
-            // remove cmsAlgorithmProtect for compatibility reasons
-            SignerInfoGenerator sigGen = siGeneratorBuilder.build(csb.build(privateKey), certificateChain[0]);
-            final CMSAttributeTableGenerator sAttrGen = sigGen.getSignedAttributeTableGenerator();
-            sigGen = new SignerInfoGenerator(sigGen, new DefaultSignedAttributeTableGenerator() {
-                @Override
-                public AttributeTable getAttributes(@SuppressWarnings("rawtypes") Map parameters) {
-                    AttributeTable ret = sAttrGen.getAttributes(parameters);
-                    return ret.remove(CMSAttributes.cmsAlgorithmProtect);
-                }
-            }, sigGen.getUnsignedAttributeTableGenerator());
-
-            CMSSignedDataGenerator dataGen = new CMSSignedDataGenerator();
-            dataGen.addSignerInfoGenerator(sigGen);
-            dataGen.addCertificates(new JcaCertStore(certList));
-
-            CMSSignedData signedData = dataGen.generate(new CMSProcessableByteArray(toSign), true);
+        CMSSignedData signedData = signatureBlockGenerator.generate(toSign);
 
+        try {
             // now let TSA time-stamp the signature
             if (tsaUrl != null && !tsaUrl.isEmpty()) {
                 signedData = addTimestamp(tsaUrl, signedData);
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.signing;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ObjLongConsumer;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.bouncycastle.cms.CMSException;
+import org.bouncycastle.cms.CMSProcessableByteArray;
+import org.bouncycastle.cms.CMSSignedData;
+import org.kse.crypto.CryptoException;
+
+/**
+ * Verifies the entries of a signed JAR file concurrently.
+ * <p>
+ * The JDK only verifies an entry's digest, and makes its code signers available, once the entry
+ * has been read completely through a verifying {@link JarFile}. A verifying JarFile cannot be
+ * read from several threads, so each worker reads its share of the entries through its own
+ * verifying JarFile. The signature blocks are verified once per worker, when it opens its first
+ * entry.
+ */
+public class JarVerifier {
+    private static ResourceBundle res = ResourceBundle.getBundle("org/kse/crypto/signing/resources");
+
+    // Workers are only worth their own JarFile for a reasonable number of entries
+    private static final int MIN_ENTRIES_PER_WORKER = 32;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File jarFile;
+
+    /**
+     * Construct a verifier for a JAR file.
+     *
+     * @param jarFile JAR file to verify
+     */
+    public JarVerifier(File jarFile) {
+        this.jarFile = jarFile;
+    }
+
+    /**
+     * Read the signature blocks of the JAR file. Detached signature blocks are combined with
+     * their signature file.
+     *
+     * @return Signature blocks keyed by entry name, in JAR order
+     * @throws IOException     If an I/O problem occurs
+     * @throws CryptoException If a signature block cannot be parsed
+     */
+    public Map<String, CMSSignedData> getSignatureBlocks() throws IOException, CryptoException {
+        Map<String, byte[]> signatureFiles = new HashMap<>();
+        Map<String, byte[]> signatureBlocks = new LinkedHashMap<>();
+
+        try (JarFile jar = new JarFile(jarFile, false)) {
+            for (Enumeration<JarEntry> jarEntries = jar.entries(); jarEntries.hasMoreElements(); ) {
+                JarEntry entry = jarEntries.nextElement();
+                String uname = entry.getName().toUpperCase(Locale.ENGLISH);
+
+                if (isSignatureBlock(uname)) {
+                    signatureBlocks.put(entry.getName(), readEntry(jar, entry));
+                } else if (uname.startsWith("META-INF/") && uname.endsWith("." + JarSigner.SIGNATURE_EXT)) {
+                    signatureFiles.put(uname, readEntry(jar, entry));
+                }
+            }
+        }
+
+        Map<String, CMSSignedData> signedData = new LinkedHashMap<>();
+
+        for (Map.Entry<String, byte[]> signatureBlock : signatureBlocks.entrySet()) {
+            String name = signatureBlock.getKey();
+            try {
+                CMSSignedData signature = new CMSSignedData(signatureBlock.getValue());
+                if (signature.isDetachedSignature()) {
+                    String uname = name.toUpperCase(Locale.ENGLISH);
+                    byte[] sfFile = signatureFiles.get(
+                            uname.substring(0, uname.lastIndexOf('.') + 1) + JarSigner.SIGNATURE_EXT);
+                    if (sfFile != null) {
+                        signature = new CMSSignedData(new CMSProcessableByteArray(sfFile),
+                                                      signatureBlock.getValue());
+                    }
+                }
+                signedData.put(name, signature);
+            } catch (CMSException ex) {
+                throw new CryptoException(
+                        MessageFormat.format(res.getString("NoReadJarSignatureBlock.exception.message"), name), ex);
+            }
+        }
+
+        return signedData;
+    }
+
+    /**
+     * Read and verify all entries of the JAR file concurrently. Each entry is passed to the
+     * consumer once it has been verified, together with the time taken to read and verify it
+     * in nanoseconds. The consumer is called from the worker threads, in no particular order,
+     * while the JarFile the entry belongs to is still open.
+     *
+     * @param consumer Receives the verified entries
+     * @throws IOException       If an I/O problem occurs
+     * @throws SecurityException If an entry fails verification
+     */
+    public void verifyEntries(ObjLongConsumer<JarEntry> consumer) throws IOException {
+        List<String> entryNames = new ArrayList<>();
+
+        try (JarFile jar = new JarFile(jarFile, false)) {
+            for (JarEntry entry : Collections.list(jar.entries())) {
+                entryNames.add(entry.getName());
+            }
+        }
+
+        int workers = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(),
+                                           entryNames.size() / MIN_ENTRIES_PER_WORKER));
+
+        AtomicInteger next = new AtomicInteger();
+        AtomicBoolean stopped = new AtomicBoolean();
+
+        List<ForkJoinTask<Void>> tasks = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            tasks.add(ForkJoinPool.commonPool().submit(() -> {
+                verifyEntries(entryNames, next, stopped, consumer);
+                return null;
+            }));
+        }
+
+        try {
+            for (ForkJoinTask<Void> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            // Stop the other workers after a failure or interruption
+            stopped.set(true);
+        }
+    }
+
+    private void verifyEntries(List<String> entryNames, AtomicInteger next, AtomicBoolean stopped,
+                               ObjLongConsumer<JarEntry> consumer) throws IOException {
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        try (JarFile jar = new JarFile(jarFile, true)) {
+            int index;
+            while (!stopped.get() && (index = next.getAndIncrement()) < entryNames.size()) {
+                long start = System.nanoTime();
+
+                JarEntry entry = jar.getJarEntry(entryNames.get(index));
+
+                // Reading the entry completely verifies it and populates its code signers
+                try (InputStream is = jar.getInputStream(entry)) {
+                    while (is.read(buffer) != -1) {
+                    }
+                }
+
+                consumer.accept(entry, System.nanoTime() - start);
+            }
+        } catch (IOException | RuntimeException ex) {
+            stopped.set(true);
+            throw ex;
+        }
+    }
+
+    private static byte[] readEntry(JarFile jar, JarEntry entry) throws IOException {
+        try (InputStream is = jar.getInputStream(entry)) {
+            return is.readAllBytes();
+        }
+    }
+
+    /**
+     * Is the supplied JAR entry name the name of a signature block?
+     *
+     * @param entryName Upper case entry name
+     * @return True if it is
+     */
+    public static boolean isSignatureBlock(String entryName) {
+        return entryName.startsWith("META-INF/")
+               && (entryName.endsWith(JarSigner.RSA_SIG_BLOCK_EXT)
+                   || entryName.endsWith(JarSigner.EC_SIG_BLOCK_EXT)
+                   || entryName.endsWith(JarSigner.DSA_SIG_BLOCK_EXT));
+    }
+}
@@ -33,14 +33,25 @@ public class KseJarEntry extends JarEntry {
     public static final char FLAG_CERT = 'k';
 
     private String flags;
+    private long verificationTime;
 
     /**
      * @param je    The JarEntry to adapt.
      * @param flags The verification flags for the JarEntry.
      */
     public KseJarEntry(JarEntry je, String flags) {
+        this(je, flags, 0);
+    }
+
+    /**
+     * @param je               The JarEntry to adapt.
+     * @param flags            The verification flags for the JarEntry.
+     * @param verificationTime The time taken to verify the JarEntry in nanoseconds.
+     */
+    public KseJarEntry(JarEntry je, String flags, long verificationTime) {
         super(je);
         this.flags = flags;
+        this.verificationTime = verificationTime;
     }
 
     /**
@@ -50,4 +61,11 @@ public class KseJarEntry extends JarEntry {
         return flags;
     }
 
+    /**
+     * @return the time taken to verify the entry in nanoseconds
+     */
+    public long getVerificationTime() {
+        return verificationTime;
+    }
+
 }
@@ -0,0 +1,392 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.signing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+/**
+ * Writes a JAR consisting of some new entries followed by the entries of an existing
+ * JAR. The existing entries are copied as raw compressed bytes together with their
+ * CRC, sizes and header fields, so they are neither inflated nor deflated again.
+ * <p>
+ * Only plain ZIP files are supported. For ZIP64 archives, encrypted entries, archives
+ * with leading data and similar cases nothing is written and the caller should fall
+ * back to writing the JAR with a {@link java.util.jar.JarOutputStream}.
+ */
+class RawJarWriter {
+    private static final int LOC_SIG = 0x04034b50;
+    private static final int CEN_SIG = 0x02014b50;
+    private static final int END_SIG = 0x06054b50;
+    private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+
+    private static final int LOC_HEADER_SIZE = 30;
+    private static final int CEN_HEADER_SIZE = 46;
+    private static final int END_HEADER_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    private static final int FLAG_ENCRYPTED = 0x1;
+    private static final int FLAG_DATA_DESCRIPTOR = 0x8;
+    private static final int FLAG_UTF8 = 0x800;
+
+    private static final int VERSION_DEFLATED = 20;
+    private static final int METHOD_DEFLATED = 8;
+
+    // JarOutputStream marks the first entry with the JAR magic extra field
+    private static final byte[] JAR_MAGIC_EXTRA = { (byte) 0xFE, (byte) 0xCA, 0, 0 };
+
+    private static final long MAX_32_BIT = 0xFFFFFFFFL;
+    private static final int MAX_16_BIT = 0xFFFF;
+
+    private RawJarWriter() {
+    }
+
+    /*
+     * An entry of the source JAR as found in its central directory
+     */
+    private static class SourceEntry {
+        private ByteBuffer cen;
+        private String name;
+        private int flags;
+        private long compressedSize;
+        private long dataOffset;
+        private byte[] localHeader;
+    }
+
+    /**
+     * Write the new entries followed by the entries of the source JAR not excluded.
+     *
+     * @param sourceFile JAR to copy the existing entries from
+     * @param targetFile JAR to write
+     * @param newEntries Names and content of the entries to write first, in order
+     * @param excluded   Names of the source entries not to copy
+     * @return False if the source JAR cannot be copied raw, in which case nothing was written
+     * @throws IOException If an I/O problem occurs
+     */
+    static boolean write(File sourceFile, File targetFile, Map<String, byte[]> newEntries, Set<String> excluded)
+            throws IOException {
+
+        try (FileChannel source = FileChannel.open(sourceFile.toPath(), StandardOpenOption.READ)) {
+
+            List<SourceEntry> sourceEntries = readCentralDirectory(source);
+
+            if (sourceEntries == null
+                    || sourceEntries.size() + newEntries.size() > MAX_16_BIT
+                    || source.size() + estimateSize(newEntries) > MAX_32_BIT) {
+                return false;
+            }
+
+            try (FileChannel target = FileChannel.open(targetFile.toPath(), StandardOpenOption.CREATE,
+                                                       StandardOpenOption.TRUNCATE_EXISTING,
+                                                       StandardOpenOption.WRITE)) {
+
+                ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+                int entries = 0;
+
+                int dosTime = dosTime(LocalDateTime.now());
+                boolean first = true;
+
+                for (Map.Entry<String, byte[]> newEntry : newEntries.entrySet()) {
+                    writeNewEntry(target, centralDirectory, newEntry.getKey(), newEntry.getValue(), dosTime,
+                                  first ? JAR_MAGIC_EXTRA : new byte[0]);
+                    first = false;
+                    entries++;
+                }
+
+                for (SourceEntry sourceEntry : sourceEntries) {
+                    if (!excluded.contains(sourceEntry.name)) {
+                        copyEntry(source, target, centralDirectory, sourceEntry);
+                        entries++;
+                    }
+                }
+
+                long centralDirectoryOffset = target.position();
+
+                ByteBuffer end = newBuffer(END_HEADER_SIZE);
+                end.putInt(END_SIG);
+                end.putShort((short) 0);
+                end.putShort((short) 0);
+                end.putShort((short) entries);
+                end.putShort((short) entries);
+                end.putInt(centralDirectory.size());
+                end.putInt((int) centralDirectoryOffset);
+                end.putShort((short) 0);
+
+                writeFully(target, ByteBuffer.wrap(centralDirectory.toByteArray()));
+                writeFully(target, end.flip());
+            }
+        }
+
+        return true;
+    }
+
+    private static List<SourceEntry> readCentralDirectory(FileChannel source) throws IOException {
+        long size = source.size();
+
+        if (size < END_HEADER_SIZE) {
+            return null;
+        }
+
+        // Find end of central directory record, it is followed by a comment of up to 64k
+        int tailSize = (int) Math.min(size, END_HEADER_SIZE + MAX_COMMENT_SIZE);
+        ByteBuffer tail = readFully(source, size - tailSize, tailSize);
+
+        int endPos = -1;
+        for (int i = tailSize - END_HEADER_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == END_SIG && i + END_HEADER_SIZE + (tail.getShort(i + 20) & MAX_16_BIT) == tailSize) {
+                endPos = i;
+                break;
+            }
+        }
+
+        // ZIP64 archives have a locator right before the end record
+        if (endPos < 0 || (endPos >= 20 && tail.getInt(endPos - 20) == ZIP64_LOCATOR_SIG)) {
+            return null;
+        }
+
+        int disk = tail.getShort(endPos + 4) & MAX_16_BIT;
+        int centralDirectoryDisk = tail.getShort(endPos + 6) & MAX_16_BIT;
+        int diskEntries = tail.getShort(endPos + 8) & MAX_16_BIT;
+        int totalEntries = tail.getShort(endPos + 10) & MAX_16_BIT;
+        long centralDirectorySize = tail.getInt(endPos + 12) & MAX_32_BIT;
+        long centralDirectoryOffset = tail.getInt(endPos + 16) & MAX_32_BIT;
+
+        // Multi-disk archives or archives with data in front (offsets relative to it)
+        if (disk != 0 || centralDirectoryDisk != 0 || diskEntries != totalEntries
+                || centralDirectoryOffset + centralDirectorySize != size - tailSize + endPos) {
+            return null;
+        }
+
+        ByteBuffer cen = readFully(source, centralDirectoryOffset, (int) centralDirectorySize);
+
+        List<SourceEntry> entries = new ArrayList<>(totalEntries);
+        Set<String> names = new HashSet<>();
+        ByteBuffer localHeader = newBuffer(LOC_HEADER_SIZE);
+
+        int pos = 0;
+        for (int i = 0; i < totalEntries; i++) {
+            if (pos + CEN_HEADER_SIZE > cen.limit() || cen.getInt(pos) != CEN_SIG) {
+                return null;
+            }
+
+            int flags = cen.getShort(pos + 8) & MAX_16_BIT;
+            long compressedSize = cen.getInt(pos + 20) & MAX_32_BIT;
+            long uncompressedSize = cen.getInt(pos + 24) & MAX_32_BIT;
+            int nameLength = cen.getShort(pos + 28) & MAX_16_BIT;
+            int extraLength = cen.getShort(pos + 30) & MAX_16_BIT;
+            int commentLength = cen.getShort(pos + 32) & MAX_16_BIT;
+            long localHeaderOffset = cen.getInt(pos + 42) & MAX_32_BIT;
+            int cenLength = CEN_HEADER_SIZE + nameLength + extraLength + commentLength;
+
+            if ((flags & FLAG_ENCRYPTED) != 0 || compressedSize == MAX_32_BIT || uncompressedSize == MAX_32_BIT
+                    || localHeaderOffset == MAX_32_BIT || pos + cenLength > cen.limit()) {
+                return null;
+            }
+
+            SourceEntry entry = new SourceEntry();
+            entry.cen = cen.slice(pos, cenLength).order(ByteOrder.LITTLE_ENDIAN);
+            entry.name = new String(cen.array(), pos + CEN_HEADER_SIZE, nameLength, StandardCharsets.UTF_8);
+            entry.flags = flags;
+
+            // Duplicate entries are rejected when writing the JAR conventionally
+            if (!names.add(entry.name)) {
+                return null;
+            }
+            entry.compressedSize = compressedSize;
+
+            // Local header with its own extra field, which may differ from the central one
+            readFully(source, localHeader.clear(), localHeaderOffset);
+            if (localHeader.getInt(0) != LOC_SIG) {
+                return null;
+            }
+
+            int localHeaderLength = LOC_HEADER_SIZE + (localHeader.getShort(26) & MAX_16_BIT)
+                                    + (localHeader.getShort(28) & MAX_16_BIT);
+            entry.localHeader = readFully(source, localHeaderOffset, localHeaderLength).array();
+            entry.dataOffset = localHeaderOffset + localHeaderLength;
+
+            if (entry.dataOffset + compressedSize > centralDirectoryOffset) {
+                return null;
+            }
+
+            entries.add(entry);
+            pos += cenLength;
+        }
+
+        return entries;
+    }
+
+    private static void copyEntry(FileChannel source, FileChannel target, ByteArrayOutputStream centralDirectory,
+                                  SourceEntry entry) throws IOException {
+
+        long offset = target.position();
+
+        // Sizes and CRC are put in the headers, so no data descriptor follows the data
+        int flags = entry.flags & ~FLAG_DATA_DESCRIPTOR;
+
+        ByteBuffer localHeader = ByteBuffer.wrap(entry.localHeader).order(ByteOrder.LITTLE_ENDIAN);
+        localHeader.putShort(6, (short) flags);
+        localHeader.putInt(14, entry.cen.getInt(16));
+        localHeader.putInt(18, entry.cen.getInt(20));
+        localHeader.putInt(22, entry.cen.getInt(24));
+        writeFully(target, localHeader);
+
+        long position = entry.dataOffset;
+        long remaining = entry.compressedSize;
+        while (remaining > 0) {
+            long transferred = source.transferTo(position, remaining, target);
+            if (transferred <= 0) {
+                throw new EOFException();
+            }
+            position += transferred;
+            remaining -= transferred;
+        }
+
+        byte[] cen = new byte[entry.cen.limit()];
+        entry.cen.get(0, cen);
+        ByteBuffer cenHeader = ByteBuffer.wrap(cen).order(ByteOrder.LITTLE_ENDIAN);
+        cenHeader.putShort(8, (short) flags);
+        cenHeader.putInt(42, (int) offset);
+        centralDirectory.write(cen);
+    }
+
+    private static void writeNewEntry(FileChannel target, ByteArrayOutputStream centralDirectory, String name,
+                                      byte[] content, int dosTime, byte[] extra) throws IOException {
+
+        long offset = target.position();
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+
+        CRC32 crc = new CRC32();
+        crc.update(content);
+
+        byte[] compressed = deflate(content);
+
+        ByteBuffer localHeader = newBuffer(LOC_HEADER_SIZE + nameBytes.length + extra.length);
+        localHeader.putInt(LOC_SIG);
+        localHeader.putShort((short) VERSION_DEFLATED);
+        localHeader.putShort((short) FLAG_UTF8);
+        localHeader.putShort((short) METHOD_DEFLATED);
+        localHeader.putInt(dosTime);
+        localHeader.putInt((int) crc.getValue());
+        localHeader.putInt(compressed.length);
+        localHeader.putInt(content.length);
+        localHeader.putShort((short) nameBytes.length);
+        localHeader.putShort((short) extra.length);
+        localHeader.put(nameBytes);
+        localHeader.put(extra);
+        writeFully(target, localHeader.flip());
+        writeFully(target, ByteBuffer.wrap(compressed));
+
+        ByteBuffer cenHeader = newBuffer(CEN_HEADER_SIZE + nameBytes.length + extra.length);
+        cenHeader.putInt(CEN_SIG);
+        cenHeader.putShort((short) VERSION_DEFLATED);
+        cenHeader.putShort((short) VERSION_DEFLATED);
+        cenHeader.putShort((short) FLAG_UTF8);
+        cenHeader.putShort((short) METHOD_DEFLATED);
+        cenHeader.putInt(dosTime);
+        cenHeader.putInt((int) crc.getValue());
+        cenHeader.putInt(compressed.length);
+        cenHeader.putInt(content.length);
+        cenHeader.putShort((short) nameBytes.length);
+        cenHeader.putShort((short) extra.length);
+        cenHeader.putShort((short) 0); // comment length
+        cenHeader.putShort((short) 0); // disk number
+        cenHeader.putShort((short) 0); // internal attributes
+        cenHeader.putInt(0); // external attributes
+        cenHeader.putInt((int) offset);
+        cenHeader.put(nameBytes);
+        cenHeader.put(extra);
+        centralDirectory.write(cenHeader.array());
+    }
+
+    private static byte[] deflate(byte[] content) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(content);
+            deflater.finish();
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.length / 2 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                compressed.write(buffer, 0, length);
+            }
+            return compressed.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static long estimateSize(Map<String, byte[]> newEntries) {
+        long size = 0;
+        for (Map.Entry<String, byte[]> newEntry : newEntries.entrySet()) {
+            // Deflated content is hardly ever larger than the original plus a small overhead
+            size += 2L * (LOC_HEADER_SIZE + CEN_HEADER_SIZE + newEntry.getKey().length()) + newEntry.getValue().length
+                    + 1024;
+        }
+        return size;
+    }
+
+    private static int dosTime(LocalDateTime time) {
+        return (time.getYear() - 1980) << 25 | time.getMonthValue() << 21 | time.getDayOfMonth() << 16
+               | time.getHour() << 11 | time.getMinute() << 5 | time.getSecond() >> 1;
+    }
+
+    private static ByteBuffer newBuffer(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static ByteBuffer readFully(FileChannel source, long position, int length) throws IOException {
+        ByteBuffer buffer = newBuffer(length);
+        readFully(source, buffer, position);
+        return buffer;
+    }
+
+    private static void readFully(FileChannel source, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = source.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new ZipException("Unexpected end of ZIP file");
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel target, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+}
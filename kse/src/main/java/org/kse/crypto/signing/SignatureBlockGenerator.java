@@ -0,0 +1,155 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.signing;
+
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+
+import org.bouncycastle.asn1.cms.AttributeTable;
+import org.bouncycastle.asn1.cms.CMSAttributes;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.bouncycastle.cms.CMSAttributeTableGenerator;
+import org.bouncycastle.cms.CMSProcessableByteArray;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.CMSSignedDataGenerator;
+import org.bouncycastle.cms.DefaultSignedAttributeTableGenerator;
+import org.bouncycastle.cms.SignerInfoGenerator;
+import org.bouncycastle.cms.jcajce.JcaSignerInfoGeneratorBuilder;
+import org.bouncycastle.operator.DigestCalculatorProvider;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.bouncycastle.util.CollectionStore;
+import org.bouncycastle.util.Store;
+import org.kse.KSE;
+import org.kse.crypto.CryptoException;
+import org.kse.utilities.rng.RNG;
+
+/**
+ * Creates the CMS signature blocks of signed JARs for one private key and certificate chain.
+ * <p>
+ * The certificate store, digest calculators and random number generator are prepared once, so
+ * one instance can be used to sign many JARs. Instances are thread-safe. Keys of an explicitly
+ * selected provider, such as a PKCS#11 token or the Windows key store, usually only allow one
+ * signing operation at a time, so signatures with those keys are created one after another.
+ */
+public class SignatureBlockGenerator {
+    private static ResourceBundle res = ResourceBundle.getBundle("org/kse/crypto/signing/resources");
+
+    private final PrivateKey privateKey;
+    private final X509Certificate signingCertificate;
+    private final SignatureType signatureType;
+    private final Provider provider;
+    private final boolean singleSession;
+
+    private final Store<X509CertificateHolder> certStore;
+    private final DigestCalculatorProvider digestCalculatorProvider;
+    private final SecureRandom random;
+
+    /**
+     * Prepare signature block creation.
+     *
+     * @param privateKey       Private key to sign with
+     * @param certificateChain Certificate chain for private key
+     * @param signatureType    Signature type
+     * @param provider         The security provider to use, null for the default provider.
+     * @throws CryptoException If the certificate chain or provider cannot be used
+     */
+    public SignatureBlockGenerator(PrivateKey privateKey, X509Certificate[] certificateChain,
+                                   SignatureType signatureType, Provider provider) throws CryptoException {
+        this.privateKey = privateKey;
+        this.signingCertificate = certificateChain[0];
+        this.signatureType = signatureType;
+        this.provider = provider == null ? KSE.BC : provider;
+        this.singleSession = provider != null;
+
+        try {
+            List<X509CertificateHolder> certificates = new ArrayList<>();
+            for (X509Certificate certificate : certificateChain) {
+                certificates.add(new JcaX509CertificateHolder(certificate));
+            }
+            certStore = new CollectionStore<>(certificates);
+            digestCalculatorProvider = new JcaDigestCalculatorProviderBuilder().setProvider(this.provider).build();
+            random = RNG.newInstanceForLongLivedSecrets();
+        } catch (Exception ex) {
+            throw new CryptoException(res.getString("SignatureBlockCreationFailed.exception.message"), ex);
+        }
+    }
+
+    /**
+     * Get the signature type.
+     *
+     * @return Signature type
+     */
+    public SignatureType getSignatureType() {
+        return signatureType;
+    }
+
+    /**
+     * Create a signature block for the supplied content, for example a JAR's signature file.
+     *
+     * @param toSign Content to sign
+     * @return Signed data, with the content encapsulated
+     * @throws CryptoException If a problem occurs while signing
+     */
+    public CMSSignedData generate(byte[] toSign) throws CryptoException {
+        if (singleSession) {
+            synchronized (this) {
+                return generateSignedData(toSign);
+            }
+        }
+        return generateSignedData(toSign);
+    }
+
+    private CMSSignedData generateSignedData(byte[] toSign) throws CryptoException {
+        try {
+            JcaContentSignerBuilder csb = new JcaContentSignerBuilder(signatureType.jce()).setSecureRandom(random)
+                                                                                           .setProvider(provider);
+
+            JcaSignerInfoGeneratorBuilder siGeneratorBuilder = new JcaSignerInfoGeneratorBuilder(
+                    digestCalculatorProvider);
+
+            // remove cmsAlgorithmProtect for compatibility reasons
+            SignerInfoGenerator sigGen = siGeneratorBuilder.build(csb.build(privateKey), signingCertificate);
+            final CMSAttributeTableGenerator sAttrGen = sigGen.getSignedAttributeTableGenerator();
+            sigGen = new SignerInfoGenerator(sigGen, new DefaultSignedAttributeTableGenerator() {
+                @Override
+                public AttributeTable getAttributes(@SuppressWarnings("rawtypes") Map parameters) {
+                    AttributeTable ret = sAttrGen.getAttributes(parameters);
+                    return ret.remove(CMSAttributes.cmsAlgorithmProtect);
+                }
+            }, sigGen.getUnsignedAttributeTableGenerator());
+
+            CMSSignedDataGenerator dataGen = new CMSSignedDataGenerator();
+            dataGen.addSignerInfoGenerator(sigGen);
+            dataGen.addCertificates(certStore);
+
+            return dataGen.generate(new CMSProcessableByteArray(toSign), true);
+        } catch (Exception ex) {
+            throw new CryptoException(res.getString("SignatureBlockCreationFailed.exception.message"), ex);
+        }
+    }
+}
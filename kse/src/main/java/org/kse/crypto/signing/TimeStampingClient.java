@@ -20,21 +20,20 @@
 package org.kse.crypto.signing;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.InterruptedIOException;
 import java.math.BigInteger;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.net.URL;
-import java.net.URLConnection;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
 import java.security.KeyManagementException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.X509Certificate;
+import java.time.Duration;
 
-import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
-import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
@@ -47,10 +46,32 @@ import org.bouncycastle.tsp.TimeStampResponse;
 import org.bouncycastle.tsp.TimeStampToken;
 import org.bouncycastle.util.encoders.Base64;
 import org.kse.crypto.digest.DigestType;
+import org.kse.utilities.net.DefaultProxySelector;
+import org.kse.utilities.net.HttpPost;
 import org.kse.utilities.rng.RNG;
 
+/**
+ * RFC 3161 time stamping client.
+ * <p>
+ * All requests share one HTTP client, so connections to a TSA are kept alive and reused, and
+ * HTTPS connections use HTTP/2 where the TSA supports it. Requests through a SOCKS proxy, which
+ * the HTTP client does not support, are sent with a URLConnection. The client is thread-safe, so the
+ * signatures of several files or JARs that are signed at once are time stamped concurrently.
+ * Requests that fail because of a connection problem or a temporary server error are retried a
+ * few times with an increasing delay. The latency of every request is recorded in the
+ * {@link #getMetrics() metrics}.
+ */
 public class TimeStampingClient {
 
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long INITIAL_BACKOFF_MILLIS = 500;
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(20);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(60);
+
+    private static final TimeStampingMetrics METRICS = new TimeStampingMetrics();
+
+    private static HttpClient httpClient;
+
     private TimeStampingClient() {
     }
 
@@ -73,15 +94,15 @@ public class TimeStampingClient {
             MessageDigest digest = MessageDigest.getInstance(hashAlg.jce());
             byte[] hashValue = digest.digest(data);
 
-            // Set up the time stamp request
+            // Set up the time stamp request, the nonce must be unique among concurrent requests
             TimeStampRequestGenerator tsqGenerator = new TimeStampRequestGenerator();
             tsqGenerator.setCertReq(true);
-            BigInteger nonce = BigInteger.valueOf(System.currentTimeMillis());
+            BigInteger nonce = new BigInteger(1, RNG.generate(8));
             TimeStampRequest request = tsqGenerator.generate(new ASN1ObjectIdentifier(hashAlg.oid()), hashValue, nonce);
             byte[] requestBytes = request.getEncoded();
 
             // send http request
-            byte[] respBytes = queryServer(tsaUrl, requestBytes);
+            byte[] respBytes = queryServer(new URI(tsaUrl), requestBytes);
 
             // process response
             response = new TimeStampResponse(respBytes);
@@ -106,65 +127,122 @@ public class TimeStampingClient {
         return tsToken.getEncoded();
     }
 
+    /**
+     * Get the request metrics of all time stamp requests sent so far.
+     *
+     * @return Time stamp request metrics
+     */
+    public static TimeStampingMetrics getMetrics() {
+        return METRICS;
+    }
+
     /**
      * Get timestamp token (HTTP communication)
      *
      * @return TSA response, raw bytes (RFC 3161 encoded)
      * @throws IOException when request to TSA server fails
-     * @throws URISyntaxException If there is an error in the URL syntax.
      */
-    private static byte[] queryServer(String tsaUrl, byte[] requestBytes) throws IOException, URISyntaxException {
-
-        // Install the all-trusting trust manager
-        SSLContext sc;
-        try {
-            sc = SSLContext.getInstance("SSL");
-            sc.init(null, new TrustManager[] { new X509TrustManager() {
-                @Override
-                public java.security.cert.X509Certificate[] getAcceptedIssuers() {
-                    return null;
+    private static byte[] queryServer(URI tsaUri, byte[] requestBytes) throws IOException {
+
+        // HTTP/2 is only negotiated for TLS connections, some TSAs do not cope with an h2c upgrade
+        HttpRequest request = HttpRequest.newBuilder(tsaUri)
+                                         .version("https".equalsIgnoreCase(tsaUri.getScheme()) ?
+                                                  HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                                         .timeout(REQUEST_TIMEOUT)
+                                         .header("Content-Type", "application/timestamp-query")
+                                         .POST(HttpRequest.BodyPublishers.ofByteArray(requestBytes))
+                                         .build();
+
+        HttpClient client = getHttpClient();
+        for (int attempt = 1; ; attempt++) {
+            long start = System.nanoTime();
+            HttpPost.Response response;
+            try {
+                response = HttpPost.send(client, request, requestBytes);
+            } catch (IOException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Time stamp request interrupted");
                 }
-
-                @Override
-                public void checkClientTrusted(X509Certificate[] certs, String authType) {
+                // connection problems and time outs
+                METRICS.record(System.nanoTime() - start, false);
+                if (attempt == MAX_ATTEMPTS) {
+                    throw e;
                 }
+                backoff(attempt);
+                continue;
+            }
+
+            int statusCode = response.statusCode();
+            METRICS.record(System.nanoTime() - start, statusCode == 200);
 
-                @Override
-                public void checkServerTrusted(X509Certificate[] certs, String authType) {
+            if (statusCode == 200) {
+                byte[] respBytes = response.body();
+                String encoding = response.headers().firstValue("Content-Encoding").orElse(null);
+                if (encoding != null && encoding.equalsIgnoreCase("base64")) {
+                    respBytes = Base64.decode(new String(respBytes, StandardCharsets.US_ASCII));
                 }
-            } }, RNG.newInstanceDefault());
-        } catch (NoSuchAlgorithmException | KeyManagementException e) {
-            throw new IOException(e);
+                return respBytes;
+            }
+
+            if (!isTemporaryFailure(statusCode) || attempt == MAX_ATTEMPTS) {
+                throw new IOException("Server returned HTTP response code: " + statusCode);
+            }
+            backoff(attempt);
         }
-        SSLSocketFactory defaultSSLSocketFactory = HttpsURLConnection.getDefaultSSLSocketFactory();
-        HttpsURLConnection.setDefaultSSLSocketFactory(sc.getSocketFactory());
+    }
+
+    /**
+     * Are requests that got this HTTP status code worth retrying?
+     */
+    private static boolean isTemporaryFailure(int statusCode) {
+        return statusCode == 429 || statusCode == 502 || statusCode == 503 || statusCode == 504;
+    }
 
+    /**
+     * Waits before a request is retried, twice as long after every failed attempt.
+     */
+    private static void backoff(int attempt) throws InterruptedIOException {
+        METRICS.recordRetry();
         try {
-            URL url = new URI(tsaUrl).toURL();
-            URLConnection con = url.openConnection();
-            con.setDoInput(true);
-            con.setDoOutput(true);
-            con.setUseCaches(false);
-            con.setRequestProperty("Content-Type", "application/timestamp-query");
-            con.setRequestProperty("Content-Transfer-Encoding", "binary");
-
-            try (OutputStream out = con.getOutputStream()) {
-                out.write(requestBytes);
-                out.close();
-            }
+            Thread.sleep(INITIAL_BACKOFF_MILLIS << (attempt - 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Time stamp request interrupted");
+        }
+    }
 
-            try (InputStream is = con.getInputStream()) {
-                byte[] respBytes = is.readAllBytes();
-                String encoding = con.getContentEncoding();
-                if (encoding != null && encoding.equalsIgnoreCase("base64")) {
-                    respBytes = Base64.decode(new String(respBytes));
-                }
-                return respBytes;
+    private static synchronized HttpClient getHttpClient() throws IOException {
+        if (httpClient == null) {
+            // The time stamp token is signed by the TSA, so the TLS server certificate is not checked
+            SSLContext sc;
+            try {
+                sc = SSLContext.getInstance("TLS");
+                sc.init(null, new TrustManager[] { new X509TrustManager() {
+                    @Override
+                    public java.security.cert.X509Certificate[] getAcceptedIssuers() {
+                        return new X509Certificate[0];
+                    }
+
+                    @Override
+                    public void checkClientTrusted(X509Certificate[] certs, String authType) {
+                    }
+
+                    @Override
+                    public void checkServerTrusted(X509Certificate[] certs, String authType) {
+                    }
+                } }, RNG.newInstanceDefault());
+            } catch (NoSuchAlgorithmException | KeyManagementException e) {
+                throw new IOException(e);
             }
 
-        } finally {
-            // restore default trust manager
-            HttpsURLConnection.setDefaultSSLSocketFactory(defaultSSLSocketFactory);
+            httpClient = HttpClient.newBuilder()
+                                   .version(HttpClient.Version.HTTP_2)
+                                   .connectTimeout(CONNECT_TIMEOUT)
+                                   .followRedirects(HttpClient.Redirect.NORMAL)
+                                   .proxy(new DefaultProxySelector())
+                                   .sslContext(sc)
+                                   .build();
         }
+        return httpClient;
     }
 }
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.signing;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and outcome of time stamp requests. Every HTTP request to a TSA is recorded, including
+ * those that are retried. Instances are thread-safe.
+ */
+public class TimeStampingMetrics {
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder totalLatency = new LongAdder();
+    private final LongAccumulator maxLatency = new LongAccumulator(Math::max, 0);
+    private volatile long lastLatency;
+
+    TimeStampingMetrics() {
+    }
+
+    /**
+     * Record a request.
+     *
+     * @param latency Time from sending the request to receiving the complete response, in nanoseconds
+     * @param success True if the TSA returned a response
+     */
+    void record(long latency, boolean success) {
+        requests.increment();
+        if (!success) {
+            failures.increment();
+        }
+        totalLatency.add(latency);
+        maxLatency.accumulate(latency);
+        lastLatency = latency;
+    }
+
+    /**
+     * Record that a failed request is retried.
+     */
+    void recordRetry() {
+        retries.increment();
+    }
+
+    /**
+     * Get the number of requests sent.
+     *
+     * @return Number of requests
+     */
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * Get the number of requests that failed because of a connection problem or an HTTP error.
+     *
+     * @return Number of failed requests
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * Get the number of requests that were retries of failed requests.
+     *
+     * @return Number of retries
+     */
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    /**
+     * Get the average request latency.
+     *
+     * @return Average latency in milliseconds, 0 if no requests were sent
+     */
+    public double getAverageLatency() {
+        long count = requests.sum();
+        return count == 0 ? 0 : totalLatency.sum() / 1e6 / count;
+    }
+
+    /**
+     * Get the longest request latency.
+     *
+     * @return Maximum latency in milliseconds
+     */
+    public long getMaxLatency() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLatency.get());
+    }
+
+    /**
+     * Get the latency of the most recent request.
+     *
+     * @return Latency in milliseconds
+     */
+    public long getLastLatency() {
+        return TimeUnit.NANOSECONDS.toMillis(lastLatency);
+    }
+
+    /**
+     * Clear the recorded requests.
+     */
+    public void reset() {
+        requests.reset();
+        failures.reset();
+        retries.reset();
+        totalLatency.reset();
+        maxLatency.reset();
+        lastLatency = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d requests, %d failed, %d retried, latency avg %.1f ms, max %d ms", getRequests(),
+                             getFailures(), getRetries(), getAverageLatency(), getMaxLatency());
+    }
+}
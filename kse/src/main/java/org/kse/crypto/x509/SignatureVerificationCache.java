@@ -0,0 +1,219 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.x509;
+
+import java.security.PublicKey;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.kse.crypto.CryptoException;
+import org.kse.crypto.digest.DigestType;
+import org.kse.crypto.digest.DigestUtil;
+import org.kse.crypto.digest.FingerprintCache;
+
+/**
+ * Process-wide cache of certificate signature verification outcomes.
+ *
+ * An outcome is keyed by the SHA-256 digest of the complete encoded certificate and the SHA-256
+ * digest of the encoded public key it was verified with. The certificate digest covers the TBS
+ * certificate as well as the signature, so a certificate with an altered signature never matches
+ * the outcome of the original. Failures to perform a verification are not cached. The cache is
+ * bounded; the least recently used outcomes are evicted first. Instances are thread-safe.
+ */
+public final class SignatureVerificationCache {
+
+    /**
+     * Signature verification that is not in the cache yet.
+     */
+    @FunctionalInterface
+    public interface Verification {
+        /**
+         * Verify the signature.
+         *
+         * @return True if the signature is valid
+         * @throws CryptoException If the signature could not be verified
+         */
+        boolean verify() throws CryptoException;
+    }
+
+    private static final int MAX_CACHED_OUTCOMES = 65536;
+
+    private static final SignatureVerificationCache INSTANCE = new SignatureVerificationCache(MAX_CACHED_OUTCOMES);
+
+    private final Map<EdgeKey, Boolean> cache;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    SignatureVerificationCache(int maxSize) {
+        cache = new LinkedHashMap<EdgeKey, Boolean>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<EdgeKey, Boolean> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get the shared cache.
+     *
+     * @return The cache
+     */
+    public static SignatureVerificationCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get the outcome of verifying the signature of a certificate with a public key, verifying it if
+     * the outcome is not cached yet.
+     *
+     * @param cert         The signed certificate
+     * @param publicKey    The public key of the possible signer
+     * @param verification Verifies the signature if the outcome is not cached
+     * @return True if the signature is valid
+     * @throws CryptoException If the signature could not be verified
+     */
+    public boolean verify(X509Certificate cert, PublicKey publicKey, Verification verification)
+            throws CryptoException {
+        EdgeKey key = new EdgeKey(getCertificateDigest(cert), getPublicKeyDigest(publicKey));
+
+        Boolean verified;
+        synchronized (cache) {
+            verified = cache.get(key);
+        }
+        if (verified != null) {
+            hits.increment();
+            return verified;
+        }
+
+        misses.increment();
+
+        // verified outside the lock, concurrent misses for the same edge produce the same outcome
+        verified = verification.verify();
+        synchronized (cache) {
+            cache.put(key, verified);
+        }
+        return verified;
+    }
+
+    private static byte[] getCertificateDigest(X509Certificate cert) throws CryptoException {
+        return FingerprintCache.getInstance().get(
+                cert, DigestType.SHA256,
+                () -> DigestUtil.getMessageDigest(X509CertUtil.getCertEncodedX509(cert), DigestType.SHA256));
+    }
+
+    private static byte[] getPublicKeyDigest(PublicKey publicKey) throws CryptoException {
+        return FingerprintCache.getInstance().get(
+                publicKey, DigestType.SHA256,
+                () -> DigestUtil.getMessageDigest(publicKey.getEncoded(), DigestType.SHA256));
+    }
+
+    /**
+     * Get the number of verification outcomes that were found in the cache.
+     *
+     * @return Number of cache hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of signatures that had to be verified.
+     *
+     * @return Number of cache misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Get the share of verifications answered from the cache.
+     *
+     * @return Hit rate between 0 and 1, 0 if nothing was verified yet
+     */
+    public double getHitRate() {
+        long hitCount = getHits();
+        long total = hitCount + getMisses();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * Get the number of cached verification outcomes.
+     *
+     * @return Number of cached outcomes
+     */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Remove all cached outcomes and reset the statistics.
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+        hits.reset();
+        misses.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SignatureVerificationCache [size=%d, hits=%d, misses=%d, hitRate=%.2f]", size(),
+                             getHits(), getMisses(), getHitRate());
+    }
+
+    private static final class EdgeKey {
+        private final byte[] certDigest;
+        private final byte[] publicKeyDigest;
+        private final int hashCode;
+
+        private EdgeKey(byte[] certDigest, byte[] publicKeyDigest) {
+            this.certDigest = certDigest;
+            this.publicKeyDigest = publicKeyDigest;
+            this.hashCode = 31 * Arrays.hashCode(certDigest) + Arrays.hashCode(publicKeyDigest);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof EdgeKey)) {
+                return false;
+            }
+            EdgeKey other = (EdgeKey) obj;
+            return Arrays.equals(certDigest, other.certDigest) && Arrays.equals(publicKeyDigest,
+                                                                                 other.publicKeyDigest);
+        }
+    }
+}
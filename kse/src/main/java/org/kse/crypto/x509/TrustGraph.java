@@ -0,0 +1,250 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.x509;
+
+import java.lang.ref.WeakReference;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.kse.crypto.CryptoException;
+import org.kse.crypto.keystore.KseKeyStore;
+
+/**
+ * Issuer relations between a set of trusted certificates, used to find a chain of trust from a
+ * certificate to a self-signed trusted certificate.
+ *
+ * The trusted certificates are indexed by subject DN and subject key identifier. Signature checks
+ * between trusted certificates and the chains found from each of them are kept for the lifetime of
+ * the graph, so repeated queries only verify the signature of the queried certificate.
+ */
+public final class TrustGraph {
+    private final List<X509Certificate> certs;
+    private final Map<X500Principal, List<Integer>> bySubject = new HashMap<>();
+    private final byte[][] subjectKeyIds;
+    private final byte[][] authorityKeyIds;
+    private final boolean[] selfSigned;
+
+    private final Map<Long, Boolean> verifiedEdges = new HashMap<>();
+    private final X509Certificate[][] chains;
+    private final boolean[] deadEnds;
+
+    // KeyStores the certificates were taken from and their modification counts at the time
+    private final List<WeakReference<KseKeyStore>> sourceKeyStores;
+    private final long[] sourceModificationCounts;
+
+    /**
+     * Construct a graph of the supplied trusted certificates.
+     *
+     * @param trustedCerts The trusted certificates
+     */
+    public TrustGraph(List<X509Certificate> trustedCerts) {
+        this(trustedCerts, new KseKeyStore[0], new long[0]);
+    }
+
+    private TrustGraph(List<X509Certificate> trustedCerts, KseKeyStore[] keyStores, long[] modificationCounts) {
+        certs = new ArrayList<>(trustedCerts);
+
+        sourceKeyStores = new ArrayList<>(keyStores.length);
+        for (KseKeyStore keyStore : keyStores) {
+            sourceKeyStores.add(new WeakReference<>(keyStore));
+        }
+        sourceModificationCounts = modificationCounts;
+
+        int size = certs.size();
+        subjectKeyIds = new byte[size][];
+        authorityKeyIds = new byte[size][];
+        selfSigned = new boolean[size];
+        chains = new X509Certificate[size][];
+        deadEnds = new boolean[size];
+
+        for (int i = 0; i < size; i++) {
+            X509Certificate cert = certs.get(i);
+            bySubject.computeIfAbsent(cert.getSubjectX500Principal(), s -> new ArrayList<>()).add(i);
+            subjectKeyIds[i] = X509CertChainBuilder.getSubjectKeyId(cert);
+            authorityKeyIds[i] = X509CertChainBuilder.getAuthorityKeyId(cert);
+            selfSigned[i] = X509CertUtil.isCertificateSelfSigned(cert);
+        }
+    }
+
+    /**
+     * Get the graph of the trusted certificates contained in the supplied KeyStores. The graph is
+     * kept by the first KeyStore and reused as long as the same KeyStore instances are supplied in
+     * the same order and none of their entries has been changed since.
+     *
+     * @param keyStores The KeyStores
+     * @return The trust graph
+     * @throws CryptoException If there is a problem extracting the trusted certificates
+     */
+    public static TrustGraph forKeyStores(KseKeyStore[] keyStores) throws CryptoException {
+        long[] modificationCounts = new long[keyStores.length];
+        for (int i = 0; i < keyStores.length; i++) {
+            modificationCounts[i] = keyStores[i].getModificationCount();
+        }
+
+        if (keyStores.length > 0) {
+            TrustGraph cachedGraph = keyStores[0].getTrustGraph();
+            if (cachedGraph != null && cachedGraph.isBuiltFrom(keyStores, modificationCounts)) {
+                return cachedGraph;
+            }
+        }
+
+        List<X509Certificate> trustedCerts = new ArrayList<>();
+        for (KseKeyStore keyStore : keyStores) {
+            trustedCerts.addAll(X509CertUtil.extractCertificates(keyStore));
+        }
+        TrustGraph graph = new TrustGraph(trustedCerts, keyStores, modificationCounts);
+
+        if (keyStores.length > 0) {
+            keyStores[0].setTrustGraph(graph);
+        }
+        return graph;
+    }
+
+    private boolean isBuiltFrom(KseKeyStore[] keyStores, long[] modificationCounts) {
+        if (sourceKeyStores.size() != keyStores.length
+                || !Arrays.equals(sourceModificationCounts, modificationCounts)) {
+            return false;
+        }
+        for (int i = 0; i < keyStores.length; i++) {
+            if (sourceKeyStores.get(i).get() != keyStores[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the number of trusted certificates in the graph.
+     *
+     * @return Number of trusted certificates
+     */
+    public int size() {
+        return certs.size();
+    }
+
+    /**
+     * Check whether or not a trust path exists between the supplied X.509 certificate and a
+     * self-signed certificate in the graph.
+     *
+     * @param cert The certificate
+     * @return The trust chain, or null if trust could not be established
+     * @throws CryptoException If there is a problem establishing trust
+     */
+    public synchronized X509Certificate[] establishTrust(X509Certificate cert) throws CryptoException {
+        boolean[] onPath = new boolean[certs.size()];
+
+        byte[] authorityKeyId = X509CertChainBuilder.getAuthorityKeyId(cert);
+        for (int candidate : getCandidates(cert.getIssuerX500Principal(), authorityKeyId)) {
+            if (X509CertUtil.verifyCertificate(cert, certs.get(candidate))) {
+                X509Certificate[] issuerChain = getChain(candidate, onPath);
+                if (issuerChain != null) {
+                    return prepend(cert, issuerChain);
+                }
+            }
+        }
+
+        return null; // No chain of trust
+    }
+
+    private X509Certificate[] getChain(int index, boolean[] onPath) throws CryptoException {
+        if (chains[index] != null) {
+            return chains[index];
+        }
+        if (deadEnds[index]) {
+            return null;
+        }
+
+        X509Certificate cert = certs.get(index);
+
+        // a self-signed certificate ends the chain of trust
+        if (selfSigned[index]) {
+            chains[index] = new X509Certificate[] { cert };
+            return chains[index];
+        }
+
+        // only a search that was not cut short by a cycle proves there is no chain
+        boolean complete = true;
+
+        onPath[index] = true;
+        try {
+            for (int candidate : getCandidates(cert.getIssuerX500Principal(), authorityKeyIds[index])) {
+                if (onPath[candidate]) {
+                    complete = false;
+                    continue;
+                }
+                if (!isIssuedBy(index, candidate)) {
+                    continue;
+                }
+
+                X509Certificate[] issuerChain = getChain(candidate, onPath);
+                if (issuerChain != null) {
+                    chains[index] = prepend(cert, issuerChain);
+                    return chains[index];
+                }
+                complete &= deadEnds[candidate];
+            }
+        } finally {
+            onPath[index] = false;
+        }
+
+        deadEnds[index] = complete;
+        return null;
+    }
+
+    private boolean isIssuedBy(int index, int issuer) throws CryptoException {
+        long edge = ((long) index << 32) | issuer;
+
+        Boolean verified = verifiedEdges.get(edge);
+        if (verified == null) {
+            verified = X509CertUtil.verifyCertificate(certs.get(index), certs.get(issuer));
+            verifiedEdges.put(edge, verified);
+        }
+        return verified;
+    }
+
+    private List<Integer> getCandidates(X500Principal issuer, byte[] authorityKeyId) {
+        List<Integer> candidates = bySubject.getOrDefault(issuer, Collections.emptyList());
+        if (authorityKeyId == null) {
+            return candidates;
+        }
+
+        List<Integer> matching = new ArrayList<>(candidates.size());
+        for (int candidate : candidates) {
+            if (subjectKeyIds[candidate] == null || Arrays.equals(subjectKeyIds[candidate], authorityKeyId)) {
+                matching.add(candidate);
+            }
+        }
+        return matching;
+    }
+
+    private static X509Certificate[] prepend(X509Certificate cert, X509Certificate[] chain) {
+        X509Certificate[] trustChain = new X509Certificate[chain.length + 1];
+        trustChain[0] = cert;
+        System.arraycopy(chain, 0, trustChain, 1, chain.length);
+        return trustChain;
+    }
+}
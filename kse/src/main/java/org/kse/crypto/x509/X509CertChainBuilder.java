@@ -0,0 +1,212 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.x509;
+
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.bouncycastle.asn1.x509.AuthorityKeyIdentifier;
+import org.bouncycastle.asn1.x509.SubjectKeyIdentifier;
+
+/**
+ * Issuer relations between a set of X.509 certificates.
+ *
+ * The certificates are indexed by subject DN, so only certificates whose subject matches the issuer
+ * DN of a certificate are considered as its issuer. A candidate is skipped without verifying its
+ * signature if both certificates carry key identifiers (SKI and AKI) that do not match. Each
+ * remaining edge is verified once and the result is kept for the lifetime of the builder.
+ */
+final class X509CertChainBuilder {
+
+    private final X509Certificate[] certs;
+    private final Map<X500Principal, List<Integer>> bySubject = new HashMap<>();
+    private final byte[][] subjectKeyIds;
+    private final byte[][] authorityKeyIds;
+
+    private final List<List<Integer>> issuers;
+    private List<List<Integer>> issued;
+    private int verifications;
+
+    X509CertChainBuilder(X509Certificate[] certs) {
+        this.certs = certs;
+
+        subjectKeyIds = new byte[certs.length][];
+        authorityKeyIds = new byte[certs.length][];
+        issuers = new ArrayList<>(Collections.nCopies(certs.length, null));
+
+        for (int i = 0; i < certs.length; i++) {
+            bySubject.computeIfAbsent(certs[i].getSubjectX500Principal(), s -> new ArrayList<>()).add(i);
+            subjectKeyIds[i] = getSubjectKeyId(certs[i]);
+            authorityKeyIds[i] = getAuthorityKeyId(certs[i]);
+        }
+    }
+
+    /**
+     * Get the certificates that issued a certificate.
+     *
+     * @param index Index of the issued certificate
+     * @return Indexes of the issuers in their original order
+     */
+    List<Integer> getIssuers(int index) {
+        List<Integer> certIssuers = issuers.get(index);
+        if (certIssuers != null) {
+            return certIssuers;
+        }
+
+        certIssuers = new ArrayList<>();
+        X509Certificate cert = certs[index];
+
+        for (int candidate : bySubject.getOrDefault(cert.getIssuerX500Principal(), Collections.emptyList())) {
+            if (isSameCertificate(certs[candidate], cert) || !keyIdsMatch(index, candidate)) {
+                continue;
+            }
+
+            verifications++;
+            if (X509CertUtil.isIssuedBy(cert, certs[candidate])) {
+                certIssuers.add(candidate);
+            }
+        }
+
+        issuers.set(index, certIssuers);
+        return certIssuers;
+    }
+
+    /**
+     * Get the certificates issued by a certificate.
+     *
+     * @param index Index of the issuer certificate
+     * @return Indexes of the issued certificates in their original order
+     */
+    List<Integer> getIssued(int index) {
+        if (issued == null) {
+            issued = new ArrayList<>(certs.length);
+            for (int i = 0; i < certs.length; i++) {
+                issued.add(new ArrayList<>());
+            }
+            for (int i = 0; i < certs.length; i++) {
+                for (int issuer : getIssuers(i)) {
+                    issued.get(issuer).add(i);
+                }
+            }
+        }
+        return issued.get(index);
+    }
+
+    /**
+     * Get the longest chain that can be built by starting at one of the certificates and repeatedly
+     * following the first certificate it has issued. If there are several of the same length, the one
+     * starting with the earliest certificate is returned.
+     *
+     * @return The chain in issued to issuer order
+     */
+    X509Certificate[] getLongestChain() {
+        int[] lengths = new int[certs.length];
+
+        int longest = 0;
+        for (int i = 0; i < certs.length; i++) {
+            if (getChainLength(i, lengths) > lengths[longest]) {
+                longest = i;
+            }
+        }
+
+        List<X509Certificate> chain = new ArrayList<>();
+        boolean[] visited = new boolean[certs.length];
+        for (int i = longest; i >= 0 && !visited[i]; i = firstIssued(i)) {
+            visited[i] = true;
+            chain.add(0, certs[i]);
+        }
+        return chain.toArray(X509Certificate[]::new);
+    }
+
+    private int getChainLength(int index, int[] lengths) {
+        // walk down to the first certificate with a known length, then fill in the lengths on the way back
+        List<Integer> path = new ArrayList<>();
+        boolean[] onPath = new boolean[certs.length];
+
+        int i = index;
+        while (i >= 0 && lengths[i] == 0 && !onPath[i]) {
+            onPath[i] = true;
+            path.add(i);
+            i = firstIssued(i);
+        }
+
+        int length = (i >= 0 && !onPath[i]) ? lengths[i] : 0;
+        for (int p = path.size() - 1; p >= 0; p--) {
+            lengths[path.get(p)] = ++length;
+        }
+        return lengths[index];
+    }
+
+    private int firstIssued(int index) {
+        List<Integer> certIssued = getIssued(index);
+        return certIssued.isEmpty() ? -1 : certIssued.get(0);
+    }
+
+    /**
+     * Get the number of signature verifications performed so far.
+     *
+     * @return Number of verifications
+     */
+    int getVerifications() {
+        return verifications;
+    }
+
+    private boolean keyIdsMatch(int index, int candidate) {
+        byte[] aki = authorityKeyIds[index];
+        byte[] ski = subjectKeyIds[candidate];
+        return aki == null || ski == null || Arrays.equals(aki, ski);
+    }
+
+    static boolean isSameCertificate(X509Certificate cert1, X509Certificate cert2) {
+        return cert1.getSubjectX500Principal().equals(cert2.getSubjectX500Principal())
+               && cert1.getIssuerX500Principal().equals(cert2.getIssuerX500Principal())
+               && cert1.getSerialNumber().equals(cert2.getSerialNumber());
+    }
+
+    static byte[] getSubjectKeyId(X509Certificate cert) {
+        try {
+            SubjectKeyIdentifier ski = X509Ext.getSubjectKeyIdentifier(cert);
+            return ski == null ? null : ski.getKeyIdentifier();
+        } catch (Exception e) {
+            // malformed extension, fall back to signature verification
+            return null;
+        }
+    }
+
+    static byte[] getAuthorityKeyId(X509Certificate cert) {
+        byte[] akiValue = cert.getExtensionValue(X509ExtensionType.AUTHORITY_KEY_IDENTIFIER.oid());
+        if (akiValue == null) {
+            return null;
+        }
+        try {
+            return AuthorityKeyIdentifier.getInstance(X509Ext.unwrapExtension(akiValue)).getKeyIdentifierOctets();
+        } catch (Exception e) {
+            // malformed extension, fall back to signature verification
+            return null;
+        }
+    }
+}
@@ -28,6 +28,7 @@ import java.math.BigInteger;
 import java.security.InvalidKeyException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
 import java.security.SignatureException;
 import java.security.cert.CRLException;
 import java.security.cert.CertPath;
@@ -57,6 +58,7 @@ import org.kse.KSE;
 import org.kse.crypto.CryptoException;
 import org.kse.crypto.digest.DigestType;
 import org.kse.crypto.digest.DigestUtil;
+import org.kse.crypto.digest.FingerprintCache;
 import org.kse.crypto.keystore.KseKeyStore;
 import org.kse.crypto.signing.SignatureType;
 import org.kse.gui.preferences.PreferencesManager;
@@ -335,40 +337,8 @@ public final class X509CertUtil {
             return certs;
         }
 
-        // Put together each possible certificate path...
-        ArrayList<ArrayList<X509Certificate>> paths = new ArrayList<>();
-
-        // For each possible path...
-        for (X509Certificate cert : certs) {
-            // Each possible path assumes a different certificate is the root issuer
-            ArrayList<X509Certificate> path = new ArrayList<>();
-            X509Certificate issuerCert = cert;
-            path.add(issuerCert);
-
-            X509Certificate newIssuer = null;
-
-            // Recursively build that path by finding the next issued certificate
-            while ((newIssuer = findIssuedCert(issuerCert, certs)) != null) {
-                // Found an issued cert, now attempt to find its issued certificate
-                issuerCert = newIssuer;
-                path.add(0, newIssuer);
-            }
-
-            // Path complete
-            paths.add(path);
-        }
-
-        // Get longest path - this will be the ordered path
-        ArrayList<X509Certificate> longestPath = paths.get(0);
-        for (int i = 1; i < paths.size(); i++) {
-            ArrayList<X509Certificate> path = paths.get(i);
-            if (path.size() > longestPath.size()) {
-                longestPath = path;
-            }
-        }
-
-        // Return longest path
-        return longestPath.toArray(X509Certificate[]::new);
+        // Longest path found by following issued certificates from each possible root issuer
+        return new X509CertChainBuilder(certs).getLongestChain();
     }
 
     /**
@@ -385,34 +355,23 @@ public final class X509CertUtil {
         if (certs.length <= 1) {
             return certs;
         }
-        ArrayList<ArrayList<X509Certificate>> paths = new ArrayList<>();
-        for (X509Certificate cert : certs) {
-            ArrayList<X509Certificate> path = new ArrayList<>();
-            path.add(cert);
-            for (X509Certificate issuerCert : certs) {
-                if (certificatesEquals(issuerCert, cert)) {
-                    continue;
-                }
-                if (isIssuedBy(cert, issuerCert)) {
-                    path.add(issuerCert);
-                }
-            }
-            if (path.size() > 1) {
-                paths.add(path);
-            }
-        }
+        X509CertChainBuilder chainBuilder = new X509CertChainBuilder(certs);
         List<X509Certificate> listCertificates = new ArrayList<>();
-        for (ArrayList<X509Certificate> path : paths) {
-            X509Certificate cert = path.get(0);
-            X509Certificate issuerCert = path.get(1);
+        for (int c = 0; c < certs.length; c++) {
+            List<Integer> issuers = chainBuilder.getIssuers(c);
+            if (issuers.isEmpty()) {
+                continue;
+            }
+            X509Certificate cert = certs[c];
+            X509Certificate issuerCert = certs[issuers.get(0)];
             int posIssuer = -1;
             int posCert = -1;
             for (int i = 0; i < listCertificates.size(); i++) {
                 X509Certificate cert2 = listCertificates.get(i);
-                if (certificatesEquals(issuerCert, cert2)) {
+                if (X509CertChainBuilder.isSameCertificate(issuerCert, cert2)) {
                     posIssuer = i;
                 }
-                if (certificatesEquals(cert, cert2)) {
+                if (X509CertChainBuilder.isSameCertificate(cert, cert2)) {
                     posCert = i;
                 }
             }
@@ -429,7 +388,7 @@ public final class X509CertUtil {
             for (X509Certificate cert1 : certs) {
                 boolean found = false;
                 for (X509Certificate cert2 : listCertificates) {
-                    if (certificatesEquals(cert1, cert2)) {
+                    if (X509CertChainBuilder.isSameCertificate(cert1, cert2)) {
                         found = true;
                         break;
                     }
@@ -442,29 +401,6 @@ public final class X509CertUtil {
         return listCertificates.toArray(X509Certificate[]::new);
     }
 
-    private static boolean certificatesEquals(X509Certificate cert1, X509Certificate cert2) {
-        return cert1.getSubjectX500Principal().equals(cert2.getSubjectX500Principal())
-                && cert1.getIssuerX500Principal().equals(cert2.getIssuerX500Principal())
-                && cert1.getSerialNumber().equals(cert2.getSerialNumber());
-    }
-
-    private static X509Certificate findIssuedCert(X509Certificate issuerCert, X509Certificate[] certs) {
-        // Find a certificate issued by the supplied certificate
-        for (X509Certificate cert : certs) {
-            if (issuerCert.getSubjectX500Principal().equals(cert.getSubjectX500Principal()) &&
-                issuerCert.getIssuerX500Principal().equals(cert.getIssuerX500Principal()) &&
-                issuerCert.getSerialNumber().equals(cert.getSerialNumber())) {
-                // Checked certificate is issuer - ignore it
-                continue;
-            }
-
-            if (isIssuedBy(cert, issuerCert)) {
-                return cert;
-            }
-        }
-        return null;
-    }
-
     /**
      * Checks if certificate was issued by the other certificate by checking first the DN and only if the issuer DN
      * matches the subject DN, then the signature is verified. This avoids the slow verification operation when it is
@@ -661,8 +597,14 @@ public final class X509CertUtil {
      */
     public static boolean verifyCertificate(X509Certificate signedCert, X509Certificate signingCert)
             throws CryptoException {
+        PublicKey publicKey = signingCert.getPublicKey();
+        return SignatureVerificationCache.getInstance().verify(signedCert, publicKey,
+                                                               () -> verifySignature(signedCert, publicKey));
+    }
+
+    private static boolean verifySignature(X509Certificate signedCert, PublicKey publicKey) throws CryptoException {
         try {
-            signedCert.verify(signingCert.getPublicKey(), KSE.BC);
+            signedCert.verify(publicKey, KSE.BC);
             return true;
         } catch (InvalidKeyException | SignatureException ex) {
             // Verification failed
@@ -686,13 +628,7 @@ public final class X509CertUtil {
      * @throws CryptoException If there is a problem establishing trust
      */
     public static X509Certificate[] establishTrust(X509Certificate cert, KseKeyStore[] keyStores) throws CryptoException {
-        ArrayList<X509Certificate> ksCerts = new ArrayList<>();
-
-        for (KseKeyStore keyStore : keyStores) {
-            ksCerts.addAll(extractCertificates(keyStore));
-        }
-
-        return establishTrust(cert, ksCerts);
+        return TrustGraph.forKeyStores(keyStores).establishTrust(cert);
     }
 
     /**
@@ -708,38 +644,7 @@ public final class X509CertUtil {
      */
     public static X509Certificate[] establishTrust(X509Certificate cert, List<X509Certificate> trustedCerts)
             throws CryptoException {
-
-        for (int i = 0; i < trustedCerts.size(); i++) {
-            X509Certificate compCert = trustedCerts.get(i);
-
-            // Verify of certificate issuer is sam as comparison certificate's subject
-            if (cert.getIssuerX500Principal().equals(compCert.getSubjectX500Principal())) {
-                // Verify if the comparison certificate's private key was used to sign the certificate
-                if (X509CertUtil.verifyCertificate(cert, compCert)) {
-                    // If the comparision certificate is self-signed then a chain of trust exists
-                    if (compCert.getSubjectX500Principal().equals(compCert.getIssuerX500Principal())) {
-                        return new X509Certificate[] { cert, compCert };
-                    }
-
-                    /*
-                     * Otherwise try and establish a chain of trust from the
-                     * comparison certificate against the other comparison certificates
-                     */
-                    X509Certificate[] tmpChain = establishTrust(compCert, trustedCerts);
-                    if (tmpChain != null) {
-                        X509Certificate[] trustChain = new X509Certificate[tmpChain.length + 1];
-
-                        trustChain[0] = cert;
-
-                        System.arraycopy(tmpChain, 0, trustChain, 1, tmpChain.length);
-
-                        return trustChain;
-                    }
-                }
-            }
-        }
-
-        return null; // No chain of trust
+        return new TrustGraph(trustedCerts).establishTrust(cert);
     }
 
     /**
@@ -779,17 +684,7 @@ public final class X509CertUtil {
      */
     public static String matchCertificate(KseKeyStore keyStore, X509Certificate cert) throws CryptoException {
         try {
-            for (Enumeration<String> aliases = keyStore.aliases(); aliases.hasMoreElements(); ) {
-                String alias = aliases.nextElement();
-                if (keyStore.isCertificateEntry(alias)) {
-                    X509Certificate compCert = X509CertUtil.convertCertificate(keyStore.getCertificate(alias));
-
-                    if (cert.equals(compCert)) {
-                        return alias;
-                    }
-                }
-            }
-            return null;
+            return keyStore.getCertificateIndex().findTrustedCertificate(cert);
         } catch (KeyStoreException ex) {
             throw new CryptoException(res.getString("NoMatchCertificate.exception.message"), ex);
         }
@@ -925,7 +820,9 @@ public final class X509CertUtil {
      * @throws CryptoException If there was a problem encoding the certificate
      */
     public static String getFingerprint(X509Certificate x509Cert, DigestType fingerprintAlg) throws CryptoException {
-        byte[] messageDigest = DigestUtil.getMessageDigest(getCertEncodedX509(x509Cert), fingerprintAlg);
+        byte[] messageDigest = FingerprintCache.getInstance().get(
+                x509Cert, fingerprintAlg,
+                () -> DigestUtil.getMessageDigest(getCertEncodedX509(x509Cert), fingerprintAlg));
         return HexUtil.getHexString(messageDigest, "", 0, 0);
     }
 }
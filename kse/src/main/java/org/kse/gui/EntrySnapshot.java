@@ -0,0 +1,322 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.gui;
+
+import java.security.KeyStoreException;
+import java.security.MessageDigest;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AuthorityKeyIdentifier;
+import org.kse.crypto.CryptoException;
+import org.kse.crypto.KeyInfo;
+import org.kse.crypto.digest.DigestType;
+import org.kse.crypto.digest.DigestUtil;
+import org.kse.crypto.keypair.KeyPairUtil;
+import org.kse.crypto.keystore.KeyStoreUtil;
+import org.kse.crypto.keystore.KseKeyStore;
+import org.kse.crypto.x509.KseX500NameStyle;
+import org.kse.crypto.x509.X500NameUtils;
+import org.kse.crypto.x509.X509CertUtil;
+import org.kse.crypto.x509.X509Ext;
+import org.kse.crypto.x509.X509ExtensionType;
+import org.kse.utilities.history.KeyStoreHistory;
+import org.kse.utilities.io.HexUtil;
+
+/**
+ * The certificate details of a trusted certificate or key pair entry as shown in the KeyStore
+ * table. The certificate chain is converted, ordered and parsed once per snapshot. Fingerprints and
+ * key identifiers are computed on first use.
+ *
+ * Snapshots are cached per KeyStore history against the encoding of the entry's certificates,
+ * see {@link Cache}.
+ */
+final class EntrySnapshot {
+
+    private final X509Certificate[] chain;
+    private final X500Name subject;
+    private final X500Name issuer;
+    private final KeyInfo keyInfo;
+    private final Date earliestExpiry;
+
+    private final Map<DigestType, String> fingerprints = new ConcurrentHashMap<>();
+    private volatile String aki;
+    private volatile String ski;
+
+    private EntrySnapshot(X509Certificate[] chain) throws CryptoException {
+        this.chain = chain;
+
+        X509Certificate cert = chain[0];
+        subject = X500NameUtils.x500PrincipalToX500Name(cert.getSubjectX500Principal());
+        issuer = X500NameUtils.x500PrincipalToX500Name(cert.getIssuerX500Principal());
+        keyInfo = KeyPairUtil.getKeyInfo(cert.getPublicKey());
+
+        Date earliest = cert.getNotAfter();
+        for (X509Certificate x509Certificate : chain) {
+            if (x509Certificate.getNotAfter().before(earliest)) {
+                earliest = x509Certificate.getNotAfter();
+            }
+        }
+        earliestExpiry = earliest;
+    }
+
+    /**
+     * Get the entry's certificate, i.e. the trusted certificate or the first certificate of the
+     * ordered key pair chain.
+     *
+     * @return Certificate
+     */
+    X509Certificate getCertificate() {
+        return chain[0];
+    }
+
+    KeyInfo getKeyInfo() {
+        return keyInfo;
+    }
+
+    Date getValidityStart() {
+        return chain[0].getNotBefore();
+    }
+
+    Date getExpiry() {
+        return chain[0].getNotAfter();
+    }
+
+    /**
+     * Get the earliest expiry date of all certificates in the chain.
+     *
+     * @return Earliest expiry date
+     */
+    Date getEarliestExpiry() {
+        return earliestExpiry;
+    }
+
+    String getSubjectDN() {
+        return subject.toString();
+    }
+
+    String getIssuerDN() {
+        return issuer.toString();
+    }
+
+    String getSubjectCN() {
+        return X500NameUtils.extractCN(subject);
+    }
+
+    String getIssuerCN() {
+        return X500NameUtils.extractCN(issuer);
+    }
+
+    String getSubjectO() {
+        return X500NameUtils.getRdn(subject, KseX500NameStyle.O);
+    }
+
+    String getIssuerO() {
+        return X500NameUtils.getRdn(issuer, KseX500NameStyle.O);
+    }
+
+    String getSerialNumberHex() {
+        return X509CertUtil.getSerialNumberAsHex(chain[0]);
+    }
+
+    String getSerialNumberDec() {
+        return X509CertUtil.getSerialNumberAsDec(chain[0]);
+    }
+
+    String getFingerprint(DigestType fingerprintAlg) throws CryptoException {
+        String fingerprint = fingerprints.get(fingerprintAlg);
+        if (fingerprint == null) {
+            fingerprint = X509CertUtil.getFingerprint(chain[0], fingerprintAlg);
+            fingerprints.put(fingerprintAlg, fingerprint);
+        }
+        return fingerprint;
+    }
+
+    String getSKI() {
+        if (ski == null) {
+            try {
+                byte[] skiBytes = X509Ext.getSubjectKeyIdentifier(chain[0]).getKeyIdentifier();
+                ski = HexUtil.getHexString(skiBytes);
+            } catch (Exception e) {
+                ski = "-";
+            }
+        }
+        return ski;
+    }
+
+    String getAKI() {
+        if (aki == null) {
+            try {
+                byte[] akiValue = chain[0].getExtensionValue(X509ExtensionType.AUTHORITY_KEY_IDENTIFIER.oid());
+                byte[] octets = X509Ext.unwrapExtension(akiValue);
+                byte[] akiBytes = AuthorityKeyIdentifier.getInstance(octets).getKeyIdentifierOctets();
+                aki = HexUtil.getHexString(akiBytes);
+            } catch (Exception e) {
+                aki = "-";
+            }
+        }
+        return aki;
+    }
+
+    /**
+     * Snapshots of the entries of one KeyStore history.
+     * <p>
+     * Snapshots are cached against a digest of the DER encoding of the entry's certificates, so
+     * reloading the table, toggling columns, renaming an entry, undoing a change or reloading the
+     * KeyStore file does not parse the certificates again. A changed entry has a different encoding
+     * and therefore gets a new snapshot. The table only shows one fingerprint algorithm at a time,
+     * so keeping the fingerprints of other algorithms in the snapshots costs next to nothing.
+     * <p>
+     * There is one cache per history, which is shared by all table models of that history and
+     * released together with it.
+     */
+    static final class Cache {
+        private static final int MIN_CACHED_SNAPSHOTS = 64;
+
+        private static final Map<KeyStoreHistory, Cache> CACHES = Collections.synchronizedMap(new WeakHashMap<>());
+
+        // Room for the entries of the KeyStore and the same number of replaced entries, which undo
+        // and redo bring back
+        private int maxCachedSnapshots = MIN_CACHED_SNAPSHOTS;
+
+        private final Map<CacheKey, EntrySnapshot> snapshots = new LinkedHashMap<CacheKey, EntrySnapshot>(16,
+                                                                                                          0.75f,
+                                                                                                          true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, EntrySnapshot> eldest) {
+                return size() > maxCachedSnapshots;
+            }
+        };
+
+        /**
+         * Get the cache of a KeyStore history.
+         *
+         * @param history KeyStore history
+         * @return The cache
+         */
+        static Cache forHistory(KeyStoreHistory history) {
+            return CACHES.computeIfAbsent(history, h -> new Cache());
+        }
+
+        /**
+         * Size the cache for a KeyStore with the supplied number of entries.
+         *
+         * @param entries Number of entries
+         */
+        void resize(int entries) {
+            synchronized (snapshots) {
+                maxCachedSnapshots = Math.max(MIN_CACHED_SNAPSHOTS, 2 * entries);
+            }
+        }
+
+        int size() {
+            synchronized (snapshots) {
+                return snapshots.size();
+            }
+        }
+
+        /**
+         * Get the snapshot of a trusted certificate or key pair entry.
+         *
+         * @param alias    Entry alias
+         * @param keyStore KeyStore containing the entry
+         * @return The snapshot or null if the entry has no certificate, i.e. it is a key entry
+         * @throws KeyStoreException If a problem occurred while accessing the KeyStore
+         * @throws CryptoException   If a problem occurred while encoding or converting the certificates
+         */
+        EntrySnapshot get(String alias, KseKeyStore keyStore) throws KeyStoreException, CryptoException {
+            Certificate[] certs;
+
+            if (KeyStoreUtil.isTrustedCertificateEntry(alias, keyStore)) {
+                certs = new Certificate[] { keyStore.getCertificate(alias) };
+            } else {
+                certs = keyStore.getCertificateChain(alias);
+            }
+
+            if (certs == null || certs.length == 0 || certs[0] == null) {
+                return null;
+            }
+
+            CacheKey key = new CacheKey(certs);
+
+            synchronized (snapshots) {
+                EntrySnapshot snapshot = snapshots.get(key);
+                if (snapshot != null) {
+                    return snapshot;
+                }
+            }
+
+            // Key pair - first certificate in chain will be for the private key
+            X509Certificate[] x509Certs = X509CertUtil.convertCertificates(certs);
+            EntrySnapshot snapshot = new EntrySnapshot(X509CertUtil.orderX509CertChain(x509Certs));
+
+            synchronized (snapshots) {
+                snapshots.put(key, snapshot);
+            }
+
+            return snapshot;
+        }
+    }
+
+    private static final class CacheKey {
+        private final byte[] digest;
+        private final int hashCode;
+
+        private CacheKey(Certificate[] certs) throws CryptoException {
+            MessageDigest messageDigest = DigestUtil.getMessageDigester(DigestType.SHA256);
+            try {
+                for (Certificate cert : certs) {
+                    messageDigest.update(cert.getEncoded());
+                }
+            } catch (CertificateEncodingException ex) {
+                throw new CryptoException(ex);
+            }
+            digest = messageDigest.digest();
+            hashCode = Arrays.hashCode(digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            return Arrays.equals(digest, ((CacheKey) obj).digest);
+        }
+    }
+}
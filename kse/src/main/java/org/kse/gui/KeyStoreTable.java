@@ -0,0 +1,92 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.gui;
+
+import java.awt.Graphics;
+
+import javax.swing.event.ChangeListener;
+import javax.swing.table.TableModel;
+
+import org.kse.gui.table.ToolTipTable;
+
+/**
+ * The table that displays a KeyStore's entries. Columns that are expensive to compute are only
+ * computed in the background while their rows are painted, see
+ * {@link KeyStoreTableModel#getDisplayValueAt(int, int)}. Everything else that reads the table, like
+ * sorting, sizing columns or exporting, gets the computed values.
+ */
+public class KeyStoreTable extends ToolTipTable {
+    private static final long serialVersionUID = 1L;
+
+    // Computed values do not change the sort order or the column widths, only the painted cells
+    private ChangeListener lazyValuesListener;
+    private boolean painting;
+
+    /**
+     * Construct a KeyStoreTable.
+     *
+     * @param keyStoreTableModel The table model
+     */
+    public KeyStoreTable(KeyStoreTableModel keyStoreTableModel) {
+        super(keyStoreTableModel);
+    }
+
+    /**
+     * Set the table model. The table is repainted when lazily computed values of the model become
+     * available, see {@link KeyStoreTableModel#addLazyValuesListener(ChangeListener)}.
+     *
+     * @param dataModel The table model
+     */
+    @Override
+    public void setModel(TableModel dataModel) {
+        TableModel oldModel = getModel();
+        super.setModel(dataModel);
+
+        // Also called by the JTable constructor, before the fields of this class are initialized
+        if (lazyValuesListener == null) {
+            lazyValuesListener = e -> repaint();
+        }
+        if (oldModel instanceof KeyStoreTableModel) {
+            ((KeyStoreTableModel) oldModel).removeLazyValuesListener(lazyValuesListener);
+        }
+        if (dataModel instanceof KeyStoreTableModel) {
+            ((KeyStoreTableModel) dataModel).addLazyValuesListener(lazyValuesListener);
+        }
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        painting = true;
+        try {
+            super.paintComponent(g);
+        } finally {
+            painting = false;
+        }
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        if (painting && getModel() instanceof KeyStoreTableModel) {
+            return ((KeyStoreTableModel) getModel()).getDisplayValueAt(convertRowIndexToModel(row),
+                                                                       convertColumnIndexToModel(column));
+        }
+        return super.getValueAt(row, column);
+    }
+}
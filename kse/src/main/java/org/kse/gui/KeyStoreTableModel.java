@@ -24,40 +24,42 @@ import static org.kse.crypto.KeyType.SYMMETRIC;
 import java.security.GeneralSecurityException;
 import java.security.Key;
 import java.security.KeyStoreException;
+import java.security.MessageDigest;
 import java.security.PrivateKey;
 import java.security.PublicKey;
-import java.security.cert.Certificate;
-import java.security.cert.X509Certificate;
 import java.text.MessageFormat;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
-import java.util.Calendar;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.Enumeration;
-import java.util.Iterator;
-import java.util.Map.Entry;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 import javax.crypto.SecretKey;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 
-import org.bouncycastle.asn1.x500.X500Name;
-import org.bouncycastle.asn1.x509.AuthorityKeyIdentifier;
 import org.kse.crypto.CryptoException;
 import org.kse.crypto.KeyInfo;
-import org.kse.crypto.digest.DigestType;
+import org.kse.crypto.digest.DigestUtil;
 import org.kse.crypto.keypair.KeyPairUtil;
+import org.kse.crypto.keystore.CopyOnWriteKeyStore;
 import org.kse.crypto.keystore.KeyStoreType;
 import org.kse.crypto.keystore.KeyStoreUtil;
 import org.kse.crypto.keystore.KseKeyStore;
 import org.kse.crypto.secretkey.PasswordType;
 import org.kse.crypto.secretkey.SecretKeyType;
 import org.kse.crypto.secretkey.SecretKeyUtil;
-import org.kse.crypto.x509.KseX500NameStyle;
-import org.kse.crypto.x509.X500NameUtils;
-import org.kse.crypto.x509.X509CertUtil;
-import org.kse.crypto.x509.X509Ext;
-import org.kse.crypto.x509.X509ExtensionType;
 import org.kse.gui.table.ToolTipTableModel;
 import org.kse.utilities.history.KeyStoreHistory;
 import org.kse.utilities.history.KeyStoreState;
@@ -71,8 +73,26 @@ public class KeyStoreTableModel extends ToolTipTableModel {
     private static ResourceBundle res = ResourceBundle.getBundle("org/kse/gui/resources");
     private String[] columnNames;
     private Class<?>[] columnTypes;
-    private Object[][] data = new Object[0][0];
+    private List<Object[]> data = new ArrayList<>();
+    private List<String> rowAliases = new ArrayList<>();
+    private Comparator<String> aliasComparator = String::compareTo;
+    private KseKeyStore loadedKeyStore;
     private KeyStoreHistory history;
+    private EntrySnapshot.Cache snapshots;
+
+    // Incremented on every full reload to discard outdated lazy column computations
+    private volatile int generation;
+
+    private static final Executor LAZY_COLUMN_EXECUTOR = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1)), runnable -> {
+                Thread thread = new Thread(runnable, "kse-table-columns");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    // Above this number of changed entries a full reload is faster than
+    // inserting and removing single rows
+    private static final int MAX_INCREMENTAL_CHANGES = 64;
 
     // This array of nulls is used by the constructor to initialize the
     // ToolTipTableModel that manages the tool tips. This reference must
@@ -167,7 +187,9 @@ public class KeyStoreTableModel extends ToolTipTableModel {
     }
 
     /**
-     * Load the KeyStoreTableModel with the entries from a KeyStore.
+     * Load the KeyStoreTableModel with the entries from a KeyStore. If the model was last loaded from
+     * the same history and only a few entries have changed since then, only the rows of those entries
+     * are updated.
      *
      * @param history KeyStore history
      * @throws GeneralSecurityException If a KeyStore problem occurs while accessing the KeyStore's
@@ -176,10 +198,36 @@ public class KeyStoreTableModel extends ToolTipTableModel {
      *                                  entries
      */
     public void load(KeyStoreHistory history) throws GeneralSecurityException, CryptoException {
-        this.history = history;
-        KeyStoreState currentState = history.getCurrentState();
+        KseKeyStore keyStore = history.getCurrentState().getKeyStore();
 
-        KseKeyStore keyStore = currentState.getKeyStore();
+        snapshots = EntrySnapshot.Cache.forHistory(history);
+        snapshots.resize(keyStore.size());
+
+        // Entries of PKCS #11 KeyStores are changed in place, so there is nothing to compare with
+        if (history == this.history && KeyStoreType.resolveJce(keyStore.getType()).isFileBased()) {
+            Set<String> changedAliases = getChangedAliases(loadedKeyStore, keyStore);
+
+            if (changedAliases != null && changedAliases.size() <= MAX_INCREMENTAL_CHANGES) {
+                // The changed aliases are normalized, rows must show the aliases as they are stored
+                Map<String, String> storedAliases = getStoredAliases(keyStore, changedAliases);
+
+                for (String normalizedAlias : changedAliases) {
+                    String alias = storedAliases.get(normalizedAlias);
+                    if (alias != null) {
+                        entryReplaced(alias);
+                    } else {
+                        entryRemoved(normalizedAlias);
+                    }
+                }
+
+                refreshLockStatus();
+                loadedKeyStore = takeSnapshot(keyStore);
+                return;
+            }
+        }
+
+        this.history = history;
+        generation++;
         KeyStoreType type = KeyStoreType.resolveJce(keyStore.getType());
 
         Enumeration<String> aliases = keyStore.aliases();
@@ -194,365 +242,434 @@ public class KeyStoreTableModel extends ToolTipTableModel {
             sortedAliases.put(alias, alias);
         }
 
-        data = new Object[sortedAliases.size()][nofColumns];
+        List<String> newAliases = new ArrayList<>(sortedAliases.size());
+        List<Object[]> newData = new ArrayList<>(sortedAliases.size());
 
-        int i = 0;
-        for (Iterator<Entry<String, String>> itr = sortedAliases.entrySet().iterator(); itr.hasNext(); i++) {
-            String alias = itr.next().getKey();
+        for (String alias : sortedAliases.keySet()) {
+            newAliases.add(alias);
+            newData.add(createRow(alias, keyStore, history.getCurrentState()));
+        }
 
-            EntryType entryType = null;
+        rowAliases = newAliases;
+        data = newData;
+        aliasComparator = type.getAliasComparator();
+        loadedKeyStore = takeSnapshot(keyStore);
 
-            // Type column
-            if (KeyStoreUtil.isTrustedCertificateEntry(alias, keyStore)) {
-                entryType = EntryType.TRUST_CERT;
-            } else if (KeyStoreUtil.isKeyPairEntry(alias, keyStore)) {
-                entryType = EntryType.KEY_PAIR;
-            } else {
-                entryType = EntryType.KEY;
-            }
+        fireTableDataChanged();
+    }
 
-            data[i][0] = entryType;
+    /**
+     * Remove the row of an entry that is no longer in the KeyStore. Rows are found with the alias
+     * comparator of the KeyStore type, so the alias may be normalized.
+     */
+    private void entryRemoved(String alias) {
+        int index = findRow(alias);
 
-            // Lock column - only applies to KeyStores types that actually support passwords for entries
-            if ((entryType == EntryType.KEY_PAIR || entryType == EntryType.KEY) && type.hasEntryPasswords()) {
-                if (currentState.getEntryPassword(alias) != null) {
-                    data[i][1] = Boolean.FALSE; // Unlocked
-                } else {
-                    data[i][1] = Boolean.TRUE; // Locked
-                }
-            } else {
-                data[i][1] = null; // Lock status does not apply
-            }
+        if (index >= 0) {
+            rowAliases.remove(index);
+            data.remove(index);
+            fireTableRowsDeleted(index, index);
+        }
+    }
 
-            Expiration expiration;
+    /**
+     * Recreate the row of an entry that has been added, replaced or otherwise changed, or insert it if
+     * the model has no row for it yet.
+     */
+    private void entryReplaced(String alias) throws GeneralSecurityException, CryptoException {
+        KeyStoreState currentState = history.getCurrentState();
+        KseKeyStore keyStore = currentState.getKeyStore();
 
-            // Expiry status column
-            Date expiry = getCertificateExpiry(alias, keyStore);
-            ZonedDateTime now = ZonedDateTime.now(ZoneId.systemDefault());
-            ZonedDateTime nowPlusExpiryWarnDays = now.plusDays(expiryWarnDays);
-            if (expiry == null) {
-                expiration = null; // No certExpiration - must be a key entry
-            } else {
-                ZonedDateTime expiryDateTime = expiry.toInstant().atZone(ZoneId.systemDefault());
-                if (now.isAfter(expiryDateTime)) {
-                    expiration = Expiration.EXPIRED;
-                } else {
-                    if (nowPlusExpiryWarnDays.isAfter(expiryDateTime)) {
-                        expiration = Expiration.ALMOST_EXPIRED;
-                    } else {
-                        expiration = Expiration.NOT_EXPIRED;
-                    }
-                }
-            }
+        int index = findRow(alias);
 
-            data[i][2] = expiration;
+        if (!keyStore.containsAlias(alias) || !KeyStoreUtil.isSupportedEntryType(alias, keyStore)) {
+            entryRemoved(alias);
+            return;
+        }
 
-            if (iNameColumn > 0) {
-                // Alias column
-                data[i][iNameColumn] = alias;
-            }
+        Object[] row = createRow(alias, keyStore, currentState);
 
-            KeyInfo keyInfo = getKeyInfo(alias, keyStore, currentState);
+        if (index >= 0) {
+            rowAliases.set(index, alias);
+            data.set(index, row);
+            fireTableRowsUpdated(index, index);
+        } else {
+            index = -(index + 1);
+            rowAliases.add(index, alias);
+            data.add(index, row);
+            fireTableRowsInserted(index, index);
+        }
+    }
 
-            if (keyInfo != null) {
-                // Algorithm column
-                if (iAlgorithmColumn > 0) {
-                    data[i][iAlgorithmColumn] = getAlgorithmName(keyInfo);
-                }
+    private int findRow(String alias) {
+        return Collections.binarySearch(rowAliases, alias, aliasComparator);
+    }
 
-                // Key Size column
-                if (iKeySizeColumn > 0) {
-                    data[i][iKeySizeColumn] = keyInfo.getSize();
-                }
-                // EC curve column
-                if (keyStoreTableColumns.getEnableCurve()) {
-                    data[i][iCurveColumn] = keyInfo.getDetailedAlgorithm();
-                }
-            }
-            if (iCertValidityStartColumn > 0) {
-                data[i][iCertValidityStartColumn] = getCertificateValidityStart(alias, keyStore);
-            }
-            if (iCertExpiryColumn > 0) {
-                data[i][iCertExpiryColumn] = expiry;
-            }
-            if (iLastModifiedColumn > 0) {
-                // Modified date column - only applies to non-PKCS #11/#12 KeyStores
-                if (!keyStore.getType().equals(KeyStoreType.PKCS12.jce()) &&
-                    !keyStore.getType().equals(KeyStoreType.PKCS11.jce())) {
-                    data[i][iLastModifiedColumn] = keyStore.getCreationDate(alias);
-                } else {
-                    data[i][iLastModifiedColumn] = null;
-                }
-            }
-            if (iSubjectDNColumn > 0) {
-                if (entryType != EntryType.KEY) {
-                    data[i][iSubjectDNColumn] = getCertificateSubjectDN(alias, keyStore);
-                } else {
-                    data[i][iSubjectDNColumn] = null;
-                }
-            }
-            if (iIssuerDNColumn > 0) {
-                if (entryType != EntryType.KEY) {
-                    data[i][iIssuerDNColumn] = getCertificateIssuerDN(alias, keyStore);
-                } else {
-                    data[i][iIssuerDNColumn] = null;
-                }
-            }
-            if (iSerialNumberHexColumn > 0) {
-                if (entryType != EntryType.KEY) {
-                    data[i][iSerialNumberHexColumn] = getCertificateSerialNumberHex(alias, keyStore);
-                } else {
-                    data[i][iSerialNumberHexColumn] = null;
-                }
-            }
-            if (iSerialNumberDecColumn > 0) {
-                if (entryType != EntryType.KEY) {
-                    data[i][iSerialNumberDecColumn] = getCertificateSerialNumberDec(alias, keyStore);
-                } else {
-                    data[i][iSerialNumberDecColumn] = null;
-                }
-            }
-            if (iSubjectCNColumn > 0) {
-                if (entryType != EntryType.KEY) {
-                    data[i][iSubjectCNColumn] = getCertificateSubjectCN(alias, keyStore);
-                } else {
-                    data[i][iSubjectCNColumn] = null;
-                }
-            }
-            if (iIssuerCNColumn > 0) {
-                if (entryType != EntryType.KEY) {
-                    data[i][iIssuerCNColumn] = getCertificateIssuerCN(alias, keyStore);
-                } else {
-                    data[i][iIssuerCNColumn] = null;
-                }
-            }
-            if (iSubjectOColumn > 0) {
-                if (entryType != EntryType.KEY) {
-                    data[i][iSubjectOColumn] = getCertificateSubjectO(alias, keyStore);
-                } else {
-                    data[i][iSubjectOColumn] = null;
-                }
-            }
-            if (iIssuerOColumn > 0) {
-                if (entryType != EntryType.KEY) {
-                    data[i][iIssuerOColumn] = getCertificateIssuerO(alias, keyStore);
-                } else {
-                    data[i][iIssuerOColumn] = null;
-                }
-            }
-            if (iAKIColumn > 0) {
-                if (entryType != EntryType.KEY) {
-                    data[i][iAKIColumn] = getCertificateAKI(alias, keyStore);
-                } else {
-                    data[i][iAKIColumn] = null;
-                }
-            }
-            if (iSKIColumn > 0) {
-                if (entryType != EntryType.KEY) {
-                    data[i][iSKIColumn] = getCertificateSKI(alias, keyStore);
-                } else {
-                    data[i][iSKIColumn] = null;
-                }
-            }
-            if (iFingerprintColumn > 0) {
-                if (entryType != EntryType.KEY) {
-                    data[i][iFingerprintColumn] = getCertificateFingerprint(alias, keyStore,
-                                                                            keyStoreTableColumns.getFingerprintAlg());
-                } else {
-                    data[i][iFingerprintColumn] = null;
-                }
+    /**
+     * Unlocking an entry does not create a new history state, so the lock column is compared with the
+     * current entry passwords and changed rows are recreated.
+     */
+    private void refreshLockStatus() throws GeneralSecurityException, CryptoException {
+        KeyStoreState currentState = history.getCurrentState();
+        KseKeyStore keyStore = currentState.getKeyStore();
+
+        for (int i = 0; i < data.size(); i++) {
+            Object locked = data.get(i)[1];
+
+            if (locked != null && locked.equals(currentState.getEntryPassword(rowAliases.get(i)) != null)) {
+                data.set(i, createRow(rowAliases.get(i), keyStore, currentState));
+                fireTableRowsUpdated(i, i);
             }
         }
+    }
 
-        fireTableDataChanged();
+    private static KseKeyStore takeSnapshot(KseKeyStore keyStore) {
+        if (keyStore instanceof CopyOnWriteKeyStore) {
+            // Only copies the changed entries, the base KeyStore is shared
+            return new CopyOnWriteKeyStore(keyStore);
+        }
+        return keyStore;
     }
 
-    private Date getCertificateValidityStart(String alias, KseKeyStore keyStore) throws CryptoException, KeyStoreException {
-        if (KeyStoreUtil.isTrustedCertificateEntry(alias, keyStore)) {
-            return X509CertUtil.convertCertificate(keyStore.getCertificate(alias)).getNotBefore();
-        } else {
-            Certificate[] chain = keyStore.getCertificateChain(alias);
+    private static Map<String, String> getStoredAliases(KseKeyStore keyStore, Set<String> normalizedAliases)
+            throws KeyStoreException {
+        Map<String, String> storedAliases = new HashMap<>();
+        if (normalizedAliases.isEmpty()) {
+            return storedAliases;
+        }
 
-            if (chain == null) {
-                return null; // Key entry - no validity start date
+        KeyStoreType type = KeyStoreType.resolveJce(keyStore.getType());
+        Enumeration<String> aliases = keyStore.aliases();
+        while (aliases.hasMoreElements()) {
+            String alias = aliases.nextElement();
+            String normalizedAlias = type.normalizeAlias(alias);
+            if (normalizedAliases.contains(normalizedAlias)) {
+                storedAliases.put(normalizedAlias, alias);
             }
+        }
+        return storedAliases;
+    }
 
-            // Key pair - first certificate in chain will be for the private key
-            X509Certificate[] x509Chain = X509CertUtil.orderX509CertChain(X509CertUtil.convertCertificates(chain));
-            return x509Chain[0].getNotBefore();
+    private static Set<String> getChangedAliases(KseKeyStore previous, KseKeyStore current) {
+        if (previous == current) {
+            return Collections.emptySet();
+        } else if (current instanceof CopyOnWriteKeyStore) {
+            return ((CopyOnWriteKeyStore) current).getChangedAliases(previous);
+        } else if (previous instanceof CopyOnWriteKeyStore) {
+            return ((CopyOnWriteKeyStore) previous).getChangedAliases(current);
         }
+        return null;
     }
 
-    private Date getCertificateExpiry(String alias, KseKeyStore keyStore) throws CryptoException, KeyStoreException {
+    private Object[] createRow(String alias, KseKeyStore keyStore, KeyStoreState currentState)
+            throws GeneralSecurityException, CryptoException {
+        KeyStoreType type = KeyStoreType.resolveJce(keyStore.getType());
+        Object[] row = new Object[nofColumns];
+
+        EntryType entryType = null;
+
+        // Type column
         if (KeyStoreUtil.isTrustedCertificateEntry(alias, keyStore)) {
-            return X509CertUtil.convertCertificate(keyStore.getCertificate(alias)).getNotAfter();
+            entryType = EntryType.TRUST_CERT;
+        } else if (KeyStoreUtil.isKeyPairEntry(alias, keyStore)) {
+            entryType = EntryType.KEY_PAIR;
         } else {
-            Certificate[] chain = keyStore.getCertificateChain(alias);
+            entryType = EntryType.KEY;
+        }
 
-            if (chain == null) {
-                // Key entry - no expiry date
-                return null;
-            }
+        row[0] = entryType;
 
-            // Key pair - first certificate in chain will be for the private key
-            X509Certificate[] x509Chain = X509CertUtil.orderX509CertChain(X509CertUtil.convertCertificates(chain));
-            if (expiryWarnDays < 1) {
-                return x509Chain[0].getNotAfter();
+        // Lock column - only applies to KeyStores types that actually support passwords for entries
+        if ((entryType == EntryType.KEY_PAIR || entryType == EntryType.KEY) && type.hasEntryPasswords()) {
+            if (currentState.getEntryPassword(alias) != null) {
+                row[1] = Boolean.FALSE; // Unlocked
             } else {
-                Calendar cal = Calendar.getInstance();
-                cal.set(9999, Calendar.FEBRUARY, 1);
-                Date earliest = cal.getTime();
-                for (X509Certificate x509Certificate : x509Chain) {
-                    if (x509Certificate.getNotAfter().before(earliest)) {
-                        earliest = x509Certificate.getNotAfter();
-                    }
-                }
-                return earliest;
+                row[1] = Boolean.TRUE; // Locked
             }
+        } else {
+            row[1] = null; // Lock status does not apply
         }
-    }
 
-    private KeyInfo getKeyInfo(String alias, KseKeyStore keyStore, KeyStoreState currentState)
-            throws CryptoException, GeneralSecurityException {
-        if (KeyStoreUtil.isTrustedCertificateEntry(alias, keyStore)) {
-            // Get key info from certificate
-            X509Certificate cert = X509CertUtil.convertCertificate(keyStore.getCertificate(alias));
-            return KeyPairUtil.getKeyInfo(cert.getPublicKey());
-        } else {
-            Certificate[] chain = keyStore.getCertificateChain(alias);
+        // Certificate details - null for a key entry
+        EntrySnapshot snapshot = entryType != EntryType.KEY ? snapshots.get(alias, keyStore) : null;
 
-            if (chain != null) {
-                // Key pair - first certificate in chain will be for the private key
-                X509Certificate[] x509Chain = X509CertUtil.orderX509CertChain(X509CertUtil.convertCertificates(chain));
+        Expiration expiration;
 
-                return KeyPairUtil.getKeyInfo(x509Chain[0].getPublicKey());
+        // Expiry status column
+        Date expiry = getCertificateExpiry(snapshot);
+        ZonedDateTime now = ZonedDateTime.now(ZoneId.systemDefault());
+        ZonedDateTime nowPlusExpiryWarnDays = now.plusDays(expiryWarnDays);
+        if (expiry == null) {
+            expiration = null; // No certExpiration - must be a key entry
+        } else {
+            ZonedDateTime expiryDateTime = expiry.toInstant().atZone(ZoneId.systemDefault());
+            if (now.isAfter(expiryDateTime)) {
+                expiration = Expiration.EXPIRED;
             } else {
-                // Key entry - get key info if entry is unlocked
-                if (currentState.getEntryPassword(alias) != null) {
-                    char[] keyPassword = null;
-
-                    keyPassword = currentState.getEntryPassword(alias).toCharArray();
-
-                    Key key = keyStore.getKey(alias, keyPassword);
-                    if (key instanceof SecretKey) {
-                        return SecretKeyUtil.getKeyInfo((SecretKey) key);
-                    } else if (key instanceof PrivateKey) {
-                        return KeyPairUtil.getKeyInfo((PrivateKey) key);
-                    } else if (key instanceof PublicKey) {
-                        return KeyPairUtil.getKeyInfo((PublicKey) key);
-                    }
+                if (nowPlusExpiryWarnDays.isAfter(expiryDateTime)) {
+                    expiration = Expiration.ALMOST_EXPIRED;
+                } else {
+                    expiration = Expiration.NOT_EXPIRED;
                 }
             }
         }
 
-        return null;
-    }
+        row[2] = expiration;
 
-    private String getAlgorithmName(KeyInfo keyInfo) {
-        String algorithm = keyInfo.getAlgorithm();
+        if (iNameColumn > 0) {
+            // Alias column
+            row[iNameColumn] = alias;
+        }
 
-        if (keyInfo.getKeyType() == SYMMETRIC) {
-            // Try and get friendly algorithm name for secret key
-            SecretKeyType secretKeyType = SecretKeyType.resolveJce(algorithm);
+        KeyInfo keyInfo = snapshot != null ? snapshot.getKeyInfo() : getKeyInfo(alias, keyStore, currentState);
 
-            if (secretKeyType != null) {
-                algorithm = secretKeyType.friendly();
+        if (keyInfo != null) {
+            // Algorithm column
+            if (iAlgorithmColumn > 0) {
+                row[iAlgorithmColumn] = getAlgorithmName(keyInfo);
+            }
+
+            // Key Size column
+            if (iKeySizeColumn > 0) {
+                row[iKeySizeColumn] = keyInfo.getSize();
+            }
+            // EC curve column
+            if (keyStoreTableColumns.getEnableCurve()) {
+                row[iCurveColumn] = keyInfo.getDetailedAlgorithm();
+            }
+        }
+        if (iCertValidityStartColumn > 0) {
+            row[iCertValidityStartColumn] = snapshot != null ? snapshot.getValidityStart() : null;
+        }
+        if (iCertExpiryColumn > 0) {
+            row[iCertExpiryColumn] = expiry;
+        }
+        if (iLastModifiedColumn > 0) {
+            // Modified date column - only applies to non-PKCS #11/#12 KeyStores
+            if (!keyStore.getType().equals(KeyStoreType.PKCS12.jce()) &&
+                !keyStore.getType().equals(KeyStoreType.PKCS11.jce())) {
+                row[iLastModifiedColumn] = keyStore.getCreationDate(alias);
             } else {
-                PasswordType passwordType = PasswordType.resolveJce(algorithm);
+                row[iLastModifiedColumn] = null;
+            }
+        }
 
-                if (passwordType != null) {
-                    algorithm = passwordType.friendly();
-                }
+        if (snapshot == null) {
+            // Remaining columns only apply to entries with a certificate
+            return row;
+        }
+
+        if (iSubjectDNColumn > 0) {
+            row[iSubjectDNColumn] = snapshot.getSubjectDN();
+        }
+        if (iIssuerDNColumn > 0) {
+            row[iIssuerDNColumn] = snapshot.getIssuerDN();
+        }
+        if (iSerialNumberHexColumn > 0) {
+            row[iSerialNumberHexColumn] = snapshot.getSerialNumberHex();
+        }
+        if (iSerialNumberDecColumn > 0) {
+            row[iSerialNumberDecColumn] = snapshot.getSerialNumberDec();
+        }
+        // Columns that need the certificate to be parsed further or digested are computed when
+        // their row is shown, see getDisplayValueAt
+        LazyColumns lazyColumns = new LazyColumns(snapshot, row, generation);
+        for (int col = 0; col < nofColumns; col++) {
+            if (isLazyColumn(col)) {
+                row[col] = lazyColumns;
             }
         }
 
-        return algorithm;
+        return row;
     }
 
-    private String getCertificateSubjectDN(String alias, KseKeyStore keyStore) throws CryptoException, KeyStoreException {
-        X509Certificate x509Cert = getCertificate(alias, keyStore);
-        return X500NameUtils.x500PrincipalToX500Name(x509Cert.getSubjectX500Principal()).toString();
+    /**
+     * Is the column computed when its row is shown for the first time?
+     */
+    boolean isLazyColumn(int col) {
+        return col > 2 && (col == iSubjectCNColumn || col == iIssuerCNColumn || col == iSubjectOColumn ||
+                           col == iIssuerOColumn || col == iAKIColumn || col == iSKIColumn ||
+                           col == iFingerprintColumn);
     }
 
-    private String getCertificateIssuerDN(String alias, KseKeyStore keyStore) throws CryptoException, KeyStoreException {
-        X509Certificate x509Cert = getCertificate(alias, keyStore);
-        return X500NameUtils.x500PrincipalToX500Name(x509Cert.getIssuerX500Principal()).toString();
+    /**
+     * Get a value that is as wide as the values of a column that is computed when its rows are shown,
+     * so the column can be sized without computing all of its values.
+     *
+     * @param col The column position
+     * @return The prototype value or null if the width of the values varies
+     */
+    Object getPrototypeValue(int col) {
+        if (col == iAKIColumn || col == iSKIColumn) {
+            // Key identifiers are usually SHA-1 hashes
+            return HexUtil.getHexString(new byte[20]);
+        } else if (col == iFingerprintColumn && keyStoreTableColumns.getFingerprintAlg() != null) {
+            try {
+                MessageDigest digester = DigestUtil.getMessageDigester(keyStoreTableColumns.getFingerprintAlg());
+                return HexUtil.getHexString(new byte[digester.getDigestLength()], "", 0, 0);
+            } catch (CryptoException e) {
+                return null;
+            }
+        }
+        return null;
     }
 
-    private String getCertificateSerialNumberHex(String alias, KseKeyStore ks) throws CryptoException, KeyStoreException {
-        X509Certificate x509Cert = getCertificate(alias, ks);
-        return X509CertUtil.getSerialNumberAsHex(x509Cert);
+    private Object getLazyValue(int col, EntrySnapshot snapshot) throws CryptoException {
+        if (col == iSubjectCNColumn) {
+            return snapshot.getSubjectCN();
+        } else if (col == iIssuerCNColumn) {
+            return snapshot.getIssuerCN();
+        } else if (col == iSubjectOColumn) {
+            return snapshot.getSubjectO();
+        } else if (col == iIssuerOColumn) {
+            return snapshot.getIssuerO();
+        } else if (col == iAKIColumn) {
+            return snapshot.getAKI();
+        } else if (col == iSKIColumn) {
+            return snapshot.getSKI();
+        } else if (col == iFingerprintColumn) {
+            return snapshot.getFingerprint(keyStoreTableColumns.getFingerprintAlg());
+        }
+        return null;
     }
 
-    private String getCertificateSerialNumberDec(String alias, KseKeyStore ks) throws CryptoException, KeyStoreException {
-        X509Certificate x509Cert = getCertificate(alias, ks);
-        return X509CertUtil.getSerialNumberAsDec(x509Cert);
+    private Object[] getLazyValues(LazyColumns lazyColumns) {
+        Object[] values = new Object[nofColumns];
+        for (int col = 0; col < nofColumns; col++) {
+            if (isLazyColumn(col)) {
+                try {
+                    values[col] = getLazyValue(col, lazyColumns.snapshot);
+                } catch (CryptoException e) {
+                    values[col] = null;
+                }
+            }
+        }
+        return values;
     }
 
-    private String getCertificateFingerprint(String alias, KseKeyStore ks, DigestType fingerprintAlg)
-            throws CryptoException, KeyStoreException {
-        X509Certificate x509Cert = getCertificate(alias, ks);
-        return X509CertUtil.getFingerprint(x509Cert, fingerprintAlg);
+    private void setLazyValues(LazyColumns lazyColumns, Object[] values) {
+        for (int col = 0; col < nofColumns; col++) {
+            if (lazyColumns.row[col] == lazyColumns) {
+                lazyColumns.row[col] = values[col];
+            }
+        }
     }
 
-    private String getCertificateSubjectCN(String alias, KseKeyStore keyStore) throws CryptoException, KeyStoreException {
-        X509Certificate x509Cert = getCertificate(alias, keyStore);
-        return X500NameUtils.extractCN(x509Cert.getSubjectX500Principal());
+    private void computeLazyColumns(LazyColumns lazyColumns) {
+        if (lazyColumns.scheduled) {
+            return;
+        }
+        lazyColumns.scheduled = true;
+
+        LAZY_COLUMN_EXECUTOR.execute(() -> {
+            if (lazyColumns.generation != generation) {
+                // Model has been reloaded in the meantime
+                return;
+            }
+
+            Object[] values = getLazyValues(lazyColumns);
+
+            SwingUtilities.invokeLater(() -> {
+                setLazyValues(lazyColumns, values);
+                fireLazyValuesComputed();
+            });
+        });
+    }
+
+    /**
+     * Add a listener that is notified on the event dispatch thread when lazily computed values have
+     * become available. The values do not change the sort order, so no table model event is fired for
+     * them.
+     *
+     * @param listener The listener
+     */
+    public void addLazyValuesListener(ChangeListener listener) {
+        listenerList.add(ChangeListener.class, listener);
     }
 
-    private String getCertificateIssuerCN(String alias, KseKeyStore keyStore) throws CryptoException, KeyStoreException {
-        X509Certificate x509Cert = getCertificate(alias, keyStore);
-        return X500NameUtils.extractCN(x509Cert.getIssuerX500Principal());
+    /**
+     * Remove a listener that was added with {@link #addLazyValuesListener(ChangeListener)}.
+     *
+     * @param listener The listener
+     */
+    public void removeLazyValuesListener(ChangeListener listener) {
+        listenerList.remove(ChangeListener.class, listener);
     }
 
-    private String getCertificateSKI(String alias, KseKeyStore keyStore) throws CryptoException, KeyStoreException {
-        X509Certificate x509Cert = getCertificate(alias, keyStore);
-        try {
-            byte[] skiBytes = X509Ext.getSubjectKeyIdentifier(x509Cert).getKeyIdentifier();
-            return HexUtil.getHexString(skiBytes);
-        } catch (Exception e) {
-            return "-";
+    private void fireLazyValuesComputed() {
+        ChangeEvent event = new ChangeEvent(this);
+        for (ChangeListener listener : listenerList.getListeners(ChangeListener.class)) {
+            listener.stateChanged(event);
         }
     }
 
-    private String getCertificateAKI(String alias, KseKeyStore keyStore) throws CryptoException, KeyStoreException {
-        X509Certificate x509Cert = getCertificate(alias, keyStore);
-        try {
-            byte[] akiValue = x509Cert.getExtensionValue(X509ExtensionType.AUTHORITY_KEY_IDENTIFIER.oid());
-            byte[] octets = X509Ext.unwrapExtension(akiValue);
-            byte[] akiBytes = AuthorityKeyIdentifier.getInstance(octets).getKeyIdentifierOctets();
-            return HexUtil.getHexString(akiBytes);
-        } catch (Exception e) {
-            return "-";
+    /**
+     * Placeholder for the lazy columns of a row that have not been computed yet.
+     */
+    private static final class LazyColumns {
+        private final EntrySnapshot snapshot;
+        private final Object[] row;
+        private final int generation;
+        private boolean scheduled;
+
+        private LazyColumns(EntrySnapshot snapshot, Object[] row, int generation) {
+            this.snapshot = snapshot;
+            this.row = row;
+            this.generation = generation;
         }
     }
 
-    private String getCertificateSubjectO(String alias, KseKeyStore keyStore) throws CryptoException, KeyStoreException {
-        X509Certificate x509Cert = getCertificate(alias, keyStore);
-        X500Name subject = X500NameUtils.x500PrincipalToX500Name(x509Cert.getSubjectX500Principal());
-        return X500NameUtils.getRdn(subject, KseX500NameStyle.O);
+    private Date getCertificateExpiry(EntrySnapshot snapshot) {
+        if (snapshot == null) {
+            // Key entry - no expiry date
+            return null;
+        }
+
+        if (expiryWarnDays < 1) {
+            return snapshot.getExpiry();
+        } else {
+            return snapshot.getEarliestExpiry();
+        }
     }
 
-    private String getCertificateIssuerO(String alias, KseKeyStore keyStore) throws CryptoException, KeyStoreException {
-        X509Certificate x509Cert = getCertificate(alias, keyStore);
-        X500Name issuer = X500NameUtils.x500PrincipalToX500Name(x509Cert.getIssuerX500Principal());
-        return X500NameUtils.getRdn(issuer, KseX500NameStyle.O);
+    private KeyInfo getKeyInfo(String alias, KseKeyStore keyStore, KeyStoreState currentState)
+            throws GeneralSecurityException, CryptoException {
+        // Key entry - get key info if entry is unlocked
+        if (currentState.getEntryPassword(alias) != null) {
+            char[] keyPassword = currentState.getEntryPassword(alias).toCharArray();
+
+            Key key = keyStore.getKey(alias, keyPassword);
+            if (key instanceof SecretKey) {
+                return SecretKeyUtil.getKeyInfo((SecretKey) key);
+            } else if (key instanceof PrivateKey) {
+                return KeyPairUtil.getKeyInfo((PrivateKey) key);
+            } else if (key instanceof PublicKey) {
+                return KeyPairUtil.getKeyInfo((PublicKey) key);
+            }
+        }
+
+        return null;
     }
 
-    private X509Certificate getCertificate(String alias, KseKeyStore keyStore) throws KeyStoreException, CryptoException {
-        X509Certificate x509Cert = null;
-        if (KeyStoreUtil.isTrustedCertificateEntry(alias, keyStore)) {
-            x509Cert = X509CertUtil.convertCertificate(keyStore.getCertificate(alias));
-        } else {
-            Certificate[] chain = keyStore.getCertificateChain(alias);
-            if (chain == null) {
-                return null;
+    private String getAlgorithmName(KeyInfo keyInfo) {
+        String algorithm = keyInfo.getAlgorithm();
+
+        if (keyInfo.getKeyType() == SYMMETRIC) {
+            // Try and get friendly algorithm name for secret key
+            SecretKeyType secretKeyType = SecretKeyType.resolveJce(algorithm);
+
+            if (secretKeyType != null) {
+                algorithm = secretKeyType.friendly();
+            } else {
+                PasswordType passwordType = PasswordType.resolveJce(algorithm);
+
+                if (passwordType != null) {
+                    algorithm = passwordType.friendly();
+                }
             }
-            // Key pair - first certificate in chain will be for the private key
-            X509Certificate[] x509Chain = X509CertUtil.orderX509CertChain(X509CertUtil.convertCertificates(chain));
-            x509Cert = x509Chain[0];
         }
-        return x509Cert;
+
+        return algorithm;
     }
 
     private void adjustColumns() {
@@ -702,7 +819,7 @@ public class KeyStoreTableModel extends ToolTipTableModel {
      */
     @Override
     public int getRowCount() {
-        return data.length;
+        return data.size();
     }
 
     /**
@@ -717,7 +834,8 @@ public class KeyStoreTableModel extends ToolTipTableModel {
     }
 
     /**
-     * Get the cell value at the given row and column position.
+     * Get the cell value at the given row and column position. Values of columns that have not been
+     * computed yet are computed now.
      *
      * @param row The row position
      * @param col The column position
@@ -725,7 +843,35 @@ public class KeyStoreTableModel extends ToolTipTableModel {
      */
     @Override
     public Object getValueAt(int row, int col) {
-        return data[row][col];
+        Object value = data.get(row)[col];
+
+        if (value instanceof LazyColumns) {
+            LazyColumns lazyColumns = (LazyColumns) value;
+            setLazyValues(lazyColumns, getLazyValues(lazyColumns));
+            value = lazyColumns.row[col];
+        }
+
+        return value;
+    }
+
+    /**
+     * Get the cell value at the given row and column position for display. Values of columns that
+     * have not been computed yet are computed in the background and null is returned until then.
+     *
+     * @param row The row position
+     * @param col The column position
+     * @return The cell value or null if it is still being computed
+     */
+    public Object getDisplayValueAt(int row, int col) {
+        Object value = data.get(row)[col];
+
+        if (value instanceof LazyColumns) {
+            // Only requested for rows that are shown, listeners are notified once computed
+            computeLazyColumns((LazyColumns) value);
+            return null;
+        }
+
+        return value;
     }
 
     /**
@@ -80,7 +80,6 @@ import javax.swing.JTable;
 import javax.swing.JToolBar;
 import javax.swing.KeyStroke;
 import javax.swing.ListSelectionModel;
-import javax.swing.RowSorter;
 import javax.swing.ScrollPaneConstants;
 import javax.swing.SwingUtilities;
 import javax.swing.WindowConstants;
@@ -204,7 +203,6 @@ import org.kse.gui.quickstart.JQuickStartPane;
 import org.kse.gui.statusbar.StatusBar;
 import org.kse.gui.statusbar.StatusBarChangeHandler;
 import org.kse.gui.table.TableUtil;
-import org.kse.gui.table.ToolTipTable;
 import org.kse.utilities.buffer.Buffer;
 import org.kse.utilities.history.KeyStoreHistory;
 import org.kse.utilities.history.KeyStoreState;
@@ -1758,9 +1756,11 @@ public final class KseFrame implements StatusBar {
 
     private JTable createEmptyKeyStoreTable() {
         KeyStoreTableModel ksModel = new KeyStoreTableModel(keyStoreTableColumns, preferences.getExpiryWarnDays());
-        final JTable jtKeyStore = new ToolTipTable(ksModel);
+        final JTable jtKeyStore = new KeyStoreTable(ksModel);
 
-        RowSorter<KeyStoreTableModel> sorter = new TableRowSorter<>(ksModel);
+        // The model fires row updates for changed entries, keep their sort position current
+        TableRowSorter<KeyStoreTableModel> sorter = new TableRowSorter<>(ksModel);
+        sorter.setSortsOnUpdates(true);
         jtKeyStore.setRowSorter(sorter);
 
         jtKeyStore.setShowGrid(false);
@@ -2820,7 +2820,9 @@ public final class KseFrame implements StatusBar {
 
         if (index >= 0) {
             keyStoreTables.remove(index);
-            histories.remove(index).nullPasswords();
+            KeyStoreHistory history = histories.remove(index);
+            history.nullPasswords();
+            history.deleteSpillFiles();
             jkstpKeyStores.remove(index);
         }
     }
@@ -2845,7 +2847,9 @@ public final class KseFrame implements StatusBar {
                     ksModel.load(history);
                     keyStoreTable.setModel(ksModel);
 
-                    keyStoreTable.setRowSorter(new TableRowSorter<>(ksModel));
+                    TableRowSorter<KeyStoreTableModel> sorter = new TableRowSorter<>(ksModel);
+                    sorter.setSortsOnUpdates(true);
+                    keyStoreTable.setRowSorter(sorter);
                     TableUtil.setColumnsToIconSize(keyStoreTable, 0, 1, 2);
                     TableUtil.addCustomRenderers(keyStoreTable, keyStoreTableColumns);
 
@@ -3511,8 +3515,18 @@ public final class KseFrame implements StatusBar {
         KeyStoreType keyStoreType = currentState.getType();
         String[] aliases = getSelectedEntryAliases();
 
-        return MessageFormat.format(res.getString("KseFrame.entries.statusbar"), keyStoreType.friendly(), size,
-                                    aliases.length, history.getPath());
+        String entriesText = MessageFormat.format(res.getString("KseFrame.entries.statusbar"),
+                                                  keyStoreType.friendly(), size, aliases.length, history.getPath());
+
+        if (!keyStoreType.isFileBased()) {
+            return entriesText;
+        }
+
+        String historyText = MessageFormat.format(res.getString("KseFrame.history.statusbar"),
+                                                  history.getMemoryFootprint() / 1024,
+                                                  history.getSpilledSize() / 1024);
+
+        return entriesText + ", " + historyText;
     }
 
     /**
@@ -137,6 +137,10 @@ public class TableColumnAdjuster implements PropertyChangeListener, TableModelLi
             return 0;
         }
 
+        if (isLazyColumn(column)) {
+            return getPrototypeWidth(column);
+        }
+
         int preferredWidth = 0;
         int maxWidth = table.getColumnModel().getColumn(column).getMaxWidth();
 
@@ -152,6 +156,32 @@ public class TableColumnAdjuster implements PropertyChangeListener, TableModelLi
         return preferredWidth;
     }
 
+    /*
+     * Columns that are computed in the background when their rows are shown. Reading all
+     * their cells here would compute them for every row, so they are sized from a prototype value.
+     */
+    private boolean isLazyColumn(int column) {
+        TableModel model = table.getModel();
+        return model instanceof KeyStoreTableModel &&
+               ((KeyStoreTableModel) model).isLazyColumn(table.convertColumnIndexToModel(column));
+    }
+
+    /*
+     * Get the preferred width for the prototype value of a lazy column, or 0 if it has none
+     */
+    private int getPrototypeWidth(int column) {
+        Object prototype = ((KeyStoreTableModel) table.getModel()).getPrototypeValue(
+                table.convertColumnIndexToModel(column));
+
+        if (prototype == null || table.getRowCount() == 0) {
+            return 0;
+        }
+
+        TableCellRenderer cellRenderer = table.getCellRenderer(0, column);
+        Component c = cellRenderer.getTableCellRendererComponent(table, prototype, false, false, 0, column);
+        return c.getPreferredSize().width + table.getIntercellSpacing().width;
+    }
+
     /*
      * Get the preferred width for the specified cell
      */
@@ -197,7 +227,7 @@ public class TableColumnAdjuster implements PropertyChangeListener, TableModelLi
             TableColumn column = table.getColumnModel().getColumn(i);
 
             int width = 0;
-            for (int row = 0; row < table.getRowCount(); row++) {
+            for (int row = 0; row < table.getRowCount() && !isLazyColumn(i); row++) {
                 width = 0;
                 TableCellRenderer renderer = table.getCellRenderer(row, i);
                 Component comp = renderer.getTableCellRendererComponent(table, table.getValueAt(row, i),
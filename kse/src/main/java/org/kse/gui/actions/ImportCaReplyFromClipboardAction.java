@@ -174,7 +174,8 @@ public class ImportCaReplyFromClipboardAction extends AuthorityCertificatesActio
                 else {
                     // Establish trust against current KeyStore
                     ArrayList<KseKeyStore> compKeyStores = new ArrayList<>();
-                    compKeyStores.add(keyStore);
+                    // the committed KeyStore of the current state lets the trust graph be reused until the next change
+                    compKeyStores.add(currentState.getKeyStore());
 
                     if (caCertificates != null) {
                         // Establish trust against CA Certificates KeyStore
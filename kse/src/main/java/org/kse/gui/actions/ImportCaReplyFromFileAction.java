@@ -182,7 +182,8 @@ public class ImportCaReplyFromFileAction extends AuthorityCertificatesAction imp
                 else {
                     // Establish trust against current KeyStore
                     ArrayList<KseKeyStore> compKeyStores = new ArrayList<>();
-                    compKeyStores.add(keyStore);
+                    // the committed KeyStore of the current state lets the trust graph be reused until the next change
+                    compKeyStores.add(currentState.getKeyStore());
 
                     if (caCertificates != null) {
                         // Establish trust against CA Certificates KeyStore
@@ -143,7 +143,8 @@ public class ImportTrustedCertificateAction extends AuthorityCertificatesAction
 
                 // Establish against current KeyStore
                 ArrayList<KseKeyStore> compKeyStores = new ArrayList<>();
-                compKeyStores.add(keyStore);
+                // the committed KeyStore of the current state lets the trust graph be reused until the next change
+                compKeyStores.add(currentState.getKeyStore());
 
                 if (caCertificates != null) {
                     // Establish trust against CA Certificates KeyStore
@@ -24,7 +24,9 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.nio.file.NoSuchFileException;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 import javax.swing.ImageIcon;
 import javax.swing.JFileChooser;
@@ -38,6 +40,7 @@ import org.kse.crypto.keystore.Pkcs12KeyStoreAdapter;
 import org.kse.gui.CurrentDirectory;
 import org.kse.gui.FileChooserFactory;
 import org.kse.gui.KseFrame;
+import org.kse.gui.dialogs.DOpeningKeyStores;
 import org.kse.gui.error.DError;
 import org.kse.gui.error.DProblem;
 import org.kse.gui.error.Problem;
@@ -54,6 +57,9 @@ public class OpenAction extends KeyStoreExplorerAction {
     private static final long serialVersionUID = 1L;
     private static int clipboardCount = 0;
 
+    // Loading is done in the background, the progress dialog is only shown if it takes longer
+    private static final long PROGRESS_DELAY_MILLIS = 300;
+
     private boolean newKeyStoreWasAdded = false;
 
     /**
@@ -163,7 +169,17 @@ public class OpenAction extends KeyStoreExplorerAction {
 
                 // try to load keystore
                 try {
-                    openedKeyStore = KeyStoreUtil.load(keyStoreFile, password);
+                    DOpeningKeyStores dOpeningKeyStores = loadKeyStores(List.of(keyStoreFile), List.of(password));
+
+                    if (dOpeningKeyStores.isCancelled()) {
+                        password.nullPassword();
+                        return;
+                    }
+                    if (dOpeningKeyStores.getException(0) != null) {
+                        throw dOpeningKeyStores.getException(0);
+                    }
+
+                    openedKeyStore = dOpeningKeyStores.getKeyStore(0);
 
                     // store password in password manager
                     if (passwordManagerWanted) {
@@ -199,19 +215,7 @@ public class OpenAction extends KeyStoreExplorerAction {
                 return;
             }
 
-            KeyStoreHistory history = new KeyStoreHistory(openedKeyStore, keyStoreFile, password);
-
-            KeyStoreState currentState = history.getCurrentState();
-            currentState.setStoredInPasswordManager(passwordManager.isKeyStorePasswordKnown(keyStoreFile));
-
-            if (openedKeyStore instanceof Pkcs12KeyStoreAdapter) {
-                ConvertToJavaP12Action convertAction = new ConvertToJavaP12Action(kseFrame,
-                        (Pkcs12KeyStoreAdapter) openedKeyStore, currentState);
-                convertAction.doAction();
-            }
-
-            kseFrame.addKeyStoreHistory(history);
-            this.newKeyStoreWasAdded = true;
+            addKeyStore(keyStoreFile, openedKeyStore, password);
         } catch (FileNotFoundException | NoSuchFileException ex) {
             JOptionPane.showMessageDialog(frame, MessageFormat.format(res.getString("OpenAction.NoReadFile.message"),
                                                                       keyStoreFile),
@@ -221,6 +225,128 @@ public class OpenAction extends KeyStoreExplorerAction {
         }
     }
 
+    /**
+     * Open several KeyStore files from disk. The passwords are requested first, then all files are
+     * loaded concurrently in the background. Files that could not be loaded with the supplied password
+     * are opened one by one afterwards, so that the user can try again.
+     *
+     * @param keyStoreFiles The KeyStore files
+     */
+    public void openKeyStores(List<File> keyStoreFiles) {
+        List<File> files = new ArrayList<>();
+        List<Password> passwords = new ArrayList<>();
+        List<Boolean> passwordManagerWanted = new ArrayList<>();
+        PasswordManager passwordManager = PasswordManager.getInstance();
+
+        for (File keyStoreFile : keyStoreFiles) {
+            if (!keyStoreFile.isFile() || isKeyStoreFileOpen(keyStoreFile)) {
+                // let single file open report the problem
+                openKeyStore(keyStoreFile);
+                continue;
+            }
+
+            Password password;
+            boolean wanted = false;
+            if (passwordManager.isKeyStorePasswordKnown(keyStoreFile)) {
+                unlockPasswordManager();
+                password = passwordManager.getKeyStorePassword(keyStoreFile).map(Password::new).orElse(null);
+            } else {
+                DGetPassword dGetPassword = new DGetPassword(frame, MessageFormat.format(
+                        res.getString("OpenAction.UnlockKeyStore.Title"), keyStoreFile.getName()), true);
+                dGetPassword.setLocationRelativeTo(frame);
+                dGetPassword.setVisible(true);
+
+                password = dGetPassword.getPassword();
+                wanted = dGetPassword.isPasswordManagerWanted();
+            }
+
+            if (password != null) {
+                files.add(keyStoreFile);
+                passwords.add(password);
+                passwordManagerWanted.add(wanted);
+            }
+        }
+
+        if (files.isEmpty()) {
+            return;
+        }
+
+        DOpeningKeyStores dOpeningKeyStores = loadKeyStores(files, passwords);
+
+        for (int i = 0; i < files.size(); i++) {
+            File keyStoreFile = files.get(i);
+            Password password = passwords.get(i);
+            KseKeyStore openedKeyStore = dOpeningKeyStores.getKeyStore(i);
+            Exception loadException = dOpeningKeyStores.getException(i);
+
+            try {
+                if (dOpeningKeyStores.isCancelled()) {
+                    password.nullPassword();
+                } else if (loadException instanceof KeyStoreLoadException) {
+                    password.nullPassword();
+                    if (showErrorMessage(keyStoreFile, (KeyStoreLoadException) loadException) ==
+                        JOptionPane.YES_OPTION) {
+                        openKeyStore(keyStoreFile);
+                    }
+                } else if (loadException != null) {
+                    throw loadException;
+                } else if (openedKeyStore == null) {
+                    JOptionPane.showMessageDialog(frame, MessageFormat.format(
+                                                          res.getString("OpenAction.FileNotRecognisedType.message"),
+                                                          keyStoreFile.getName()),
+                                                  res.getString("OpenAction.OpenKeyStore.Title"),
+                                                  JOptionPane.WARNING_MESSAGE);
+                } else {
+                    if (passwordManagerWanted.get(i)) {
+                        unlockPasswordManager();
+                        passwordManager.update(keyStoreFile, password.toCharArray(), new HashMap<>());
+                    }
+
+                    addKeyStore(keyStoreFile, openedKeyStore, password);
+                }
+            } catch (FileNotFoundException | NoSuchFileException ex) {
+                JOptionPane.showMessageDialog(frame, MessageFormat.format(
+                                                      res.getString("OpenAction.NoReadFile.message"), keyStoreFile),
+                                              res.getString("OpenAction.OpenKeyStore.Title"),
+                                              JOptionPane.WARNING_MESSAGE);
+            } catch (Exception ex) {
+                DError.displayError(frame, ex);
+            }
+        }
+    }
+
+    /**
+     * Load KeyStore files in the background. A progress dialog is shown if loading takes longer than
+     * a moment.
+     */
+    private DOpeningKeyStores loadKeyStores(List<File> keyStoreFiles, List<Password> passwords) {
+        DOpeningKeyStores dOpeningKeyStores = new DOpeningKeyStores(frame, keyStoreFiles, passwords);
+        dOpeningKeyStores.setLocationRelativeTo(frame);
+        dOpeningKeyStores.startLoading();
+
+        if (!dOpeningKeyStores.awaitLoading(PROGRESS_DELAY_MILLIS)) {
+            dOpeningKeyStores.setVisible(true);
+        }
+
+        return dOpeningKeyStores;
+    }
+
+    private void addKeyStore(File keyStoreFile, KseKeyStore openedKeyStore, Password password) {
+        KeyStoreHistory history = new KeyStoreHistory(openedKeyStore, keyStoreFile, password);
+
+        KeyStoreState currentState = history.getCurrentState();
+        currentState.setStoredInPasswordManager(PasswordManager.getInstance().isKeyStorePasswordKnown(keyStoreFile));
+
+        if (openedKeyStore instanceof Pkcs12KeyStoreAdapter) {
+            ConvertToJavaP12Action convertAction = new ConvertToJavaP12Action(kseFrame,
+                    (Pkcs12KeyStoreAdapter) openedKeyStore, currentState);
+            convertAction.doAction();
+        }
+
+        kseFrame.addKeyStoreHistory(history);
+        this.newKeyStoreWasAdded = true;
+    }
+
     /**
      * Open the supplied KeyStore from the clip board.
      *
@@ -36,6 +36,7 @@ import org.kse.crypto.csr.pkcs12.Pkcs12Util;
 import org.kse.gui.KseFrame;
 import org.kse.gui.preferences.DPreferences;
 import org.kse.gui.preferences.PreferencesManager;
+import org.kse.utilities.history.KeyStoreHistory;
 
 import com.formdev.flatlaf.FlatLaf;
 import com.formdev.flatlaf.extras.FlatAnimatedLafChange;
@@ -101,6 +102,10 @@ public class PreferencesAction extends ExitAction {
         preferences.getCaCertsSettings().setUseWindowsTrustedRootCertificates(dPreferences.getUseWinTrustRootCertificates());
         preferences.getCaCertsSettings().setImportTrustedCertTrustCheckEnabled(dPreferences.getEnableImportTrustedCertTrustCheck());
         preferences.getCaCertsSettings().setImportCaReplyTrustCheckEnabled(dPreferences.getEnableImportCaReplyTrustCheck());
+        preferences.getCaCertsSettings().setOcspCacheEnabled(dPreferences.isOcspCacheEnabled());
+        if (dPreferences.isClearOcspCache() || !dPreferences.isOcspCacheEnabled()) {
+            VerifyCertificateAction.clearOcspCache();
+        }
         preferences.setPasswordQualityConfig(dPreferences.getPasswordQualityConfig());
         preferences.setPasswordGeneratorSettings(dPreferences.getPasswordGeneratorSettings());
         preferences.setPasswordManagerSettings(dPreferences.getPasswordManagerSettings());
@@ -109,6 +114,8 @@ public class PreferencesAction extends ExitAction {
         preferences.getAutoUpdateCheckSettings().setCheckInterval(dPreferences.getAutoUpdateChecksInterval());
         preferences.setShowHiddenFilesEnabled(dPreferences.isShowHiddenFilesEnabled());
         preferences.setSerialNumberLengthInBytes(dPreferences.getSerialNumberLengthInBytes());
+        preferences.setHistoryMemoryBudgetInMegabytes(dPreferences.getHistoryMemoryBudgetInMegabytes());
+        KeyStoreHistory.setMemoryBudget(preferences.getHistoryMemoryBudgetInMegabytes() * 1024L * 1024L);
         preferences.setAutomaticallyReload(dPreferences.isAutomaticReloadEnabled());
         preferences.setSilentlyReload(dPreferences.isSilentReloadEnabled());
 
@@ -27,6 +27,7 @@ import java.security.PrivateKey;
 import java.security.Provider;
 import java.security.cert.X509Certificate;
 import java.text.MessageFormat;
+import java.util.List;
 
 import javax.swing.ImageIcon;
 import javax.swing.JFileChooser;
@@ -36,6 +37,7 @@ import org.bouncycastle.cms.CMSSignedData;
 import org.kse.crypto.keypair.KeyPairType;
 import org.kse.crypto.keypair.KeyPairUtil;
 import org.kse.crypto.keystore.KseKeyStore;
+import org.kse.crypto.signing.CmsFileSigner;
 import org.kse.crypto.signing.CmsSigner;
 import org.kse.crypto.signing.CmsUtil;
 import org.kse.crypto.signing.SignatureType;
@@ -44,6 +46,9 @@ import org.kse.gui.CurrentDirectory;
 import org.kse.gui.FileChooserFactory;
 import org.kse.gui.KseFrame;
 import org.kse.gui.dialogs.sign.DSignFile;
+import org.kse.gui.dialogs.sign.DSignFileReport;
+import org.kse.gui.dialogs.sign.DSignFileSigning;
+import org.kse.gui.dialogs.sign.FileSigningResult;
 import org.kse.gui.error.DError;
 import org.kse.gui.passwordmanager.Password;
 import org.kse.utilities.history.KeyStoreHistory;
@@ -115,14 +120,22 @@ public class SignFileAction extends KeyStoreExplorerAction {
 
             boolean detachedSignature = dSignFile.isDetachedSignature();
             SignatureType signatureType = dSignFile.getSignatureType();
+            String tsaUrl = dSignFile.getTimestampingServerUrl();
+
+            if (dSignFile.isBatchSign()) {
+                signFiles(dSignFile.getInputFiles(), dSignFile.getOutputFiles(),
+                          new CmsFileSigner(privateKey, certs, signatureType, detachedSignature,
+                                            dSignFile.isOutputPem(), tsaUrl, provider));
+                return;
+            }
+
             File inputFile = dSignFile.getInputFile();
             File outputFile = dSignFile.getOutputFile();
-            String tsaUrl = dSignFile.getTimestampingServerUrl();
 
-            CMSSignedData signedData;
             if (!dSignFile.isCounterSign()) {
-                signedData = CmsSigner.sign(inputFile, privateKey, certs, detachedSignature, signatureType, tsaUrl,
-                        provider);
+                // The signature is written straight to the output file
+                CmsSigner.sign(inputFile, outputFile, dSignFile.isOutputPem(), privateKey, certs, detachedSignature,
+                        signatureType, tsaUrl, provider);
             } else {
                 CMSSignedData signature = CmsUtil.loadSignature(inputFile, this::chooseContentFile);
 
@@ -145,19 +158,19 @@ public class SignFileAction extends KeyStoreExplorerAction {
                     return;
                 }
 
-                signedData = CmsSigner.counterSign(signature, privateKey, certs, detachedSignature, signatureType,
-                        tsaUrl, provider);
-            }
+                CMSSignedData signedData = CmsSigner.counterSign(signature, privateKey, certs, detachedSignature,
+                        signatureType, tsaUrl, provider);
 
-            byte[] encoded;
-            if (!dSignFile.isOutputPem()) {
-                encoded = signedData.getEncoded();
-            } else {
-                encoded = CmsUtil.getPem(signedData).getBytes();
-            }
+                byte[] encoded;
+                if (!dSignFile.isOutputPem()) {
+                    encoded = signedData.getEncoded();
+                } else {
+                    encoded = CmsUtil.getPem(signedData).getBytes();
+                }
 
-            try (OutputStream os = new FileOutputStream(outputFile)) {
-                os.write(encoded);
+                try (OutputStream os = new FileOutputStream(outputFile)) {
+                    os.write(encoded);
+                }
             }
             JOptionPane.showMessageDialog(frame, res.getString("SignFileAction.SignFileSuccessful.message"),
                     res.getString("SignFileAction.SignFile.Title"),
@@ -167,6 +180,50 @@ public class SignFileAction extends KeyStoreExplorerAction {
         }
     }
 
+    private void signFiles(File[] inputFiles, List<File> outputFiles, CmsFileSigner fileSigner) {
+        // start file signing process
+        DSignFileSigning dSignFileSigning = new DSignFileSigning(frame, inputFiles, outputFiles, fileSigner);
+        dSignFileSigning.setLocationRelativeTo(frame);
+        dSignFileSigning.startDSignFileSigning();
+        dSignFileSigning.setVisible(true);
+
+        // check if file signing was successful
+        if (!dSignFileSigning.isSuccessful()) {
+            return;
+        }
+
+        List<FileSigningResult> results = dSignFileSigning.getResults();
+        long errorCount = results.stream().filter(result -> !result.isSigned()).count();
+
+        String message;
+        int messageType;
+        if (errorCount > 0) {
+            message = MessageFormat.format(res.getString("SignFileAction.SignFilesError.message"), errorCount,
+                                           results.size());
+            messageType = JOptionPane.WARNING_MESSAGE;
+        } else {
+            message = MessageFormat.format(res.getString("SignFileAction.SignFilesSuccessful.message"),
+                                           results.size());
+            messageType = JOptionPane.INFORMATION_MESSAGE;
+        }
+
+        String viewButtonText = res.getString("SignFileAction.ButtonViewReport.message");
+        String okButtonText = res.getString("SignFileAction.ButtonOK.message");
+        Object[] buttonTexts = { viewButtonText, okButtonText };
+
+        int selected = JOptionPane.showOptionDialog(frame, message, res.getString("SignFileAction.SignFile.Title"),
+                                                    JOptionPane.DEFAULT_OPTION, messageType, null, buttonTexts,
+                                                    okButtonText);
+
+        // if view button pressed show the per file report
+        if (selected == 0) {
+            DSignFileReport dSignFileReport = new DSignFileReport(frame, results,
+                                                                  dSignFileSigning.getElapsedTime());
+            dSignFileReport.setLocationRelativeTo(frame);
+            dSignFileReport.setVisible(true);
+        }
+    }
+
     private File chooseContentFile() {
         JFileChooser chooser = FileChooserFactory.getNoFileChooser();
         chooser.setCurrentDirectory(CurrentDirectory.get());
@@ -24,25 +24,19 @@ import java.awt.HeadlessException;
 import java.awt.Toolkit;
 import java.io.File;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.math.BigInteger;
-import java.net.HttpURLConnection;
-import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.security.InvalidAlgorithmParameterException;
-import java.security.InvalidKeyException;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.Security;
-import java.security.SignatureException;
 import java.security.cert.CertPath;
 import java.security.cert.CertPathValidator;
 import java.security.cert.CertPathValidatorException;
 import java.security.cert.CertStore;
 import java.security.cert.Certificate;
-import java.security.cert.CertificateEncodingException;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.CollectionCertStoreParameters;
@@ -66,27 +60,18 @@ import java.util.Set;
 import javax.swing.ImageIcon;
 import javax.swing.JOptionPane;
 
-import org.bouncycastle.asn1.DEROctetString;
-import org.bouncycastle.asn1.ocsp.OCSPObjectIdentifiers;
-import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
-import org.bouncycastle.asn1.x509.ExtensionsGenerator;
 import org.bouncycastle.cert.ocsp.BasicOCSPResp;
-import org.bouncycastle.cert.ocsp.CertificateID;
 import org.bouncycastle.cert.ocsp.CertificateStatus;
 import org.bouncycastle.cert.ocsp.OCSPException;
-import org.bouncycastle.cert.ocsp.OCSPReq;
-import org.bouncycastle.cert.ocsp.OCSPReqBuilder;
 import org.bouncycastle.cert.ocsp.OCSPResp;
 import org.bouncycastle.cert.ocsp.RevokedStatus;
 import org.bouncycastle.cert.ocsp.SingleResp;
-import org.bouncycastle.cert.ocsp.jcajce.JcaCertificateID;
-import org.bouncycastle.operator.DigestCalculatorProvider;
-import org.bouncycastle.operator.OperatorCreationException;
-import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
 import org.kse.KSE;
 import org.kse.crypto.CryptoException;
 import org.kse.crypto.keystore.KseKeyStore;
+import org.kse.crypto.ocsp.OcspClient;
 import org.kse.crypto.ocsp.OcspDigestAlgorithm;
+import org.kse.crypto.ocsp.OcspResponseCache;
 import org.kse.crypto.x509.X509CertUtil;
 import org.kse.gui.KseFrame;
 import org.kse.gui.dialogs.DVerifyCertificate;
@@ -94,9 +79,9 @@ import org.kse.gui.dialogs.DVerifyCertificate.VerifyOptions;
 import org.kse.gui.error.DError;
 import org.kse.gui.error.DProblem;
 import org.kse.gui.error.Problem;
+import org.kse.gui.preferences.PreferencesManager;
 import org.kse.utilities.StringUtils;
 import org.kse.utilities.history.KeyStoreHistory;
-import org.kse.utilities.rng.RNG;
 
 /**
  * Action to verify an X.509 certificate.
@@ -104,6 +89,10 @@ import org.kse.utilities.rng.RNG;
 public class VerifyCertificateAction extends KeyStoreExplorerAction {
 
     private static final long serialVersionUID = 1L;
+
+    private static OcspClient ocspClient;
+    private static boolean ocspCachePersistent;
+
     private X509Certificate certificateEval;
     private X509Certificate[] keyCertChain;
 
@@ -204,7 +193,7 @@ public class VerifyCertificateAction extends KeyStoreExplorerAction {
     }
 
     private void verifyStatusOcspUrl(KeyStoreHistory keyStoreHistory, String alias, String ocspUrl, OcspDigestAlgorithm ocspDigestAlgorithm, boolean ocspIncludeNonce)
-            throws OperatorCreationException, OCSPException, IOException, HeadlessException, CertPathValidatorException,
+            throws OCSPException, IOException, HeadlessException, CertPathValidatorException,
                    KeyStoreException, NoSuchAlgorithmException, CertificateException,
                    InvalidAlgorithmParameterException, IllegalStateException, URISyntaxException {
 
@@ -219,10 +208,11 @@ public class VerifyCertificateAction extends KeyStoreExplorerAction {
                     String tempAlias = enumeration.nextElement();
                     X509Certificate cert = (X509Certificate) trustStore.getCertificate(tempAlias);
                     try {
-                        certificateEval.verify(cert.getPublicKey(), KSE.BC);
-                        issuer = cert;
-                        break;
-                    } catch (InvalidKeyException | CertificateException | NoSuchAlgorithmException | SignatureException e) {
+                        if (X509CertUtil.verifyCertificate(certificateEval, cert)) {
+                            issuer = cert;
+                            break;
+                        }
+                    } catch (CryptoException e) {
                         // ignore
                     }
                 }
@@ -232,8 +222,8 @@ public class VerifyCertificateAction extends KeyStoreExplorerAction {
             if (issuer == null) {
                 throw new CertPathValidatorException(res.getString("VerifyCertificateAction.trustStoreEmpty.message"));
             }
-            OCSPReq request = makeOcspRequest(issuer, certificateEval, ocspDigestAlgorithm.algorithmIdentifier(), ocspIncludeNonce);
-            OCSPResp response = requestOCSPResponse(ocspUrl, request);
+            OCSPResp response = getOcspClient(preferences.getCaCertsSettings().isOcspCacheEnabled()).getResponse(ocspUrl, issuer, certificateEval, ocspDigestAlgorithm,
+                                                            ocspIncludeNonce);
             if (isGoodCertificate(response)) {
                 JOptionPane.showMessageDialog(frame, res.getString("VerifyCertificateAction.OcspSuccessful.message"),
                                               MessageFormat.format(
@@ -243,46 +233,21 @@ public class VerifyCertificateAction extends KeyStoreExplorerAction {
         }
     }
 
-    private static OCSPReq makeOcspRequest(X509Certificate caCert, X509Certificate certToCheck, AlgorithmIdentifier digestAlgorithm, boolean includeNonce)
-            throws IOException, OCSPException, OperatorCreationException, CertificateEncodingException {
-        DigestCalculatorProvider digCalcProv = new JcaDigestCalculatorProviderBuilder().setProvider(KSE.BC)
-                                                                                       .build();
-
-        CertificateID certId = new JcaCertificateID(digCalcProv.get(digestAlgorithm), caCert,
-                                                    certToCheck.getSerialNumber());
-
-        OCSPReqBuilder gen = new OCSPReqBuilder();
-        gen.addRequest(certId);
-        if (includeNonce) {
-            byte[] nonce = new byte[16];
-            RNG.newInstanceDefault().nextBytes(nonce);
-            ExtensionsGenerator extGen = new ExtensionsGenerator();
-            extGen.addExtension(OCSPObjectIdentifiers.id_pkix_ocsp_nonce, false, new DEROctetString(nonce));
-            gen.setRequestExtensions(extGen.generate());
+    private static synchronized OcspClient getOcspClient(boolean persistent) {
+        if (ocspClient == null || ocspCachePersistent != persistent) {
+            File directory = persistent ? PreferencesManager.getOcspCacheDirectory() : null;
+            ocspClient = new OcspClient(new OcspResponseCache(directory));
+            ocspCachePersistent = persistent;
         }
-        return gen.build();
+        return ocspClient;
     }
 
-    private OCSPResp requestOCSPResponse(String url, OCSPReq ocspReq) throws IOException, URISyntaxException {
-        byte[] ocspReqData = ocspReq.getEncoded();
-
-        HttpURLConnection con = (HttpURLConnection) new URI(url).toURL().openConnection();
-        try {
-            con.setRequestProperty("Content-Type", "application/ocsp-request");
-            con.setRequestProperty("Accept", "application/ocsp-response");
-            con.setDoInput(true);
-            con.setDoOutput(true);
-            con.setUseCaches(false);
-            try (OutputStream out = con.getOutputStream()) {
-                out.write(ocspReqData);
-                out.flush();
-            }
-            return new OCSPResp(con.getInputStream().readAllBytes());
-        } finally {
-            if (con != null) {
-                con.disconnect();
-            }
-        }
+    /**
+     * Remove all cached OCSP responses, both in memory and on disk.
+     */
+    public static synchronized void clearOcspCache() {
+        ocspClient = null;
+        new OcspResponseCache(PreferencesManager.getOcspCacheDirectory()).clear();
     }
 
     private boolean isGoodCertificate(OCSPResp ocspResp) throws OCSPException, CertPathValidatorException {
@@ -22,39 +22,38 @@ package org.kse.gui.actions;
 
 import java.awt.Toolkit;
 import java.awt.event.InputEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Enumeration;
 import java.util.HashMap;
-import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
 
 import javax.swing.ImageIcon;
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
 import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
 
 import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.cert.jcajce.JcaCertStore;
-import org.bouncycastle.cms.CMSProcessableByteArray;
 import org.bouncycastle.cms.CMSSignedData;
 import org.bouncycastle.cms.SignerInformationStore;
 import org.bouncycastle.util.Arrays;
 import org.bouncycastle.util.Store;
 import org.kse.crypto.signing.CmsUtil;
-import org.kse.crypto.signing.JarSigner;
+import org.kse.crypto.signing.JarVerifier;
 import org.kse.crypto.signing.KseJarEntry;
 import org.kse.crypto.signing.KseSignerInformation;
 import org.kse.gui.CurrentDirectory;
@@ -94,84 +93,30 @@ public class VerifyJarAction extends AuthorityCertificatesVerifyAction {
             }
 
             Set<X509Certificate> allCerts = getTrustedCertificates();
+            Store<X509CertificateHolder> tsaTrustedCerts = getTrustedCertsNoPrefs();
 
-            List<KseJarEntry> entries = new ArrayList<>();
-            Map<String, byte[]> signatureFiles = new HashMap<>();
-            Map<String, CMSSignedData> signatureBlocks = new HashMap<>();
-
-            // Read the JAR using JarFile since JarInputStream skips MANIFEST.MF.
-            try (JarFile jarFile = new JarFile(file, true)) {
-
-                for (Enumeration<JarEntry> jarEntries = jarFile.entries(); jarEntries.hasMoreElements(); ) {
-                    JarEntry entry = jarEntries.nextElement();
-
-                    String name = entry.getName();
-                    String uname = entry.getName().toUpperCase(Locale.ENGLISH);
-                    StringBuilder flags = new StringBuilder();
-
-                    if (isSignatureBlock(uname)) {
-                        byte[] signature = readAllBytesAutoClose(jarFile.getInputStream(entry));
-                        CMSSignedData signatureBlock = new CMSSignedData(signature);
-                        if (signatureBlock.isDetachedSignature()) {
-                            byte[] sfFile = signatureFiles.get(name.substring(0, name.lastIndexOf('.')) + ".SF");
-                            signatureBlock = new CMSSignedData(new CMSProcessableByteArray(sfFile), signature);
-                        }
-                        signatureBlocks.put(name, signatureBlock);
-                    }
-
-                    // signature file
-                    if (uname.startsWith("META-INF/") && uname.endsWith(".SF")) {
-                        signatureFiles.put(name, readAllBytesAutoClose(jarFile.getInputStream(entry)));
-                    }
-
-                    // Need to read all bytes to populate signers and certs.
-                    readAllBytesAutoClose(jarFile.getInputStream(entry));
-
-                    // entry is signed
-                    if (!Arrays.isNullOrEmpty(entry.getCodeSigners())) {
-                        flags.append(KseJarEntry.FLAG_SIGNED);
-                    } else {
-                        flags.append(KseJarEntry.FLAG_BLANK);
-                    }
-
-                    // entry is in the manifest
-                    Attributes attributes = entry.getAttributes();
-                    if (attributes != null) {
-                        flags.append(KseJarEntry.FLAG_MANIFEST);
-                    } else {
-                        flags.append(KseJarEntry.FLAG_BLANK);
-                    }
-
-                    // entry has at least one certificate in the key store
-                    boolean containsCert = false;
-                    if (entry.getCertificates() != null) {
-                        for (Certificate cert : entry.getCertificates()) {
-                            // once true, always true
-                            containsCert |= allCerts.contains(cert);
-                        }
-                    }
-                    if (containsCert) {
-                        flags.append(KseJarEntry.FLAG_CERT);
-                    } else {
-                        flags.append(KseJarEntry.FLAG_BLANK);
-                    }
+            // Verify the JAR off the event dispatch thread
+            Thread verifierThread = new Thread(() -> verifyJar(file, allCerts, tsaTrustedCerts), "kse-jar-verifier");
+            verifierThread.setDaemon(true);
+            verifierThread.start();
+        } catch (Exception ex) {
+            DError.displayError(frame, ex);
+        }
+    }
 
-                    entries.add(new KseJarEntry(entry, flags.toString()));
-                }
-            } catch (SecurityException e) {
-                JOptionPane.showMessageDialog(frame,
-                        MessageFormat.format(res.getString("VerifyJarAction.Invalid.message"),
-                                e.toString()),
-                        res.getString("VerifyJarAction.VerifyJar.Title"), JOptionPane.ERROR_MESSAGE);
+    private void verifyJar(File file, Set<X509Certificate> allCerts, Store<X509CertificateHolder> tsaTrustedCerts) {
+        DViewSignedJar[] dViewSignedJar = new DViewSignedJar[1];
+        try {
+            JarVerifier jarVerifier = new JarVerifier(file);
 
-                return;
-            }
+            // Signature blocks are only read and checked once
+            Map<String, CMSSignedData> signatureBlocks = jarVerifier.getSignatureBlocks();
 
             if (signatureBlocks.isEmpty()) {
-                JOptionPane.showMessageDialog(frame,
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(frame,
                         MessageFormat.format(res.getString("VerifyJarAction.NoSignatures.message"),
                                 file.getName()),
-                        res.getString("VerifyJarAction.VerifyJar.Title"), JOptionPane.INFORMATION_MESSAGE);
+                        res.getString("VerifyJarAction.VerifyJar.Title"), JOptionPane.INFORMATION_MESSAGE));
 
                 return;
             }
@@ -187,27 +132,84 @@ public class VerifyJarAction extends AuthorityCertificatesVerifyAction {
                 jarSigners.put(signatureBlock.getKey(), signers);
             }
 
-            DViewSignedJar dViewSignedJar = new DViewSignedJar(frame, MessageFormat
-                    .format(res.getString("VerifyJarAction.SignatureDetailsFile.Title"), file.getName()),
-                    entries, jarSigners, getTrustedCertsNoPrefs(), kseFrame);
-            dViewSignedJar.setLocationRelativeTo(frame);
-            dViewSignedJar.setVisible(true);
+            // Show the dialog straight away and add the entries to it as they are verified
+            Thread verifierThread = Thread.currentThread();
+            SwingUtilities.invokeAndWait(() -> {
+                dViewSignedJar[0] = new DViewSignedJar(frame, MessageFormat
+                        .format(res.getString("VerifyJarAction.SignatureDetailsFile.Title"), file.getName()),
+                        new ArrayList<>(), jarSigners, tsaTrustedCerts, kseFrame);
+                dViewSignedJar[0].addWindowListener(new WindowAdapter() {
+                    @Override
+                    public void windowClosed(WindowEvent evt) {
+                        // Stop verifying once the dialog is closed
+                        verifierThread.interrupt();
+                    }
+                });
+                dViewSignedJar[0].setLocationRelativeTo(frame);
+                dViewSignedJar[0].setVisible(true);
+            });
+
+            jarVerifier.verifyEntries((entry, verificationTime) -> dViewSignedJar[0].addJarEntry(
+                    new KseJarEntry(entry, getFlags(entry, allCerts), verificationTime)));
+        } catch (InterruptedException | InterruptedIOException ex) {
+            // dialog closed
+        } catch (SecurityException ex) {
+            SwingUtilities.invokeLater(() -> {
+                if (dViewSignedJar[0] != null) {
+                    dViewSignedJar[0].dispose();
+                }
+                JOptionPane.showMessageDialog(frame,
+                        MessageFormat.format(res.getString("VerifyJarAction.Invalid.message"),
+                                ex.toString()),
+                        res.getString("VerifyJarAction.VerifyJar.Title"), JOptionPane.ERROR_MESSAGE);
+            });
         } catch (Exception ex) {
-            DError.displayError(frame, ex);
+            SwingUtilities.invokeLater(() -> {
+                // Nothing to report after the dialog has been closed
+                if (dViewSignedJar[0] == null || dViewSignedJar[0].isDisplayable()) {
+                    DError.displayError(frame, ex);
+                }
+            });
         }
     }
 
-    private byte[] readAllBytesAutoClose(InputStream stream) throws IOException {
-        try (InputStream is = stream) {
-            return is.readAllBytes();
+    private String getFlags(JarEntry entry, Set<X509Certificate> allCerts) {
+        StringBuilder flags = new StringBuilder();
+
+        // entry is signed
+        if (!Arrays.isNullOrEmpty(entry.getCodeSigners())) {
+            flags.append(KseJarEntry.FLAG_SIGNED);
+        } else {
+            flags.append(KseJarEntry.FLAG_BLANK);
+        }
+
+        // entry is in the manifest
+        try {
+            Attributes attributes = entry.getAttributes();
+            if (attributes != null) {
+                flags.append(KseJarEntry.FLAG_MANIFEST);
+            } else {
+                flags.append(KseJarEntry.FLAG_BLANK);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        // entry has at least one certificate in the key store
+        boolean containsCert = false;
+        if (entry.getCertificates() != null) {
+            for (Certificate cert : entry.getCertificates()) {
+                // once true, always true
+                containsCert |= allCerts.contains(cert);
+            }
+        }
+        if (containsCert) {
+            flags.append(KseJarEntry.FLAG_CERT);
+        } else {
+            flags.append(KseJarEntry.FLAG_BLANK);
         }
-    }
 
-    private boolean isSignatureBlock(String entryName) {
-        return entryName.startsWith("META-INF/") //
-                && (entryName.endsWith(JarSigner.RSA_SIG_BLOCK_EXT) //
-                || entryName.endsWith(JarSigner.EC_SIG_BLOCK_EXT) //
-                || entryName.endsWith(JarSigner.DSA_SIG_BLOCK_EXT));
+        return flags.toString();
     }
 
     private File chooseJarFile() {
@@ -20,6 +20,8 @@
 package org.kse.gui.crypto;
 
 import java.awt.Container;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.ResourceBundle;
 
 import javax.swing.ImageIcon;
@@ -51,6 +53,7 @@ public class JCertificateFingerprint extends JPanel {
     private JButton jbViewCertificateFingerprint;
 
     private byte[] encodedCertificate;
+    private final Map<DigestType, String> fingerprints = new EnumMap<>(DigestType.class);
 
     /**
      * Construct a JCertificateFingerprint.
@@ -110,6 +113,7 @@ public class JCertificateFingerprint extends JPanel {
      */
     public void setEncodedCertificate(byte[] encodedCertificate) {
         this.encodedCertificate = encodedCertificate;
+        fingerprints.clear();
         populateFingerprint();
     }
 
@@ -145,8 +149,13 @@ public class JCertificateFingerprint extends JPanel {
             DigestType fingerprintAlg = (DigestType) jcbFingerprintAlg.getSelectedItem();
 
             try {
-                jtfCertificateFingerprint.setText(
-                        DigestUtil.getFriendlyMessageDigest(encodedCertificate, fingerprintAlg));
+                // Only the selected algorithm is digested, others when they are chosen
+                String fingerprint = fingerprints.get(fingerprintAlg);
+                if (fingerprint == null) {
+                    fingerprint = DigestUtil.getFriendlyMessageDigest(encodedCertificate, fingerprintAlg);
+                    fingerprints.put(fingerprintAlg, fingerprint);
+                }
+                jtfCertificateFingerprint.setText(fingerprint);
             } catch (CryptoException ex) {
                 DError.displayError(getTopLevelAncestor(), ex);
                 return;
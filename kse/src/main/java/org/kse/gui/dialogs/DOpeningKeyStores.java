@@ -0,0 +1,218 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.gui.dialogs;
+
+import java.awt.Dialog;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.util.List;
+import java.util.ResourceBundle;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.swing.AbstractAction;
+import javax.swing.ImageIcon;
+import javax.swing.JButton;
+import javax.swing.JComponent;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JProgressBar;
+import javax.swing.JSeparator;
+import javax.swing.KeyStroke;
+import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+
+import org.kse.crypto.keystore.KseKeyStore;
+import org.kse.gui.components.JEscDialog;
+import org.kse.gui.passwordmanager.Password;
+
+import net.miginfocom.swing.MigLayout;
+
+/**
+ * Loads one or more KeyStore files on a pool of worker threads and shows the progress per file.
+ * Several files are loaded concurrently. Pressing the cancel button skips the files that have not
+ * been started yet and discards the KeyStores of the files that are still being read.
+ */
+public class DOpeningKeyStores extends JEscDialog {
+    private static final long serialVersionUID = 1L;
+
+    private static final ResourceBundle res = ResourceBundle.getBundle("org/kse/gui/dialogs/resources");
+
+    private static final String CANCEL_KEY = "CANCEL_KEY";
+
+    private static final ExecutorService LOADER = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors()), runnable -> {
+                Thread thread = new Thread(runnable, "kse-keystore-loader");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+
+    private final List<File> keyStoreFiles;
+    private final KeyStoreFilesLoader loader;
+
+    private JProgressBar[] jpbKeyStores;
+    private JButton jbCancel;
+
+    /**
+     * Creates a new DOpeningKeyStores dialog.
+     *
+     * @param parent        The parent frame
+     * @param keyStoreFiles The KeyStore files to load
+     * @param passwords     The passwords of the KeyStore files, in the same order
+     */
+    public DOpeningKeyStores(JFrame parent, List<File> keyStoreFiles, List<Password> passwords) {
+        super(parent, Dialog.ModalityType.DOCUMENT_MODAL);
+        this.keyStoreFiles = keyStoreFiles;
+
+        loader = new KeyStoreFilesLoader(keyStoreFiles, passwords, LOADER, this::updateProgress);
+
+        initComponents();
+    }
+
+    private void initComponents() {
+        JLabel jlOpeningKeyStores = new JLabel(res.getString("DOpeningKeyStores.jlOpeningKeyStores.text"));
+        jlOpeningKeyStores.setIcon(new ImageIcon(getClass().getResource("images/open.png")));
+        jlOpeningKeyStores.setHorizontalTextPosition(SwingConstants.TRAILING);
+        jlOpeningKeyStores.setIconTextGap(10);
+
+        jbCancel = new JButton(res.getString("DOpeningKeyStores.jbCancel.text"));
+        jbCancel.addActionListener(evt -> cancelPressed());
+        // Need to use WHEN_FOCUSED since the cancel button will always have focus.
+        jbCancel.getInputMap(JComponent.WHEN_FOCUSED)
+                .put(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), CANCEL_KEY);
+        jbCancel.getActionMap().put(CANCEL_KEY, new AbstractAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public void actionPerformed(ActionEvent evt) {
+                cancelPressed();
+            }
+        });
+
+        getContentPane().setLayout(new MigLayout("insets dialog", "[]unrel[grow, fill]", ""));
+        getContentPane().add(jlOpeningKeyStores, "spanx, wrap unrel");
+
+        jpbKeyStores = new JProgressBar[keyStoreFiles.size()];
+        for (int i = 0; i < keyStoreFiles.size(); i++) {
+            jpbKeyStores[i] = new JProgressBar();
+            jpbKeyStores[i].setStringPainted(true);
+            jpbKeyStores[i].setString(res.getString("DOpeningKeyStores.Waiting"));
+
+            getContentPane().add(new JLabel(keyStoreFiles.get(i).getName()), "");
+            getContentPane().add(jpbKeyStores[i], "wmin 200, wrap rel");
+        }
+
+        getContentPane().add(new JSeparator(), "spanx, growx, wrap unrel");
+        getContentPane().add(jbCancel, "spanx, right, tag cancel");
+
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent evt) {
+                cancelPressed();
+            }
+        });
+
+        setTitle(res.getString("DOpeningKeyStores.Title"));
+        setResizable(false);
+        setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+
+        pack();
+    }
+
+    /**
+     * Start loading the KeyStore files on the worker threads.
+     */
+    public void startLoading() {
+        loader.start();
+    }
+
+    /**
+     * Wait a short time for all KeyStores to be loaded. Used to avoid showing the dialog for files
+     * that load quickly.
+     *
+     * @param millis Maximum time to wait in milliseconds
+     * @return True if all KeyStores have been loaded (or failed to load)
+     */
+    public boolean awaitLoading(long millis) {
+        try {
+            return loader.await(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Has the user cancelled loading?
+     *
+     * @return True if cancelled
+     */
+    public boolean isCancelled() {
+        return loader.isCancelled();
+    }
+
+    /**
+     * Get a loaded KeyStore.
+     *
+     * @param index Index of the KeyStore file
+     * @return The KeyStore or null if loading failed, was cancelled or the file type was not
+     *         recognised
+     */
+    public KseKeyStore getKeyStore(int index) {
+        return loader.getKeyStore(index);
+    }
+
+    /**
+     * Get the exception that occurred while loading a KeyStore, if any.
+     *
+     * @param index Index of the KeyStore file
+     * @return The exception or null
+     */
+    public Exception getException(int index) {
+        return loader.getException(index);
+    }
+
+    private void cancelPressed() {
+        loader.cancel();
+        closeDialog();
+    }
+
+    private void closeDialog() {
+        setVisible(false);
+        dispose();
+    }
+
+    private void updateProgress(int index, KeyStoreFilesLoader.Status status) {
+        SwingUtilities.invokeLater(() -> {
+            boolean busy = status == KeyStoreFilesLoader.Status.LOADING;
+            jpbKeyStores[index].setIndeterminate(busy);
+            jpbKeyStores[index].setValue(busy ? 0 : jpbKeyStores[index].getMaximum());
+            jpbKeyStores[index].setString(res.getString(status.getResourceKey()));
+
+            if (loader.isFinished()) {
+                closeDialog();
+            }
+        });
+    }
+}
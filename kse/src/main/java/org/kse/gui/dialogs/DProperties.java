@@ -45,6 +45,7 @@ import java.security.interfaces.RSAPublicKey;
 import java.text.MessageFormat;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.TreeSet;
 
@@ -311,13 +312,15 @@ public class DProperties extends JEscDialog {
             certificateNode.add(new DefaultMutableTreeNode(signatureAlgorithm));
 
             byte[] cert = certificate.getEncoded();
+            Map<DigestType, String> fingerprints = DigestUtil.getFriendlyMessageDigests(cert, DigestType.MD5,
+                                                                                         DigestType.SHA1);
 
             String md5 = MessageFormat.format(res.getString("DProperties.properties.Md5Fingerprint"),
-                                              DigestUtil.getFriendlyMessageDigest(cert, DigestType.MD5));
+                                              fingerprints.get(DigestType.MD5));
             certificateNode.add(new DefaultMutableTreeNode(md5));
 
             String sha1 = MessageFormat.format(res.getString("DProperties.properties.Sha1Fingerprint"),
-                                               DigestUtil.getFriendlyMessageDigest(cert, DigestType.SHA1));
+                                               fingerprints.get(DigestType.SHA1));
             certificateNode.add(new DefaultMutableTreeNode(sha1));
         } catch (CertificateEncodingException ex) {
             throw new CryptoException(res.getString("DProperties.NoGetProperties.exception.message"), ex);
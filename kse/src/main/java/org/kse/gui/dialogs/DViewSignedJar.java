@@ -29,11 +29,15 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.jar.JarEntry;
 
 import javax.swing.JButton;
@@ -89,12 +93,15 @@ public class DViewSignedJar extends JEscDialog {
     private Store<X509CertificateHolder> tsaTrustedCerts;
     private KseFrame kseFrame;
 
+    private final Queue<KseJarEntry> pendingJarEntries = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean pendingJarEntriesScheduled = new AtomicBoolean();
+
     /**
      * Creates a new DViewSignedJar dialog.
      *
      * @param parent          Parent frame
      * @param title           The dialog title
-     * @param jarEntries      JAR entries to display
+     * @param jarEntries      JAR entries to display, more can be added with {@link #addJarEntry}
      * @param jarSigners      JAR signers
      * @param tsaTrustedCerts All trusted certs suitable for verifying TSA signatures
      * @param kseFrame        Reference to main class with currently opened keystores and their contents
@@ -103,7 +110,7 @@ public class DViewSignedJar extends JEscDialog {
             Map<String, Collection<KseSignerInformation>> jarSigners, Store<X509CertificateHolder> tsaTrustedCerts,
             KseFrame kseFrame) {
         super(parent, title, Dialog.ModalityType.MODELESS);
-        this.jarEntries = jarEntries;
+        this.jarEntries = new ArrayList<>(jarEntries);
         this.jarSigners = jarSigners;
         this.tsaTrustedCerts = tsaTrustedCerts;
         this.kseFrame = kseFrame;
@@ -248,11 +255,45 @@ public class DViewSignedJar extends JEscDialog {
         }
     }
 
+    /**
+     * Add a JAR entry to the dialog, for example once it has been verified. This method may be
+     * called from any thread, the entries are added to the table in batches on the event
+     * dispatch thread.
+     *
+     * @param jarEntry JAR entry to display
+     */
+    public void addJarEntry(KseJarEntry jarEntry) {
+        pendingJarEntries.add(jarEntry);
+
+        if (pendingJarEntriesScheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::addPendingJarEntries);
+        }
+    }
+
+    private void addPendingJarEntries() {
+        pendingJarEntriesScheduled.set(false);
+
+        List<KseJarEntry> added = new ArrayList<>();
+        for (KseJarEntry jarEntry; (jarEntry = pendingJarEntries.poll()) != null; ) {
+            added.add(jarEntry);
+        }
+
+        jarEntries.addAll(added);
+
+        SignedJarTableModel signedJarTableModel = (SignedJarTableModel) jtJarEntries.getModel();
+        boolean wasEmpty = signedJarTableModel.getRowCount() == 0;
+        signedJarTableModel.add(added);
+
+        if (wasEmpty && signedJarTableModel.getRowCount() > 0) {
+            jtJarEntries.changeSelection(0, 0, false, false);
+        }
+    }
+
     private void entrySelection() {
         int row = jtJarEntries.getSelectedRow();
 
         if (row != -1) {
-            KseJarEntry jarEntry = jarEntries.get(row);
+            KseJarEntry jarEntry = jarEntries.get(jtJarEntries.convertRowIndexToModel(row));
 
             if (hasCertificates(jarEntry)) {
                 jbJarEntryCertificates.setEnabled(true);
@@ -280,7 +321,7 @@ public class DViewSignedJar extends JEscDialog {
                 try {
                     CursorUtil.setCursorBusy(DViewSignedJar.this);
                     jtJarEntries.setRowSelectionInterval(row, row);
-                    if (hasCertificates(jarEntries.get(row))) {
+                    if (hasCertificates(jarEntries.get(jtJarEntries.convertRowIndexToModel(row)))) {
                         displayJarEntryCertificates();
                     }
                 } finally {
@@ -294,7 +335,7 @@ public class DViewSignedJar extends JEscDialog {
         int row = jtJarEntries.getSelectedRow();
 
         if (row != -1) {
-            KseJarEntry jarEntry = jarEntries.get(row);
+            KseJarEntry jarEntry = jarEntries.get(jtJarEntries.convertRowIndexToModel(row));
 
             try {
                 DViewCertificate dViewExtensions = new DViewCertificate(this,
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.gui.dialogs;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.kse.crypto.keystore.KeyStoreUtil;
+import org.kse.crypto.keystore.KseKeyStore;
+import org.kse.gui.passwordmanager.Password;
+
+/**
+ * Loads KeyStore files concurrently for {@link DOpeningKeyStores}.
+ * <p>
+ * Cancelling skips the files that have not been started yet. The threads that are still reading a
+ * file are interrupted, and as most KeyStore implementations do not react to that, the KeyStores
+ * they load are discarded.
+ */
+class KeyStoreFilesLoader {
+
+    /**
+     * Loading status of a KeyStore file.
+     */
+    enum Status {
+        LOADING("DOpeningKeyStores.Loading"),
+        LOADED("DOpeningKeyStores.Loaded"),
+        CANCELLED("DOpeningKeyStores.Cancelled"),
+        FAILED("DOpeningKeyStores.Failed");
+
+        private final String resourceKey;
+
+        Status(String resourceKey) {
+            this.resourceKey = resourceKey;
+        }
+
+        String getResourceKey() {
+            return resourceKey;
+        }
+    }
+
+    /**
+     * Notified on the loading threads when the status of a file changes. The final status of a file
+     * is reported after {@link #isFinished()} has been updated for it.
+     */
+    interface StatusListener {
+        void statusChanged(int index, Status status);
+    }
+
+    private final List<File> keyStoreFiles;
+    private final List<Password> passwords;
+    private final Executor executor;
+    private final StatusListener listener;
+
+    private final KseKeyStore[] keyStores;
+    private final Exception[] exceptions;
+    private final Thread[] workers;
+    private final CountDownLatch remaining;
+    private volatile boolean cancelled;
+
+    /**
+     * Create a loader.
+     *
+     * @param keyStoreFiles The KeyStore files to load
+     * @param passwords     The passwords of the KeyStore files, in the same order
+     * @param executor      Runs one task per file
+     * @param listener      Notified when the status of a file changes
+     */
+    KeyStoreFilesLoader(List<File> keyStoreFiles, List<Password> passwords, Executor executor,
+                        StatusListener listener) {
+        this.keyStoreFiles = keyStoreFiles;
+        this.passwords = passwords;
+        this.executor = executor;
+        this.listener = listener;
+
+        keyStores = new KseKeyStore[keyStoreFiles.size()];
+        exceptions = new Exception[keyStoreFiles.size()];
+        workers = new Thread[keyStoreFiles.size()];
+        remaining = new CountDownLatch(keyStoreFiles.size());
+    }
+
+    void start() {
+        for (int i = 0; i < keyStoreFiles.size(); i++) {
+            int index = i;
+            executor.execute(() -> load(index));
+        }
+    }
+
+    boolean await(long millis) throws InterruptedException {
+        return remaining.await(millis, TimeUnit.MILLISECONDS);
+    }
+
+    boolean isFinished() {
+        return remaining.getCount() == 0;
+    }
+
+    void cancel() {
+        cancelled = true;
+
+        synchronized (workers) {
+            for (Thread worker : workers) {
+                if (worker != null) {
+                    worker.interrupt();
+                }
+            }
+        }
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    KseKeyStore getKeyStore(int index) {
+        return keyStores[index];
+    }
+
+    Exception getException(int index) {
+        return exceptions[index];
+    }
+
+    private void load(int index) {
+        Status status = Status.CANCELLED;
+        try {
+            if (!cancelled) {
+                synchronized (workers) {
+                    workers[index] = Thread.currentThread();
+                }
+                listener.statusChanged(index, Status.LOADING);
+
+                KseKeyStore keyStore = KeyStoreUtil.load(keyStoreFiles.get(index), passwords.get(index));
+
+                if (!cancelled) {
+                    keyStores[index] = keyStore;
+                    status = Status.LOADED;
+                }
+            }
+        } catch (Exception ex) {
+            if (!cancelled) {
+                exceptions[index] = ex;
+                status = Status.FAILED;
+            }
+        } finally {
+            synchronized (workers) {
+                workers[index] = null;
+                // Do not pass an interrupt meant for this file on to the next task of the thread
+                Thread.interrupted();
+            }
+            remaining.countDown();
+        }
+
+        // After counting down, so the listener knows whether this was the last file
+        listener.statusChanged(index, status);
+    }
+}
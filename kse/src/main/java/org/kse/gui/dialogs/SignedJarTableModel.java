@@ -20,6 +20,7 @@
 
 package org.kse.gui.dialogs;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.ResourceBundle;
@@ -39,18 +40,20 @@ public class SignedJarTableModel extends ToolTipTableModel {
             "SignedJarTableModel.FlagsColumn.tooltip", //
             "SignedJarTableModel.SizeColumn.tooltip", //
             "SignedJarTableModel.DateColumn.tooltip", //
-            "SignedJarTableModel.NameColumn.tooltip" //
+            "SignedJarTableModel.NameColumn.tooltip", //
+            "SignedJarTableModel.TimeColumn.tooltip" //
     };
 
     static final int COL_FLAGS = 0;
     static final int COL_SIZE = 1;
     static final int COL_DATE = 2;
     static final int COL_NAME = 3;
-    private static final int COLUMN_COUNT = 4;
+    static final int COL_TIME = 4;
+    private static final int COLUMN_COUNT = 5;
 
-    private int[] columnSizes = {50, 50, 200, 400};
+    private int[] columnSizes = {50, 50, 200, 400, 70};
     private String[] columnNames;
-    private Object[][] data;
+    private List<Object[]> data;
 
     /**
      * Construct a new SignedJarTableModel.
@@ -62,8 +65,9 @@ public class SignedJarTableModel extends ToolTipTableModel {
         columnNames[COL_SIZE] = res.getString("SignedJarTableModel.SizeColumn.text");
         columnNames[COL_DATE] = res.getString("SignedJarTableModel.DateColumn.text");
         columnNames[COL_NAME] = res.getString("SignedJarTableModel.NameColumn.text");
+        columnNames[COL_TIME] = res.getString("SignedJarTableModel.TimeColumn.text");
 
-        data = new Object[0][0];
+        data = new ArrayList<>();
     }
 
     /**
@@ -73,20 +77,44 @@ public class SignedJarTableModel extends ToolTipTableModel {
      */
     public void load(List<KseJarEntry> jarEntries) {
 
-        data = new Object[jarEntries.size()][COLUMN_COUNT];
+        data = new ArrayList<>(jarEntries.size());
 
-        int i = 0;
         for (KseJarEntry entry : jarEntries) {
-            data[i][COL_FLAGS] = entry.getFlags();
-            data[i][COL_SIZE] = entry.getSize();
-            data[i][COL_DATE] = new Date(entry.getTime());
-            data[i][COL_NAME] = entry.getName();
-            ++i;
+            data.add(toRow(entry));
         }
 
         fireTableDataChanged();
     }
 
+    /**
+     * Append JAR entries to the SignedJarTableModel, for example as they are verified.
+     *
+     * @param jarEntries The JAR entries
+     */
+    public void add(List<KseJarEntry> jarEntries) {
+        if (jarEntries.isEmpty()) {
+            return;
+        }
+
+        int firstRow = data.size();
+
+        for (KseJarEntry entry : jarEntries) {
+            data.add(toRow(entry));
+        }
+
+        fireTableRowsInserted(firstRow, data.size() - 1);
+    }
+
+    private static Object[] toRow(KseJarEntry entry) {
+        Object[] row = new Object[COLUMN_COUNT];
+        row[COL_FLAGS] = entry.getFlags();
+        row[COL_SIZE] = entry.getSize();
+        row[COL_DATE] = new Date(entry.getTime());
+        row[COL_NAME] = entry.getName();
+        row[COL_TIME] = entry.getVerificationTime() / 1e6;
+        return row;
+    }
+
     /**
      * Get the number of columns in the table.
      *
@@ -104,7 +132,7 @@ public class SignedJarTableModel extends ToolTipTableModel {
      */
     @Override
     public int getRowCount() {
-        return data.length;
+        return data.size();
     }
 
     /**
@@ -127,7 +155,7 @@ public class SignedJarTableModel extends ToolTipTableModel {
      */
     @Override
     public Object getValueAt(int row, int col) {
-        return data[row][col];
+        return data.get(row)[col];
     }
 
     /**
@@ -147,6 +175,8 @@ public class SignedJarTableModel extends ToolTipTableModel {
                 return Date.class;
             case COL_NAME:
                 return String.class;
+            case COL_TIME:
+                return Double.class;
         }
         throw new IndexOutOfBoundsException(String.valueOf(col));
     }
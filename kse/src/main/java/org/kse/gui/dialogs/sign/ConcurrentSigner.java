@@ -0,0 +1,114 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.gui.dialogs.sign;
+
+import java.awt.Window;
+import java.text.MessageFormat;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.swing.JLabel;
+import javax.swing.JProgressBar;
+import javax.swing.SwingUtilities;
+
+/**
+ * Signs a batch of files on a pool of worker threads, showing the progress and throughput
+ * after each signed file.
+ */
+class ConcurrentSigner {
+
+    /**
+     * Signs one file of the batch.
+     */
+    interface SigningTask {
+        /**
+         * Sign the file. Problems signing it are to be recorded by the task.
+         *
+         * @param index Index of the file in the batch
+         * @return Size of the signed file in bytes
+         */
+        long sign(int index);
+    }
+
+    private ConcurrentSigner() {
+    }
+
+    /**
+     * Sign all files of the batch, using up to one thread per processor. Interrupting the calling
+     * thread interrupts the files still being signed.
+     *
+     * @param files         Number of files in the batch
+     * @param threadName    Name of the worker threads
+     * @param task          Signs each file
+     * @param progressBar   Progress bar to set to the number of signed files
+     * @param progressLabel Label to show the progress text in
+     * @param progressText  Progress text pattern, with the signed files, all files and MB/s as arguments
+     * @return Time taken in nanoseconds
+     * @throws InterruptedException If the calling thread was interrupted
+     * @throws ExecutionException   If a signing task failed unexpectedly
+     */
+    static long signAll(int files, String threadName, SigningTask task, JProgressBar progressBar,
+                        JLabel progressLabel, String progressText) throws InterruptedException, ExecutionException {
+
+        int threads = Math.max(1, Math.min(files, Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+
+        try {
+            CompletionService<Long> completionService = new ExecutorCompletionService<>(executor);
+
+            for (int i = 0; i < files; i++) {
+                final int index = i;
+                completionService.submit(() -> task.sign(index));
+            }
+
+            long start = System.nanoTime();
+            long bytesSigned = 0;
+            for (int signed = 1; signed <= files; signed++) {
+                bytesSigned += completionService.take().get();
+
+                // update the progress bar and throughput
+                double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+                String progress = MessageFormat.format(progressText, signed, files,
+                                                       bytesSigned / (1024.0 * 1024.0) / seconds);
+                final int value = signed;
+                SwingUtilities.invokeLater(() -> {
+                    progressBar.setValue(value);
+                    progressLabel.setText(progress);
+                    Window window = SwingUtilities.getWindowAncestor(progressLabel);
+                    if (window != null && progressLabel.getPreferredSize().width > progressLabel.getWidth()) {
+                        window.pack();
+                    }
+                });
+            }
+            return System.nanoTime() - start;
+        } finally {
+            // interrupts files still being signed after a cancel
+            executor.shutdownNow();
+        }
+    }
+}
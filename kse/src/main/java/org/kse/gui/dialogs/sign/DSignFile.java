@@ -32,6 +32,10 @@ import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.PrivateKey;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 import java.util.ResourceBundle;
 
 import javax.swing.AbstractAction;
@@ -105,6 +109,8 @@ public class DSignFile extends JEscDialog {
     private KeyPairType signKeyPairType;
     private File inputFile;
     private File outputFile;
+    private File[] inputFiles;
+    private List<File> outputFiles;
     private CMSSignedData inputSignature;
     private boolean outputFileChosen;
     private boolean enableCounterSign;
@@ -311,6 +317,34 @@ public class DSignFile extends JEscDialog {
         return inputFile;
     }
 
+    /**
+     * Is a batch of files signed? The files are then returned by {@link #getInputFiles()} and
+     * their signatures by {@link #getOutputFiles()}.
+     *
+     * @return <b>boolean</b> true if several files or a directory were chosen
+     */
+    public boolean isBatchSign() {
+        return inputFiles != null;
+    }
+
+    /**
+     * Get chosen input files when signing a batch of files.
+     *
+     * @return <b>File[]</b> input files
+     */
+    public File[] getInputFiles() {
+        return inputFiles;
+    }
+
+    /**
+     * Get output files when signing a batch of files, one next to each input file.
+     *
+     * @return <b>List</b> of output files
+     */
+    public List<File> getOutputFiles() {
+        return outputFiles;
+    }
+
     /**
      * Get chosen output file.
      *
@@ -374,7 +408,7 @@ public class DSignFile extends JEscDialog {
      */
     private void okPressed() {
         // check if any files selected
-        if (inputFile == null) {
+        if (inputFile == null && inputFiles == null) {
             JOptionPane.showMessageDialog(this, res.getString("DSignFile.InputFileRequired.message"), getTitle(),
                                           JOptionPane.WARNING_MESSAGE);
             return;
@@ -387,12 +421,16 @@ public class DSignFile extends JEscDialog {
             return;
         }
 
-        if (!outputFileChosen) {
+        if (inputFiles != null) {
+            if (!setOutputFiles()) {
+                return;
+            }
+        } else if (!outputFileChosen) {
             outputFile = new File(jtfOutputFile.getText());
         }
 
         // warn if overwriting a file when not counter signing
-        if (outputFile.exists() && (!enableCounterSign || !jcbCounterSign.isSelected())) {
+        if (inputFiles == null && outputFile.exists() && (!enableCounterSign || !jcbCounterSign.isSelected())) {
             int selected = JOptionPane.showConfirmDialog(this,
                     MessageFormat.format(res.getString("DSignFile.OverWriteOutput.message"), outputFile.getName()),
                     getTitle(), JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
@@ -417,7 +455,35 @@ public class DSignFile extends JEscDialog {
     }
 
     /**
-     * Get input file
+     * Sets the output file next to each input file of a batch, and asks before overwriting
+     * existing signatures.
+     *
+     * @return true if the batch is to be signed
+     */
+    private boolean setOutputFiles() {
+        String extension = detachedSignature ? ".p7s" : ".p7m";
+        outputFiles = new ArrayList<>(inputFiles.length);
+        int existing = 0;
+        for (File file : inputFiles) {
+            File signatureFile = new File(file.getAbsolutePath() + extension);
+            outputFiles.add(signatureFile);
+            if (signatureFile.exists()) {
+                existing++;
+            }
+        }
+
+        if (existing > 0) {
+            int selected = JOptionPane.showConfirmDialog(this,
+                    MessageFormat.format(res.getString("DSignFile.OverWriteOutputs.message"), existing),
+                    getTitle(), JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+
+            return selected == JOptionPane.YES_OPTION;
+        }
+        return true;
+    }
+
+    /**
+     * Get input file, or several files or a directory of files to sign as a batch
      */
     private void inputFileBrowsePressed() {
         JFileChooser chooser;
@@ -425,19 +491,67 @@ public class DSignFile extends JEscDialog {
         chooser = FileChooserFactory.getAllFileChooser();
         chooser.setDialogTitle(res.getString("DSignFile.ChooseInputFile.Sign.Title"));
         chooser.setCurrentDirectory(CurrentDirectory.get());
-        chooser.setMultiSelectionEnabled(false);
+        chooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
+        chooser.setMultiSelectionEnabled(true);
         chooser.setApproveButtonText(res.getString("DSignFile.InputFileChooser.button"));
 
         int rtnValue = chooser.showOpenDialog(this);
         if (rtnValue == JFileChooser.APPROVE_OPTION) {
-            File chosenFile = chooser.getSelectedFile();
-            CurrentDirectory.updateForFile(chosenFile);
-            inputFile = chosenFile;
+            File[] chosenFiles = chooser.getSelectedFiles();
+            if (chosenFiles.length == 0) {
+                chosenFiles = new File[] { chooser.getSelectedFile() };
+            }
+            CurrentDirectory.updateForFile(chosenFiles[0]);
+
+            if (chosenFiles.length == 1 && !chosenFiles[0].isDirectory()) {
+                inputFile = chosenFiles[0];
+                inputFiles = null;
+
+                inputFileUpdated();
+            } else {
+                File[] batchFiles = getBatchFiles(chosenFiles);
+                if (batchFiles.length == 0) {
+                    JOptionPane.showMessageDialog(this, res.getString("DSignFile.NoInputFiles.message"), getTitle(),
+                                                  JOptionPane.WARNING_MESSAGE);
+                    return;
+                }
+                inputFile = null;
+                inputFiles = batchFiles;
 
-            inputFileUpdated();
+                inputFilesUpdated();
+            }
         }
     }
 
+    /**
+     * Gets the files to sign from the chosen files and directories. Directories contribute the
+     * files directly in them, except for hidden files and existing signatures.
+     *
+     * @param chosenFiles The chosen files and directories
+     * @return The files to sign
+     */
+    private static File[] getBatchFiles(File[] chosenFiles) {
+        List<File> batchFiles = new ArrayList<>();
+        for (File chosenFile : chosenFiles) {
+            if (!chosenFile.isDirectory()) {
+                batchFiles.add(chosenFile);
+                continue;
+            }
+
+            File[] files = chosenFile.listFiles(file -> file.isFile() && !file.isHidden() && !isSignatureFile(file));
+            if (files != null) {
+                Arrays.sort(files, Comparator.comparing(File::getName));
+                batchFiles.addAll(Arrays.asList(files));
+            }
+        }
+        return batchFiles.toArray(File[]::new);
+    }
+
+    private static boolean isSignatureFile(File file) {
+        String name = file.getName().toLowerCase();
+        return name.endsWith(".p7s") || name.endsWith(".p7m");
+    }
+
     /**
      * Get output file
      */
@@ -490,7 +604,34 @@ public class DSignFile extends JEscDialog {
         updateControls();
     }
 
+    private void inputFilesUpdated() {
+        // counter signing is not offered for a batch
+        resetToDefault();
+        outputFileChosen = false;
+
+        jtfInputFile.setText(MessageFormat.format(res.getString("DSignFile.jtfInputFile.batch.text"),
+                                                  inputFiles.length));
+        jtfInputFile.setCaretPosition(0);
+        updateControls();
+    }
+
     private void updateOutputFile() {
+        boolean batchSign = inputFiles != null;
+        jtfOutputFile.setEnabled(!batchSign);
+        jbOutputFileBrowse.setEnabled(!batchSign);
+
+        if (batchSign) {
+            // every signature is stored next to its file
+            jtfOutputFile.setText(MessageFormat.format(res.getString("DSignFile.jtfOutputFile.batch.text"),
+                                                       detachedSignature ? ".p7s" : ".p7m"));
+            jtfOutputFile.setCaretPosition(0);
+            return;
+        }
+
+        if (inputFile == null && !outputFileChosen) {
+            return;
+        }
+
         if (!outputFileChosen) {
             String addedExtension = "";
 
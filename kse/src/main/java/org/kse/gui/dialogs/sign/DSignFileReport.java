@@ -0,0 +1,193 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.gui.dialogs.sign;
+
+import java.awt.Container;
+import java.awt.Dialog;
+import java.awt.Dimension;
+import java.awt.Toolkit;
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.StringSelection;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ResourceBundle;
+
+import javax.swing.JButton;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JSeparator;
+import javax.swing.JTable;
+import javax.swing.ListSelectionModel;
+import javax.swing.ScrollPaneConstants;
+import javax.swing.table.TableRowSorter;
+
+import org.kse.gui.CursorUtil;
+import org.kse.gui.PlatformUtil;
+import org.kse.gui.components.JEscDialog;
+import org.kse.gui.table.ToolTipTable;
+import org.kse.utilities.DialogViewer;
+
+import net.miginfocom.swing.MigLayout;
+
+/**
+ * Dialog to display the outcome of signing a batch of files, with the time taken to sign each file.
+ */
+public class DSignFileReport extends JEscDialog {
+    private static final long serialVersionUID = 1L;
+
+    private static ResourceBundle res = ResourceBundle.getBundle("org/kse/gui/dialogs/sign/resources");
+
+    private JLabel jlSummary;
+    private JTable jtResults;
+    private JScrollPane jspResults;
+    private JButton jbOK;
+    private JButton jbCopy;
+    private JPanel jpButtons;
+
+    private List<FileSigningResult> results;
+    private long elapsedTime;
+
+    /**
+     * Creates a new DSignFileReport dialog.
+     *
+     * @param parent      The parent frame
+     * @param results     The outcome of signing each file
+     * @param elapsedTime Time taken to sign all files in milliseconds
+     */
+    public DSignFileReport(JFrame parent, List<FileSigningResult> results, long elapsedTime) {
+        super(parent, Dialog.ModalityType.DOCUMENT_MODAL);
+        this.results = results;
+        this.elapsedTime = elapsedTime;
+        setTitle(res.getString("DSignFileReport.Title"));
+        initComponents();
+    }
+
+    private void initComponents() {
+        long failed = results.stream().filter(result -> !result.isSigned()).count();
+        jlSummary = new JLabel(MessageFormat.format(res.getString("DSignFileReport.jlSummary.text"),
+                                                    results.size() - failed, results.size(), failed,
+                                                    elapsedTime / 1000.0));
+
+        SignFileReportTableModel model = new SignFileReportTableModel();
+        model.load(results);
+
+        jtResults = new ToolTipTable(model);
+        jtResults.setRowSorter(new TableRowSorter<>(model));
+        jtResults.setShowGrid(false);
+        jtResults.setRowMargin(0);
+        jtResults.getColumnModel().setColumnMargin(0);
+        jtResults.getTableHeader().setReorderingAllowed(false);
+        jtResults.setAutoResizeMode(JTable.AUTO_RESIZE_LAST_COLUMN);
+        jtResults.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        jtResults.getColumnModel().getColumn(SignFileReportTableModel.COL_FILE).setPreferredWidth(300);
+        jtResults.getColumnModel().getColumn(SignFileReportTableModel.COL_SIZE).setPreferredWidth(90);
+        jtResults.getColumnModel().getColumn(SignFileReportTableModel.COL_TIME).setPreferredWidth(70);
+        jtResults.getColumnModel().getColumn(SignFileReportTableModel.COL_RESULT).setPreferredWidth(300);
+
+        jspResults = PlatformUtil.createScrollPane(jtResults, ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED,
+                                                   ScrollPaneConstants.HORIZONTAL_SCROLLBAR_AS_NEEDED);
+        jspResults.getViewport().setBackground(jtResults.getBackground());
+        jspResults.setPreferredSize(new Dimension(760, 300));
+
+        jbOK = new JButton(res.getString("DSignFileReport.jbOK.text"));
+        jbCopy = new JButton(res.getString("DSignFileReport.jbCopy.text"));
+        jbCopy.setToolTipText(res.getString("DSignFileReport.jbCopy.tooltip"));
+        PlatformUtil.setMnemonic(jbCopy, res.getString("DSignFileReport.jbCopy.mnemonic").charAt(0));
+
+        jpButtons = PlatformUtil.createDialogButtonPanel(new JButton[] { jbOK }, null, new JButton[] { jbCopy },
+                                                         "insets 0");
+
+        // layout
+        Container pane = getContentPane();
+        pane.setLayout(new MigLayout("insets dialog, fill", "[grow]", "[][grow]"));
+        pane.add(jlSummary, "wrap");
+        pane.add(jspResults, "grow, wrap");
+        pane.add(new JSeparator(), "spanx, growx, wrap unrel");
+        pane.add(jpButtons, "right, spanx");
+
+        // actions
+        jbOK.addActionListener(evt -> closeDialog());
+        jbCopy.addActionListener(evt -> {
+            try {
+                CursorUtil.setCursorBusy(DSignFileReport.this);
+                copyPressed();
+            } finally {
+                CursorUtil.setCursorFree(DSignFileReport.this);
+            }
+        });
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent evt) {
+                closeDialog();
+            }
+        });
+
+        getRootPane().setDefaultButton(jbOK);
+
+        pack();
+        setLocationRelativeTo(null);
+    }
+
+    /**
+     * Copies the report to the clip board, one tab separated line per file.
+     */
+    private void copyPressed() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(jlSummary.getText()).append('\n');
+        for (FileSigningResult result : results) {
+            sb.append(result.getInputFile().getAbsolutePath()).append('\t');
+            sb.append(result.getSize()).append('\t');
+            sb.append(result.getSigningTime()).append('\t');
+            sb.append(result.isSigned() ? result.getOutputFile().getAbsolutePath() : result.getError()).append('\n');
+        }
+
+        Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
+        StringSelection copy = new StringSelection(sb.toString());
+        clipboard.setContents(copy, copy);
+    }
+
+    /**
+     * Closes the dialogue window
+     */
+    private void closeDialog() {
+        setVisible(false);
+        dispose();
+    }
+
+    // for quick UI testing
+    public static void main(String[] args) throws Exception {
+        DialogViewer.prepare();
+        List<FileSigningResult> results = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            File file = new File("artifact-" + i + ".zip");
+            results.add(new FileSigningResult(file, new File(file.getPath() + ".p7s"), 1024L * i, i * 3L,
+                                              i % 10 == 9 ? "java.nio.file.AccessDeniedException: " + file : null));
+        }
+
+        DSignFileReport dialog = new DSignFileReport(new JFrame(), results, 1234);
+        DialogViewer.run(dialog);
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.gui.dialogs.sign;
+
+import java.awt.Container;
+import java.awt.Dialog;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.ResourceBundle;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.AbstractAction;
+import javax.swing.JButton;
+import javax.swing.JComponent;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JProgressBar;
+import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
+
+import org.kse.crypto.signing.CmsFileSigner;
+import org.kse.gui.components.JEscDialog;
+import org.kse.gui.error.DError;
+
+import net.miginfocom.swing.MigLayout;
+
+/**
+ * <h1>File Signing</h1> The class signs a batch of files.
+ * <p>
+ * The user may cancel at any time by pressing the cancel button.
+ */
+public class DSignFileSigning extends JEscDialog {
+    private static final long serialVersionUID = 1L;
+
+    private static ResourceBundle res = ResourceBundle.getBundle("org/kse/gui/dialogs/sign/resources");
+
+    private static final String CANCEL_KEY = "CANCEL_KEY";
+
+    private JLabel jlSignFile;
+    private JProgressBar jpbSignFile;
+    private JButton jbCancel;
+
+    private File[] inputFiles;
+    private List<File> outputFiles;
+    private CmsFileSigner fileSigner;
+
+    private FileSigningResult[] results;
+    private long elapsedTime;
+
+    private Thread signerThread;
+    private boolean successStatus = true;
+
+    /**
+     * Creates a new DSignFileSigning dialog.
+     *
+     * @param parent      The parent frame
+     * @param inputFiles  The files to sign
+     * @param outputFiles The signature file for each input file
+     * @param fileSigner  Signs the files with the chosen key and options
+     */
+    public DSignFileSigning(JFrame parent, File[] inputFiles, List<File> outputFiles, CmsFileSigner fileSigner) {
+        super(parent, Dialog.ModalityType.DOCUMENT_MODAL);
+        this.inputFiles = inputFiles;
+        this.outputFiles = outputFiles;
+        this.fileSigner = fileSigner;
+        initComponents();
+    }
+
+    /**
+     * Initializes the dialogue panel and associated elements
+     */
+    private void initComponents() {
+
+        jlSignFile = new JLabel(res.getString("DSignFileSigning.jlSignFile.text"));
+
+        jpbSignFile = new JProgressBar(0, inputFiles.length);
+        jpbSignFile.setIndeterminate(false);
+
+        jbCancel = new JButton(res.getString("DSignFileSigning.jbCancel.text"));
+        jbCancel.addActionListener(evt -> cancelPressed());
+        // Need to use WHEN_FOCUSED since the cancel button will always have focus.
+        jbCancel.getInputMap(JComponent.WHEN_FOCUSED)
+                .put(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), CANCEL_KEY);
+        jbCancel.getActionMap().put(CANCEL_KEY, new AbstractAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public void actionPerformed(ActionEvent evt) {
+                cancelPressed();
+            }
+        });
+
+        Container pane = getContentPane();
+        pane.setLayout(new MigLayout("insets dialog, fill", "[]", "[]unrel"));
+        pane.add(jlSignFile, "wrap");
+        pane.add(jpbSignFile, "growx, wrap");
+        pane.add(jbCancel, "tag Cancel");
+
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent evt) {
+                cancelPressed();
+            }
+        });
+
+        setTitle(res.getString("DSignFileSigning.Title"));
+        setResizable(false);
+
+        pack();
+    }
+
+    /**
+     * Start signing in a separate thread.
+     */
+    public void startDSignFileSigning() {
+        signerThread = new Thread(new SignFiles());
+        signerThread.setPriority(Thread.MIN_PRIORITY);
+        signerThread.start();
+    }
+
+    /**
+     * Returns the current success status
+     *
+     * @return successStatus The success status boolean
+     */
+    public boolean isSuccessful() {
+        return successStatus;
+    }
+
+    /**
+     * Calls the close dialogue, Sets the success value to false
+     */
+    private void cancelPressed() {
+        if ((signerThread != null) && (signerThread.isAlive())) {
+            signerThread.interrupt();
+        }
+        successStatus = false;
+        closeDialog();
+    }
+
+    /**
+     * Closes the dialogue
+     */
+    private void closeDialog() {
+        setVisible(false);
+        dispose();
+    }
+
+    /**
+     * Get the outcome of signing each file, in the order of the input files.
+     *
+     * @return The signing results
+     */
+    public List<FileSigningResult> getResults() {
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Get the time taken to sign all files.
+     *
+     * @return Time in milliseconds
+     */
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    /**
+     * Signs the files, several at once.
+     * <p>
+     * Errors generated during the signing are recorded in the results.
+     */
+    private class SignFiles implements Runnable {
+        @Override
+        public void run() {
+            try {
+                results = new FileSigningResult[inputFiles.length];
+
+                long time = ConcurrentSigner.signAll(inputFiles.length, "KSE file signing",
+                                                     index -> signFile(index).getSize(), jpbSignFile, jlSignFile,
+                                                     res.getString("DSignFileSigning.jlSignFile.progress.text"));
+                elapsedTime = TimeUnit.NANOSECONDS.toMillis(time);
+
+                SwingUtilities.invokeLater(() -> {
+                    if (DSignFileSigning.this.isShowing()) {
+                        closeDialog();
+                    }
+                });
+            } catch (InterruptedException ex) {
+                // cancelled, dialog is already closed
+            } catch (final Exception ex) {
+                SwingUtilities.invokeLater(() -> {
+                    if (DSignFileSigning.this.isShowing()) {
+                        DError dError = new DError(DSignFileSigning.this, ex);
+                        dError.setLocationRelativeTo(DSignFileSigning.this);
+                        dError.setVisible(true);
+                        closeDialog();
+                    }
+                });
+            }
+        }
+
+        private FileSigningResult signFile(int index) {
+            File inputFile = inputFiles[index];
+            File outputFile = outputFiles.get(index);
+            String error = null;
+
+            long start = System.nanoTime();
+            try {
+                fileSigner.sign(inputFile, outputFile);
+            }
+            // Record any file sign exceptions in the result
+            catch (Exception e) {
+                error = e.getCause() != null ? e.getCause().toString() : e.toString();
+            }
+            long signingTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            results[index] = new FileSigningResult(inputFile, outputFile, inputFile.length(), signingTime, error);
+            return results[index];
+        }
+    }
+}
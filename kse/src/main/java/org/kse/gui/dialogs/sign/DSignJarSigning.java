@@ -30,10 +30,10 @@ import java.io.File;
 import java.security.PrivateKey;
 import java.security.Provider;
 import java.security.cert.X509Certificate;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.swing.AbstractAction;
 import javax.swing.JButton;
@@ -46,6 +46,7 @@ import javax.swing.SwingUtilities;
 
 import org.kse.crypto.digest.DigestType;
 import org.kse.crypto.signing.JarSigner;
+import org.kse.crypto.signing.SignatureBlockGenerator;
 import org.kse.crypto.signing.SignatureType;
 import org.kse.gui.components.JEscDialog;
 import org.kse.gui.error.DError;
@@ -206,31 +207,27 @@ public class DSignJarSigning extends JEscDialog {
         @Override
         public void run() {
             try {
-                // set new hashmap
-                fileExceptions = new HashMap<>();
-                for (int i = 0; i < inputJarFiles.length; i++) {
-                    try {
-                        if (inputJarFiles[i].equals(outputJarFiles.get(i))) {
-                            JarSigner.sign(inputJarFiles[i], privateKey, certs, signatureType, signatureName, signer,
-                                           digestType, tsaUrl, provider);
-                        } else {
-                            JarSigner.sign(inputJarFiles[i], outputJarFiles.get(i), privateKey, certs, signatureType,
-                                           signatureName, signer, digestType, tsaUrl, provider);
-                        }
-                    }
-                    // Add any jar sign exceptions to the map
-                    catch (Exception e) {
-                        fileExceptions.put(inputJarFiles[i].getName(), e.toString());
-                    }
-                    // update the progress bar
-                    jpbSignJar.setValue(i);
-                }
+                // set new hashmap, the JARs report their exceptions concurrently and by path, as JARs
+                // from different directories may share a name
+                fileExceptions = new ConcurrentHashMap<>();
+
+                // prepare signature creation once for all JARs
+                SignatureBlockGenerator signatureBlockGenerator = new SignatureBlockGenerator(privateKey, certs,
+                                                                                              signatureType, provider);
+
+                // sign several JARs at once, signatures with keys of an explicit provider (e.g. PKCS#11) are
+                // still created one after another by the signature block generator
+                ConcurrentSigner.signAll(inputJarFiles.length, "KSE JAR signing",
+                                         index -> signJar(index, signatureBlockGenerator).length(), jpbSignJar,
+                                         jlSignJar, res.getString("DSignJarSigning.jlSignJar.progress.text"));
 
                 SwingUtilities.invokeLater(() -> {
                     if (DSignJarSigning.this.isShowing()) {
                         closeDialog();
                     }
                 });
+            } catch (InterruptedException ex) {
+                // cancelled, dialog is already closed
             } catch (final Exception ex) {
                 SwingUtilities.invokeLater(() -> {
                     if (DSignJarSigning.this.isShowing()) {
@@ -242,5 +239,23 @@ public class DSignJarSigning extends JEscDialog {
                 });
             }
         }
+
+        private File signJar(int index, SignatureBlockGenerator signatureBlockGenerator) {
+            File inputJarFile = inputJarFiles[index];
+            File outputJarFile = outputJarFiles.get(index);
+            try {
+                if (inputJarFile.equals(outputJarFile)) {
+                    JarSigner.sign(inputJarFile, signatureBlockGenerator, signatureName, signer, digestType, tsaUrl);
+                } else {
+                    JarSigner.sign(inputJarFile, outputJarFile, signatureBlockGenerator, signatureName, signer,
+                                   digestType, tsaUrl);
+                }
+            }
+            // Add any jar sign exceptions to the map
+            catch (Exception e) {
+                fileExceptions.put(inputJarFile.getAbsolutePath(), e.toString());
+            }
+            return inputJarFile;
+        }
     }
 }
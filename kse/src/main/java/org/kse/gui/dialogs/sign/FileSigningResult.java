@@ -0,0 +1,105 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.gui.dialogs.sign;
+
+import java.io.File;
+
+/**
+ * Class for the outcome of signing one file of a batch.
+ */
+public class FileSigningResult {
+
+    private File inputFile;
+    private File outputFile;
+    private long size;
+    private long signingTime;
+    private String error;
+
+    /**
+     * Construct a new FileSigningResult.
+     *
+     * @param inputFile   The signed file
+     * @param outputFile  The signature file
+     * @param size        Size of the signed file in bytes
+     * @param signingTime Time taken to sign the file in milliseconds
+     * @param error       Why the file could not be signed, null if it was signed
+     */
+    public FileSigningResult(File inputFile, File outputFile, long size, long signingTime, String error) {
+        this.inputFile = inputFile;
+        this.outputFile = outputFile;
+        this.size = size;
+        this.signingTime = signingTime;
+        this.error = error;
+    }
+
+    /**
+     * Gets the signed file.
+     *
+     * @return the signed file
+     */
+    public File getInputFile() {
+        return inputFile;
+    }
+
+    /**
+     * Gets the signature file.
+     *
+     * @return the signature file
+     */
+    public File getOutputFile() {
+        return outputFile;
+    }
+
+    /**
+     * Gets the size of the signed file.
+     *
+     * @return size in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Gets the time taken to sign the file.
+     *
+     * @return time in milliseconds
+     */
+    public long getSigningTime() {
+        return signingTime;
+    }
+
+    /**
+     * Gets why the file could not be signed.
+     *
+     * @return the error, or null if the file was signed
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Was the file signed?
+     *
+     * @return true if the file was signed
+     */
+    public boolean isSigned() {
+        return error == null;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.gui.dialogs.sign;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ResourceBundle;
+
+import org.kse.gui.table.ToolTipTableModel;
+
+/**
+ * The table model used to display the outcome of signing a batch of files
+ */
+public class SignFileReportTableModel extends ToolTipTableModel {
+    private static final long serialVersionUID = 1L;
+
+    private static ResourceBundle res = ResourceBundle.getBundle("org/kse/gui/dialogs/sign/resources");
+
+    static final int COL_FILE = 0;
+    static final int COL_SIZE = 1;
+    static final int COL_TIME = 2;
+    static final int COL_RESULT = 3;
+
+    private static final String[] COLUMN_TOOL_TIPS = { //
+            "SignFileReportTableModel.FileColumn.tooltip", //
+            "SignFileReportTableModel.SizeColumn.tooltip", //
+            "SignFileReportTableModel.TimeColumn.tooltip", //
+            "SignFileReportTableModel.ResultColumn.tooltip" //
+    };
+
+    private String[] columnNames;
+    private List<FileSigningResult> results;
+
+    public SignFileReportTableModel() {
+        super(res, COLUMN_TOOL_TIPS);
+        columnNames = new String[4];
+        columnNames[COL_FILE] = res.getString("SignFileReportTableModel.FileColumn");
+        columnNames[COL_SIZE] = res.getString("SignFileReportTableModel.SizeColumn");
+        columnNames[COL_TIME] = res.getString("SignFileReportTableModel.TimeColumn");
+        columnNames[COL_RESULT] = res.getString("SignFileReportTableModel.ResultColumn");
+
+        results = new ArrayList<>();
+    }
+
+    /**
+     * Load the table with the results of signing files.
+     *
+     * @param results The signing results
+     */
+    public void load(List<FileSigningResult> results) {
+        this.results = new ArrayList<>(results);
+        fireTableDataChanged();
+    }
+
+    /**
+     * Get the number of columns in the table.
+     *
+     * @return The number of columns
+     */
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    /**
+     * Get the number of rows in the table.
+     *
+     * @return The number of rows
+     */
+    @Override
+    public int getRowCount() {
+        return results.size();
+    }
+
+    /**
+     * Get the name of the column at the given position.
+     *
+     * @param col The column position
+     * @return The column name
+     */
+    @Override
+    public String getColumnName(int col) {
+        return columnNames[col];
+    }
+
+    /**
+     * Get the cell value at the given row and column position.
+     *
+     * @param row The row position
+     * @param col The column position
+     * @return The cell value
+     */
+    @Override
+    public Object getValueAt(int row, int col) {
+        FileSigningResult result = results.get(row);
+        switch (col) {
+            case COL_FILE:
+                return result.getInputFile().getAbsolutePath();
+            case COL_SIZE:
+                return result.getSize();
+            case COL_TIME:
+                return result.getSigningTime();
+            default:
+                return result.isSigned() ? result.getOutputFile().getName() : result.getError();
+        }
+    }
+
+    /**
+     * Get the class at of the cells at the given column position.
+     *
+     * @param col The column position
+     * @return The column cells' class
+     */
+    @Override
+    public Class<?> getColumnClass(int col) {
+        if (col == COL_SIZE || col == COL_TIME) {
+            return Long.class;
+        }
+        return String.class;
+    }
+
+    /**
+     * Is the cell at the given row and column position editable?
+     *
+     * @param row The row position
+     * @param col The column position
+     * @return True if the cell is editable, false otherwise
+     */
+    @Override
+    public boolean isCellEditable(int row, int col) {
+        return false;
+    }
+}
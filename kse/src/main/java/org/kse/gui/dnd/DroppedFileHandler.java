@@ -26,12 +26,16 @@ import java.awt.dnd.DnDConstants;
 import java.awt.dnd.DropTargetDropEvent;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 
+import org.kse.crypto.filetype.CryptoFileUtil;
 import org.kse.gui.KseFrame;
 import org.kse.gui.actions.ExamineFileAction;
+import org.kse.gui.actions.OpenAction;
 import org.kse.gui.error.DError;
 
 public class DroppedFileHandler {
@@ -60,9 +64,47 @@ public class DroppedFileHandler {
 
     public static void openFiles(KseFrame kseFrame, List<File> droppedFiles) {
 
+        if (droppedFiles.size() < 2) {
+            openFiles(kseFrame, new ArrayList<>(), new ArrayList<>(droppedFiles));
+            return;
+        }
+
+        // KeyStore files are loaded together so that they are loaded concurrently. Detecting them
+        // reads every file, so it is done off the event dispatch thread.
+        new SwingWorker<Void, Void>() {
+            private final List<File> keyStoreFiles = new ArrayList<>();
+            private final List<File> otherFiles = new ArrayList<>();
+
+            @Override
+            protected Void doInBackground() {
+                for (File droppedFile : droppedFiles) {
+                    if (isKeyStoreFile(droppedFile)) {
+                        keyStoreFiles.add(droppedFile);
+                    } else {
+                        otherFiles.add(droppedFile);
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                openFiles(kseFrame, keyStoreFiles, otherFiles);
+            }
+        }.execute();
+    }
+
+    private static void openFiles(KseFrame kseFrame, List<File> keyStoreFiles, List<File> otherFiles) {
+
         ExamineFileAction examineFileAction = new ExamineFileAction(kseFrame);
 
-        for (File droppedFile : droppedFiles) {
+        if (keyStoreFiles.size() > 1) {
+            new OpenAction(kseFrame).openKeyStores(keyStoreFiles);
+        } else {
+            otherFiles.addAll(0, keyStoreFiles);
+        }
+
+        for (File droppedFile : otherFiles) {
             try {
                 examineFileAction.openFile(droppedFile);
             } catch (Exception e) {
@@ -70,4 +112,24 @@ public class DroppedFileHandler {
             }
         }
     }
+
+    private static boolean isKeyStoreFile(File file) {
+        try {
+            switch (CryptoFileUtil.detectFileType(file)) {
+            case JCEKS_KS:
+            case JKS_KS:
+            case PKCS12_KS:
+            case BKS_KS:
+            case BCFKS_KS:
+            case UBER_KS:
+            case PEM_KS:
+                return true;
+            default:
+                return false;
+            }
+        } catch (IOException e) {
+            // handled when the file is examined
+            return false;
+        }
+    }
 }
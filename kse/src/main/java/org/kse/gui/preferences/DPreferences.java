@@ -289,6 +289,24 @@ public class DPreferences extends JEscDialog {
         return panelAuthorityCertificates.getJcbEnableImportCaReplyTrustCheck().isSelected();
     }
 
+    /**
+     * Get whether OCSP responses are to be kept on disk between sessions.
+     *
+     * @return True if they are, false otherwise
+     */
+    public boolean isOcspCacheEnabled() {
+        return panelAuthorityCertificates.getJcbEnableOcspCache().isSelected();
+    }
+
+    /**
+     * Get whether the cached OCSP responses are to be removed.
+     *
+     * @return True if they are, false otherwise
+     */
+    public boolean isClearOcspCache() {
+        return panelAuthorityCertificates.isClearOcspCache();
+    }
+
     /**
      * Get the chosen password quality configuration settings.
      *
@@ -472,6 +490,15 @@ public class DPreferences extends JEscDialog {
         return ((Number) panelUserInterface.getJspSnRandomBytes().getValue()).intValue();
     }
 
+    /**
+     * Returns memory budget of the undo/redo history
+     *
+     * @return memory budget in megabytes
+     */
+    public int getHistoryMemoryBudgetInMegabytes() {
+        return ((Number) panelUserInterface.getJspHistoryMemoryBudget().getValue()).intValue();
+    }
+
     /**
      * Check if columns have changed
      *
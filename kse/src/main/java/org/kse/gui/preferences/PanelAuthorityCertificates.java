@@ -52,6 +52,8 @@ class PanelAuthorityCertificates {
     private JCheckBox jcbUseWinTrustedRootCertificates;
     private JCheckBox jcbEnableImportTrustedCertTrustCheck;
     private JCheckBox jcbEnableImportCaReplyTrustCheck;
+    private JCheckBox jcbEnableOcspCache;
+    private boolean clearOcspCache;
 
     PanelAuthorityCertificates(DPreferences parent, KsePreferences preferences) {
         this.parent = parent;
@@ -105,6 +107,15 @@ class PanelAuthorityCertificates {
         jcbEnableImportCaReplyTrustCheck
                 .setMnemonic(res.getString("DPreferences.jcbEnableImportCaReplyTrustCheck.mnemonic").charAt(0));
 
+        jcbEnableOcspCache = new JCheckBox(res.getString("DPreferences.jcbEnableOcspCache.text"),
+                                           caCertsSettings.isOcspCacheEnabled());
+        jcbEnableOcspCache.setToolTipText(res.getString("DPreferences.jcbEnableOcspCache.tooltip"));
+        jcbEnableOcspCache.setMnemonic(res.getString("DPreferences.jcbEnableOcspCache.mnemonic").charAt(0));
+
+        JButton jbClearOcspCache = new JButton(res.getString("DPreferences.jbClearOcspCache.text"));
+        jbClearOcspCache.setMnemonic(res.getString("DPreferences.jbClearOcspCache.mnemonic").charAt(0));
+        jbClearOcspCache.setToolTipText(res.getString("DPreferences.jbClearOcspCache.tooltip"));
+
         // layout
         JPanel jpAuthorityCertificates = new JPanel();
         jpAuthorityCertificates.setLayout(new MigLayout("insets dialog", "20lp[][]", "20lp[][]"));
@@ -122,7 +133,10 @@ class PanelAuthorityCertificates {
         MiGUtil.addSeparator(jpAuthorityCertificates, res.getString("DPreferences.trustChecks.separator"));
         jpAuthorityCertificates.add(jlTrustChecks, "gapx indent, wrap unrel");
         jpAuthorityCertificates.add(jcbEnableImportTrustedCertTrustCheck, "gapx indent, wrap rel");
-        jpAuthorityCertificates.add(jcbEnableImportCaReplyTrustCheck, "gapx indent, wrap unrel");
+        jpAuthorityCertificates.add(jcbEnableImportCaReplyTrustCheck, "gapx indent, wrap para");
+        MiGUtil.addSeparator(jpAuthorityCertificates, res.getString("DPreferences.ocspCache.separator"));
+        jpAuthorityCertificates.add(jcbEnableOcspCache, "gapx indent, wrap rel");
+        jpAuthorityCertificates.add(jbClearOcspCache, "gapx indent, wrap unrel");
 
         jbBrowseCaCertificatesFile.addActionListener(evt -> {
             try {
@@ -133,6 +147,11 @@ class PanelAuthorityCertificates {
             }
         });
 
+        jbClearOcspCache.addActionListener(evt -> {
+            clearOcspCache = true;
+            jbClearOcspCache.setEnabled(false);
+        });
+
         return jpAuthorityCertificates;
     }
 
@@ -178,4 +197,12 @@ class PanelAuthorityCertificates {
     JCheckBox getJcbEnableImportCaReplyTrustCheck() {
         return jcbEnableImportCaReplyTrustCheck;
     }
+
+    JCheckBox getJcbEnableOcspCache() {
+        return jcbEnableOcspCache;
+    }
+
+    boolean isClearOcspCache() {
+        return clearOcspCache;
+    }
 }
@@ -65,6 +65,7 @@ class PanelUserInterface {
     private JComboBox<Pkcs12EncryptionSetting> jcbPkcs12Encryption;
     private JComboBox<RngTypeSetting> jcbRngType;
     private JSpinner jspSnRandomBytes;
+    private JSpinner jspHistoryMemoryBudget;
     private JCheckBox jcbEnableAutomaticReload;
     private JCheckBox jcbEnableSilentReload;
     private JCheckBox jcbEnableOpenWithExistingInstance;
@@ -167,6 +168,14 @@ class PanelUserInterface {
         jspSnRandomBytes.setToolTipText(res.getString("DPreferences.jlSnRandomBytes.tooltip"));
         JLabel jlSnRandomBytesPostfix = new JLabel(res.getString("DPreferences.jlSnRandomBytesPostfix.text"));
 
+        JLabel jlHistoryMemoryBudget = new JLabel(res.getString("DPreferences.jlHistoryMemoryBudget.text"));
+        var historySpinnerModel = new SpinnerNumberModel(preferences.getHistoryMemoryBudgetInMegabytes(), 16, 8192,
+                                                         16);
+        jspHistoryMemoryBudget = new JSpinner(historySpinnerModel);
+        jspHistoryMemoryBudget.setToolTipText(res.getString("DPreferences.jlHistoryMemoryBudget.tooltip"));
+        JLabel jlHistoryMemoryBudgetPostfix = new JLabel(
+                res.getString("DPreferences.jlHistoryMemoryBudgetPostfix.text"));
+
         JLabel jlKeyStores = new JLabel(res.getString("DPreferences.jlKeyStores.text"));
         jcbEnableOpenWithExistingInstance = new JCheckBox(res.getString("DPreferences.jcbEnableOpenWithExistingInstance.text"));
         jcbEnableOpenWithExistingInstance.setToolTipText(res.getString("DPreferences.jcbEnableOpenWithExistingInstance.tooltip"));
@@ -206,6 +215,9 @@ class PanelUserInterface {
         MiGUtil.addSeparator(jpUI, jlSnRandomBytes.getText());
         jpUI.add(jspSnRandomBytes, "gapx indent, split 2");
         jpUI.add(jlSnRandomBytesPostfix, "wrap");
+        MiGUtil.addSeparator(jpUI, jlHistoryMemoryBudget.getText());
+        jpUI.add(jspHistoryMemoryBudget, "gapx indent, split 2");
+        jpUI.add(jlHistoryMemoryBudgetPostfix, "wrap");
         MiGUtil.addSeparator(jpUI, jlKeyStores.getText());
         // macOS does not use this setting since it uses the MacOsIntegration open file support.
         if (!OperatingSystem.isMacOs()) {
@@ -320,6 +332,10 @@ class PanelUserInterface {
         return jspSnRandomBytes;
     }
 
+    JSpinner getJspHistoryMemoryBudget() {
+        return jspHistoryMemoryBudget;
+    }
+
     JCheckBox getJcbEnableAutoUpdateChecks() {
         return jcbEnableAutoUpdateChecks;
     }
@@ -32,6 +32,7 @@ public class CaCertsSettings {
     private boolean useWindowsTrustedRootCertificates = false;
     private boolean importTrustedCertTrustCheckEnabled = false;
     private boolean importCaReplyTrustCheckEnabled = false;
+    private boolean ocspCacheEnabled = true;
 
 
     public boolean isUseCaCertificates() {
@@ -73,4 +74,12 @@ public class CaCertsSettings {
     public void setImportCaReplyTrustCheckEnabled(boolean importCaReplyTrustCheckEnabled) {
         this.importCaReplyTrustCheckEnabled = importCaReplyTrustCheckEnabled;
     }
+
+    public boolean isOcspCacheEnabled() {
+        return ocspCacheEnabled;
+    }
+
+    public void setOcspCacheEnabled(boolean ocspCacheEnabled) {
+        this.ocspCacheEnabled = ocspCacheEnabled;
+    }
 }
@@ -73,6 +73,7 @@ public class KsePreferences {
     private Pkcs12EncryptionSetting pkcs12EncryptionSetting = Pkcs12EncryptionSetting.strong;
     private RngTypeSetting rngTypeSetting = RngTypeSetting.strong;
     private int serialNumberLengthInBytes = 20;
+    private int historyMemoryBudgetInMegabytes = 256;
     private Map<String, String> properties = new HashMap<>() {{
         put("sun.java2d.d3d.onscreen", "false");
     }};
@@ -274,6 +275,14 @@ public class KsePreferences {
         this.serialNumberLengthInBytes = serialNumberLengthInBytes;
     }
 
+    public int getHistoryMemoryBudgetInMegabytes() {
+        return historyMemoryBudgetInMegabytes;
+    }
+
+    public void setHistoryMemoryBudgetInMegabytes(int historyMemoryBudgetInMegabytes) {
+        this.historyMemoryBudgetInMegabytes = historyMemoryBudgetInMegabytes;
+    }
+
     public ProxySettings getProxySettings() {
         return proxySettings;
     }
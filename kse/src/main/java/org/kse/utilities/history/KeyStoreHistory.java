@@ -21,7 +21,11 @@ package org.kse.utilities.history;
 
 import java.io.File;
 import java.security.Provider;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
 
+import org.kse.crypto.CryptoException;
 import org.kse.crypto.keystore.KeyStoreType;
 import org.kse.crypto.keystore.KseKeyStore;
 import org.kse.gui.passwordmanager.Password;
@@ -29,8 +33,20 @@ import org.kse.utilities.io.AutoReloadWatcher;
 
 /**
  * Undo/redo history for a KeyStore.
+ *
+ * The memory used by the states of a history is limited by a memory budget.
+ * When the budget is exceeded, the oldest states are moved to encrypted
+ * temporary files and restored when they are needed again by undo or redo.
+ * The initial, saved and current states are always kept in memory.
  */
 public class KeyStoreHistory {
+    /**
+     * Default memory budget per history in bytes.
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = 256L * 1024 * 1024;
+
+    private static long memoryBudget = DEFAULT_MEMORY_BUDGET;
+
     private KeyStoreState initialState;
     private KeyStoreState currentState;
     private KeyStoreState savedState;
@@ -39,6 +55,8 @@ public class KeyStoreHistory {
     private Provider explicitProvider;
     private boolean isExternallyModified;
     private boolean suppressWatcherEvents;
+    private boolean isFileBased = true;
+    private long memoryFootprint = -1;
 
     /**
      * Create a new history for an unsaved KeyStore.
@@ -59,6 +77,7 @@ public class KeyStoreHistory {
         } else {
             // we cannot handle state (which implies creating copies of the keystore in memory) for smartcards or alike
             initialState = new AlwaysIdenticalKeyStoreState(this, keyStore, password);
+            isFileBased = false;
         }
 
         currentState = initialState;
@@ -89,6 +108,81 @@ public class KeyStoreHistory {
         return currentState;
     }
 
+    /**
+     * Set the memory budget for the states of each history.
+     *
+     * @param memoryBudget Memory budget in bytes
+     */
+    public static void setMemoryBudget(long memoryBudget) {
+        KeyStoreHistory.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Get the memory budget for the states of each history.
+     *
+     * @return Memory budget in bytes
+     */
+    public static long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Get the estimated memory used by the states of this history that are
+     * held in memory.
+     *
+     * @return Estimated size in bytes
+     */
+    public long getMemoryFootprint() {
+        if (memoryFootprint < 0) {
+            try {
+                memoryFootprint = estimateMemoryFootprint();
+            } catch (CryptoException ex) {
+                return 0;
+            }
+        }
+
+        return memoryFootprint;
+    }
+
+    private long estimateMemoryFootprint() throws CryptoException {
+        Map<Object, Long> sizes = new IdentityHashMap<>();
+        for (KeyStoreState state = initialState; state != null; state = state.nextState()) {
+            sizes.putAll(state.getMemoryParts());
+        }
+
+        long footprint = 0;
+        for (long size : sizes.values()) {
+            footprint += size;
+        }
+        return footprint;
+    }
+
+    /**
+     * Get the size of the temporary files holding the states of this history
+     * that have been moved to disk.
+     *
+     * @return Size in bytes
+     */
+    public long getSpilledSize() {
+        long spilledSize = 0;
+
+        for (KeyStoreState state = initialState; state != null; state = state.nextState()) {
+            spilledSize += state.getSpilledSize();
+        }
+
+        return spilledSize;
+    }
+
+    /**
+     * Delete the temporary files of all states that have been moved to disk.
+     * Called when the KeyStore is closed.
+     */
+    public void deleteSpillFiles() {
+        for (KeyStoreState state = initialState; state != null; state = state.nextState()) {
+            state.deleteSpillFile();
+        }
+    }
+
     /**
      * Null all passwords contained in the history.
      */
@@ -158,6 +252,7 @@ public class KeyStoreHistory {
 
     void setCurrentState(KeyStoreState state) {
         currentState = state;
+        enforceMemoryBudget();
     }
 
     KeyStoreState getSavedState() {
@@ -168,6 +263,62 @@ public class KeyStoreHistory {
         savedState = state;
     }
 
+    /**
+     * Move the oldest states to disk until the memory used by this history is
+     * within the memory budget. Moving a state only frees the parts of its
+     * KeyStore that no other state in memory uses. For copy-on-write snapshots
+     * these are the changed entries, the shared base stays in memory.
+     */
+    void enforceMemoryBudget() {
+        if (!isFileBased) {
+            return;
+        }
+
+        try {
+            // How many states in memory use each part
+            Map<Object, Integer> references = new IdentityHashMap<>();
+            Map<Object, Long> sizes = new IdentityHashMap<>();
+            for (KeyStoreState state = initialState; state != null; state = state.nextState()) {
+                for (Map.Entry<Object, Long> part : state.getMemoryParts().entrySet()) {
+                    references.merge(part.getKey(), 1, Integer::sum);
+                    sizes.put(part.getKey(), part.getValue());
+                }
+            }
+
+            memoryFootprint = 0;
+            for (long size : sizes.values()) {
+                memoryFootprint += size;
+            }
+
+            for (KeyStoreState state = initialState.nextState();
+                 state != null && memoryFootprint > memoryBudget; state = state.nextState()) {
+
+                if (state == currentState || state == savedState || state.isSpilled()) {
+                    continue;
+                }
+
+                Set<Object> parts = state.getMemoryParts().keySet();
+                long retainedSize = 0;
+                for (Object part : parts) {
+                    if (references.get(part) == 1) {
+                        retainedSize += sizes.get(part);
+                    }
+                }
+
+                if (retainedSize > 0) {
+                    state.spill();
+                    memoryFootprint -= retainedSize;
+                    for (Object part : parts) {
+                        references.merge(part, -1, Integer::sum);
+                    }
+                }
+            }
+        } catch (CryptoException ex) {
+            // The budget is a soft limit, keep the remaining states in memory
+            memoryFootprint = -1;
+        }
+    }
+
     /**
      * @return The security provider for this key store.
      */
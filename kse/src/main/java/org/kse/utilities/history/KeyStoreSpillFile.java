@@ -0,0 +1,153 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.utilities.history;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.util.ResourceBundle;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+import org.kse.crypto.CryptoException;
+import org.kse.crypto.keystore.KeyStoreType;
+import org.kse.crypto.keystore.KeyStoreUtil;
+import org.kse.crypto.keystore.KseKeyStore;
+import org.kse.utilities.rng.RNG;
+
+/**
+ * A KeyStore of an undo/redo history state that has been moved out of memory.
+ * The KeyStore is written to a temporary file, encrypted with an AES key that
+ * is generated on first use and only exists in memory for the lifetime of the
+ * application.
+ */
+class KeyStoreSpillFile {
+    private static ResourceBundle res = ResourceBundle.getBundle("org/kse/utilities/history/resources");
+
+    private static final String CIPHER = "AES/GCM/NoPadding";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH = 128;
+    private static final char[] EMPTY_PASSWORD = {};
+
+    private static SecretKey spillKey;
+
+    private final File file;
+    private final KeyStoreType type;
+    private final byte[] iv;
+
+    private KeyStoreSpillFile(File file, KeyStoreType type, byte[] iv) {
+        this.file = file;
+        this.type = type;
+        this.iv = iv;
+    }
+
+    /**
+     * Write a KeyStore to an encrypted temporary file.
+     *
+     * @param keyStore KeyStore
+     * @return The spill file
+     * @throws CryptoException If the KeyStore could not be written
+     */
+    static KeyStoreSpillFile write(KseKeyStore keyStore) throws CryptoException {
+        File file = null;
+
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            keyStore.store(baos, EMPTY_PASSWORD);
+
+            byte[] iv = RNG.generate(IV_LENGTH);
+            Cipher cipher = Cipher.getInstance(CIPHER);
+            cipher.init(Cipher.ENCRYPT_MODE, getSpillKey(), new GCMParameterSpec(TAG_LENGTH, iv));
+
+            file = File.createTempFile("kse-history", ".tmp");
+            file.deleteOnExit();
+            Files.write(file.toPath(), cipher.doFinal(baos.toByteArray()));
+
+            return new KeyStoreSpillFile(file, KeyStoreType.resolveJce(keyStore.getType()), iv);
+        } catch (GeneralSecurityException | IOException ex) {
+            if (file != null) {
+                file.delete();
+            }
+            throw new CryptoException(res.getString("NoSpillKeyStore.exception.message"), ex);
+        }
+    }
+
+    /**
+     * Read the KeyStore back from the spill file.
+     *
+     * @return The KeyStore
+     * @throws CryptoException If the KeyStore could not be read
+     */
+    KseKeyStore read() throws CryptoException {
+        try {
+            Cipher cipher = Cipher.getInstance(CIPHER);
+            cipher.init(Cipher.DECRYPT_MODE, getSpillKey(), new GCMParameterSpec(TAG_LENGTH, iv));
+            byte[] data = cipher.doFinal(Files.readAllBytes(file.toPath()));
+
+            KseKeyStore keyStore = KeyStoreUtil.create(type);
+            keyStore.load(new ByteArrayInputStream(data), EMPTY_PASSWORD);
+
+            return keyStore;
+        } catch (GeneralSecurityException | IOException ex) {
+            throw new CryptoException(res.getString("NoRestoreKeyStore.exception.message"), ex);
+        }
+    }
+
+    /**
+     * Get the type of the spilled KeyStore.
+     *
+     * @return KeyStore type
+     */
+    KeyStoreType getType() {
+        return type;
+    }
+
+    /**
+     * Get the size of the spill file.
+     *
+     * @return Size in bytes
+     */
+    long length() {
+        return file.length();
+    }
+
+    /**
+     * Delete the spill file.
+     */
+    void delete() {
+        file.delete();
+    }
+
+    private static synchronized SecretKey getSpillKey() throws GeneralSecurityException {
+        if (spillKey == null) {
+            KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+            keyGenerator.init(256, RNG.newInstanceDefault());
+            spillKey = keyGenerator.generateKey();
+        }
+
+        return spillKey;
+    }
+}
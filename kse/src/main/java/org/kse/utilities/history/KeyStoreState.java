@@ -22,12 +22,14 @@ package org.kse.utilities.history;
 import java.security.GeneralSecurityException;
 import java.security.Key;
 import java.security.interfaces.DSAPrivateKey;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.ResourceBundle;
 
 import org.bouncycastle.jce.provider.JDKDSAPrivateKey;
 import org.kse.crypto.CryptoException;
+import org.kse.crypto.keystore.CopyOnWriteKeyStore;
 import org.kse.crypto.keystore.KeyStoreType;
 import org.kse.crypto.keystore.KeyStoreUtil;
 import org.kse.crypto.keystore.KseKeyStore;
@@ -49,6 +51,8 @@ public class KeyStoreState {
     private boolean isStoredInPasswordManager = false;
     private KeyStoreState previous;
     private KeyStoreState next;
+    private KeyStoreSpillFile spillFile;
+    private long keyStoreFootprint = -1;
 
     /**
      * Create an empty state.
@@ -76,6 +80,11 @@ public class KeyStoreState {
      * @param keyStoreState State
      */
     public void append(KeyStoreState keyStoreState) {
+        // Any states that could have been redone are discarded
+        for (KeyStoreState discarded = next; discarded != null; discarded = discarded.next) {
+            discarded.deleteSpillFile();
+        }
+
         keyStoreState.previous = this;
         this.next = keyStoreState;
         keyStoreState.setAsCurrentState();
@@ -133,6 +142,7 @@ public class KeyStoreState {
      */
     public void setPreviousStateAsCurrentState() throws CryptoException {
         if (previous != null) {
+            previous.restore();
             propagateNewPasswords(previous);
             previous.setAsCurrentState();
         }
@@ -145,6 +155,7 @@ public class KeyStoreState {
      */
     public void setNextStateAsCurrentState() throws CryptoException {
         if (next != null) {
+            next.restore();
             propagateNewPasswords(next);
             next.setAsCurrentState();
         }
@@ -192,15 +203,28 @@ public class KeyStoreState {
      * @return KeyStore's type
      */
     public KeyStoreType getType() {
+        if (spillFile != null) {
+            return spillFile.getType();
+        }
+
         return KeyStoreType.resolveJce(keyStore.getType());
     }
 
     /**
-     * Get the KeyStore.
+     * Get the KeyStore. If the state has been moved to disk the KeyStore is
+     * restored first.
      *
      * @return The KeyStore
      */
     public KseKeyStore getKeyStore() {
+        if (spillFile != null) {
+            try {
+                restore();
+            } catch (CryptoException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+
         return keyStore;
     }
 
@@ -219,7 +243,88 @@ public class KeyStoreState {
      * @param keyStore The KeyStore
      */
     public void setKeyStore(KseKeyStore keyStore) {
+        deleteSpillFile();
+
         this.keyStore = keyStore;
+        this.keyStoreFootprint = -1;
+    }
+
+    /**
+     * Has the KeyStore of this state been moved to disk?
+     *
+     * @return True if it has
+     */
+    public boolean isSpilled() {
+        return spillFile != null;
+    }
+
+    /**
+     * Move the KeyStore of this state to an encrypted temporary file to free
+     * its memory. Entry passwords are kept in memory.
+     *
+     * @throws CryptoException If the KeyStore could not be written
+     */
+    void spill() throws CryptoException {
+        if (spillFile == null) {
+            spillFile = KeyStoreSpillFile.write(keyStore);
+            keyStore = null;
+        }
+    }
+
+    /**
+     * Restore the KeyStore of this state if it has been moved to disk.
+     *
+     * @throws CryptoException If the KeyStore could not be read
+     */
+    void restore() throws CryptoException {
+        if (spillFile != null) {
+            keyStore = spillFile.read();
+            keyStoreFootprint = -1;
+            deleteSpillFile();
+        }
+    }
+
+    /**
+     * Delete the temporary file of this state if it has been moved to disk.
+     */
+    void deleteSpillFile() {
+        if (spillFile != null) {
+            spillFile.delete();
+            spillFile = null;
+        }
+    }
+
+    /**
+     * Get the size of the temporary file of this state.
+     *
+     * @return Size in bytes or 0 if the state is held in memory
+     */
+    long getSpilledSize() {
+        return spillFile != null ? spillFile.length() : 0;
+    }
+
+    /**
+     * Get the parts of the KeyStore of this state that use memory, with their estimated sizes. The
+     * parts of copy-on-write KeyStores are shared with other states.
+     *
+     * @return Estimated size in bytes of each part, keyed by identity, or an empty map if the
+     *         state has been moved to disk
+     * @throws CryptoException If the KeyStore could not be read
+     */
+    Map<Object, Long> getMemoryParts() throws CryptoException {
+        if (spillFile != null) {
+            return Collections.emptyMap();
+        }
+
+        if (keyStore instanceof CopyOnWriteKeyStore) {
+            return ((CopyOnWriteKeyStore) keyStore).getMemoryParts();
+        }
+
+        if (keyStoreFootprint < 0) {
+            keyStoreFootprint = KeyStoreUtil.estimateMemoryFootprint(keyStore);
+        }
+
+        return Collections.singletonMap(keyStore, keyStoreFootprint);
     }
 
     /**
@@ -290,7 +395,9 @@ public class KeyStoreState {
 
     /**
      * Create the basis for the next state based on this one. Makes a copy of
-     * the current state excluding its position in the history.
+     * the current state excluding its position in the history. The KeyStore is
+     * copied as a copy-on-write snapshot that shares unchanged entries with
+     * this state.
      *
      * @param action The action responsible for the creation of the next state
      * @return Next state
@@ -299,7 +406,7 @@ public class KeyStoreState {
     public KeyStoreState createBasisForNextState(HistoryAction action) throws CryptoException {
         KeyStoreState copy = new KeyStoreState();
         copy.history = this.history;
-        copy.keyStore = KeyStoreUtil.copy(this.keyStore);
+        copy.keyStore = KeyStoreUtil.snapshot(getKeyStore());
 
         if (password != null) {
             copy.password = new Password(password); // Copy as may be cleared
@@ -345,7 +452,7 @@ public class KeyStoreState {
         // Copy all entry passwords not found in the target state from the current state to the target state
         try {
             for (String alias : entryPasswords.keySet()) {
-                if (KeyStoreUtil.isKeyPairEntry(alias, targetState.keyStore)) {
+                if (KeyStoreUtil.isKeyPairEntry(alias, targetState.getKeyStore())) {
                     if (!targetState.entryPasswords.containsKey(alias)) {
                         Password newPassword = entryPasswords.get(alias);
 
@@ -370,7 +477,7 @@ public class KeyStoreState {
 
     protected boolean isEntryPasswordCorrect(KeyStoreState targetState, String alias, Password password) {
         try {
-            targetState.keyStore.getKey(alias, password.toCharArray());
+            targetState.getKeyStore().getKey(alias, password.toCharArray());
 
             return true;
         } catch (GeneralSecurityException ex) {
@@ -380,7 +487,7 @@ public class KeyStoreState {
 
     protected boolean isEntryPrivateKeyEqual(KeyStoreState targetState, String alias, Password password)
             throws GeneralSecurityException {
-        Key currentKey = keyStore.getKey(alias, password.toCharArray());
+        Key currentKey = getKeyStore().getKey(alias, password.toCharArray());
         Key targetKey = targetState.getKeyStore().getKey(alias, password.toCharArray());
 
         // JDKDSAPrivateKey has no equals method defined
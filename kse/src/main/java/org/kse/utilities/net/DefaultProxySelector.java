@@ -0,0 +1,74 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.utilities.net;
+
+import java.io.IOException;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.util.List;
+
+/**
+ * Proxy selector that delegates to the current default proxy selector. An HTTP client that is
+ * built once with this selector follows the proxy settings when they are changed in the
+ * preferences.
+ */
+public class DefaultProxySelector extends ProxySelector {
+
+    /**
+     * Get a list of proxies for the supplied URI from the default proxy selector.
+     *
+     * @param uri The URI that a connection is required to
+     * @return List of proxies
+     */
+    @Override
+    public List<Proxy> select(URI uri) {
+        ProxySelector proxySelector = ProxySelector.getDefault();
+        return proxySelector != null ? proxySelector.select(uri) : List.of(Proxy.NO_PROXY);
+    }
+
+    /**
+     * Does the default proxy selector route connections to the supplied URI through a SOCKS
+     * proxy? The java.net.http HTTP client only supports HTTP proxies and ignores SOCKS proxies.
+     *
+     * @param uri The URI that a connection is required to
+     * @return True if the preferred proxy is a SOCKS proxy
+     */
+    public static boolean isSocksProxy(URI uri) {
+        List<Proxy> proxies = new DefaultProxySelector().select(uri);
+        return !proxies.isEmpty() && proxies.get(0).type() == Proxy.Type.SOCKS;
+    }
+
+    /**
+     * Connection failed. Pass the failure on to the default proxy selector.
+     *
+     * @param uri           The URI that the proxy at socketAddress failed to serve
+     * @param socketAddress The socket address of the proxy/SOCKS server
+     * @param ioException   The I/O exception thrown when the connection failed
+     */
+    @Override
+    public void connectFailed(URI uri, SocketAddress socketAddress, IOException ioException) {
+        ProxySelector proxySelector = ProxySelector.getDefault();
+        if (proxySelector != null) {
+            proxySelector.connectFailed(uri, socketAddress, ioException);
+        }
+    }
+}
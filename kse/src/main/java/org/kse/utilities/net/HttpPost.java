@@ -0,0 +1,126 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.utilities.net;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URLConnection;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.net.ssl.HttpsURLConnection;
+
+/**
+ * Sends HTTP POST requests with a shared {@link HttpClient}. Requests that the proxy settings
+ * route through a SOCKS proxy are sent with a {@link URLConnection} instead, because the HTTP
+ * client does not support SOCKS proxies and would connect directly.
+ */
+public class HttpPost {
+
+    /**
+     * Status, headers and body of a response.
+     *
+     * @param statusCode HTTP status code
+     * @param headers    Response headers
+     * @param body       Response body, empty if there is none
+     */
+    public record Response(int statusCode, HttpHeaders headers, byte[] body) {
+    }
+
+    private HttpPost() {
+    }
+
+    /**
+     * Send a POST request. The connect timeout and SSL context of the client and the timeout and
+     * headers of the request also apply when a URLConnection is used.
+     *
+     * @param client  HTTP client
+     * @param request POST request
+     * @param body    Body of the request, the same as published by the request
+     * @return The response
+     * @throws IOException If the request fails
+     */
+    public static Response send(HttpClient client, HttpRequest request, byte[] body) throws IOException {
+        if (DefaultProxySelector.isSocksProxy(request.uri())) {
+            return sendWithUrlConnection(client, request, body);
+        }
+
+        try {
+            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            return new Response(response.statusCode(), response.headers(), response.body());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("HTTP request interrupted");
+        }
+    }
+
+    private static Response sendWithUrlConnection(HttpClient client, HttpRequest request, byte[] body)
+            throws IOException {
+
+        HttpURLConnection con = (HttpURLConnection) request.uri().toURL().openConnection();
+        if (con instanceof HttpsURLConnection) {
+            ((HttpsURLConnection) con).setSSLSocketFactory(client.sslContext().getSocketFactory());
+        }
+        client.connectTimeout().ifPresent(timeout -> con.setConnectTimeout(toMillis(timeout)));
+        request.timeout().ifPresent(timeout -> con.setReadTimeout(toMillis(timeout)));
+
+        con.setRequestMethod("POST");
+        con.setDoOutput(true);
+        con.setUseCaches(false);
+        for (Map.Entry<String, List<String>> header : request.headers().map().entrySet()) {
+            for (String value : header.getValue()) {
+                con.addRequestProperty(header.getKey(), value);
+            }
+        }
+
+        try (OutputStream out = con.getOutputStream()) {
+            out.write(body);
+        }
+
+        int statusCode = con.getResponseCode();
+
+        // reading the response completely lets the connection be kept alive and reused
+        byte[] responseBody = new byte[0];
+        try (InputStream is = statusCode < 400 ? con.getInputStream() : con.getErrorStream()) {
+            if (is != null) {
+                responseBody = is.readAllBytes();
+            }
+        }
+
+        // the status line is included with a null name
+        Map<String, List<String>> headers = new HashMap<>(con.getHeaderFields());
+        headers.remove(null);
+
+        return new Response(statusCode, HttpHeaders.of(headers, (name, value) -> true), responseBody);
+    }
+
+    private static int toMillis(Duration timeout) {
+        return (int) Math.min(timeout.toMillis(), Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.utilities.pem;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.bouncycastle.util.encoders.Base64;
+
+/**
+ * Writes a single PEM block, base 64 encoding the binary content written to it as it
+ * arrives. The output is the same as {@link PemUtil#encode(PemInfo)} for a PEM entry
+ * without header attributes, but the content is never held in memory as a whole. The
+ * footer is written when the stream is closed.
+ */
+public class PemOutputStream extends FilterOutputStream {
+    // 48 bytes of content make one line of 64 base 64 characters
+    private static final int LINE_BYTES = 48;
+    private static final int LINES_PER_CHUNK = 1024;
+
+    private final String type;
+    private final byte[] pending = new byte[LINE_BYTES * LINES_PER_CHUNK];
+    private int pendingLength;
+    private final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    private boolean closed;
+
+    /**
+     * Construct a PEM output stream and write the PEM header.
+     *
+     * @param out  Stream to write the PEM block to
+     * @param type PEM type, for example "PKCS7"
+     * @throws IOException If an I/O problem occurs writing the header
+     */
+    public PemOutputStream(OutputStream out, String type) throws IOException {
+        super(out);
+        this.type = type;
+
+        out.write((PemUtil.PEM_BEGIN_MARKER + type + PemUtil.PEM_FIVE_DASHES + "\n")
+                          .getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int copy = Math.min(len, pending.length - pendingLength);
+            System.arraycopy(b, off, pending, pendingLength, copy);
+            pendingLength += copy;
+            off += copy;
+            len -= copy;
+
+            if (pendingLength == pending.length) {
+                writeLines();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            writeLines();
+            out.write((PemUtil.PEM_END_MARKER + type + PemUtil.PEM_FIVE_DASHES + "\n")
+                              .getBytes(StandardCharsets.US_ASCII));
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeLines() throws IOException {
+        for (int off = 0; off < pendingLength; off += LINE_BYTES) {
+            Base64.encode(pending, off, Math.min(LINE_BYTES, pendingLength - off), encoded);
+            encoded.write('\n');
+        }
+        encoded.writeTo(out);
+        encoded.reset();
+        pendingLength = 0;
+    }
+}
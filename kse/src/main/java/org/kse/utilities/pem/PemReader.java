@@ -0,0 +1,298 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.utilities.pem;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.bouncycastle.util.encoders.Base64;
+
+/**
+ * Reads PEM blocks one at a time from a byte buffer.
+ * <p>
+ * Lines are scanned in place without building a string per line, and the base 64
+ * content of each block is decoded straight from the buffer into a reusable decode
+ * buffer. The buffer may be a heap buffer wrapping a byte array or a direct buffer
+ * such as a memory mapped file. Iteration stops at the first block with malformed
+ * header attributes, see {@link #isMalformed()}.
+ */
+public class PemReader implements Iterator<PemInfo> {
+    private final ByteBuffer buffer;
+    private final int limit;
+
+    // Current position and the raw and trimmed bounds of the last line read
+    private int pos;
+    private int rawStart;
+    private int rawEnd;
+    private int lineStart;
+    private int lineEnd;
+
+    private boolean atBlockBoundary = true;
+    private boolean malformed;
+    private PemInfo next;
+
+    private final ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+    private byte[] scratch;
+
+    /**
+     * Construct reader for the remaining bytes of the supplied buffer. The buffer's
+     * position and limit are not modified.
+     *
+     * @param pemData PEM data containing zero or more PEM entries
+     */
+    public PemReader(ByteBuffer pemData) {
+        this.buffer = pemData;
+        this.pos = pemData.position();
+        this.limit = pemData.limit();
+    }
+
+    /**
+     * Construct reader for the supplied PEM data.
+     *
+     * @param pemData PEM data containing zero or more PEM entries
+     */
+    public PemReader(byte[] pemData) {
+        this(ByteBuffer.wrap(pemData));
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !malformed) {
+            next = readBlock();
+        }
+        return next != null;
+    }
+
+    @Override
+    public PemInfo next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        PemInfo pemInfo = next;
+        next = null;
+        return pemInfo;
+    }
+
+    /**
+     * Whether reading stopped because a block had malformed header attributes.
+     *
+     * @return True if the data is not valid PEM
+     */
+    public boolean isMalformed() {
+        return malformed;
+    }
+
+    private PemInfo readBlock() {
+
+        // we ignore EC parameter blocks directly following the start or another block
+        boolean haveLine = atBlockBoundary ? skipOverEcParams() : readLine();
+        atBlockBoundary = false;
+
+        while (haveLine) {
+            String headerType = getTypeFromHeader();
+
+            if (headerType == null) {
+                haveLine = readLine();
+                continue;
+            }
+
+            haveLine = readLine();
+
+            PemAttributes attributes = null;
+
+            // Read any header attributes
+            if (haveLine && indexOfColonSpace(rawStart, rawEnd) >= 0) {
+                attributes = new PemAttributes();
+
+                while (haveLine) {
+
+                    // Empty line - end of attributes
+                    if (lineStart == lineEnd) {
+                        haveLine = readLine();
+                        break;
+                    }
+
+                    // Run out of attributes before blank line - not PEM
+                    if (indexOfColonSpace(lineStart, lineEnd) < 0) {
+                        malformed = true;
+                        return null;
+                    }
+
+                    // Parse attribute from line
+                    String line = toString(lineStart, lineEnd);
+                    int separator = line.indexOf(':');
+
+                    String attributeName = line.substring(0, separator);
+                    String attributeValue = line.substring(separator + 2);
+
+                    attributes.add(new PemAttribute(attributeName, attributeValue));
+
+                    haveLine = readLine();
+                }
+            }
+
+            // Content runs from here up to the footer, line breaks are skipped by the decoder
+            int contentStart = rawStart;
+
+            while (haveLine) {
+                String footerType = getTypeFromFooter();
+
+                if (footerType != null) {
+                    // Header and footer types do not match - not PEM, continue after footer
+                    if (!headerType.equals(footerType)) {
+                        break;
+                    }
+
+                    byte[] content = decodeBase64(contentStart, rawStart);
+                    atBlockBoundary = true;
+                    return new PemInfo(headerType, attributes, content);
+                }
+
+                haveLine = readLine();
+            }
+        }
+
+        return null;
+    }
+
+    private boolean skipOverEcParams() {
+
+        boolean haveLine = readLine();
+
+        // skip over EC parameter block
+        if (haveLine && PemUtil.OPENSSL_EC_PARAMS_PEM_TYPE.equals(getTypeFromHeader())) {
+
+            // now find end line
+            while ((haveLine = readLine())) {
+                if (PemUtil.OPENSSL_EC_PARAMS_PEM_TYPE.equals(getTypeFromFooter())) {
+                    haveLine = readLine();
+                    break;
+                }
+            }
+        }
+
+        return haveLine;
+    }
+
+    private boolean readLine() {
+        if (pos >= limit) {
+            return false;
+        }
+
+        int end = pos;
+        while (end < limit) {
+            byte b = buffer.get(end);
+            if (b == '\n' || b == '\r') {
+                break;
+            }
+            end++;
+        }
+
+        rawStart = pos;
+        rawEnd = end;
+        lineStart = pos;
+        lineEnd = end;
+
+        // Line terminators are LF, CR or CR LF
+        pos = end;
+        if (pos < limit && buffer.get(pos) == '\r') {
+            pos++;
+            if (pos < limit && buffer.get(pos) == '\n') {
+                pos++;
+            }
+        } else if (pos < limit) {
+            pos++;
+        }
+
+        // Trim as String.trim() does
+        while (lineStart < lineEnd && (buffer.get(lineStart) & 0xff) <= ' ') {
+            lineStart++;
+        }
+        while (lineEnd > lineStart && (buffer.get(lineEnd - 1) & 0xff) <= ' ') {
+            lineEnd--;
+        }
+
+        return true;
+    }
+
+    private String getTypeFromHeader() {
+        return getType(PemUtil.PEM_BEGIN_MARKER);
+    }
+
+    private String getTypeFromFooter() {
+        return getType(PemUtil.PEM_END_MARKER);
+    }
+
+    private String getType(String marker) {
+        int typeStart = lineStart + marker.length();
+        int typeEnd = lineEnd - PemUtil.PEM_FIVE_DASHES.length();
+
+        if (typeStart > typeEnd || !regionMatches(lineStart, marker) || !regionMatches(typeEnd,
+                PemUtil.PEM_FIVE_DASHES)) {
+            return null;
+        }
+
+        return toString(typeStart, typeEnd);
+    }
+
+    private boolean regionMatches(int offset, String ascii) {
+        for (int i = 0; i < ascii.length(); i++) {
+            if (buffer.get(offset + i) != ascii.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOfColonSpace(int from, int to) {
+        for (int i = from; i < to - 1; i++) {
+            if (buffer.get(i) == ':' && buffer.get(i + 1) == ' ') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private String toString(int from, int to) {
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private byte[] decodeBase64(int from, int to) {
+        int length = to - from;
+        decoded.reset();
+
+        if (buffer.hasArray()) {
+            Base64.decode(buffer.array(), buffer.arrayOffset() + from, length, decoded);
+        } else {
+            if (scratch == null || scratch.length < length) {
+                scratch = new byte[length];
+            }
+            buffer.get(from, scratch, 0, length);
+            Base64.decode(scratch, 0, length, decoded);
+        }
+
+        return decoded.toByteArray();
+    }
+}
@@ -19,10 +19,7 @@
  */
 package org.kse.utilities.pem;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.LineNumberReader;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
@@ -36,11 +33,11 @@ public class PemUtil {
     private static final int MAX_PRINTABLE_ENCODING_LINE_LENGTH = 64;
 
     // Begin OpenSSL EC parameters PEM (see "openssl ecparam -name prime256v1 -genkey -out key.pem"; missing "-noout")
-    private static final String OPENSSL_EC_PARAMS_PEM_TYPE = "EC PARAMETERS";
+    static final String OPENSSL_EC_PARAMS_PEM_TYPE = "EC PARAMETERS";
 
-    private static final String PEM_BEGIN_MARKER = "-----BEGIN ";
-    private static final String PEM_FIVE_DASHES = "-----";
-    private static final String PEM_END_MARKER = "-----END ";
+    static final String PEM_BEGIN_MARKER = "-----BEGIN ";
+    static final String PEM_FIVE_DASHES = "-----";
+    static final String PEM_END_MARKER = "-----END ";
 
     private PemUtil() {
     }
@@ -127,94 +124,14 @@ public class PemUtil {
      * @throws IOException If an I/O problem occurs
      */
     public static List<PemInfo> decodeAll(byte[] pemData) throws IOException {
-        return decodeAll(pemData, false);
-    }
-
-    private static List<PemInfo> decodeAll(byte[] pemData, boolean readFirst) throws IOException {
 
         List<PemInfo> blocks = new ArrayList<>();
 
-        try (ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(pemData);
-                InputStreamReader inputStreamReader = new InputStreamReader(byteArrayInputStream);
-                LineNumberReader lnr = new LineNumberReader(inputStreamReader)) {
-
-            // we ignore EC parameter blocks for now
-            String line = skipOverEcParams(lnr);
-
-            while (line != null) {
-                line = line.trim();
-
-                StringBuilder sbBase64 = new StringBuilder();
-                String headerType = getTypeFromHeader(line);
-
-                if (headerType != null) {
-                    line = lnr.readLine();
-
-                    PemAttributes attributes = null;
-
-                    // Read any header attributes
-                    if (line != null && line.contains(": ")) {
-                        line = line.trim();
-
-                        attributes = new PemAttributes();
-
-                        while (line != null) {
-                            line = line.trim();
-
-                            // Empty line - end of attributes
-                            if (line.isEmpty()) {
-                                line = lnr.readLine();
-                                break;
-                            }
-
-                            // Run out of attributes before blank line - not PEM
-                            if (!line.contains(": ")) {
-                                return new ArrayList<>();
-                            }
-
-                            // Parse attribute from line
-                            int separator = line.indexOf(':');
-
-                            String attributeName = line.substring(0, separator);
-                            String attributeValue = line.substring(separator + 2);
-
-                            attributes.add(new PemAttribute(attributeName, attributeValue));
-
-                            line = lnr.readLine();
-                        }
-                    }
-
-                    // Read content
-                    while (line != null) {
-                        line = line.trim();
-                        String footerType = getTypeFromFooter(line);
-
-                        if (footerType == null) {
-                            sbBase64.append(line);
-                        } else {
-                            // Header and footer types do not match - not PEM
-                            if (!headerType.equals(footerType)) {
-                                break;
-                            } else {
-                                // Decode base 64 content
-                                byte[] content = Base64.decode(sbBase64.toString());
-
-                                blocks.add(new PemInfo(headerType, attributes, content));
-                                if (readFirst) {
-                                    return blocks;
-                                }
-
-                                line = skipOverEcParams(lnr);
-                                break;
-                            }
-                        }
+        PemReader reader = new PemReader(pemData);
+        reader.forEachRemaining(blocks::add);
 
-                        line = lnr.readLine();
-                    }
-                } else {
-                    line = lnr.readLine();
-                }
-            }
+        if (reader.isMalformed()) {
+            return new ArrayList<>();
         }
 
         return blocks;
@@ -229,51 +146,11 @@ public class PemUtil {
      */
     public static PemInfo decode(byte[] pemData) throws IOException {
 
-        List<PemInfo> blocks = decodeAll(pemData, true);
-        if (!blocks.isEmpty()) {
-            return blocks.get(0);
+        PemReader reader = new PemReader(pemData);
+        if (reader.hasNext()) {
+            return reader.next();
         }
 
         return null; // not PEM
     }
-
-    private static String skipOverEcParams(LineNumberReader lnr) throws IOException {
-
-        String line = lnr.readLine();
-
-        // skip over EC parameter block
-        if (line != null && OPENSSL_EC_PARAMS_PEM_TYPE.equals(getTypeFromHeader(line.trim()))) {
-
-            // now find end line
-            while ((line = lnr.readLine()) != null) {
-                line = line.trim();
-                if (OPENSSL_EC_PARAMS_PEM_TYPE.equals(getTypeFromFooter(line))) {
-                    line = lnr.readLine();
-                    break;
-                }
-            }
-        }
-
-        return line;
-    }
-
-    private static String getTypeFromHeader(String header) {
-        String type = null;
-
-        if (header.startsWith(PEM_BEGIN_MARKER) && header.endsWith(PEM_FIVE_DASHES)) {
-            type = header.substring(11, header.length() - 5);
-        }
-
-        return type;
-    }
-
-    private static String getTypeFromFooter(String footer) {
-        String type = null;
-
-        if (footer.startsWith(PEM_END_MARKER) && footer.endsWith(PEM_FIVE_DASHES)) {
-            type = footer.substring(9, footer.length() - 5);
-        }
-
-        return type;
-    }
 }
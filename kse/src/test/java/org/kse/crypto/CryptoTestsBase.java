@@ -21,14 +21,31 @@
 
 package org.kse.crypto;
 
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.PublicKey;
 import java.security.Security;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.Random;
 
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AuthorityKeyIdentifier;
+import org.bouncycastle.asn1.x509.SubjectKeyIdentifier;
 import org.junit.jupiter.api.BeforeAll;
 import org.kse.KSE;
+import org.kse.crypto.keypair.KeyPairUtil;
 import org.kse.crypto.provider.KseProvider;
+import org.kse.crypto.publickey.KeyIdentifierGenerator;
+import org.kse.crypto.signing.SignatureType;
+import org.kse.crypto.x509.X509CertificateGenerator;
+import org.kse.crypto.x509.X509CertificateVersion;
+import org.kse.crypto.x509.X509Ext;
+import org.kse.crypto.x509.X509ExtensionSet;
+import org.kse.crypto.x509.X509ExtensionType;
 
 /**
- * Abstract base class for all test cases. Sets up the BC provider.
+ * Abstract base class for all test cases. Sets up the BC provider and generates test certificates.
  */
 public abstract class CryptoTestsBase {
 
@@ -37,4 +54,40 @@ public abstract class CryptoTestsBase {
         Security.addProvider(KSE.BC);
         Security.addProvider(new KseProvider());
     }
+
+    /**
+     * Generate an EC key pair for the certificates of a test.
+     */
+    protected static KeyPair generateKeyPair() throws Exception {
+        return KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC);
+    }
+
+    /**
+     * Generate a self-signed certificate that is valid for one day.
+     */
+    protected static X509Certificate generateCert(String subject, KeyPair keys) throws Exception {
+        return generateCert(subject, keys, subject, keys);
+    }
+
+    /**
+     * Generate a certificate that is valid for one day, with key identifiers that link it to its issuer.
+     */
+    protected static X509Certificate generateCert(String subject, KeyPair subjectKeys, String issuer,
+                                                  KeyPair issuerKeys) throws Exception {
+        X509ExtensionSet extensions = new X509ExtensionSet();
+        extensions.addExtension(X509ExtensionType.SUBJECT_KEY_IDENTIFIER.oid(), false, X509Ext.wrapInOctetString(
+                new SubjectKeyIdentifier(keyId(subjectKeys.getPublic())).getEncoded()));
+        extensions.addExtension(X509ExtensionType.AUTHORITY_KEY_IDENTIFIER.oid(), false, X509Ext.wrapInOctetString(
+                new AuthorityKeyIdentifier(keyId(issuerKeys.getPublic())).getEncoded()));
+
+        Date now = new Date();
+        return new X509CertificateGenerator(X509CertificateVersion.VERSION3).generate(
+                new X500Name(subject), new X500Name(issuer), now, new Date(now.getTime() + 24L * 60 * 60 * 1000),
+                subjectKeys.getPublic(), issuerKeys.getPrivate(), SignatureType.SHA256_ECDSA,
+                new BigInteger(64, new Random()), extensions, KSE.BC);
+    }
+
+    private static byte[] keyId(PublicKey publicKey) throws Exception {
+        return new KeyIdentifierGenerator(publicKey).generateDefault();
+    }
 }
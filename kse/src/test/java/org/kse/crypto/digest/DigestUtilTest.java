@@ -21,8 +21,19 @@ package org.kse.crypto.digest;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.kse.crypto.CryptoTestsBase;
 
 /**
@@ -57,4 +68,68 @@ public class DigestUtilTest extends CryptoTestsBase {
         String digest = DigestUtil.getFriendlyMessageDigest(MESSAGE.getBytes(), digestType);
         assertThat(digest).isNotEqualTo(MESSAGE);
     }
+
+    @Test
+    void testFileMessageDigests(@TempDir Path tempDir) throws Exception {
+        byte[] content = MESSAGE.repeat(1000).getBytes();
+        File file = Files.write(tempDir.resolve("content.bin"), content).toFile();
+
+        Map<DigestType, byte[]> digests = DigestUtil.getMessageDigests(file, DigestType.SHA256, DigestType.SHA3_512,
+                                                                       DigestType.SHAKE256);
+
+        assertThat(digests).containsOnlyKeys(DigestType.SHA256, DigestType.SHA3_512, DigestType.SHAKE256);
+        for (Map.Entry<DigestType, byte[]> digest : digests.entrySet()) {
+            assertThat(digest.getValue()).isEqualTo(DigestUtil.getMessageDigest(content, digest.getKey()));
+        }
+    }
+
+    @Test
+    void testEmptyFileMessageDigest(@TempDir Path tempDir) throws Exception {
+        File file = Files.write(tempDir.resolve("empty.bin"), new byte[0]).toFile();
+
+        assertThat(DigestUtil.getMessageDigests(file, DigestType.SHA256).get(DigestType.SHA256))
+                .isEqualTo(DigestUtil.getMessageDigest(new byte[0], DigestType.SHA256));
+    }
+
+    @Test
+    void testStreamMessageDigests() throws Exception {
+        byte[] content = MESSAGE.repeat(2000).getBytes();
+
+        Map<DigestType, byte[]> digests = DigestUtil.getMessageDigests(new ByteArrayInputStream(content),
+                                                                       DigestType.MD5, DigestType.SHA1,
+                                                                       DigestType.SHA256);
+
+        assertThat(digests.keySet()).containsExactly(DigestType.MD5, DigestType.SHA1, DigestType.SHA256);
+        for (Map.Entry<DigestType, byte[]> digest : digests.entrySet()) {
+            assertThat(digest.getValue()).isEqualTo(
+                    MessageDigest.getInstance(digest.getKey().jce()).digest(content));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 0, 100, 5 * 1024 * 1024 })
+    void testByteArrayMessageDigests(int length) throws Exception {
+        // large messages are digested in parallel lanes
+        byte[] content = new byte[length];
+        new Random(length).nextBytes(content);
+
+        Map<DigestType, byte[]> digests = DigestUtil.getMessageDigests(content, DigestType.SHA1, DigestType.SHA256,
+                                                                       DigestType.SHA3_256, DigestType.SHA512);
+
+        for (Map.Entry<DigestType, byte[]> digest : digests.entrySet()) {
+            assertThat(digest.getValue()).isEqualTo(
+                    MessageDigest.getInstance(digest.getKey().jce()).digest(content));
+        }
+    }
+
+    @Test
+    void testFriendlyMessageDigests() throws Exception {
+        Map<DigestType, String> digests = DigestUtil.getFriendlyMessageDigests(MESSAGE.getBytes(), DigestType.MD5,
+                                                                               DigestType.SHA1);
+
+        assertThat(digests.get(DigestType.MD5)).isEqualTo(
+                DigestUtil.getFriendlyMessageDigest(MESSAGE.getBytes(), DigestType.MD5));
+        assertThat(digests.get(DigestType.SHA1)).isEqualTo(
+                DigestUtil.getFriendlyMessageDigest(MESSAGE.getBytes(), DigestType.SHA1));
+    }
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.digest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.security.cert.X509Certificate;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.kse.crypto.CryptoTestsBase;
+import org.kse.crypto.x509.X509CertUtil;
+
+class FingerprintCacheTest extends CryptoTestsBase {
+
+    private static X509Certificate cert1;
+    private static X509Certificate cert2;
+    private static X509Certificate cert3;
+
+    @BeforeAll
+    static void createCertificates() throws Exception {
+        cert1 = generateCert("CN=Cert 1", generateKeyPair());
+        cert2 = generateCert("CN=Cert 2", generateKeyPair());
+        cert3 = generateCert("CN=Cert 3", generateKeyPair());
+    }
+
+    @Test
+    void calculatesEachDigestOnce() throws Exception {
+        FingerprintCache cache = new FingerprintCache(10);
+        byte[] encoded = cert1.getEncoded();
+        int[] calculations = new int[1];
+
+        for (int i = 0; i < 3; i++) {
+            byte[] digest = cache.get(cert1, DigestType.SHA256, () -> {
+                calculations[0]++;
+                return DigestUtil.getMessageDigest(encoded, DigestType.SHA256);
+            });
+            assertThat(digest).isEqualTo(DigestUtil.getMessageDigest(encoded, DigestType.SHA256));
+        }
+
+        assertThat(calculations[0]).isEqualTo(1);
+        assertThat(cache.getMisses()).isEqualTo(1);
+        assertThat(cache.getHits()).isEqualTo(2);
+    }
+
+    @Test
+    void sharesDigestsOfEqualCertificates() throws Exception {
+        FingerprintCache cache = new FingerprintCache(10);
+
+        cache.get(copy(cert1), DigestType.SHA1, () -> new byte[] { 1 });
+        byte[] digest = cache.get(copy(cert1), DigestType.SHA1, () -> new byte[] { 2 });
+        byte[] otherAlgorithm = cache.get(copy(cert1), DigestType.MD5, () -> new byte[] { 3 });
+
+        assertThat(digest).containsExactly(1);
+        assertThat(otherAlgorithm).containsExactly(3);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() throws Exception {
+        FingerprintCache cache = new FingerprintCache(2);
+        cache.get(cert1, DigestType.SHA1, () -> new byte[] { 1 });
+        cache.get(cert2, DigestType.SHA1, () -> new byte[] { 2 });
+        cache.get(cert1, DigestType.SHA1, () -> new byte[] { 0 });
+        cache.get(cert3, DigestType.SHA1, () -> new byte[] { 3 });
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.getEvictions()).isEqualTo(1);
+        assertThat(cache.get(cert1, DigestType.SHA1, () -> new byte[] { 0 })).containsExactly(1);
+        assertThat(cache.get(cert2, DigestType.SHA1, () -> new byte[] { 4 })).containsExactly(4);
+
+        cache.clear();
+        assertThat(cache.size()).isZero();
+        assertThat(cache.getHits()).isZero();
+    }
+
+    @Test
+    void returnsCopies() throws Exception {
+        FingerprintCache cache = new FingerprintCache(10);
+        cache.get(cert1, DigestType.SHA1, () -> new byte[] { 1 })[0] = 9;
+
+        assertThat(cache.get(cert1, DigestType.SHA1, () -> new byte[] { 2 })).containsExactly(1);
+    }
+
+    @Test
+    void fingerprintsAreCached() throws Exception {
+        FingerprintCache cache = FingerprintCache.getInstance();
+
+        String fingerprint = X509CertUtil.getFingerprint(cert3, DigestType.SHA256);
+        long hits = cache.getHits();
+
+        assertThat(X509CertUtil.getFingerprint(copy(cert3), DigestType.SHA256))
+                .isEqualTo(fingerprint);
+        assertThat(cache.getHits()).isGreaterThan(hits);
+    }
+
+    private static X509Certificate copy(X509Certificate cert) throws Exception {
+        return X509CertUtil.loadCertificates(cert.getEncoded())[0];
+    }
+}
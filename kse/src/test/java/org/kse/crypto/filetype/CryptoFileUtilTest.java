@@ -21,6 +21,7 @@
 package org.kse.crypto.filetype;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
@@ -122,5 +123,11 @@ class CryptoFileUtilTest extends CryptoTestsBase {
         byte[] data = Files.readAllBytes(new File(TEST_FILES_PATH, fileName).toPath());
 
         assertEquals(expectedResult, CryptoFileUtil.detectFileType(data));
+
+        // The classifier must never rule out the type the parsers detect
+        if (expectedResult != CryptoFileType.UNKNOWN) {
+            byte[] sanitized = CryptoFileUtil.decodeIfBase64sanitizeIfPem(data);
+            assertTrue(CryptoFileClassifier.classify(sanitized).contains(expectedResult));
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.keystore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.security.KeyPair;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.kse.crypto.CryptoTestsBase;
+import org.kse.crypto.x509.X509CertUtil;
+
+/**
+ * Unit tests for CertificateIndex.
+ */
+public class CertificateIndexTest extends CryptoTestsBase {
+    private static final char[] PASSWORD = "password".toCharArray();
+
+    private static KeyPair keyPair;
+    private static X509Certificate cert1;
+    private static X509Certificate cert2;
+    private static X509Certificate sameKeyCert;
+
+    @BeforeAll
+    static void generateCertificates() throws Exception {
+        keyPair = generateKeyPair();
+        KeyPair otherKeyPair = generateKeyPair();
+
+        cert1 = generateCert("cn=Cert 1", keyPair);
+        cert2 = generateCert("cn=Cert 2", otherKeyPair);
+        sameKeyCert = generateCert("cn=Same key", keyPair);
+    }
+
+    @ParameterizedTest
+    @CsvSource({ "JKS", "PKCS12", "BKS" })
+    void findsCertificatesAndKeys(KeyStoreType keyStoreType) throws Exception {
+        KseKeyStore keyStore = KeyStoreUtil.create(keyStoreType);
+        keyStore.setCertificateEntry("trusted", cert1);
+        keyStore.setKeyEntry("key", keyPair.getPrivate(), PASSWORD, new Certificate[] { sameKeyCert });
+
+        CertificateIndex index = keyStore.getCertificateIndex();
+
+        assertThat(index.findTrustedCertificate(cert1)).isEqualTo("trusted");
+        assertThat(index.findTrustedCertificate(sameKeyCert)).isNull();
+        assertThat(index.findTrustedCertificate(cert2)).isNull();
+        assertThat(index.getAliases(sameKeyCert)).containsExactly("key");
+        assertThat(index.getAliases(keyPair.getPublic())).containsExactlyInAnyOrder("trusted", "key");
+        assertThat(X509CertUtil.matchCertificate(keyStore, cert1)).isEqualTo("trusted");
+    }
+
+    @ParameterizedTest
+    @CsvSource({ "JKS", "PKCS12", "BKS" })
+    void followsChanges(KeyStoreType keyStoreType) throws Exception {
+        KseKeyStore keyStore = KeyStoreUtil.create(keyStoreType);
+        keyStore.setCertificateEntry("trusted", cert1);
+        CertificateIndex index = keyStore.getCertificateIndex();
+
+        keyStore.setCertificateEntry("other", cert2);
+        assertThat(index.findTrustedCertificate(cert2)).isEqualTo("other");
+
+        keyStore.setCertificateEntry("trusted", sameKeyCert);
+        assertThat(index.findTrustedCertificate(cert1)).isNull();
+        assertThat(index.findTrustedCertificate(sameKeyCert)).isEqualTo("trusted");
+
+        keyStore.deleteEntry("other");
+        assertThat(index.findTrustedCertificate(cert2)).isNull();
+        assertThat(index.getAliases(keyPair.getPublic())).containsExactly("trusted");
+
+        keyStore.load(null, null);
+        assertThat(keyStore.getCertificateIndex()).isNotSameAs(index);
+        assertThat(keyStore.getCertificateIndex().findTrustedCertificate(sameKeyCert)).isNull();
+    }
+
+    @Test
+    void replacesEntriesOfCaseInsensitiveKeyStores() throws Exception {
+        KseKeyStore keyStore = KeyStoreUtil.create(KeyStoreType.JKS);
+        keyStore.setCertificateEntry("Trusted", cert1);
+        CertificateIndex index = keyStore.getCertificateIndex();
+
+        keyStore.setCertificateEntry("TRUSTED", cert2);
+
+        assertThat(index.findTrustedCertificate(cert1)).isNull();
+        assertThat(index.findTrustedCertificate(cert2)).isNotNull();
+    }
+
+    @Test
+    void snapshotsCopyTheIndex() throws Exception {
+        KseKeyStore keyStore = KeyStoreUtil.create(KeyStoreType.PKCS12);
+        keyStore.setCertificateEntry("trusted", cert1);
+        CertificateIndex index = keyStore.getCertificateIndex();
+
+        KseKeyStore snapshot = KeyStoreUtil.snapshot(keyStore);
+        snapshot.setCertificateEntry("other", cert2);
+        snapshot.deleteEntry("trusted");
+
+        assertThat(snapshot.getCertificateIndex().findTrustedCertificate(cert2)).isEqualTo("other");
+        assertThat(snapshot.getCertificateIndex().findTrustedCertificate(cert1)).isNull();
+        assertThat(index.findTrustedCertificate(cert1)).isEqualTo("trusted");
+        assertThat(index.findTrustedCertificate(cert2)).isNull();
+
+        KseKeyStore nextSnapshot = KeyStoreUtil.snapshot(snapshot);
+        assertThat(nextSnapshot.getCertificateIndex().findTrustedCertificate(cert2)).isEqualTo("other");
+    }
+
+    @Test
+    void copiesAreNotChangedByLaterChanges() throws Exception {
+        KseKeyStore keyStore = KeyStoreUtil.create(KeyStoreType.JKS);
+        CertificateIndex index = keyStore.getCertificateIndex();
+        keyStore.setCertificateEntry("first", cert1);
+        CertificateIndex copy = index.copy();
+
+        keyStore.setCertificateEntry("second", cert1);
+        keyStore.deleteEntry("first");
+
+        assertThat(copy.getAliases(cert1)).containsExactly("first");
+        assertThat(index.getAliases(cert1)).containsExactly("second");
+    }
+
+    @Test
+    void copiesMergeManyChanges() throws Exception {
+        KseKeyStore keyStore = KeyStoreUtil.create(KeyStoreType.JKS);
+        keyStore.setCertificateEntry("kept", cert2);
+        keyStore.setCertificateEntry("deleted", cert2);
+        CertificateIndex index = keyStore.getCertificateIndex();
+
+        keyStore.deleteEntry("deleted");
+        for (int i = 0; i <= CopyOnWriteKeyStore.MAX_OVERLAY_SIZE; i++) {
+            keyStore.setCertificateEntry("cert " + i, cert1);
+        }
+        CertificateIndex copy = index.copy();
+        keyStore.deleteEntry("cert 0");
+
+        assertThat(copy.getAliases(cert1)).hasSize(CopyOnWriteKeyStore.MAX_OVERLAY_SIZE + 1).contains("cert 0");
+        assertThat(copy.getAliases(cert2)).containsExactly("kept");
+        assertThat(index.getAliases(cert1)).hasSize(CopyOnWriteKeyStore.MAX_OVERLAY_SIZE).doesNotContain("cert 0");
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.keystore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.security.KeyPair;
+import java.security.UnrecoverableKeyException;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.kse.crypto.CryptoTestsBase;
+
+/**
+ * Unit tests for CopyOnWriteKeyStore.
+ */
+public class CopyOnWriteKeyStoreTest extends CryptoTestsBase {
+    private static final char[] PASSWORD = "password".toCharArray();
+
+    // Methods of data kept by the wrapper itself rather than the wrapped KeyStore
+    private static final Set<String> NOT_DELEGATING = Set.of("getCertificateIndex", "getModificationCount",
+                                                             "getTrustGraph", "setTrustGraph");
+
+    private static KeyPair keyPair;
+    private static X509Certificate cert;
+
+    @BeforeAll
+    static void generateCertificate() throws Exception {
+        keyPair = generateKeyPair();
+        cert = generateCert("cn=Cert", keyPair);
+    }
+
+    @ParameterizedTest
+    @CsvSource({ "JKS", "JCEKS", "PKCS12", "BKS", "UBER", "BCFKS" })
+    void changesDoNotAffectSource(KeyStoreType keyStoreType) throws Exception {
+        KseKeyStore keyStore = createKeyStore(keyStoreType);
+
+        KseKeyStore snapshot = KeyStoreUtil.snapshot(keyStore);
+        snapshot.setKeyEntry("renamed", snapshot.getKey("key", PASSWORD), PASSWORD,
+                             snapshot.getCertificateChain("key"));
+        snapshot.deleteEntry("key");
+        snapshot.deleteEntry("trusted");
+
+        assertThat(Collections.list(snapshot.aliases())).containsExactly("renamed");
+        assertThat(snapshot.size()).isEqualTo(1);
+        assertThat(snapshot.containsAlias("key")).isFalse();
+        assertThat(snapshot.getCertificate("trusted")).isNull();
+        assertThat(snapshot.isKeyEntry("renamed")).isTrue();
+
+        assertThat(Collections.list(keyStore.aliases())).containsExactlyInAnyOrder("key", "trusted");
+        assertThat(keyStore.getKey("key", PASSWORD)).isNotNull();
+    }
+
+    @ParameterizedTest
+    @CsvSource({ "JKS", "JCEKS", "PKCS12", "BKS", "UBER", "BCFKS" })
+    void storeMergesChanges(KeyStoreType keyStoreType) throws Exception {
+        KseKeyStore keyStore = createKeyStore(keyStoreType);
+
+        KseKeyStore snapshot = KeyStoreUtil.snapshot(keyStore);
+        snapshot.deleteEntry("trusted");
+        snapshot.setCertificateEntry("other", cert);
+
+        KseKeyStore nextSnapshot = KeyStoreUtil.snapshot(snapshot);
+        nextSnapshot.setKeyEntry("key2", keyPair.getPrivate(), PASSWORD, new Certificate[] { cert });
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        nextSnapshot.store(baos, PASSWORD);
+
+        KseKeyStore reloaded = KeyStoreUtil.create(keyStoreType);
+        reloaded.load(new ByteArrayInputStream(baos.toByteArray()), PASSWORD);
+
+        assertThat(Collections.list(reloaded.aliases())).containsExactlyInAnyOrder("key", "key2", "other");
+        assertThat(reloaded.isCertificateEntry("other")).isTrue();
+        assertThat(reloaded.getKey("key2", PASSWORD)).isNotNull();
+
+        // Previous snapshot is still unchanged
+        assertThat(Collections.list(snapshot.aliases())).containsExactlyInAnyOrder("key", "other");
+    }
+
+    @Test
+    void changedAliasesOnlyCoverModifiedEntries() throws Exception {
+        KseKeyStore keyStore = createKeyStore(KeyStoreType.JKS);
+
+        CopyOnWriteKeyStore first = (CopyOnWriteKeyStore) KeyStoreUtil.snapshot(keyStore);
+        first.deleteEntry("trusted");
+
+        CopyOnWriteKeyStore second = (CopyOnWriteKeyStore) KeyStoreUtil.snapshot(first);
+        second.setCertificateEntry("other", cert);
+
+        assertThat(first.getChangedAliases(keyStore)).containsExactly("trusted");
+        assertThat(second.getChangedAliases(first)).containsExactly("other");
+        assertThat(second.getChangedAliases(keyStore)).containsExactlyInAnyOrder("trusted", "other");
+        assertThat(second.getChangedAliases(new CopyOnWriteKeyStore(second))).isEmpty();
+        assertThat(second.getChangedAliases(createKeyStore(KeyStoreType.JKS))).isNull();
+    }
+
+    @Test
+    void wrongEntryPasswordIsRejected() throws Exception {
+        KseKeyStore snapshot = KeyStoreUtil.snapshot(createKeyStore(KeyStoreType.JKS));
+        snapshot.setKeyEntry("new", keyPair.getPrivate(), PASSWORD, new Certificate[] { cert });
+
+        assertThatThrownBy(() -> snapshot.getKey("new", "wrong".toCharArray())).isInstanceOf(
+                UnrecoverableKeyException.class);
+        assertThat(snapshot.getCertificateAlias(cert)).isNotNull();
+    }
+
+    @Test
+    void caseInsensitiveAliases() throws Exception {
+        KseKeyStore snapshot = KeyStoreUtil.snapshot(createKeyStore(KeyStoreType.JKS));
+        snapshot.deleteEntry("KEY");
+        snapshot.setCertificateEntry("Other", cert);
+
+        assertThat(snapshot.containsAlias("key")).isFalse();
+        assertThat(snapshot.containsAlias("OTHER")).isTrue();
+        assertThat(Collections.list(snapshot.aliases())).containsExactlyInAnyOrder("trusted", "other");
+    }
+
+    @Test
+    void overridesEveryDelegatingMethod() throws Exception {
+        for (Method method : KseKeyStore.class.getDeclaredMethods()) {
+            if (!Modifier.isPublic(method.getModifiers()) || Modifier.isStatic(method.getModifiers())
+                || NOT_DELEGATING.contains(method.getName())) {
+                continue;
+            }
+
+            Method override = CopyOnWriteKeyStore.class.getMethod(method.getName(), method.getParameterTypes());
+            assertThat(override.getDeclaringClass()).as(method.toString()).isEqualTo(CopyOnWriteKeyStore.class);
+        }
+    }
+
+    @Test
+    void pkcs12KeyStoresKeepTheirAdapter() throws Exception {
+        KseKeyStore keyStore = createKeyStore(KeyStoreType.PKCS12);
+        assertThat(keyStore).isInstanceOf(Pkcs12KeyStoreAdapter.class);
+
+        CopyOnWriteKeyStore snapshot = (CopyOnWriteKeyStore) KeyStoreUtil.snapshot(keyStore);
+        snapshot.setCertificateEntry("other", cert);
+        snapshot.flatten();
+
+        assertThat(snapshot.getChangedEntryCount()).isZero();
+        assertThat(KeyStoreUtil.copy(snapshot)).isInstanceOf(Pkcs12KeyStoreAdapter.class);
+        assertThat(Collections.list(snapshot.aliases())).containsExactlyInAnyOrder("key", "trusted", "other");
+    }
+
+    private KseKeyStore createKeyStore(KeyStoreType keyStoreType) throws Exception {
+        KseKeyStore keyStore = KeyStoreUtil.create(keyStoreType);
+        keyStore.setKeyEntry("key", keyPair.getPrivate(), PASSWORD, new Certificate[] { cert });
+        keyStore.setCertificateEntry("trusted", cert);
+        return keyStore;
+    }
+}
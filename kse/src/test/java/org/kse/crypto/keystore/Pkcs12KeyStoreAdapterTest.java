@@ -0,0 +1,109 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.keystore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.bouncycastle.crypto.engines.DESedeEngine;
+import org.bouncycastle.crypto.modes.CBCBlockCipher;
+import org.bouncycastle.pkcs.PKCS12PfxPduBuilder;
+import org.bouncycastle.pkcs.PKCS12SafeBag;
+import org.bouncycastle.pkcs.PKCS12SafeBagBuilder;
+import org.bouncycastle.pkcs.bc.BcPKCS12MacCalculatorBuilder;
+import org.bouncycastle.pkcs.bc.BcPKCS12PBEOutputEncryptorBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.kse.KSE;
+import org.kse.crypto.CryptoTestsBase;
+import org.kse.crypto.keypair.KeyPairUtil;
+import org.kse.crypto.signing.SignatureType;
+import org.kse.crypto.x509.X509CertificateGenerator;
+import org.kse.crypto.x509.X509CertificateVersion;
+
+/**
+ * Unit tests for Pkcs12KeyStoreAdapter.
+ */
+public class Pkcs12KeyStoreAdapterTest extends CryptoTestsBase {
+    private static final char[] PASSWORD = "password".toCharArray();
+
+    private static X509Certificate cert1;
+    private static X509Certificate cert2;
+
+    @BeforeAll
+    static void generateCertificates() throws Exception {
+        KeyPair keyPair = KeyPairUtil.generateECKeyPair("P-256", KSE.BC);
+
+        X509CertificateGenerator certGen = new X509CertificateGenerator(X509CertificateVersion.VERSION3);
+        cert1 = certGen.generateSelfSigned(new X500Name("cn=Cert1"), Date.from(Instant.now()),
+                                           Date.from(Instant.now().plus(365, ChronoUnit.DAYS)), keyPair.getPublic(),
+                                           keyPair.getPrivate(), SignatureType.SHA256_ECDSA, BigInteger.ONE);
+        cert2 = certGen.generateSelfSigned(new X500Name("cn=Cert2"), Date.from(Instant.now()),
+                                           Date.from(Instant.now().plus(365, ChronoUnit.DAYS)), keyPair.getPublic(),
+                                           keyPair.getPrivate(), SignatureType.SHA256_ECDSA, BigInteger.TWO);
+    }
+
+    @Test
+    void visibleCertificatesAreNotReported() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(null, null);
+        keyStore.setCertificateEntry("cert1", cert1);
+        keyStore.setCertificateEntry("cert2", cert2);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        keyStore.store(baos, PASSWORD);
+
+        Pkcs12KeyStoreAdapter adapter = new Pkcs12KeyStoreAdapter(KeyStore.getInstance("PKCS12"));
+        adapter.load(baos.toByteArray(), PASSWORD);
+
+        assertThat(adapter.size()).isEqualTo(2);
+        assertThat(adapter.hasInvisibleCerts()).isFalse();
+    }
+
+    @Test
+    void certificatesWithoutTrustAttributeAreReported() throws Exception {
+        // A certificate bag without attributes is not exposed by the Java PKCS12 provider
+        PKCS12SafeBag bag = new PKCS12SafeBagBuilder(new JcaX509CertificateHolder(cert1)).build();
+
+        PKCS12PfxPduBuilder pfxBuilder = new PKCS12PfxPduBuilder();
+        pfxBuilder.addEncryptedData(new BcPKCS12PBEOutputEncryptorBuilder(
+                PKCSObjectIdentifiers.pbeWithSHAAnd3_KeyTripleDES_CBC,
+                CBCBlockCipher.newInstance(new DESedeEngine())).build(PASSWORD), new PKCS12SafeBag[] { bag });
+        byte[] p12Data = pfxBuilder.build(new BcPKCS12MacCalculatorBuilder(), PASSWORD).getEncoded();
+
+        Pkcs12KeyStoreAdapter adapter = new Pkcs12KeyStoreAdapter(KeyStore.getInstance("PKCS12"));
+        adapter.load(p12Data, PASSWORD);
+
+        assertThat(adapter.size()).isZero();
+        assertThat(adapter.getInvisibleCerts()).hasSize(1);
+        assertThat(adapter.getInvisibleCerts().get(0).cert()).isEqualTo(cert1);
+    }
+}
@@ -0,0 +1,382 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.ocsp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.net.ProxySelector;
+import java.net.http.HttpHeaders;
+import java.nio.file.Path;
+import java.security.cert.X509Certificate;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.bouncycastle.cert.ocsp.RevokedStatus;
+import org.bouncycastle.cert.ocsp.jcajce.JcaCertificateID;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.kse.KSE;
+import org.kse.crypto.CryptoTestsBase;
+import org.kse.utilities.net.StubSocksProxy;
+
+class OcspClientTest extends CryptoTestsBase {
+
+    private StubOcspResponder responder;
+    private MutableClock clock;
+    private X509Certificate cert;
+
+    @BeforeEach
+    void startResponder() throws Exception {
+        responder = new StubOcspResponder();
+        clock = new MutableClock();
+        cert = responder.issueCertificate(BigInteger.valueOf(1000));
+    }
+
+    @AfterEach
+    void stopResponder() {
+        responder.close();
+    }
+
+    @Test
+    void cachedResponseIsReused() throws Exception {
+        OcspClient client = new OcspClient(new OcspResponseCache(null, 16, clock));
+
+        OCSPResp first = getResponse(client, cert, false);
+        OCSPResp second = getResponse(client, cert, false);
+
+        assertThat(getStatus(first)).isEqualTo(CertificateStatus.GOOD);
+        assertThat(second.getEncoded()).isEqualTo(first.getEncoded());
+        assertThat(responder.getRequests()).isEqualTo(1);
+        assertThat(client.getRequests()).isEqualTo(1);
+        assertThat(client.getCache().getHits()).isEqualTo(1);
+    }
+
+    @Test
+    void revokedStatusIsCached() throws Exception {
+        responder.revoke(cert.getSerialNumber());
+        OcspClient client = new OcspClient(new OcspResponseCache(null, 16, clock));
+
+        getResponse(client, cert, false);
+        OCSPResp cached = getResponse(client, cert, false);
+
+        assertThat(getStatus(cached)).isInstanceOf(RevokedStatus.class);
+        assertThat(responder.getRequests()).isEqualTo(1);
+    }
+
+    @Test
+    void requestsWithNonceQueryResponder() throws Exception {
+        OcspClient client = new OcspClient(new OcspResponseCache(null, 16, clock));
+
+        getResponse(client, cert, true);
+        getResponse(client, cert, true);
+        assertThat(responder.getRequests()).isEqualTo(2);
+
+        // but their responses serve later requests without a nonce
+        getResponse(client, cert, false);
+        assertThat(responder.getRequests()).isEqualTo(2);
+    }
+
+    @Test
+    void responseExpiresAtNextUpdate() throws Exception {
+        responder.setNextUpdate(Duration.ofMinutes(10));
+        OcspClient client = new OcspClient(new OcspResponseCache(null, 16, clock));
+
+        getResponse(client, cert, false);
+        clock.advance(Duration.ofMinutes(9));
+        getResponse(client, cert, false);
+        assertThat(responder.getRequests()).isEqualTo(1);
+
+        clock.advance(Duration.ofMinutes(2));
+        getResponse(client, cert, false);
+        assertThat(responder.getRequests()).isEqualTo(2);
+    }
+
+    @Test
+    void maxAgeShortensValidity() throws Exception {
+        responder.setCacheControl("max-age=60, public, no-transform, must-revalidate");
+        OcspClient client = new OcspClient(new OcspResponseCache(null, 16, clock));
+
+        getResponse(client, cert, false);
+        clock.advance(Duration.ofSeconds(30));
+        getResponse(client, cert, false);
+        assertThat(responder.getRequests()).isEqualTo(1);
+
+        clock.advance(Duration.ofSeconds(31));
+        getResponse(client, cert, false);
+        assertThat(responder.getRequests()).isEqualTo(2);
+    }
+
+    @Test
+    void requestsThroughSocksProxyUseProxy() throws Exception {
+        responder.setCacheControl("max-age=60");
+        OcspClient client = new OcspClient(new OcspResponseCache(null, 16, clock));
+
+        ProxySelector defaultProxySelector = ProxySelector.getDefault();
+        try (StubSocksProxy proxy = new StubSocksProxy()) {
+            ProxySelector.setDefault(proxy.getProxySelector());
+
+            OCSPResp resp = getResponse(client, cert, false);
+
+            assertThat(getStatus(resp)).isEqualTo(CertificateStatus.GOOD);
+            assertThat(proxy.getConnections()).isPositive();
+        } finally {
+            ProxySelector.setDefault(defaultProxySelector);
+        }
+
+        // the headers of the response are still available to the cache
+        clock.advance(Duration.ofSeconds(61));
+        getResponse(client, cert, false);
+        assertThat(responder.getRequests()).isEqualTo(2);
+    }
+
+    @Test
+    void responsesWithoutNextUpdateAreNotCached() throws Exception {
+        responder.setNextUpdate(null);
+        OcspClient client = new OcspClient(new OcspResponseCache(null, 16, clock));
+
+        getResponse(client, cert, false);
+        getResponse(client, cert, false);
+
+        assertThat(responder.getRequests()).isEqualTo(2);
+        assertThat(client.getCache().size()).isZero();
+    }
+
+    @Test
+    void delegatedResponderResponsesAreCached() throws Exception {
+        responder.useDelegatedResponder(true);
+        OcspClient client = new OcspClient(new OcspResponseCache(null, 16, clock));
+
+        getResponse(client, cert, false);
+        getResponse(client, cert, false);
+
+        assertThat(responder.getRequests()).isEqualTo(1);
+    }
+
+    @Test
+    void responsesOfUnauthorizedRespondersAreNotCached() throws Exception {
+        OcspClient client = new OcspClient(new OcspResponseCache(null, 16, clock));
+
+        // certificate issued by the CA, but not for OCSP signing
+        responder.useDelegatedResponder(false);
+        getResponse(client, cert, false);
+        getResponse(client, cert, false);
+
+        // certificate for OCSP signing, but not issued by the CA
+        responder.useUntrustedResponder();
+        getResponse(client, cert, false);
+
+        assertThat(responder.getRequests()).isEqualTo(3);
+        assertThat(client.getCache().size()).isZero();
+    }
+
+    @Test
+    void tamperedCachedResponsesAreNotUsed(@TempDir Path dir) throws Exception {
+        File cacheDir = dir.resolve("ocsp-cache").toFile();
+        OcspResponseCache cache = new OcspResponseCache(cacheDir, 16, clock);
+
+        // a response of another responder put into the cache directory
+        responder.useUntrustedResponder();
+        OCSPResp untrusted = getResponse(new OcspClient(new OcspResponseCache(null, 16, clock)), cert, false);
+        cache.put(responder.getUrl(), getCertId(cert), untrusted, -1);
+
+        getResponse(new OcspClient(new OcspResponseCache(cacheDir, 16, clock)), cert, false);
+        assertThat(responder.getRequests()).isEqualTo(2);
+    }
+
+    @Test
+    void responsesFromTheFutureAreNotCached() throws Exception {
+        responder.setThisUpdateOffset(Duration.ofHours(1));
+        OcspClient client = new OcspClient(new OcspResponseCache(null, 16, clock));
+
+        getResponse(client, cert, false);
+        getResponse(client, cert, false);
+
+        assertThat(responder.getRequests()).isEqualTo(2);
+    }
+
+    @Test
+    void responsesWithNextUpdateBeforeThisUpdateAreNotCached() throws Exception {
+        responder.setNextUpdate(Duration.ofMinutes(-10));
+        responder.setThisUpdateOffset(Duration.ofMinutes(1));
+        OcspClient client = new OcspClient(new OcspResponseCache(null, 16, clock));
+
+        getResponse(client, cert, false);
+        getResponse(client, cert, false);
+
+        assertThat(responder.getRequests()).isEqualTo(2);
+    }
+
+    @Test
+    void cachedLifetimeIsCapped() throws Exception {
+        responder.setNextUpdate(Duration.ofDays(30));
+        OcspClient client = new OcspClient(new OcspResponseCache(null, 16, clock));
+
+        getResponse(client, cert, false);
+        clock.advance(Duration.ofHours(23));
+        getResponse(client, cert, false);
+        assertThat(responder.getRequests()).isEqualTo(1);
+
+        clock.advance(Duration.ofHours(2));
+        getResponse(client, cert, false);
+        assertThat(responder.getRequests()).isEqualTo(2);
+    }
+
+    @Test
+    void cacheIsKeyedByCertId() throws Exception {
+        X509Certificate otherCert = responder.issueCertificate(BigInteger.valueOf(1001));
+        OcspClient client = new OcspClient(new OcspResponseCache(null, 16, clock));
+
+        getResponse(client, cert, false);
+        getResponse(client, otherCert, false);
+        client.getResponse(responder.getUrl(), responder.getCaCertificate(), cert, OcspDigestAlgorithm.SHA256,
+                           false);
+        assertThat(responder.getRequests()).isEqualTo(3);
+
+        getResponse(client, otherCert, false);
+        assertThat(responder.getRequests()).isEqualTo(3);
+    }
+
+    @Test
+    void responsesArePersistedBetweenSessions(@TempDir Path dir) throws Exception {
+        File cacheDir = dir.resolve("ocsp-cache").toFile();
+        OCSPResp first = getResponse(new OcspClient(new OcspResponseCache(cacheDir, 16, clock)), cert, false);
+
+        OcspClient nextSession = new OcspClient(new OcspResponseCache(cacheDir, 16, clock));
+        OCSPResp cached = getResponse(nextSession, cert, false);
+
+        assertThat(cached.getEncoded()).isEqualTo(first.getEncoded());
+        assertThat(responder.getRequests()).isEqualTo(1);
+
+        // expired responses are removed from the directory
+        clock.advance(Duration.ofHours(2));
+        responder.setNextUpdate(null);
+        getResponse(new OcspClient(new OcspResponseCache(cacheDir, 16, clock)), cert, false);
+        assertThat(responder.getRequests()).isEqualTo(2);
+        assertThat(cacheDir.list()).isEmpty();
+    }
+
+    @Test
+    void connectionsAreReused() throws Exception {
+        OcspClient client = new OcspClient(new OcspResponseCache(null, 16, clock));
+
+        for (int i = 0; i < 20; i++) {
+            getResponse(client, cert, true);
+        }
+
+        assertThat(responder.getRequests()).isEqualTo(20);
+        assertThat(responder.getClientAddresses()).hasSize(1);
+    }
+
+    @Test
+    void concurrentLookupsOfManyCertificates() throws Exception {
+        OcspClient client = new OcspClient(new OcspResponseCache(null, 1024, clock));
+        List<X509Certificate> certs = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            certs.add(responder.issueCertificate(BigInteger.valueOf(2000 + i)));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int round = 0; round < 4; round++) {
+                List<Future<OCSPResp>> futures = new ArrayList<>();
+                for (X509Certificate c : certs) {
+                    futures.add(executor.submit(() -> getResponse(client, c, false)));
+                }
+                for (Future<OCSPResp> future : futures) {
+                    assertThat(getStatus(future.get())).isEqualTo(CertificateStatus.GOOD);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // only the first round queries the responder
+        assertThat(responder.getRequests()).isEqualTo(50);
+        assertThat(client.getCache().getHits()).isEqualTo(150);
+        assertThat(responder.getClientAddresses().size()).isLessThanOrEqualTo(8);
+    }
+
+    @ParameterizedTest
+    @CsvSource({ "'max-age=300', 300", "'public, max-age=0', 0", "'no-cache', 0", "'max-age=x', 0",
+                 "'public', -1" })
+    void maxAgeFromCacheControl(String cacheControl, long expected) {
+        HttpHeaders headers = HttpHeaders.of(Map.of("Cache-Control", List.of(cacheControl)), (n, v) -> true);
+
+        assertThat(OcspClient.getMaxAge(headers)).isEqualTo(expected);
+    }
+
+    private OCSPResp getResponse(OcspClient client, X509Certificate c, boolean includeNonce) throws Exception {
+        return client.getResponse(responder.getUrl(), responder.getCaCertificate(), c, OcspDigestAlgorithm.SHA1,
+                                  includeNonce);
+    }
+
+    private CertificateID getCertId(X509Certificate c) throws Exception {
+        return new JcaCertificateID(new JcaDigestCalculatorProviderBuilder().setProvider(KSE.BC).build()
+                                                                            .get(CertificateID.HASH_SHA1),
+                                    responder.getCaCertificate(), c.getSerialNumber());
+    }
+
+    private static CertificateStatus getStatus(OCSPResp resp) throws Exception {
+        return ((BasicOCSPResp) resp.getResponseObject()).getResponses()[0].getCertStatus();
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now = Instant.now();
+
+        synchronized void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public synchronized Instant instant() {
+            return now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
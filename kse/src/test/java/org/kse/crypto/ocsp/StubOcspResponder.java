@@ -0,0 +1,331 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.ocsp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bouncycastle.asn1.ocsp.OCSPObjectIdentifiers;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.BasicOCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPReq;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.bouncycastle.cert.ocsp.OCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.Req;
+import org.bouncycastle.cert.ocsp.RespID;
+import org.bouncycastle.cert.ocsp.RevokedStatus;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.kse.KSE;
+import org.kse.crypto.keypair.KeyPairUtil;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An OCSP responder on the loopback interface, for testing OCSP requests without network
+ * access. Responses are created with BouncyCastle's {@link BasicOCSPRespBuilder} and signed by
+ * the key of the CA that issues the test certificates, or by a delegated or untrusted responder
+ * key. The thisUpdate and nextUpdate times of the responses and the Cache-Control header can be
+ * changed to test caching.
+ */
+class StubOcspResponder implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final KeyPair caKeyPair;
+    private final X509Certificate caCertificate;
+    private final X509CertificateHolder caCertificateHolder;
+
+    private volatile ContentSigner signer;
+    private volatile X509CertificateHolder signerCertificate;
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final Set<BigInteger> revokedSerials = ConcurrentHashMap.newKeySet();
+    private final Set<InetSocketAddress> clientAddresses = ConcurrentHashMap.newKeySet();
+    private volatile Duration thisUpdateOffset = Duration.ZERO;
+    private volatile Duration nextUpdate = Duration.ofHours(1);
+    private volatile String cacheControl;
+
+    /**
+     * Creates a responder with a new CA key and certificate, and starts it.
+     *
+     * @throws Exception If the responder cannot be started
+     */
+    StubOcspResponder() throws Exception {
+        caKeyPair = KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC);
+        caCertificate = createCertificate(new X500Name("CN=Stub OCSP CA"), BigInteger.ONE, caKeyPair, true);
+        caCertificateHolder = new JcaX509CertificateHolder(caCertificate);
+        signer = createSigner(caKeyPair);
+        signerCertificate = caCertificateHolder;
+
+        executor = Executors.newFixedThreadPool(8);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    private X509Certificate createCertificate(X500Name subject, BigInteger serial, KeyPair keyPair, boolean ca)
+            throws Exception {
+        return createCertificate(subject, serial, keyPair, ca, null, caKeyPair);
+    }
+
+    private static X509Certificate createCertificate(X500Name subject, BigInteger serial, KeyPair keyPair,
+                                                     boolean ca, KeyPurposeId keyPurpose, KeyPair issuerKeyPair)
+            throws Exception {
+        Date notBefore = new Date(System.currentTimeMillis() - 60_000);
+        Date notAfter = new Date(System.currentTimeMillis() + 24L * 60 * 60 * 1000);
+        X509v3CertificateBuilder certBuilder = new JcaX509v3CertificateBuilder(new X500Name("CN=Stub OCSP CA"),
+                                                                               serial, notBefore, notAfter,
+                                                                               subject, keyPair.getPublic());
+        certBuilder.addExtension(Extension.basicConstraints, true, new BasicConstraints(ca));
+        if (keyPurpose != null) {
+            certBuilder.addExtension(Extension.extendedKeyUsage, false, new ExtendedKeyUsage(keyPurpose));
+        }
+        return new JcaX509CertificateConverter().setProvider(KSE.BC).getCertificate(
+                certBuilder.build(createSigner(issuerKeyPair)));
+    }
+
+    private static ContentSigner createSigner(KeyPair keyPair) throws Exception {
+        return new JcaContentSignerBuilder("SHA256withECDSA").setProvider(KSE.BC).build(keyPair.getPrivate());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            clientAddresses.add(exchange.getRemoteAddress());
+
+            byte[] requestBytes;
+            try (InputStream is = exchange.getRequestBody()) {
+                requestBytes = is.readAllBytes();
+            }
+
+            byte[] responseBytes;
+            try {
+                responseBytes = createResponse(new OCSPReq(requestBytes)).getEncoded();
+            } catch (Exception e) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "application/ocsp-response");
+            if (cacheControl != null) {
+                exchange.getResponseHeaders().set("Cache-Control", cacheControl);
+            }
+            exchange.sendResponseHeaders(200, responseBytes.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(responseBytes);
+            }
+        }
+    }
+
+    private OCSPResp createResponse(OCSPReq request) throws Exception {
+        // the signer and its certificate are changed together while holding the lock
+        ContentSigner responseSigner;
+        X509CertificateHolder responseSignerCertificate;
+        synchronized (this) {
+            responseSigner = signer;
+            responseSignerCertificate = signerCertificate;
+        }
+
+        BasicOCSPRespBuilder builder = new BasicOCSPRespBuilder(
+                responseSignerCertificate.getSubjectPublicKeyInfo(),
+                new JcaDigestCalculatorProviderBuilder().setProvider(KSE.BC).build()
+                                                        .get(RespID.HASH_SHA1));
+
+        Date thisUpdate = new Date(System.currentTimeMillis() + thisUpdateOffset.toMillis());
+        Duration validity = nextUpdate;
+        Date next = validity == null ? null : new Date(thisUpdate.getTime() + validity.toMillis());
+        for (Req req : request.getRequestList()) {
+            CertificateStatus status = CertificateStatus.GOOD;
+            if (revokedSerials.contains(req.getCertID().getSerialNumber())) {
+                status = new RevokedStatus(thisUpdate, CRLReason.keyCompromise);
+            }
+            builder.addResponse(req.getCertID(), status, thisUpdate, next);
+        }
+
+        Extension nonce = request.getExtension(OCSPObjectIdentifiers.id_pkix_ocsp_nonce);
+        if (nonce != null) {
+            builder.setResponseExtensions(new Extensions(nonce));
+        }
+
+        // the signer is not thread-safe
+        BasicOCSPResp basicResp;
+        synchronized (responseSigner) {
+            basicResp = builder.build(responseSigner, new X509CertificateHolder[] { responseSignerCertificate },
+                                      thisUpdate);
+        }
+        return new OCSPRespBuilder().build(OCSPRespBuilder.SUCCESSFUL, basicResp);
+    }
+
+    /**
+     * Issue a certificate from the CA of this responder.
+     *
+     * @param serial Serial number of the certificate
+     * @return The certificate
+     * @throws Exception If the certificate cannot be created
+     */
+    X509Certificate issueCertificate(BigInteger serial) throws Exception {
+        KeyPair keyPair = KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC);
+        return createCertificate(new X500Name("CN=Stub OCSP Leaf " + serial), serial, keyPair, false);
+    }
+
+    /**
+     * Get the URL of the responder.
+     *
+     * @return Responder URL
+     */
+    String getUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/ocsp";
+    }
+
+    /**
+     * Get the CA certificate that issues the test certificates and signs the responses.
+     *
+     * @return CA certificate
+     */
+    X509Certificate getCaCertificate() {
+        return caCertificate;
+    }
+
+    /**
+     * Sign the next responses with a new key that has a certificate issued by the CA, which
+     * makes it a delegated responder if the certificate is for OCSP signing.
+     *
+     * @param ocspSigning True to issue a certificate for OCSP signing
+     * @throws Exception If the key or certificate cannot be created
+     */
+    void useDelegatedResponder(boolean ocspSigning) throws Exception {
+        KeyPair keyPair = KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC);
+        X509Certificate certificate = createCertificate(new X500Name("CN=Stub OCSP Responder"),
+                                                        BigInteger.TWO, keyPair, false,
+                                                        ocspSigning ? KeyPurposeId.id_kp_OCSPSigning : null,
+                                                        caKeyPair);
+        useSigner(keyPair, certificate);
+    }
+
+    /**
+     * Sign the next responses with a new key that has an OCSP signing certificate which is not
+     * issued by the CA.
+     *
+     * @throws Exception If the key or certificate cannot be created
+     */
+    void useUntrustedResponder() throws Exception {
+        KeyPair keyPair = KeyPairUtil.generateECKeyPair("secp256r1", KSE.BC);
+        X509Certificate certificate = createCertificate(new X500Name("CN=Stub OCSP Responder"),
+                                                        BigInteger.TWO, keyPair, false,
+                                                        KeyPurposeId.id_kp_OCSPSigning, keyPair);
+        useSigner(keyPair, certificate);
+    }
+
+    private synchronized void useSigner(KeyPair keyPair, X509Certificate certificate) throws Exception {
+        signer = createSigner(keyPair);
+        signerCertificate = new JcaX509CertificateHolder(certificate);
+    }
+
+    /**
+     * Set how far the thisUpdate time of the next responses is from the current time.
+     *
+     * @param thisUpdateOffset Offset, positive for a thisUpdate time in the future
+     */
+    void setThisUpdateOffset(Duration thisUpdateOffset) {
+        this.thisUpdateOffset = thisUpdateOffset;
+    }
+
+    /**
+     * Set the time from thisUpdate to nextUpdate of the next responses.
+     *
+     * @param nextUpdate Validity of the responses, negative for a nextUpdate time before thisUpdate,
+     *                   or null to send responses without nextUpdate
+     */
+    void setNextUpdate(Duration nextUpdate) {
+        this.nextUpdate = nextUpdate;
+    }
+
+    /**
+     * Set the Cache-Control header of the next responses.
+     *
+     * @param cacheControl Header value or null for no header
+     */
+    void setCacheControl(String cacheControl) {
+        this.cacheControl = cacheControl;
+    }
+
+    /**
+     * Report a certificate as revoked in the next responses.
+     *
+     * @param serial Serial number of the certificate
+     */
+    void revoke(BigInteger serial) {
+        revokedSerials.add(serial);
+    }
+
+    /**
+     * Get the number of HTTP requests received.
+     *
+     * @return Number of requests
+     */
+    int getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Get the distinct client addresses that requests were received from, one per connection.
+     *
+     * @return Client addresses
+     */
+    Set<InetSocketAddress> getClientAddresses() {
+        return clientAddresses;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
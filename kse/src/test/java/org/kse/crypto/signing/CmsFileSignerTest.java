@@ -0,0 +1,158 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.signing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.bouncycastle.cms.CMSProcessableFile;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.cms.jcajce.JcaSimpleSignerInfoVerifierBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.kse.KSE;
+import org.kse.crypto.CryptoException;
+import org.kse.crypto.CryptoTestsBase;
+
+/**
+ * Unit tests for {@link CmsFileSigner}.
+ */
+public class CmsFileSignerTest extends CryptoTestsBase {
+
+    private static KeyPair keyPair;
+    private static X509Certificate[] certificateChain;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void setUpKey() throws Exception {
+        keyPair = generateKeyPair();
+        certificateChain = new X509Certificate[] { generateCert("CN=File signer", keyPair) };
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = { false, true })
+    void signsFilesConcurrently(boolean explicitProvider) throws Exception {
+        CmsFileSigner fileSigner = new CmsFileSigner(keyPair.getPrivate(), certificateChain, SignatureType.SHA256_ECDSA,
+                                                     true, false, null, explicitProvider ? KSE.BC : null);
+
+        List<File> inputFiles = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            inputFiles.add(createFile("file" + i + ".bin", 1000 * i));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (File inputFile : inputFiles) {
+                futures.add(executor.submit(() -> {
+                    fileSigner.sign(inputFile, signatureFile(inputFile, fileSigner));
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        for (File inputFile : inputFiles) {
+            byte[] signature = Files.readAllBytes(signatureFile(inputFile, fileSigner).toPath());
+            assertVerifies(new CMSSignedData(new CMSProcessableFile(inputFile), signature));
+        }
+        assertNoTemporaryFiles();
+    }
+
+    @Test
+    void replacesExistingSignature() throws Exception {
+        File inputFile = createFile("file.bin", 5000);
+        File outputFile = tempDir.resolve("file.bin.p7m").toFile();
+        Files.write(outputFile.toPath(), "old signature".getBytes(StandardCharsets.US_ASCII));
+
+        new CmsFileSigner(keyPair.getPrivate(), certificateChain, SignatureType.SHA256_ECDSA, false, false, null, null)
+                .sign(inputFile, outputFile);
+
+        CMSSignedData signedData = new CMSSignedData(Files.readAllBytes(outputFile.toPath()));
+        assertThat((byte[]) signedData.getSignedContent().getContent()).isEqualTo(
+                Files.readAllBytes(inputFile.toPath()));
+        assertVerifies(signedData);
+        assertNoTemporaryFiles();
+    }
+
+    @Test
+    void keepsExistingSignatureWhenSigningFails() throws Exception {
+        File inputFile = tempDir.resolve("missing.bin").toFile();
+        File outputFile = tempDir.resolve("missing.bin.p7s").toFile();
+        byte[] oldSignature = "old signature".getBytes(StandardCharsets.US_ASCII);
+        Files.write(outputFile.toPath(), oldSignature);
+
+        CmsFileSigner fileSigner = new CmsFileSigner(keyPair.getPrivate(), certificateChain,
+                                                     SignatureType.SHA256_ECDSA, true, false, null, null);
+        assertThatThrownBy(() -> fileSigner.sign(inputFile, outputFile)).isInstanceOf(CryptoException.class);
+
+        assertThat(Files.readAllBytes(outputFile.toPath())).isEqualTo(oldSignature);
+        assertNoTemporaryFiles();
+    }
+
+    private File createFile(String name, int length) throws Exception {
+        byte[] content = new byte[length];
+        new Random(length).nextBytes(content);
+        return Files.write(tempDir.resolve(name), content).toFile();
+    }
+
+    private static File signatureFile(File inputFile, CmsFileSigner fileSigner) {
+        return new File(inputFile.getPath() + fileSigner.getSignatureExtension());
+    }
+
+    private void assertNoTemporaryFiles() throws Exception {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertThat(files.map(Path::getFileName).map(Path::toString)).noneMatch(name -> name.endsWith(".tmp"));
+        }
+    }
+
+    private static void assertVerifies(CMSSignedData signedData) throws Exception {
+        assertThat(signedData.getSignerInfos().size()).isEqualTo(1);
+        for (SignerInformation signer : signedData.getSignerInfos()) {
+            assertThat(signer.verify(
+                    new JcaSimpleSignerInfoVerifierBuilder().setProvider(KSE.BC).build(certificateChain[0])))
+                    .isTrue();
+        }
+    }
+}
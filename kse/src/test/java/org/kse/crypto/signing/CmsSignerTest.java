@@ -0,0 +1,185 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.signing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.cert.X509Certificate;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.bouncycastle.asn1.cms.Attribute;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.cms.CMSProcessableFile;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.cms.jcajce.JcaSimpleSignerInfoVerifierBuilder;
+import org.bouncycastle.tsp.TimeStampToken;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kse.KSE;
+import org.kse.crypto.CryptoTestsBase;
+import org.kse.crypto.keypair.KeyPairType;
+import org.kse.crypto.keypair.KeyPairUtil;
+import org.kse.utilities.pem.PemUtil;
+
+/**
+ * Unit tests for {@link CmsSigner}.
+ */
+public class CmsSignerTest extends CryptoTestsBase {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void detachedSignatureVerifies() throws Exception {
+        File input = createInputFile(100000);
+        KeyPair keyPair = generateKeyPair();
+        X509Certificate certificate = generateCert("CN=CMS signer", keyPair);
+
+        CMSSignedData signedData = CmsSigner.sign(input, keyPair.getPrivate(), new X509Certificate[] { certificate },
+                                                  true, SignatureType.SHA256_ECDSA, null, KSE.BC);
+
+        assertThat(signedData.isDetachedSignature()).isTrue();
+        assertVerifies(new CMSSignedData(new CMSProcessableFile(input), signedData.getEncoded()), certificate);
+    }
+
+    @Test
+    void detachedEd448SignatureVerifies() throws Exception {
+        File input = createInputFile(5000);
+        KeyPair keyPair = KeyPairUtil.generateKeyPair(KeyPairType.ED448, KSE.BC);
+        X509Certificate certificate = generateCert("CN=CMS signer", keyPair, "CN=CMS issuer", generateKeyPair());
+
+        CMSSignedData signedData = CmsSigner.sign(input, keyPair.getPrivate(), new X509Certificate[] { certificate },
+                                                  true, SignatureType.ED448, null, KSE.BC);
+
+        assertVerifies(new CMSSignedData(new CMSProcessableFile(input), signedData.getEncoded()), certificate);
+    }
+
+    @Test
+    void streamsEncapsulatedSignatureToFile() throws Exception {
+        File input = createInputFile(300000);
+        File output = tempDir.resolve("input.p7m").toFile();
+        KeyPair keyPair = generateKeyPair();
+        X509Certificate certificate = generateCert("CN=CMS signer", keyPair);
+
+        CmsSigner.sign(input, output, false, keyPair.getPrivate(), new X509Certificate[] { certificate }, false,
+                       SignatureType.SHA256_ECDSA, null, KSE.BC);
+
+        CMSSignedData signedData = new CMSSignedData(Files.readAllBytes(output.toPath()));
+        assertThat(signedData.isDetachedSignature()).isFalse();
+        assertThat((byte[]) signedData.getSignedContent().getContent()).isEqualTo(Files.readAllBytes(input.toPath()));
+        assertVerifies(signedData, certificate);
+    }
+
+    @Test
+    void streamsPemEncapsulatedSignatureToFile() throws Exception {
+        File input = createInputFile(70000);
+        File output = tempDir.resolve("input.p7m").toFile();
+        KeyPair keyPair = generateKeyPair();
+        X509Certificate certificate = generateCert("CN=CMS signer", keyPair);
+
+        CmsSigner.sign(input, output, true, keyPair.getPrivate(), new X509Certificate[] { certificate }, false,
+                       SignatureType.SHA256_ECDSA, null, KSE.BC);
+
+        byte[] pem = Files.readAllBytes(output.toPath());
+        assertThat(new String(pem, StandardCharsets.US_ASCII)).startsWith("-----BEGIN PKCS7-----");
+        CMSSignedData signedData = new CMSSignedData(PemUtil.decode(pem).getContent());
+        assertVerifies(signedData, certificate);
+    }
+
+    @Test
+    void writesDetachedSignatureToFile() throws Exception {
+        File input = createInputFile(1000);
+        File output = tempDir.resolve("input.p7s").toFile();
+        KeyPair keyPair = generateKeyPair();
+        X509Certificate certificate = generateCert("CN=CMS signer", keyPair);
+
+        CmsSigner.sign(input, output, false, keyPair.getPrivate(), new X509Certificate[] { certificate }, true,
+                       SignatureType.SHA256_ECDSA, null, KSE.BC);
+
+        assertVerifies(new CMSSignedData(new CMSProcessableFile(input), Files.readAllBytes(output.toPath())),
+                       certificate);
+    }
+
+    @Test
+    void signsFileInPlace() throws Exception {
+        File input = createInputFile(200000);
+        byte[] content = Files.readAllBytes(input.toPath());
+        KeyPair keyPair = generateKeyPair();
+        X509Certificate certificate = generateCert("CN=CMS signer", keyPair);
+
+        CmsSigner.sign(input, input, false, keyPair.getPrivate(), new X509Certificate[] { certificate }, false,
+                       SignatureType.SHA256_ECDSA, null, KSE.BC);
+
+        CMSSignedData signedData = new CMSSignedData(Files.readAllBytes(input.toPath()));
+        assertThat((byte[]) signedData.getSignedContent().getContent()).isEqualTo(content);
+        assertVerifies(signedData, certificate);
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertThat(files).containsExactly(input.toPath());
+        }
+    }
+
+    @Test
+    void timeStampsStreamedSignature() throws Exception {
+        File input = createInputFile(20000);
+        File output = tempDir.resolve("input.p7m").toFile();
+        KeyPair keyPair = generateKeyPair();
+        X509Certificate certificate = generateCert("CN=CMS signer", keyPair);
+
+        try (StubTimeStampAuthority tsa = new StubTimeStampAuthority()) {
+            CmsSigner.sign(input, output, false, keyPair.getPrivate(), new X509Certificate[] { certificate }, false,
+                           SignatureType.SHA256_ECDSA, tsa.getUrl(), KSE.BC);
+
+            CMSSignedData signedData = new CMSSignedData(Files.readAllBytes(output.toPath()));
+            assertVerifies(signedData, certificate);
+
+            SignerInformation signer = signedData.getSignerInfos().getSigners().iterator().next();
+            Attribute tokenAttribute = signer.getUnsignedAttributes()
+                                             .get(PKCSObjectIdentifiers.id_aa_signatureTimeStampToken);
+            TimeStampToken token = new TimeStampToken(
+                    new CMSSignedData(tokenAttribute.getAttrValues().getObjectAt(0).toASN1Primitive().getEncoded()));
+            token.validate(new JcaSimpleSignerInfoVerifierBuilder().setProvider(KSE.BC).build(tsa.getCertificate()));
+            assertThat(token.getTimeStampInfo().getMessageImprintDigest()).isEqualTo(
+                    MessageDigest.getInstance("SHA-256").digest(signer.getSignature()));
+        }
+    }
+
+    private File createInputFile(int length) throws IOException {
+        byte[] content = new byte[length];
+        new Random(length).nextBytes(content);
+        return Files.write(tempDir.resolve("input.bin"), content).toFile();
+    }
+
+    private static void assertVerifies(CMSSignedData signedData, X509Certificate certificate) throws Exception {
+        assertThat(signedData.getSignerInfos().size()).isEqualTo(1);
+        for (SignerInformation signer : signedData.getSignerInfos()) {
+            assertThat(signer.verify(new JcaSimpleSignerInfoVerifierBuilder().setProvider(KSE.BC).build(certificate)))
+                    .isTrue();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.signing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kse.crypto.CryptoTestsBase;
+import org.kse.crypto.digest.DigestType;
+
+/**
+ * Unit tests for {@link JarSigner}.
+ */
+public class JarSignerTest extends CryptoTestsBase {
+
+    private static final int ENTRIES = 200;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void concurrentDigestsMatchSequentialDigests() throws Exception {
+        KeyPair keyPair = generateKeyPair();
+        SignatureBlockGenerator generator = new SignatureBlockGenerator(
+                keyPair.getPrivate(), new X509Certificate[] { generateCert("CN=test", keyPair) },
+                SignatureType.SHA256_ECDSA, null);
+        File jar = createJar();
+
+        File sequential = tempDir.resolve("sequential.jar").toFile();
+        JarSigner.sign(jar, sequential, generator, "test", "KSE", DigestType.SHA256, null, Runnable::run);
+
+        File concurrent = tempDir.resolve("concurrent.jar").toFile();
+        JarSigner.sign(jar, concurrent, generator, "test", "KSE", DigestType.SHA256, null);
+
+        assertThat(readEntry(concurrent, JarFile.MANIFEST_NAME)).isEqualTo(
+                readEntry(sequential, JarFile.MANIFEST_NAME));
+        assertThat(readEntry(concurrent, "META-INF/TEST.SF")).isEqualTo(readEntry(sequential, "META-INF/TEST.SF"));
+    }
+
+    private File createJar() throws Exception {
+        File jar = tempDir.resolve("unsigned.jar").toFile();
+
+        try (JarOutputStream jos = new JarOutputStream(Files.newOutputStream(jar.toPath()))) {
+            for (int i = 0; i < ENTRIES; i++) {
+                jos.putNextEntry(new JarEntry("pkg/Entry" + i + ".class"));
+                jos.write(("Entry " + i).repeat(i + 1).getBytes(StandardCharsets.UTF_8));
+                jos.closeEntry();
+            }
+        }
+        return jar;
+    }
+
+    private static byte[] readEntry(File jar, String name) throws Exception {
+        try (JarFile jarFile = new JarFile(jar); InputStream is = jarFile.getInputStream(jarFile.getEntry(name))) {
+            return is.readAllBytes();
+        }
+    }
+}
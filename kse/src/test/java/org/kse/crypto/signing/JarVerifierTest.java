@@ -0,0 +1,142 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.signing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.bouncycastle.cms.CMSSignedData;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kse.crypto.CryptoTestsBase;
+import org.kse.crypto.digest.DigestType;
+
+/**
+ * Unit tests for {@link JarVerifier}.
+ */
+public class JarVerifierTest extends CryptoTestsBase {
+
+    private static final int ENTRIES = 200;
+
+    private static KeyPair keyPair;
+    private static X509Certificate certificate;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void setUpKey() throws Exception {
+        keyPair = generateKeyPair();
+        certificate = generateCert("CN=JAR signer", keyPair);
+    }
+
+    @Test
+    void verifiesAllEntriesOfSignedJar() throws Exception {
+        File signedJar = createSignedJar();
+
+        Map<String, CMSSignedData> signatureBlocks = new JarVerifier(signedJar).getSignatureBlocks();
+        assertThat(signatureBlocks).containsOnlyKeys("META-INF/TEST.EC");
+        assertThat(signatureBlocks.get("META-INF/TEST.EC").isDetachedSignature()).isFalse();
+
+        Set<String> verified = ConcurrentHashMap.newKeySet();
+        Set<String> signed = ConcurrentHashMap.newKeySet();
+        new JarVerifier(signedJar).verifyEntries((entry, verificationTime) -> {
+            assertThat(verified.add(entry.getName())).isTrue();
+            assertThat(verificationTime).isGreaterThanOrEqualTo(0);
+            if (entry.getCodeSigners() != null) {
+                signed.add(entry.getName());
+            }
+        });
+
+        assertThat(verified).hasSize(ENTRIES + 3).contains("META-INF/MANIFEST.MF", "META-INF/TEST.SF");
+        assertThat(signed.stream().filter(name -> name.startsWith("pkg/"))).hasSize(ENTRIES);
+    }
+
+    @Test
+    void rejectsModifiedEntry() throws Exception {
+        File signedJar = createSignedJar();
+        File modifiedJar = tempDir.resolve("modified.jar").toFile();
+
+        try (ZipFile zip = new ZipFile(signedJar);
+             ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(modifiedJar.toPath()))) {
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                zos.putNextEntry(new ZipEntry(entry.getName()));
+                if (entry.getName().equals("pkg/Entry150.class")) {
+                    zos.write("modified".getBytes(StandardCharsets.UTF_8));
+                } else {
+                    try (InputStream is = zip.getInputStream(entry)) {
+                        is.transferTo(zos);
+                    }
+                }
+                zos.closeEntry();
+            }
+        }
+
+        assertThatThrownBy(() -> new JarVerifier(modifiedJar).verifyEntries((entry, verificationTime) -> {
+        })).isInstanceOf(SecurityException.class).hasMessageContaining("pkg/Entry150.class");
+    }
+
+    @Test
+    void jarParserFindsSignerCertificate() throws Exception {
+        X509Certificate[] signerCertificates = new JarParser(createSignedJar()).getSignerCertificates();
+
+        assertThat(signerCertificates).containsExactly(certificate);
+    }
+
+    private File createSignedJar() throws Exception {
+        File jar = tempDir.resolve("test.jar").toFile();
+        File signedJar = tempDir.resolve("test-signed.jar").toFile();
+
+        try (JarOutputStream jos = new JarOutputStream(Files.newOutputStream(jar.toPath()))) {
+            for (int i = 0; i < ENTRIES; i++) {
+                jos.putNextEntry(new JarEntry("pkg/Entry" + i + ".class"));
+                jos.write(("Entry " + i).repeat(i + 1).getBytes(StandardCharsets.UTF_8));
+                jos.closeEntry();
+            }
+        }
+
+        JarSigner.sign(jar, signedJar, keyPair.getPrivate(), new X509Certificate[] { certificate },
+                       SignatureType.SHA256_ECDSA, "test", "KSE", DigestType.SHA256, null, null);
+
+        try (JarFile jarFile = new JarFile(signedJar)) {
+            assertThat(jarFile.getManifest()).isNotNull();
+        }
+        return signedJar;
+    }
+}
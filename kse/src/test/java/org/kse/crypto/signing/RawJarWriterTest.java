@@ -0,0 +1,309 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.signing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kse.crypto.CryptoTestsBase;
+import org.kse.crypto.digest.DigestType;
+
+/**
+ * Unit tests for {@link RawJarWriter}, each signing a JAR and verifying the signed JAR.
+ */
+public class RawJarWriterTest extends CryptoTestsBase {
+
+    private static final int CEN_SIG = 0x02014b50;
+    private static final int END_SIG = 0x06054b50;
+    private static final int FLAG_ENCRYPTED = 0x1;
+    private static final int FLAG_DATA_DESCRIPTOR = 0x8;
+
+    private static KeyPair keyPair;
+    private static X509Certificate certificate;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void setUpKey() throws Exception {
+        keyPair = generateKeyPair();
+        certificate = generateCert("CN=JAR signer", keyPair);
+    }
+
+    @Test
+    void copiesEntriesRaw() throws Exception {
+        byte[] zip = createJar();
+        File jar = write("plain.jar", zip);
+
+        File signedJar = sign(jar);
+
+        // Copied entries keep their compressed data, which has no data descriptor following it
+        try (ZipFile source = new ZipFile(jar); ZipFile signed = new ZipFile(signedJar)) {
+            for (ZipEntry entry : Collections.list(source.entries())) {
+                ZipEntry copy = signed.getEntry(entry.getName());
+                assertThat(copy.getCrc()).isEqualTo(entry.getCrc());
+                assertThat(copy.getCompressedSize()).isEqualTo(entry.getCompressedSize());
+                assertThat(copy.getMethod()).isEqualTo(entry.getMethod());
+            }
+        }
+        assertThat(getFlags(Files.readAllBytes(signedJar.toPath()))).allMatch(
+                flags -> (flags & FLAG_DATA_DESCRIPTOR) == 0);
+
+        verify(signedJar);
+    }
+
+    @Test
+    void copiesDataDescriptorEntriesRaw() throws Exception {
+        byte[] zip = createJar();
+        assertThat(getFlags(zip)).anyMatch(flags -> (flags & FLAG_DATA_DESCRIPTOR) != 0);
+
+        assertThat(writeRaw(write("descriptor.jar", zip))).isTrue();
+        verify(sign(write("descriptor.jar", zip)));
+    }
+
+    @Test
+    void keepsDirectoryEntriesLikeJarOutputStream() throws Exception {
+        byte[] zip = createJar();
+
+        File rawSigned = sign(write("raw.jar", zip));
+        File streamSigned = sign(write("stream.jar", prefix(zip)));
+
+        assertThat(getEntryNames(rawSigned)).contains("pkg/").isEqualTo(getEntryNames(streamSigned));
+    }
+
+    @Test
+    void fallsBackForZip64() throws Exception {
+        File jar = write("zip64.jar", toZip64(createJar()));
+
+        assertThat(writeRaw(jar)).isFalse();
+        verify(sign(jar));
+    }
+
+    @Test
+    void fallsBackForDataBeforeFirstEntry() throws Exception {
+        File jar = write("prefixed.jar", prefix(createJar()));
+
+        assertThat(writeRaw(jar)).isFalse();
+        verify(sign(jar));
+    }
+
+    @Test
+    void fallsBackForDuplicateEntries() throws Exception {
+        byte[] zip = createJar();
+        replace(zip, "pkg/B.class", "pkg/A.class");
+        File jar = write("duplicate.jar", zip);
+
+        assertThat(writeRaw(jar)).isFalse();
+        assertThatThrownBy(() -> sign(jar)).isInstanceOf(ZipException.class).hasMessageContaining("duplicate");
+    }
+
+    @Test
+    void fallsBackForEncryptedEntries() throws Exception {
+        byte[] zip = createJar();
+        ByteBuffer buffer = ByteBuffer.wrap(zip).order(ByteOrder.LITTLE_ENDIAN);
+        int cen = buffer.getInt(findEnd(zip) + 16);
+        buffer.putShort(cen + 8, (short) (buffer.getShort(cen + 8) | FLAG_ENCRYPTED));
+        File jar = write("encrypted.jar", zip);
+
+        assertThat(writeRaw(jar)).isFalse();
+        assertThatThrownBy(() -> sign(jar)).isInstanceOf(ZipException.class);
+    }
+
+    private byte[] createJar() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        try (JarOutputStream jos = new JarOutputStream(baos)) {
+            jos.putNextEntry(new JarEntry("pkg/"));
+            jos.closeEntry();
+
+            writeEntry(jos, "pkg/A.class", "Entry A".repeat(100));
+            writeEntry(jos, "pkg/B.class", "Entry B".repeat(50));
+
+            JarEntry stored = new JarEntry("pkg/stored.txt");
+            byte[] content = "Stored entry".getBytes(StandardCharsets.UTF_8);
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(content.length);
+            stored.setCrc(crc.getValue());
+            jos.putNextEntry(stored);
+            jos.write(content);
+            jos.closeEntry();
+        }
+        return baos.toByteArray();
+    }
+
+    private static void writeEntry(JarOutputStream jos, String name, String content) throws Exception {
+        jos.putNextEntry(new JarEntry(name));
+        jos.write(content.getBytes(StandardCharsets.UTF_8));
+        jos.closeEntry();
+    }
+
+    private File write(String name, byte[] content) throws Exception {
+        return Files.write(tempDir.resolve(name), content).toFile();
+    }
+
+    private boolean writeRaw(File jar) throws Exception {
+        File target = tempDir.resolve("raw-" + jar.getName()).toFile();
+        boolean written = RawJarWriter.write(jar, target, new LinkedHashMap<>(), Set.of());
+        assertThat(target).matches(file -> file.exists() == written);
+        return written;
+    }
+
+    private File sign(File jar) throws Exception {
+        File signedJar = tempDir.resolve("signed-" + jar.getName()).toFile();
+        JarSigner.sign(jar, signedJar, keyPair.getPrivate(), new X509Certificate[] { certificate },
+                       SignatureType.SHA256_ECDSA, "test", "KSE", DigestType.SHA256, null, null);
+        return signedJar;
+    }
+
+    private static void verify(File signedJar) throws Exception {
+        Set<String> signed = ConcurrentHashMap.newKeySet();
+        new JarVerifier(signedJar).verifyEntries((entry, verificationTime) -> {
+            if (entry.getCodeSigners() != null && entry.getName().startsWith("pkg/")) {
+                signed.add(entry.getName());
+            }
+        });
+        assertThat(signed).containsExactlyInAnyOrder("pkg/A.class", "pkg/B.class", "pkg/stored.txt");
+
+        try (JarFile jarFile = new JarFile(signedJar)) {
+            try (InputStream is = jarFile.getInputStream(jarFile.getEntry("pkg/A.class"))) {
+                assertThat(new String(is.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("Entry A".repeat(100));
+            }
+        }
+    }
+
+    private static List<String> getEntryNames(File jar) throws Exception {
+        List<String> names = new ArrayList<>();
+        try (ZipFile zipFile = new ZipFile(jar)) {
+            for (ZipEntry entry : Collections.list(zipFile.entries())) {
+                names.add(entry.getName());
+            }
+        }
+        return names;
+    }
+
+    /*
+     * General purpose flags of the local headers, found through the central directory
+     */
+    private static List<Integer> getFlags(byte[] zip) {
+        ByteBuffer buffer = ByteBuffer.wrap(zip).order(ByteOrder.LITTLE_ENDIAN);
+        int end = findEnd(zip);
+        int pos = buffer.getInt(end + 16);
+
+        List<Integer> flags = new ArrayList<>();
+        while (buffer.getInt(pos) == CEN_SIG) {
+            int localHeader = buffer.getInt(pos + 42);
+            flags.add(buffer.getShort(localHeader + 6) & 0xFFFF);
+            pos += 46 + (buffer.getShort(pos + 28) & 0xFFFF) + (buffer.getShort(pos + 30) & 0xFFFF)
+                   + (buffer.getShort(pos + 32) & 0xFFFF);
+        }
+        return flags;
+    }
+
+    private static int findEnd(byte[] zip) {
+        ByteBuffer buffer = ByteBuffer.wrap(zip).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = zip.length - 22; i >= 0; i--) {
+            if (buffer.getInt(i) == END_SIG) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException();
+    }
+
+    private static byte[] prefix(byte[] zip) {
+        byte[] prefix = "#!/bin/sh\n".getBytes(StandardCharsets.US_ASCII);
+        byte[] prefixed = new byte[prefix.length + zip.length];
+        System.arraycopy(prefix, 0, prefixed, 0, prefix.length);
+        System.arraycopy(zip, 0, prefixed, prefix.length, zip.length);
+        return prefixed;
+    }
+
+    /*
+     * Insert a ZIP64 end of central directory record and locator in front of the end record
+     */
+    private static byte[] toZip64(byte[] zip) {
+        int end = findEnd(zip);
+        ByteBuffer endRecord = ByteBuffer.wrap(zip, end, 22).order(ByteOrder.LITTLE_ENDIAN);
+        int entries = endRecord.getShort(end + 10) & 0xFFFF;
+        long centralDirectorySize = endRecord.getInt(end + 12) & 0xFFFFFFFFL;
+        long centralDirectoryOffset = endRecord.getInt(end + 16) & 0xFFFFFFFFL;
+
+        ByteBuffer zip64 = ByteBuffer.allocate(zip.length + 56 + 20).order(ByteOrder.LITTLE_ENDIAN);
+        zip64.put(zip, 0, end);
+
+        zip64.putInt(0x06064b50);
+        zip64.putLong(44);
+        zip64.putShort((short) 45);
+        zip64.putShort((short) 45);
+        zip64.putInt(0);
+        zip64.putInt(0);
+        zip64.putLong(entries);
+        zip64.putLong(entries);
+        zip64.putLong(centralDirectorySize);
+        zip64.putLong(centralDirectoryOffset);
+
+        zip64.putInt(0x07064b50);
+        zip64.putInt(0);
+        zip64.putLong(end);
+        zip64.putInt(1);
+
+        zip64.put(zip, end, zip.length - end);
+        return zip64.array();
+    }
+
+    private static void replace(byte[] zip, String name, String replacement) {
+        byte[] from = name.getBytes(StandardCharsets.UTF_8);
+        byte[] to = replacement.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i + from.length <= zip.length; i++) {
+            if (Arrays.equals(zip, i, i + from.length, from, 0, from.length)) {
+                System.arraycopy(to, 0, zip, i, to.length);
+            }
+        }
+    }
+}
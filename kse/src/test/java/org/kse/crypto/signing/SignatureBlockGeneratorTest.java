@@ -0,0 +1,204 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.signing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.Provider;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.ECPrivateKey;
+import java.security.spec.ECParameterSpec;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bouncycastle.asn1.cms.CMSAttributes;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.cms.jcajce.JcaSimpleSignerInfoVerifierBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.kse.KSE;
+import org.kse.crypto.CryptoTestsBase;
+
+/**
+ * Unit tests for {@link SignatureBlockGenerator}.
+ */
+public class SignatureBlockGeneratorTest extends CryptoTestsBase {
+
+    private static final int BLOCKS = 32;
+    private static final int THREADS = 4;
+
+    private static KeyPair keyPair;
+    private static X509Certificate certificate;
+
+    @BeforeAll
+    static void setUpKey() throws Exception {
+        keyPair = generateKeyPair();
+        certificate = generateCert("CN=JAR signer", keyPair);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = { false, true })
+    void concurrentBlocksMatchSerialBlocks(boolean explicitProvider) throws Exception {
+        Provider provider = explicitProvider ? KSE.BC : null;
+        SignatureBlockGenerator generator = new SignatureBlockGenerator(keyPair.getPrivate(),
+                                                                        new X509Certificate[] { certificate },
+                                                                        SignatureType.SHA256_ECDSA, provider);
+
+        List<CMSSignedData> serial = new ArrayList<>();
+        for (int i = 0; i < BLOCKS; i++) {
+            serial.add(generator.generate(getContent(i)));
+        }
+
+        List<Future<CMSSignedData>> concurrent = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int i = 0; i < BLOCKS; i++) {
+                byte[] content = getContent(i);
+                concurrent.add(executor.submit(() -> generator.generate(content)));
+            }
+
+            for (int i = 0; i < BLOCKS; i++) {
+                assertSameBlock(concurrent.get(i).get(), serial.get(i), getContent(i));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = { false, true })
+    void onlyBlocksOfAnExplicitProviderAreSignedOneAfterAnother(boolean explicitProvider) throws Exception {
+        Provider provider = explicitProvider ? KSE.BC : null;
+        SigningKey signingKey = new SigningKey((ECPrivateKey) keyPair.getPrivate());
+        SignatureBlockGenerator generator = new SignatureBlockGenerator(signingKey,
+                                                                        new X509Certificate[] { certificate },
+                                                                        SignatureType.SHA256_ECDSA, provider);
+
+        List<Future<CMSSignedData>> concurrent = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                byte[] content = getContent(i);
+                concurrent.add(executor.submit(() -> generator.generate(content)));
+            }
+
+            for (int i = 0; i < THREADS; i++) {
+                assertSameBlock(concurrent.get(i).get(), generator.generate(getContent(i)), getContent(i));
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        if (explicitProvider) {
+            assertThat(signingKey.maxSigning.get()).isEqualTo(1);
+        } else {
+            assertThat(signingKey.maxSigning.get()).isGreaterThan(1);
+        }
+    }
+
+    /*
+     * ECDSA signatures are randomized, so the blocks are compared by everything but their signature
+     * value and signing time
+     */
+    private static void assertSameBlock(CMSSignedData actual, CMSSignedData expected, byte[] content)
+            throws Exception {
+        assertThat((byte[]) actual.getSignedContent().getContent()).isEqualTo(content);
+        assertThat(actual.getCertificates().getMatches(null)).containsExactlyElementsOf(
+                expected.getCertificates().getMatches(null));
+
+        SignerInformation actualSigner = actual.getSignerInfos().iterator().next();
+        SignerInformation expectedSigner = expected.getSignerInfos().iterator().next();
+
+        assertThat(actual.getSignerInfos().size()).isEqualTo(1);
+        assertThat(actualSigner.getDigestAlgOID()).isEqualTo(expectedSigner.getDigestAlgOID());
+        assertThat(actualSigner.getEncryptionAlgOID()).isEqualTo(expectedSigner.getEncryptionAlgOID());
+        assertThat(actualSigner.getSignedAttributes().remove(CMSAttributes.signingTime).toASN1Structure()).isEqualTo(
+                expectedSigner.getSignedAttributes().remove(CMSAttributes.signingTime).toASN1Structure());
+
+        assertThat(actualSigner.verify(new JcaSimpleSignerInfoVerifierBuilder().setProvider(KSE.BC)
+                                                                                .build(certificate))).isTrue();
+    }
+
+    private static byte[] getContent(int i) {
+        return ("Signature-Version: 1.0\r\nName: Entry" + i + "\r\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /*
+     * The private key, recording how many signatures are created with it at the same time. Each
+     * signature waits a little for the others to start theirs.
+     */
+    private static class SigningKey implements ECPrivateKey {
+        private static final long serialVersionUID = 1L;
+
+        private final ECPrivateKey key;
+        private final transient CountDownLatch started = new CountDownLatch(THREADS);
+        private final transient AtomicInteger signing = new AtomicInteger();
+        private final transient AtomicInteger maxSigning = new AtomicInteger();
+
+        private SigningKey(ECPrivateKey key) {
+            this.key = key;
+        }
+
+        @Override
+        public BigInteger getS() {
+            maxSigning.accumulateAndGet(signing.incrementAndGet(), Math::max);
+            try {
+                started.countDown();
+                started.await(200, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                signing.decrementAndGet();
+            }
+            return key.getS();
+        }
+
+        @Override
+        public ECParameterSpec getParams() {
+            return key.getParams();
+        }
+
+        @Override
+        public String getAlgorithm() {
+            return key.getAlgorithm();
+        }
+
+        @Override
+        public String getFormat() {
+            return key.getFormat();
+        }
+
+        @Override
+        public byte[] getEncoded() {
+            return key.getEncoded();
+        }
+    }
+}
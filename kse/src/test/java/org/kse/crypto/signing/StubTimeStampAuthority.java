@@ -0,0 +1,221 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.signing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.oiw.OIWObjectIdentifiers;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaCertStore;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.cms.jcajce.JcaSimpleSignerInfoGeneratorBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.bouncycastle.tsp.TSPAlgorithms;
+import org.bouncycastle.tsp.TimeStampRequest;
+import org.bouncycastle.tsp.TimeStampResponse;
+import org.bouncycastle.tsp.TimeStampResponseGenerator;
+import org.bouncycastle.tsp.TimeStampTokenGenerator;
+import org.kse.KSE;
+import org.kse.crypto.keypair.KeyPairType;
+import org.kse.crypto.keypair.KeyPairUtil;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An RFC 3161 time stamp authority on the loopback interface, for testing time stamping without
+ * network access. Responses are created with BouncyCastle's {@link TimeStampResponseGenerator}.
+ * Requests can be made to fail with an HTTP error to test retries.
+ */
+class StubTimeStampAuthority implements AutoCloseable {
+
+    private static final ASN1ObjectIdentifier POLICY = new ASN1ObjectIdentifier("1.3.6.1.4.1.99999.1");
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final X509Certificate certificate;
+    private final TimeStampResponseGenerator responseGenerator;
+
+    private final AtomicLong serialNumber = new AtomicLong();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger failuresToSend = new AtomicInteger();
+    private volatile int failureStatusCode = 503;
+    private final Set<BigInteger> nonces = ConcurrentHashMap.newKeySet();
+    private final Set<InetSocketAddress> clientAddresses = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates a TSA with a new key and certificate, and starts it.
+     *
+     * @throws Exception If the TSA cannot be started
+     */
+    StubTimeStampAuthority() throws Exception {
+        KeyPair keyPair = KeyPairUtil.generateKeyPair(KeyPairType.RSA, 2048, KSE.BC);
+        X500Name name = new X500Name("CN=Stub TSA");
+        Date notBefore = new Date(System.currentTimeMillis() - 60_000);
+        Date notAfter = new Date(System.currentTimeMillis() + 24L * 60 * 60 * 1000);
+        X509v3CertificateBuilder certBuilder = new JcaX509v3CertificateBuilder(name, BigInteger.ONE, notBefore,
+                                                                               notAfter, name, keyPair.getPublic());
+        certBuilder.addExtension(Extension.basicConstraints, true, new BasicConstraints(false));
+        certBuilder.addExtension(Extension.extendedKeyUsage, true,
+                                 new ExtendedKeyUsage(KeyPurposeId.id_kp_timeStamping));
+        certificate = new JcaX509CertificateConverter().setProvider(KSE.BC).getCertificate(
+                certBuilder.build(new JcaContentSignerBuilder("SHA256withRSA").setProvider(KSE.BC)
+                                                                             .build(keyPair.getPrivate())));
+
+        TimeStampTokenGenerator tokenGenerator = new TimeStampTokenGenerator(
+                new JcaSimpleSignerInfoGeneratorBuilder().setProvider(KSE.BC)
+                                                         .build("SHA256withRSA", keyPair.getPrivate(), certificate),
+                new JcaDigestCalculatorProviderBuilder().setProvider(KSE.BC).build()
+                                                        .get(new AlgorithmIdentifier(OIWObjectIdentifiers.idSHA1)),
+                POLICY);
+        tokenGenerator.addCertificates(new JcaCertStore(List.of(certificate)));
+        responseGenerator = new TimeStampResponseGenerator(tokenGenerator, TSPAlgorithms.ALLOWED);
+
+        executor = Executors.newFixedThreadPool(8);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            clientAddresses.add(exchange.getRemoteAddress());
+
+            byte[] requestBytes;
+            try (InputStream is = exchange.getRequestBody()) {
+                requestBytes = is.readAllBytes();
+            }
+
+            if (failuresToSend.getAndUpdate(n -> Math.max(n - 1, 0)) > 0) {
+                exchange.sendResponseHeaders(failureStatusCode, -1);
+                return;
+            }
+
+            byte[] responseBytes;
+            try {
+                TimeStampRequest request = new TimeStampRequest(requestBytes);
+                nonces.add(request.getNonce());
+                // the token generator's signer is not thread-safe
+                synchronized (responseGenerator) {
+                    TimeStampResponse response = responseGenerator.generate(
+                            request, BigInteger.valueOf(serialNumber.incrementAndGet()), new Date());
+                    responseBytes = response.getEncoded();
+                }
+            } catch (Exception e) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "application/timestamp-reply");
+            exchange.sendResponseHeaders(200, responseBytes.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(responseBytes);
+            }
+        }
+    }
+
+    /**
+     * Get the URL of the TSA.
+     *
+     * @return TSA URL
+     */
+    String getUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/tsa";
+    }
+
+    /**
+     * Get the TSA certificate that signs the time stamp tokens.
+     *
+     * @return TSA certificate
+     */
+    X509Certificate getCertificate() {
+        return certificate;
+    }
+
+    /**
+     * Answer the next requests with an HTTP error instead of a time stamp response.
+     *
+     * @param count      Number of requests to fail
+     * @param statusCode HTTP status code to send
+     */
+    void failNextRequests(int count, int statusCode) {
+        failureStatusCode = statusCode;
+        failuresToSend.set(count);
+    }
+
+    /**
+     * Get the number of HTTP requests received, including those that were failed.
+     *
+     * @return Number of requests
+     */
+    int getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Get the distinct nonces of the time stamp requests answered.
+     *
+     * @return Nonces
+     */
+    Set<BigInteger> getNonces() {
+        return nonces;
+    }
+
+    /**
+     * Get the distinct client addresses that requests were received from, one per connection.
+     *
+     * @return Client addresses
+     */
+    Set<InetSocketAddress> getClientAddresses() {
+        return clientAddresses;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
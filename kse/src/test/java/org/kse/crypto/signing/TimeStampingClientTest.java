@@ -20,18 +20,49 @@
 
 package org.kse.crypto.signing;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
 import java.io.IOException;
+import java.net.ProxySelector;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.assertj.core.api.Assertions;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.jcajce.JcaSimpleSignerInfoVerifierBuilder;
+import org.bouncycastle.tsp.TimeStampToken;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.kse.KSE;
+import org.kse.crypto.CryptoTestsBase;
 import org.kse.crypto.digest.DigestType;
+import org.kse.utilities.net.StubSocksProxy;
 import org.kse.utilities.net.URLs;
 
-class TimeStampingClientTest {
+class TimeStampingClientTest extends CryptoTestsBase {
 
     private static final byte[] DATA = new byte[] { 0x31, 0x32, 0x33, 0x34, 0x35, 0x36, 0x37, 0x38 };
 
+    private static StubTimeStampAuthority tsa;
+
+    @BeforeAll
+    static void startTsa() throws Exception {
+        tsa = new StubTimeStampAuthority();
+    }
+
+    @AfterAll
+    static void stopTsa() {
+        tsa.close();
+    }
+
     @ParameterizedTest
     @MethodSource("tsaUrls")
     public void testTsaUrls(String tsaUrl) throws IOException {
@@ -43,4 +74,81 @@ class TimeStampingClientTest {
     static String[] tsaUrls() {
         return URLs.TSA_URLS;
     }
+
+    @Test
+    void tokenFromStubTsaVerifies() throws Exception {
+        byte[] token = TimeStampingClient.getTimeStampToken(tsa.getUrl(), DATA, DigestType.SHA256);
+
+        TimeStampToken timeStampToken = new TimeStampToken(new CMSSignedData(token));
+        assertThat(timeStampToken.getTimeStampInfo().getMessageImprintDigest()).isEqualTo(
+                MessageDigest.getInstance("SHA-256").digest(DATA));
+        timeStampToken.validate(new JcaSimpleSignerInfoVerifierBuilder().setProvider(KSE.BC)
+                                                                        .build(tsa.getCertificate()));
+    }
+
+    @Test
+    void concurrentRequestsShareConnections() throws Exception {
+        int threads = 8;
+        int requestsPerThread = 25;
+        int requestsBefore = tsa.getRequests();
+        long metricsBefore = TimeStampingClient.getMetrics().getRequests();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<byte[]>> futures = new ArrayList<>();
+            for (int i = 0; i < threads * requestsPerThread; i++) {
+                futures.add(executor.submit(
+                        () -> TimeStampingClient.getTimeStampToken(tsa.getUrl(), DATA, DigestType.SHA256)));
+            }
+            for (Future<byte[]> future : futures) {
+                assertThat(future.get()).isNotEmpty();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        int requests = tsa.getRequests() - requestsBefore;
+        assertThat(requests).isEqualTo(threads * requestsPerThread);
+        assertThat(TimeStampingClient.getMetrics().getRequests() - metricsBefore).isGreaterThanOrEqualTo(requests);
+        // every request has its own nonce, and connections are kept alive instead of opened per request
+        assertThat(tsa.getNonces()).hasSizeGreaterThanOrEqualTo(requests);
+        assertThat(tsa.getClientAddresses()).hasSizeLessThan(requests / 2);
+    }
+
+    @Test
+    void temporaryFailuresAreRetried() throws Exception {
+        long retriesBefore = TimeStampingClient.getMetrics().getRetries();
+        tsa.failNextRequests(2, 503);
+
+        byte[] token = TimeStampingClient.getTimeStampToken(tsa.getUrl(), DATA, DigestType.SHA256);
+
+        assertThat(token).isNotEmpty();
+        assertThat(TimeStampingClient.getMetrics().getRetries() - retriesBefore).isEqualTo(2);
+    }
+
+    @Test
+    void clientErrorsAreNotRetried() {
+        int requestsBefore = tsa.getRequests();
+        tsa.failNextRequests(1, 400);
+
+        assertThatThrownBy(() -> TimeStampingClient.getTimeStampToken(tsa.getUrl(), DATA, DigestType.SHA256))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("400");
+        assertThat(tsa.getRequests() - requestsBefore).isEqualTo(1);
+    }
+
+    @Test
+    void requestsThroughSocksProxyUseProxy() throws Exception {
+        ProxySelector defaultProxySelector = ProxySelector.getDefault();
+        try (StubSocksProxy proxy = new StubSocksProxy()) {
+            ProxySelector.setDefault(proxy.getProxySelector());
+
+            byte[] token = TimeStampingClient.getTimeStampToken(tsa.getUrl(), DATA, DigestType.SHA256);
+
+            assertThat(token).isNotEmpty();
+            assertThat(proxy.getConnections()).isPositive();
+        } finally {
+            ProxySelector.setDefault(defaultProxySelector);
+        }
+    }
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.x509;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.security.KeyPair;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.kse.crypto.CryptoException;
+import org.kse.crypto.CryptoTestsBase;
+
+class SignatureVerificationCacheTest extends CryptoTestsBase {
+
+    private static KeyPair issuerKeys;
+    private static X509Certificate issuer;
+    private static X509Certificate cert;
+
+    @BeforeAll
+    static void createCertificates() throws Exception {
+        issuerKeys = generateKeyPair();
+        issuer = generateCert("CN=Issuer", issuerKeys);
+        cert = generateCert("CN=Issued", generateKeyPair(), "CN=Issuer", issuerKeys);
+    }
+
+    @Test
+    void verifiesEachEdgeOnce() throws Exception {
+        SignatureVerificationCache cache = new SignatureVerificationCache(10);
+        int[] verifications = new int[1];
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(cache.verify(cert, issuer.getPublicKey(), () -> {
+                verifications[0]++;
+                return true;
+            })).isTrue();
+        }
+        assertThat(cache.verify(issuer, issuer.getPublicKey(), () -> false)).isFalse();
+
+        assertThat(verifications[0]).isEqualTo(1);
+        assertThat(cache.getHits()).isEqualTo(2);
+        assertThat(cache.getMisses()).isEqualTo(2);
+        assertThat(cache.getHitRate()).isEqualTo(0.5);
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    @Test
+    void alteredSignatureDoesNotMatch() throws Exception {
+        byte[] encoded = cert.getEncoded();
+        encoded[encoded.length - 1] ^= 1;
+        X509Certificate tampered = (X509Certificate) CertificateFactory.getInstance("X.509").generateCertificate(
+                new ByteArrayInputStream(encoded));
+
+        assertThat(X509CertUtil.verifyCertificate(cert, issuer)).isTrue();
+        assertThat(X509CertUtil.verifyCertificate(tampered, issuer)).isFalse();
+        assertThat(X509CertUtil.verifyCertificate(cert, issuer)).isTrue();
+    }
+
+    @Test
+    void failuresAreNotCached() throws Exception {
+        SignatureVerificationCache cache = new SignatureVerificationCache(10);
+
+        assertThatThrownBy(() -> cache.verify(cert, issuer.getPublicKey(), () -> {
+            throw new CryptoException("unsupported");
+        })).isInstanceOf(CryptoException.class);
+
+        assertThat(cache.size()).isZero();
+        assertThat(cache.verify(cert, issuer.getPublicKey(), () -> true)).isTrue();
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() throws Exception {
+        SignatureVerificationCache cache = new SignatureVerificationCache(1);
+
+        cache.verify(cert, issuer.getPublicKey(), () -> true);
+        cache.verify(issuer, issuer.getPublicKey(), () -> true);
+
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.verify(cert, issuer.getPublicKey(), () -> false)).isFalse();
+
+        cache.clear();
+        assertThat(cache.size()).isZero();
+        assertThat(cache.getMisses()).isZero();
+    }
+}
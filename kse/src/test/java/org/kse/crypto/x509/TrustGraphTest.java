@@ -0,0 +1,128 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.x509;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.kse.crypto.CryptoTestsBase;
+import org.kse.crypto.keystore.KeyStoreType;
+import org.kse.crypto.keystore.KeyStoreUtil;
+import org.kse.crypto.keystore.KseKeyStore;
+
+class TrustGraphTest extends CryptoTestsBase {
+
+    private static X509Certificate root;
+    private static X509Certificate intermediate1;
+    private static X509Certificate intermediate2;
+    private static X509Certificate leaf;
+    private static X509Certificate unrelated;
+
+    @BeforeAll
+    static void createCertificates() throws Exception {
+        KeyPair rootKeys = generateKeyPair();
+        KeyPair intermediate1Keys = generateKeyPair();
+        KeyPair intermediate2Keys = generateKeyPair();
+        KeyPair unrelatedKeys = generateKeyPair();
+
+        root = generateCert("CN=Root", rootKeys, "CN=Root", rootKeys);
+        intermediate1 = generateCert("CN=Intermediate 1", intermediate1Keys, "CN=Root", rootKeys);
+        intermediate2 = generateCert("CN=Intermediate 2", intermediate2Keys, "CN=Intermediate 1", intermediate1Keys);
+        leaf = generateCert("CN=Leaf", generateKeyPair(), "CN=Intermediate 2", intermediate2Keys);
+        unrelated = generateCert("CN=Unrelated", unrelatedKeys, "CN=Unrelated", unrelatedKeys);
+    }
+
+    @Test
+    void establishesTrustToRoot() throws Exception {
+        TrustGraph graph = new TrustGraph(List.of(intermediate2, unrelated, intermediate1, root));
+
+        assertThat(graph.establishTrust(leaf)).containsExactly(leaf, intermediate2, intermediate1, root);
+        assertThat(graph.establishTrust(intermediate1)).containsExactly(intermediate1, root);
+        assertThat(graph.establishTrust(root)).containsExactly(root, root);
+    }
+
+    @Test
+    void noTrustWithoutSelfSignedCertificate() throws Exception {
+        TrustGraph graph = new TrustGraph(List.of(intermediate2, intermediate1, unrelated));
+
+        assertThat(graph.establishTrust(leaf)).isNull();
+        assertThat(graph.establishTrust(leaf)).isNull();
+    }
+
+    @Test
+    void terminatesOnCrossIssuedCertificates() throws Exception {
+        KeyPair keysA = generateKeyPair();
+        KeyPair keysB = generateKeyPair();
+        X509Certificate certA = generateCert("CN=A", keysA, "CN=B", keysB);
+        X509Certificate certB = generateCert("CN=B", keysB, "CN=A", keysA);
+        X509Certificate issuedByA = generateCert("CN=Issued by A", generateKeyPair(), "CN=A", keysA);
+
+        TrustGraph graph = new TrustGraph(List.of(certA, certB));
+
+        assertThat(graph.establishTrust(issuedByA)).isNull();
+        assertThat(new TrustGraph(List.of(certA, certB, root)).establishTrust(issuedByA)).isNull();
+    }
+
+    @Test
+    void reusesGraphUntilKeyStoreChanges() throws Exception {
+        KseKeyStore keyStore = KeyStoreUtil.create(KeyStoreType.PKCS12);
+        keyStore.setCertificateEntry("intermediate1", intermediate1);
+        KseKeyStore caCertificates = KeyStoreUtil.create(KeyStoreType.PKCS12);
+        caCertificates.setCertificateEntry("root", root);
+
+        KseKeyStore[] keyStores = { keyStore, caCertificates };
+        TrustGraph graph = TrustGraph.forKeyStores(keyStores);
+
+        assertThat(graph.size()).isEqualTo(2);
+        assertThat(graph.establishTrust(intermediate2)).containsExactly(intermediate2, intermediate1, root);
+        assertThat(TrustGraph.forKeyStores(new KseKeyStore[] { keyStore, caCertificates })).isSameAs(graph);
+        assertThat(X509CertUtil.establishTrust(leaf, keyStores)).isNull();
+
+        keyStore.setCertificateEntry("intermediate2", intermediate2);
+        TrustGraph changedGraph = TrustGraph.forKeyStores(keyStores);
+
+        assertThat(changedGraph).isNotSameAs(graph);
+        assertThat(changedGraph.size()).isEqualTo(3);
+        assertThat(X509CertUtil.establishTrust(leaf, keyStores)).containsExactly(leaf, intermediate2, intermediate1,
+                                                                                 root);
+        assertThat(TrustGraph.forKeyStores(new KseKeyStore[] { caCertificates, keyStore })).isNotSameAs(
+                changedGraph);
+    }
+
+    @Test
+    void rebuildsGraphWhenAnEntryIsReplaced() throws Exception {
+        KseKeyStore keyStore = KeyStoreUtil.create(KeyStoreType.PKCS12);
+        keyStore.setCertificateEntry("ca", unrelated);
+        keyStore.setCertificateEntry("root", root);
+
+        KseKeyStore[] keyStores = { keyStore };
+        assertThat(X509CertUtil.establishTrust(intermediate2, keyStores)).isNull();
+
+        keyStore.setCertificateEntry("ca", intermediate1);
+
+        assertThat(X509CertUtil.establishTrust(intermediate2, keyStores)).containsExactly(intermediate2, intermediate1,
+                                                                                          root);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.crypto.x509;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.kse.crypto.CryptoTestsBase;
+
+class X509CertChainBuilderTest extends CryptoTestsBase {
+
+    private static X509Certificate root;
+    private static X509Certificate intermediate1;
+    private static X509Certificate intermediate2;
+    private static X509Certificate leaf;
+    private static X509Certificate otherIntermediate1;
+    private static X509Certificate unrelated;
+
+    @BeforeAll
+    static void createCertificates() throws Exception {
+        KeyPair rootKeys = generateKeyPair();
+        KeyPair intermediate1Keys = generateKeyPair();
+        KeyPair intermediate2Keys = generateKeyPair();
+        KeyPair otherRootKeys = generateKeyPair();
+        KeyPair otherIntermediate1Keys = generateKeyPair();
+        KeyPair unrelatedKeys = generateKeyPair();
+
+        root = generateCert("CN=Root", rootKeys, "CN=Root", rootKeys);
+        intermediate1 = generateCert("CN=Intermediate 1", intermediate1Keys, "CN=Root", rootKeys);
+        intermediate2 = generateCert("CN=Intermediate 2", intermediate2Keys, "CN=Intermediate 1", intermediate1Keys);
+        leaf = generateCert("CN=Leaf", generateKeyPair(), "CN=Intermediate 2", intermediate2Keys);
+
+        // same DNs as intermediate 1, but issued by a different root key
+        otherIntermediate1 = generateCert("CN=Intermediate 1", otherIntermediate1Keys, "CN=Root", otherRootKeys);
+        unrelated = generateCert("CN=Unrelated", unrelatedKeys, "CN=Unrelated", unrelatedKeys);
+    }
+
+    @Test
+    void ordersShuffledChain() {
+        X509Certificate[] ordered = X509CertUtil.orderX509CertChain(
+                new X509Certificate[] { intermediate1, leaf, root, intermediate2 });
+
+        assertThat(ordered).containsExactly(leaf, intermediate2, intermediate1, root);
+    }
+
+    @Test
+    void ignoresCertificatesOutsideLongestChain() {
+        X509Certificate[] ordered = X509CertUtil.orderX509CertChain(
+                new X509Certificate[] { unrelated, root, otherIntermediate1, intermediate2, leaf, intermediate1 });
+
+        assertThat(ordered).containsExactly(leaf, intermediate2, intermediate1, root);
+    }
+
+    @Test
+    void ordersBundleAndAppendsUnrelated() {
+        X509Certificate[] ordered = X509CertUtil.orderX509CertsChain(
+                new X509Certificate[] { unrelated, leaf, intermediate2, intermediate1, root });
+
+        assertThat(ordered).containsExactly(leaf, intermediate2, intermediate1, root, unrelated);
+    }
+
+    @Test
+    void verifiesOnlyCandidateEdgesOnce() {
+        X509Certificate[] certs = { unrelated, root, otherIntermediate1, intermediate2, leaf, intermediate1 };
+        X509CertChainBuilder chainBuilder = new X509CertChainBuilder(certs);
+
+        chainBuilder.getLongestChain();
+        for (int i = 0; i < certs.length; i++) {
+            chainBuilder.getIssuers(i);
+            chainBuilder.getIssued(i);
+        }
+
+        // leaf -> intermediate 2, intermediate 2 -> intermediate 1, intermediate 1 -> root
+        assertThat(chainBuilder.getVerifications()).isEqualTo(3);
+        assertThat(chainBuilder.getIssuers(3)).containsExactly(5);
+        assertThat(chainBuilder.getIssued(1)).containsExactly(5);
+        assertThat(chainBuilder.getIssuers(2)).isEmpty();
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.gui;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.security.KeyPair;
+
+import org.junit.jupiter.api.Test;
+import org.kse.crypto.CryptoTestsBase;
+import org.kse.crypto.keystore.KeyStoreType;
+import org.kse.crypto.keystore.KeyStoreUtil;
+import org.kse.crypto.keystore.KseKeyStore;
+import org.kse.gui.passwordmanager.Password;
+import org.kse.utilities.history.KeyStoreHistory;
+import org.kse.utilities.history.KeyStoreState;
+
+/**
+ * Unit tests for the snapshot cache of EntrySnapshot.
+ */
+public class EntrySnapshotTest extends CryptoTestsBase {
+
+    @Test
+    void snapshotsAreSharedByTableModelsOfAHistory() throws Exception {
+        KeyStoreHistory history = createHistory(10);
+        EntrySnapshot.Cache cache = EntrySnapshot.Cache.forHistory(history);
+
+        new KeyStoreTableModel(new KeyStoreTableColumns(), 0).load(history);
+        EntrySnapshot snapshot = cache.get("cert0", history.getCurrentState().getKeyStore());
+
+        // Redrawing the table creates a new model for the same history
+        new KeyStoreTableModel(new KeyStoreTableColumns(), 0).load(history);
+
+        assertThat(EntrySnapshot.Cache.forHistory(history)).isSameAs(cache);
+        assertThat(cache.size()).isEqualTo(10);
+        assertThat(cache.get("cert0", history.getCurrentState().getKeyStore())).isSameAs(snapshot);
+        assertThat(EntrySnapshot.Cache.forHistory(createHistory(1))).isNotSameAs(cache);
+    }
+
+    @Test
+    void reloadedKeyStoreFileHitsTheCache() throws Exception {
+        KeyStoreHistory history = createHistory(10);
+        KeyStoreTableModel model = new KeyStoreTableModel(new KeyStoreTableColumns(), 0);
+        model.load(history);
+
+        EntrySnapshot.Cache cache = EntrySnapshot.Cache.forHistory(history);
+        EntrySnapshot snapshot = cache.get("cert0", history.getCurrentState().getKeyStore());
+
+        // Reloading the file creates new certificate objects with the same encoding
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        history.getCurrentState().getKeyStore().store(out, "password".toCharArray());
+        KseKeyStore reloaded = KeyStoreUtil.load(out.toByteArray(), new Password("password".toCharArray()),
+                                                 KeyStoreType.JKS);
+
+        KeyStoreState state = history.getCurrentState();
+        KeyStoreState newState = state.createBasisForNextState(null);
+        newState.setKeyStore(reloaded);
+        state.append(newState);
+        model.load(history);
+
+        assertThat(reloaded.getCertificate("cert0")).isNotSameAs(snapshot.getCertificate());
+        assertThat(cache.get("cert0", reloaded)).isSameAs(snapshot);
+        assertThat(cache.size()).isEqualTo(10);
+    }
+
+    @Test
+    void cacheIsSizedFromTheKeyStore() throws Exception {
+        KeyStoreHistory history = createHistory(100);
+        new KeyStoreTableModel(new KeyStoreTableColumns(), 0).load(history);
+
+        EntrySnapshot.Cache cache = EntrySnapshot.Cache.forHistory(history);
+        assertThat(cache.size()).isEqualTo(100);
+
+        // Replacing every entry keeps the snapshots of the replaced entries for undo
+        KeyPair keyPair = generateKeyPair();
+        KeyStoreState state = history.getCurrentState();
+        KeyStoreState newState = state.createBasisForNextState(null);
+        for (int i = 0; i < 100; i++) {
+            newState.getKeyStore().setCertificateEntry("cert" + i, generateCert("cn=New " + i, keyPair));
+        }
+        state.append(newState);
+        new KeyStoreTableModel(new KeyStoreTableColumns(), 0).load(history);
+
+        assertThat(cache.size()).isEqualTo(200);
+    }
+
+    private static KeyStoreHistory createHistory(int entries) throws Exception {
+        KeyPair keyPair = generateKeyPair();
+        KseKeyStore keyStore = KeyStoreUtil.create(KeyStoreType.JKS);
+        for (int i = 0; i < entries; i++) {
+            keyStore.setCertificateEntry("cert" + i, generateCert("cn=Cert " + i, keyPair));
+        }
+        return new KeyStoreHistory(keyStore, "test", new Password("password".toCharArray()), null);
+    }
+}
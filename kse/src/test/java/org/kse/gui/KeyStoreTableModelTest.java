@@ -0,0 +1,163 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.gui;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.security.KeyPair;
+import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.event.TableModelEvent;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.kse.crypto.CryptoTestsBase;
+import org.kse.crypto.keystore.KeyStoreType;
+import org.kse.crypto.keystore.KeyStoreUtil;
+import org.kse.crypto.keystore.KseKeyStore;
+import org.kse.gui.passwordmanager.Password;
+import org.kse.utilities.history.KeyStoreHistory;
+import org.kse.utilities.history.KeyStoreState;
+
+/**
+ * Unit tests for the incremental updates of KeyStoreTableModel.
+ */
+public class KeyStoreTableModelTest extends CryptoTestsBase {
+
+    private KeyStoreTableModel model;
+    private List<TableModelEvent> events;
+    private KeyPair keyPair;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        model = new KeyStoreTableModel(new KeyStoreTableColumns(), 0);
+        events = new ArrayList<>();
+        model.addTableModelListener(events::add);
+        keyPair = generateKeyPair();
+    }
+
+    @Test
+    void changedEntriesUpdateSingleRows() throws Exception {
+        KeyStoreHistory history = createHistory(KeyStoreType.JKS, "b", "d");
+        model.load(history);
+        events.clear();
+
+        appendState(history, ks -> {
+            ks.setCertificateEntry("a", generateCert("cn=A", keyPair));
+            ks.setCertificateEntry("b", generateCert("cn=B2", keyPair));
+            ks.deleteEntry("d");
+        });
+        model.load(history);
+
+        assertThat(events).extracting(TableModelEvent::getType, TableModelEvent::getFirstRow)
+                          .containsExactlyInAnyOrder(tuple(TableModelEvent.INSERT, 0),
+                                                     tuple(TableModelEvent.UPDATE, 1),
+                                                     tuple(TableModelEvent.DELETE, 2));
+        assertThat(model.getRowCount()).isEqualTo(2);
+        assertThat(model.getValueAt(0, 3)).isEqualTo("a");
+        assertThat(model.getValueAt(1, 3)).isEqualTo("b");
+    }
+
+    @Test
+    void manyChangedEntriesReloadTheTable() throws Exception {
+        KeyStoreHistory history = createHistory(KeyStoreType.JKS, "a");
+        model.load(history);
+        events.clear();
+
+        appendState(history, ks -> {
+            for (int i = 0; i < 65; i++) {
+                ks.setCertificateEntry("cert" + i, generateCert("cn=Cert " + i, keyPair));
+            }
+        });
+        model.load(history);
+
+        assertThat(events).hasSize(1);
+        assertThat(events.get(0).getFirstRow()).isEqualTo(0);
+        assertThat(events.get(0).getLastRow()).isEqualTo(Integer.MAX_VALUE);
+        assertThat(model.getRowCount()).isEqualTo(66);
+    }
+
+    @Test
+    void rowsShowAliasesAsStored() throws Exception {
+        KeyStoreHistory history = createHistory(KeyStoreType.PKCS12, "a");
+        model.load(history);
+        events.clear();
+
+        appendState(history, ks -> ks.setCertificateEntry("MyCert", generateCert("cn=My Cert", keyPair)));
+        model.load(history);
+
+        // The incremental update shows the same alias as a full reload
+        KeyStoreTableModel reloadedModel = new KeyStoreTableModel(new KeyStoreTableColumns(), 0);
+        reloadedModel.load(history);
+
+        assertThat(events).extracting(TableModelEvent::getType).containsExactly(TableModelEvent.INSERT);
+        int row = events.get(0).getFirstRow();
+        assertThat(model.getValueAt(row, 3)).isEqualTo(reloadedModel.getValueAt(row, 3));
+        events.clear();
+
+        appendState(history, ks -> ks.deleteEntry("MYCERT"));
+        model.load(history);
+
+        assertThat(events).extracting(TableModelEvent::getType).containsExactly(TableModelEvent.DELETE);
+        assertThat(model.getRowCount()).isEqualTo(1);
+    }
+
+    @Test
+    void unlockingAnEntryUpdatesItsLockStatus() throws Exception {
+        KeyStoreHistory history = createHistory(KeyStoreType.JKS, "a");
+        Certificate[] chain = { generateCert("cn=Key", keyPair) };
+        appendState(history, ks -> ks.setKeyEntry("key", keyPair.getPrivate(), "pw".toCharArray(), chain));
+        model.load(history);
+
+        int keyRow = 1;
+        assertThat(model.getValueAt(keyRow, 1)).isEqualTo(Boolean.TRUE);
+        events.clear();
+
+        // Unlocking does not create a new state
+        history.getCurrentState().setEntryPassword("key", new Password("pw".toCharArray()));
+        model.load(history);
+
+        assertThat(events).extracting(TableModelEvent::getType, TableModelEvent::getFirstRow)
+                          .containsExactly(tuple(TableModelEvent.UPDATE, keyRow));
+        assertThat(model.getValueAt(keyRow, 1)).isEqualTo(Boolean.FALSE);
+    }
+
+    private interface Change {
+        void apply(KseKeyStore keyStore) throws Exception;
+    }
+
+    private KeyStoreHistory createHistory(KeyStoreType type, String... aliases) throws Exception {
+        KseKeyStore keyStore = KeyStoreUtil.create(type);
+        for (String alias : aliases) {
+            keyStore.setCertificateEntry(alias, generateCert("cn=" + alias, keyPair));
+        }
+        return new KeyStoreHistory(keyStore, "test", new Password(new char[0]), null);
+    }
+
+    private static void appendState(KeyStoreHistory history, Change change) throws Exception {
+        KeyStoreState state = history.getCurrentState();
+        KeyStoreState newState = state.createBasisForNextState(null);
+        change.apply(newState.getKeyStore());
+        state.append(newState);
+    }
+}
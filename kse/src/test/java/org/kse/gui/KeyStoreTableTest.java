@@ -0,0 +1,100 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.gui;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.security.KeyPair;
+
+import javax.swing.event.ChangeListener;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.kse.crypto.CryptoTestsBase;
+import org.kse.crypto.digest.DigestType;
+import org.kse.crypto.keystore.KeyStoreType;
+import org.kse.crypto.keystore.KeyStoreUtil;
+import org.kse.crypto.keystore.KseKeyStore;
+import org.kse.gui.passwordmanager.Password;
+import org.kse.utilities.history.KeyStoreHistory;
+
+/**
+ * Unit tests for the lazily computed columns of KeyStoreTable.
+ */
+public class KeyStoreTableTest extends CryptoTestsBase {
+
+    private KeyStoreTableColumns columns;
+    private KeyStoreHistory history;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        columns = new KeyStoreTableColumns();
+        columns.setEnableSubjectCN(true);
+        columns.setEnableFingerprint(true);
+        columns.setFingerprintAlg(DigestType.SHA256);
+
+        KeyPair keyPair = generateKeyPair();
+        KseKeyStore keyStore = KeyStoreUtil.create(KeyStoreType.JKS);
+        for (int i = 0; i < 5; i++) {
+            keyStore.setCertificateEntry("cert" + i, generateCert("cn=Cert " + i, keyPair));
+        }
+        history = new KeyStoreHistory(keyStore, "test", new Password(new char[0]), null);
+    }
+
+    @Test
+    void lazyColumnsAreComputedOnlyWhenRead() throws Exception {
+        KeyStoreTableModel model = createModel();
+        KeyStoreTable table = new KeyStoreTable(model);
+        int fingerprintColumn = columns.colIndexFingerprint();
+
+        // Sizing the columns uses a prototype value instead of computing the fingerprints
+        new TableColumnAdjuster(table, columns).adjustColumns();
+        assertThat(model.getPrototypeValue(fingerprintColumn)).asString().hasSize(64);
+        assertThat(model.getDisplayValueAt(0, fingerprintColumn)).isNull();
+
+        // Reading the table outside of painting computes the value
+        assertThat(table.getValueAt(1, fingerprintColumn)).asString().hasSize(64);
+        assertThat(table.getValueAt(1, columns.colIndexSubjectCN())).isEqualTo("Cert 1");
+        assertThat(model.getDisplayValueAt(1, fingerprintColumn)).isEqualTo(table.getValueAt(1, fingerprintColumn));
+    }
+
+    @Test
+    void lazyValuesListenerMovesWithTheModel() throws Exception {
+        KeyStoreTableModel oldModel = createModel();
+        KeyStoreTable table = new KeyStoreTable(oldModel);
+        assertThat(oldModel.getListeners(ChangeListener.class)).hasSize(1);
+
+        // Redrawing the table after the preferences have changed sets a new model
+        columns.setEnableSubjectCN(false);
+        KeyStoreTableModel newModel = createModel();
+        table.setModel(newModel);
+
+        assertThat(oldModel.getListeners(ChangeListener.class)).isEmpty();
+        assertThat(newModel.getListeners(ChangeListener.class)).hasSize(1);
+        assertThat(table.getColumnCount()).isEqualTo(newModel.getColumnCount());
+        assertThat(table.getValueAt(4, columns.colIndexFingerprint())).asString().hasSize(64);
+    }
+
+    private KeyStoreTableModel createModel() throws Exception {
+        KeyStoreTableModel model = new KeyStoreTableModel(columns, 0);
+        model.load(history);
+        return model;
+    }
+}
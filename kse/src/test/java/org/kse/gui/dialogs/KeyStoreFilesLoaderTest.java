@@ -0,0 +1,162 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.gui.dialogs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kse.crypto.CryptoTestsBase;
+import org.kse.crypto.keystore.KeyStoreType;
+import org.kse.crypto.keystore.KeyStoreUtil;
+import org.kse.crypto.keystore.KseKeyStore;
+import org.kse.gui.dialogs.KeyStoreFilesLoader.Status;
+import org.kse.gui.passwordmanager.Password;
+
+/**
+ * Unit tests for KeyStoreFilesLoader.
+ */
+public class KeyStoreFilesLoaderTest extends CryptoTestsBase {
+
+    @TempDir
+    Path tempDir;
+
+    private ExecutorService executor;
+    private final Map<Integer, Status> statuses = new ConcurrentHashMap<>();
+    private final List<File> files = new ArrayList<>();
+    private final List<Password> passwords = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        executor = Executors.newSingleThreadExecutor();
+
+        for (int i = 0; i < 3; i++) {
+            KseKeyStore keyStore = KeyStoreUtil.create(KeyStoreType.JKS);
+            keyStore.setCertificateEntry("cert", generateCert("cn=Cert " + i, generateKeyPair()));
+
+            File file = tempDir.resolve("keystore" + i + ".jks").toFile();
+            Password password = new Password("password".toCharArray());
+            KeyStoreUtil.save(keyStore, file, password);
+
+            files.add(file);
+            passwords.add(password);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void loadsAllFiles() throws Exception {
+        Files.write(files.get(1).toPath(), new byte[] { 1, 2, 3 });
+
+        KeyStoreFilesLoader loader = new KeyStoreFilesLoader(files, passwords, executor, statuses::put);
+        loader.start();
+
+        assertThat(loader.await(10000)).isTrue();
+        awaitStatuses();
+        assertThat(loader.isFinished()).isTrue();
+        assertThat(loader.getKeyStore(0).containsAlias("cert")).isTrue();
+        assertThat(loader.getKeyStore(1)).isNull();
+        assertThat(loader.getKeyStore(2).containsAlias("cert")).isTrue();
+        assertThat(statuses).containsEntry(0, Status.LOADED).containsEntry(2, Status.LOADED);
+        // Files that are not KeyStores are loaded as null
+        assertThat(statuses).containsEntry(1, Status.LOADED);
+    }
+
+    @Test
+    void cancelSkipsFilesNotStartedYet() throws Exception {
+        // Keep the only loading thread busy until cancelled
+        CountDownLatch blocked = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        KeyStoreFilesLoader loader = new KeyStoreFilesLoader(files, passwords, executor, statuses::put);
+        loader.start();
+        loader.cancel();
+        blocked.countDown();
+
+        assertThat(loader.await(10000)).isTrue();
+        awaitStatuses();
+        assertThat(loader.isCancelled()).isTrue();
+        for (int i = 0; i < files.size(); i++) {
+            assertThat(loader.getKeyStore(i)).isNull();
+            assertThat(loader.getException(i)).isNull();
+            assertThat(statuses).containsEntry(i, Status.CANCELLED);
+        }
+    }
+
+    @Test
+    void cancelDiscardsFileBeingLoaded() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+
+        KeyStoreFilesLoader loader = new KeyStoreFilesLoader(files.subList(0, 1), passwords.subList(0, 1),
+                                                             executor, (index, status) -> {
+            statuses.put(index, status);
+            if (status == Status.LOADING) {
+                // The file is read once the listener returns
+                loading.countDown();
+                try {
+                    cancelled.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        loader.start();
+
+        assertThat(loading.await(10000, TimeUnit.MILLISECONDS)).isTrue();
+        loader.cancel();
+        cancelled.countDown();
+
+        assertThat(loader.await(10000)).isTrue();
+        awaitStatuses();
+        assertThat(loader.getKeyStore(0)).isNull();
+        assertThat(statuses).containsEntry(0, Status.CANCELLED);
+    }
+
+    private void awaitStatuses() throws InterruptedException {
+        // The final status of a file is reported after the loader has counted it as finished
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.utilities.history;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.security.cert.X509Certificate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.kse.crypto.CryptoTestsBase;
+import org.kse.crypto.keystore.KeyStoreType;
+import org.kse.crypto.keystore.KeyStoreUtil;
+import org.kse.crypto.keystore.KseKeyStore;
+import org.kse.gui.passwordmanager.Password;
+
+/**
+ * Unit tests for the memory budget of KeyStoreHistory.
+ */
+public class KeyStoreHistoryTest extends CryptoTestsBase {
+
+    @AfterEach
+    void resetMemoryBudget() {
+        KeyStoreHistory.setMemoryBudget(KeyStoreHistory.DEFAULT_MEMORY_BUDGET);
+    }
+
+    @Test
+    void onlyStatesWithOwnEntriesAreSpilled() throws Exception {
+        KseKeyStore keyStore = KeyStoreUtil.create(KeyStoreType.JKS);
+        for (int i = 0; i < 20; i++) {
+            keyStore.setCertificateEntry("cert" + i, generateCert("cn=Cert " + i));
+        }
+
+        KeyStoreHistory history = new KeyStoreHistory(keyStore, "test", new Password(new char[0]), null);
+        KeyStoreState initialState = history.getCurrentState();
+        KeyStoreHistory.setMemoryBudget(1);
+
+        // Each state shares the base with the initial state and its changed entries with later states
+        KeyStoreState deletingState = appendState(history, ks -> ks.deleteEntry("cert0"));
+        KeyStoreState replacedState = appendState(history, ks -> ks.setCertificateEntry("temp", generateCert("cn=A")));
+        KeyStoreState replacingState = appendState(history,
+                                                   ks -> ks.setCertificateEntry("temp", generateCert("cn=B")));
+        appendState(history, ks -> ks.deleteEntry("temp"));
+
+        // Only states whose changed entries were replaced by later states free memory when spilled
+        assertThat(initialState.isSpilled()).isFalse();
+        assertThat(deletingState.isSpilled()).isFalse();
+        assertThat(replacedState.isSpilled()).isTrue();
+        assertThat(replacingState.isSpilled()).isTrue();
+        assertThat(history.getSpilledSize()).isPositive();
+
+        long footprint = history.getMemoryFootprint();
+        KeyStoreHistory.setMemoryBudget(footprint);
+        history.enforceMemoryBudget();
+        assertThat(history.getMemoryFootprint()).isEqualTo(footprint);
+
+        // Undo back to the spilled state restores it
+        while (history.getCurrentState() != replacedState) {
+            history.getCurrentState().setPreviousStateAsCurrentState();
+        }
+
+        assertThat(replacedState.isSpilled()).isFalse();
+        assertThat(replacedState.getKeyStore().size()).isEqualTo(20);
+        assertThat(replacedState.getKeyStore().containsAlias("temp")).isTrue();
+        assertThat(history.getMemoryFootprint()).isGreaterThan(footprint);
+
+        history.deleteSpillFiles();
+    }
+
+    @Test
+    void unsharedStatesAreSpilledWhenOverBudget() throws Exception {
+        KseKeyStore keyStore = KeyStoreUtil.create(KeyStoreType.JKS);
+        keyStore.setCertificateEntry("cert", generateCert("cn=Cert"));
+
+        KeyStoreHistory history = new KeyStoreHistory(keyStore, "test", new Password(new char[0]), null);
+        KeyStoreHistory.setMemoryBudget(1);
+
+        KeyStoreState firstState = history.getCurrentState().createBasisForNextState(null);
+        firstState.getKeyStore().setCertificateEntry("first", generateCert("cn=First"));
+        // Storing merges the changes into a new base that is not shared with the initial state
+        firstState.getKeyStore().store(new ByteArrayOutputStream(), new char[0]);
+        history.getCurrentState().append(firstState);
+
+        KeyStoreState secondState = firstState.createBasisForNextState(null);
+        secondState.getKeyStore().setCertificateEntry("second", generateCert("cn=Second"));
+        secondState.getKeyStore().store(new ByteArrayOutputStream(), new char[0]);
+        firstState.append(secondState);
+
+        assertThat(firstState.isSpilled()).isTrue();
+        assertThat(secondState.isSpilled()).isFalse();
+
+        secondState.setPreviousStateAsCurrentState();
+
+        assertThat(firstState.isSpilled()).isFalse();
+        assertThat(secondState.isSpilled()).isTrue();
+        assertThat(history.getCurrentState().getKeyStore().size()).isEqualTo(2);
+        assertThat(history.getCurrentState().getKeyStore().containsAlias("first")).isTrue();
+
+        history.deleteSpillFiles();
+        assertThat(history.getSpilledSize()).isZero();
+    }
+
+    private interface Change {
+        void apply(KseKeyStore keyStore) throws Exception;
+    }
+
+    private static KeyStoreState appendState(KeyStoreHistory history, Change change) throws Exception {
+        KeyStoreState state = history.getCurrentState();
+        KeyStoreState newState = state.createBasisForNextState(null);
+        change.apply(newState.getKeyStore());
+        state.append(newState);
+        return newState;
+    }
+
+    private static X509Certificate generateCert(String dn) throws Exception {
+        return generateCert(dn, generateKeyPair());
+    }
+}
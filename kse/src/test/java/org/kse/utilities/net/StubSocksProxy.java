@@ -0,0 +1,159 @@
+/*
+ * Copyright 2004 - 2013 Wayne Grant
+ *           2013 - 2026 Kai Kramer
+ *
+ * This file is part of KeyStore Explorer.
+ *
+ * KeyStore Explorer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * KeyStore Explorer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with KeyStore Explorer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.kse.utilities.net;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A SOCKS 5 proxy on the loopback interface that relays connections without authentication,
+ * for testing requests through a SOCKS proxy without network access.
+ */
+public class StubSocksProxy implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "Stub SOCKS proxy");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicInteger connections = new AtomicInteger();
+
+    /**
+     * Start the proxy on a free port.
+     *
+     * @throws IOException If the proxy cannot be started
+     */
+    public StubSocksProxy() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        executor.execute(this::accept);
+    }
+
+    /**
+     * Get a proxy selector that selects this proxy for all URIs.
+     *
+     * @return Proxy selector
+     */
+    public ProxySelector getProxySelector() {
+        Proxy proxy = new Proxy(Proxy.Type.SOCKS, serverSocket.getLocalSocketAddress());
+        return new ProxySelector() {
+            @Override
+            public List<Proxy> select(URI uri) {
+                return List.of(proxy);
+            }
+
+            @Override
+            public void connectFailed(URI uri, SocketAddress socketAddress, IOException ioException) {
+            }
+        };
+    }
+
+    /**
+     * Get the number of connections relayed so far.
+     *
+     * @return Number of connections
+     */
+    public int getConnections() {
+        return connections.get();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket client = serverSocket.accept();
+                executor.execute(() -> relay(client));
+            } catch (IOException e) {
+                // closed
+            }
+        }
+    }
+
+    private void relay(Socket client) {
+        try (client) {
+            DataInputStream in = new DataInputStream(client.getInputStream());
+            OutputStream out = client.getOutputStream();
+
+            // version and authentication methods, only "no authentication" is offered back
+            in.readUnsignedByte();
+            in.readFully(new byte[in.readUnsignedByte()]);
+            out.write(new byte[] { 5, 0 });
+
+            // connect request
+            byte[] request = new byte[4];
+            in.readFully(request);
+            InetSocketAddress target;
+            switch (request[3]) {
+            case 1:
+            case 4:
+                byte[] address = new byte[request[3] == 1 ? 4 : 16];
+                in.readFully(address);
+                target = new InetSocketAddress(InetAddress.getByAddress(address), in.readUnsignedShort());
+                break;
+            default:
+                byte[] host = new byte[in.readUnsignedByte()];
+                in.readFully(host);
+                target = new InetSocketAddress(new String(host, StandardCharsets.US_ASCII), in.readUnsignedShort());
+            }
+
+            // connect directly, the default proxy selector of the tests may select this proxy
+            try (Socket server = new Socket(Proxy.NO_PROXY)) {
+                server.connect(target);
+                out.write(new byte[] { 5, 0, 0, 1, 0, 0, 0, 0, 0, 0 });
+                out.flush();
+                connections.incrementAndGet();
+
+                executor.execute(() -> transfer(server, client));
+                transfer(client, server);
+            }
+        } catch (IOException e) {
+            // connection closed by either side
+        }
+    }
+
+    private static void transfer(Socket from, Socket to) {
+        try (InputStream in = from.getInputStream()) {
+            in.transferTo(to.getOutputStream());
+            to.shutdownOutput();
+        } catch (IOException e) {
+            // connection closed by either side
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        executor.shutdownNow();
+    }
+}
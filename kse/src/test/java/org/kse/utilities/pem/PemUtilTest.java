@@ -20,13 +20,18 @@
 
 package org.kse.utilities.pem;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.junit.jupiter.api.Test;
@@ -79,6 +84,24 @@ public class PemUtilTest {
         }
     }
 
+    @Test
+    void readDirectBuffer() throws IOException {
+        byte[] data = Files.readAllBytes(new File(TEST_FILES_PATH, "keystore.pem").toPath());
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+        buffer.put(data).flip();
+
+        List<PemInfo> expected = PemUtil.decodeAll(data);
+        List<PemInfo> read = new ArrayList<>();
+        new PemReader(buffer).forEachRemaining(read::add);
+
+        assertEquals(expected.size(), read.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            assertEquals(expected.get(i).getType(), read.get(i).getType(), "Index: " + i);
+            assertArrayEquals(expected.get(i).getContent(), read.get(i).getContent(), "Index: " + i);
+        }
+    }
+
     @ParameterizedTest
     // @formatter:off
     @CsvSource({
@@ -112,6 +135,25 @@ public class PemUtilTest {
         assertNull(PemUtil.decode(data));
     }
 
+    @ParameterizedTest
+    @CsvSource({ "0", "1", "47", "48", "49", "49152", "100000" })
+    void outputStreamMatchesEncode(int length) throws IOException {
+        byte[] content = new byte[length];
+        for (int i = 0; i < length; ++i) {
+            content[i] = (byte) (i * 31);
+        }
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (PemOutputStream pos = new PemOutputStream(baos, "PKCS7")) {
+            // uneven writes across line and chunk boundaries
+            for (int off = 0; off < length; off += 1000) {
+                pos.write(content, off, Math.min(1000, length - off));
+            }
+        }
+
+        assertEquals(PemUtil.encode(new PemInfo("PKCS7", null, content)), baos.toString(StandardCharsets.US_ASCII));
+    }
+
     @Test
     void decodeAttributes() throws IOException {
         byte[] data = Files.readAllBytes(new File(TEST_FILES_PATH, "rsa-encrypted.pem").toPath());